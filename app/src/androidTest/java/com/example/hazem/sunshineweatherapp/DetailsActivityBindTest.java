@@ -0,0 +1,72 @@
+package com.example.hazem.sunshineweatherapp;
+
+import android.app.Instrumentation;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.Intent;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.hazem.sunshineweatherapp.data.WeatherContract;
+import com.example.hazem.sunshineweatherapp.utilities.SunshineDateUtils;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Measures how long DetailsActivity spends on the main thread binding a loaded day.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DetailsActivityBindTest {
+
+    private static final String TAG = "DetailsActivityBindTest";
+
+    /* One frame at 60fps; binding precomputed text should take a fraction of it */
+    private static final long MAX_BIND_NANOS = 16 * 1000 * 1000;
+
+    private static final long LOAD_TIMEOUT_MILLIS = 5000;
+
+    @Test
+    public void bind_onlyAssignsPrecomputedText() {
+        Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+        Context context = InstrumentationRegistry.getTargetContext();
+
+        long today = SunshineDateUtils.normalizeDate(System.currentTimeMillis());
+
+        ContentValues values = new ContentValues();
+        values.put(WeatherContract.WeatherEntry.COLUMN_DATE, today);
+        values.put(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID, 800);
+        values.put(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP, 21.5);
+        values.put(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP, 12.0);
+        values.put(WeatherContract.WeatherEntry.COLUMN_HUMIDITY, 40);
+        values.put(WeatherContract.WeatherEntry.COLUMN_PRESSURE, 1013);
+        values.put(WeatherContract.WeatherEntry.COLUMN_WIND_SPEED, 4);
+        values.put(WeatherContract.WeatherEntry.COLUMN_DEGREES, 90);
+        context.getContentResolver().bulkInsert(
+                WeatherContract.WeatherEntry.CONTENT_URI, new ContentValues[]{values});
+
+        Intent intent = new Intent(context, DetailsActivity.class);
+        intent.setData(WeatherContract.WeatherEntry.buildWeatherUriWithDate(today));
+        intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+
+        DetailsActivity activity = (DetailsActivity) instrumentation.startActivitySync(intent);
+
+        long deadline = SystemClock.elapsedRealtime() + LOAD_TIMEOUT_MILLIS;
+        while (activity.getLastBindNanos() == 0 && SystemClock.elapsedRealtime() < deadline) {
+            instrumentation.waitForIdleSync();
+            SystemClock.sleep(50);
+        }
+
+        long bindNanos = activity.getLastBindNanos();
+        Log.i(TAG, "main thread bind took " + bindNanos / 1000 + "us");
+
+        assertTrue("details were never bound", bindNanos > 0);
+        assertTrue("bind took " + bindNanos + "ns", bindNanos < MAX_BIND_NANOS);
+
+        activity.finish();
+    }
+}
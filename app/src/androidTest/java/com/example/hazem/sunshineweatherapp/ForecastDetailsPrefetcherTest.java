@@ -0,0 +1,136 @@
+package com.example.hazem.sunshineweatherapp;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.hazem.sunshineweatherapp.data.WeatherContract;
+import com.example.hazem.sunshineweatherapp.utilities.SunshineDateUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Prefetches days of the forecast through {@link ForecastDetailsPrefetcher} and checks what it
+ * keeps, what it counts, and that a sync drops what it held.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ForecastDetailsPrefetcherTest {
+
+    private static final int DAYS = ForecastDetailsPrefetcher.MAX_ENTRIES + 4;
+
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    private ContentResolver mContentResolver;
+    private ForecastDetailsPrefetcher mPrefetcher;
+    private long mToday;
+
+    private static ContentValues[] buildForecast(long firstDate, double maxTemp) {
+        ContentValues[] rows = new ContentValues[DAYS];
+        for (int i = 0; i < DAYS; i++) {
+            ContentValues values = new ContentValues();
+            values.put(WeatherContract.WeatherEntry.COLUMN_DATE,
+                    firstDate + i * SunshineDateUtils.DAY_IN_MILLIS);
+            values.put(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID, 800);
+            values.put(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP, maxTemp);
+            values.put(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP, maxTemp - 8);
+            values.put(WeatherContract.WeatherEntry.COLUMN_HUMIDITY, 40);
+            values.put(WeatherContract.WeatherEntry.COLUMN_PRESSURE, 1013);
+            values.put(WeatherContract.WeatherEntry.COLUMN_WIND_SPEED, 4);
+            values.put(WeatherContract.WeatherEntry.COLUMN_DEGREES, 90);
+            rows[i] = values;
+        }
+        return rows;
+    }
+
+    private long[] getDates(int count) {
+        long[] dates = new long[count];
+        for (int i = 0; i < count; i++) {
+            dates[i] = mToday + i * SunshineDateUtils.DAY_IN_MILLIS;
+        }
+        return dates;
+    }
+
+    @Before
+    public void setUp() throws InterruptedException {
+        Context context = InstrumentationRegistry.getTargetContext();
+        mContentResolver = context.getContentResolver();
+        mToday = SunshineDateUtils.normalizeDate(System.currentTimeMillis());
+        mContentResolver.bulkInsert(WeatherContract.WeatherEntry.REPLACE_URI,
+                buildForecast(mToday, 21.5));
+
+        /* Shared by the process, start from an empty cache once the insert was seen */
+        mPrefetcher = ForecastDetailsPrefetcher.getInstance(context);
+        SystemClock.sleep(500);
+        mPrefetcher.invalidate();
+    }
+
+    @After
+    public void tearDown() {
+        mContentResolver.delete(WeatherContract.WeatherEntry.CONTENT_URI, null, null);
+        mPrefetcher.invalidate();
+    }
+
+    @Test
+    public void prefetchedDays_areHitsWithTheirDetails() throws InterruptedException {
+        mPrefetcher.prefetch(getDates(3));
+        assertTrue(mPrefetcher.awaitPrefetches(TIMEOUT_MILLIS));
+
+        int hits = mPrefetcher.getHitCount();
+        int misses = mPrefetcher.getMissCount();
+
+        ForecastDetails details = mPrefetcher.get(mToday + SunshineDateUtils.DAY_IN_MILLIS);
+        assertNotNull(details);
+        assertEquals(mToday + SunshineDateUtils.DAY_IN_MILLIS, details.getDate());
+        assertEquals(21.5, details.getMaxTemp(), 1e-6);
+        assertEquals(40, details.getHumidity(), 1e-6);
+
+        assertNull(mPrefetcher.get(mToday + 5 * SunshineDateUtils.DAY_IN_MILLIS));
+
+        assertEquals(hits + 1, mPrefetcher.getHitCount());
+        assertEquals(misses + 1, mPrefetcher.getMissCount());
+
+        /* Everything is held already, nothing to query */
+        assertNull(mPrefetcher.prefetch(getDates(3)));
+    }
+
+    @Test
+    public void prefetch_keepsAtMostMaxEntries() throws InterruptedException {
+        mPrefetcher.prefetch(getDates(DAYS));
+        assertTrue(mPrefetcher.awaitPrefetches(TIMEOUT_MILLIS));
+
+        assertEquals(ForecastDetailsPrefetcher.MAX_ENTRIES, mPrefetcher.size());
+        /* Rows come in date order, so the first days were the least recently used */
+        assertNull(mPrefetcher.get(mToday));
+        assertNotNull(mPrefetcher.get(mToday + (DAYS - 1) * SunshineDateUtils.DAY_IN_MILLIS));
+    }
+
+    @Test
+    public void sync_dropsThePrefetchedDays() throws InterruptedException {
+        mPrefetcher.prefetch(getDates(3));
+        assertTrue(mPrefetcher.awaitPrefetches(TIMEOUT_MILLIS));
+        assertEquals(3, mPrefetcher.size());
+
+        /* Written the way a sync writes a new forecast */
+        mContentResolver.bulkInsert(WeatherContract.WeatherEntry.REPLACE_URI,
+                buildForecast(mToday, 30));
+
+        long deadline = SystemClock.elapsedRealtime() + TIMEOUT_MILLIS;
+        while (mPrefetcher.size() != 0 && SystemClock.elapsedRealtime() < deadline) {
+            SystemClock.sleep(20);
+        }
+        assertEquals(0, mPrefetcher.size());
+
+        /* Prefetched again, the days carry the new forecast */
+        mPrefetcher.prefetch(getDates(3));
+        assertTrue(mPrefetcher.awaitPrefetches(TIMEOUT_MILLIS));
+        assertEquals(30, mPrefetcher.get(mToday).getMaxTemp(), 1e-6);
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.hazem.sunshineweatherapp;
+
+import android.app.Instrumentation;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.database.ContentObserver;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v7.preference.PreferenceManager;
+import android.widget.TextView;
+
+import com.example.hazem.sunshineweatherapp.data.ChangeNotificationCoalescer;
+import com.example.hazem.sunshineweatherapp.data.WeatherContract;
+import com.example.hazem.sunshineweatherapp.utilities.SunshineDateUtils;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that switching units re-renders the details screen from memory: the text changes, but
+ * no change is notified on the weather table, so no loader runs its query again.
+ */
+@RunWith(AndroidJUnit4.class)
+public class UnitSwitchTest {
+
+    private static final long LOAD_TIMEOUT_MILLIS = 5000;
+
+    @Test
+    public void unitToggle_reRendersWithoutQueries() {
+        Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+        Context context = InstrumentationRegistry.getTargetContext();
+        final SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(context);
+        final String unitsKey = context.getString(R.string.pref_units_key);
+
+        preferences.edit()
+                .putString(unitsKey, context.getString(R.string.pref_units_metric))
+                .commit();
+
+        long today = SunshineDateUtils.normalizeDate(System.currentTimeMillis());
+
+        ContentValues values = new ContentValues();
+        values.put(WeatherContract.WeatherEntry.COLUMN_DATE, today);
+        values.put(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID, 800);
+        values.put(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP, 21.0);
+        values.put(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP, 12.0);
+        values.put(WeatherContract.WeatherEntry.COLUMN_HUMIDITY, 40);
+        values.put(WeatherContract.WeatherEntry.COLUMN_PRESSURE, 1013);
+        values.put(WeatherContract.WeatherEntry.COLUMN_WIND_SPEED, 4);
+        values.put(WeatherContract.WeatherEntry.COLUMN_DEGREES, 90);
+        context.getContentResolver().bulkInsert(
+                WeatherContract.WeatherEntry.CONTENT_URI, new ContentValues[]{values});
+
+        Intent intent = new Intent(context, DetailsActivity.class);
+        intent.setData(WeatherContract.WeatherEntry.buildWeatherUriWithDate(today));
+        intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+
+        DetailsActivity activity = (DetailsActivity) instrumentation.startActivitySync(intent);
+
+        long deadline = SystemClock.elapsedRealtime() + LOAD_TIMEOUT_MILLIS;
+        while (activity.getLastBindNanos() == 0 && SystemClock.elapsedRealtime() < deadline) {
+            instrumentation.waitForIdleSync();
+            SystemClock.sleep(50);
+        }
+        /* Let the notification of the insert above go out before counting */
+        SystemClock.sleep(ChangeNotificationCoalescer.MAX_DELAY_MILLIS + 500);
+
+        TextView highView = (TextView) activity.findViewById(R.id.high_temperature);
+        assertEquals("21°", highView.getText().toString().trim());
+
+        HandlerThread observerThread = new HandlerThread("ObserverThread");
+        observerThread.start();
+        final AtomicInteger notificationCount = new AtomicInteger();
+        ContentObserver observer = new ContentObserver(new Handler(observerThread.getLooper())) {
+            @Override
+            public void onChange(boolean selfChange) {
+                notificationCount.incrementAndGet();
+            }
+        };
+        context.getContentResolver().registerContentObserver(
+                WeatherContract.WeatherEntry.CONTENT_URI, true, observer);
+
+        final String imperial = context.getString(R.string.pref_units_imperial);
+        instrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                preferences.edit().putString(unitsKey, imperial).commit();
+            }
+        });
+        instrumentation.waitForIdleSync();
+        SystemClock.sleep(ChangeNotificationCoalescer.MAX_DELAY_MILLIS + 500);
+
+        context.getContentResolver().unregisterContentObserver(observer);
+        observerThread.quit();
+
+        assertEquals("70°", highView.getText().toString().trim());
+        assertEquals(0, notificationCount.get());
+
+        preferences.edit()
+                .putString(unitsKey, context.getString(R.string.pref_units_metric))
+                .commit();
+        activity.finish();
+    }
+}
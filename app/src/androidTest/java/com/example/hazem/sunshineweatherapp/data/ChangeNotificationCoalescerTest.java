@@ -0,0 +1,125 @@
+package com.example.hazem.sunshineweatherapp.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.ContentObserver;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.hazem.sunshineweatherapp.utilities.SunshineDateUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Counts how many times an observer of the weather table is told to requery during one sync,
+ * with and without {@link ChangeNotificationCoalescer}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ChangeNotificationCoalescerTest {
+
+    private static final int DAYS = 14;
+
+    /* Far in the past, so the test rows never show up in the forecast list */
+    private static final long FIRST_DATE = 0;
+
+    /* Long enough for the coalescing window and for observer dispatch to finish */
+    private static final long SETTLE_MILLIS = ChangeNotificationCoalescer.MAX_DELAY_MILLIS + 500;
+
+    private ContentResolver mContentResolver;
+
+    private HandlerThread mObserverThread;
+
+    private final AtomicInteger mNotificationCount = new AtomicInteger();
+
+    private ContentObserver mObserver;
+
+    @Before
+    public void setUp() {
+        mContentResolver = InstrumentationRegistry.getTargetContext().getContentResolver();
+
+        mObserverThread = new HandlerThread("ObserverThread");
+        mObserverThread.start();
+        mObserver = new ContentObserver(new Handler(mObserverThread.getLooper())) {
+            @Override
+            public void onChange(boolean selfChange) {
+                mNotificationCount.incrementAndGet();
+            }
+        };
+    }
+
+    @After
+    public void tearDown() {
+        mContentResolver.unregisterContentObserver(mObserver);
+        mObserverThread.quit();
+        ChangeNotificationCoalescer.setEnabled(true);
+        deleteTestRows();
+    }
+
+    private int deleteTestRows() {
+        return mContentResolver.delete(WeatherContract.WeatherEntry.CONTENT_URI,
+                WeatherContract.WeatherEntry.COLUMN_DATE + " < ?",
+                new String[]{Long.toString(FIRST_DATE + DAYS * SunshineDateUtils.DAY_IN_MILLIS)});
+    }
+
+    private static ContentValues[] buildForecast() {
+        ContentValues[] forecast = new ContentValues[DAYS];
+        for (int i = 0; i < DAYS; i++) {
+            ContentValues values = new ContentValues();
+            values.put(WeatherContract.WeatherEntry.COLUMN_DATE,
+                    FIRST_DATE + i * SunshineDateUtils.DAY_IN_MILLIS);
+            values.put(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID, 800);
+            values.put(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP, 20);
+            values.put(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP, 12);
+            values.put(WeatherContract.WeatherEntry.COLUMN_HUMIDITY, 50);
+            values.put(WeatherContract.WeatherEntry.COLUMN_PRESSURE, 1010);
+            values.put(WeatherContract.WeatherEntry.COLUMN_WIND_SPEED, 3);
+            values.put(WeatherContract.WeatherEntry.COLUMN_DEGREES, 180);
+            forecast[i] = values;
+        }
+        return forecast;
+    }
+
+    /*
+     * Runs the provider calls of a sync, deleting the old forecast and inserting the new one, and
+     * returns how many notifications the observer received.
+     */
+    private int countNotificationsForSync() {
+        mContentResolver.bulkInsert(WeatherContract.WeatherEntry.CONTENT_URI, buildForecast());
+        SystemClock.sleep(SETTLE_MILLIS);
+
+        mContentResolver.registerContentObserver(
+                WeatherContract.WeatherEntry.CONTENT_URI, true, mObserver);
+        mNotificationCount.set(0);
+
+        assertTrue(deleteTestRows() > 0);
+        mContentResolver.bulkInsert(WeatherContract.WeatherEntry.CONTENT_URI, buildForecast());
+        SystemClock.sleep(SETTLE_MILLIS);
+
+        mContentResolver.unregisterContentObserver(mObserver);
+        return mNotificationCount.get();
+    }
+
+    @Test
+    public void sync_withoutCoalescing_notifiesEveryWrite() {
+        ChangeNotificationCoalescer.setEnabled(false);
+
+        assertEquals(2, countNotificationsForSync());
+    }
+
+    @Test
+    public void sync_withCoalescing_notifiesOnce() {
+        ChangeNotificationCoalescer.setEnabled(true);
+
+        assertEquals(1, countNotificationsForSync());
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.hazem.sunshineweatherapp.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.hazem.sunshineweatherapp.data.WeatherContract.WeatherEntry;
+import com.example.hazem.sunshineweatherapp.utilities.SunshineDateUtils;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares reading today's weather from a {@link CurrentForecastSnapshot}, cold (mapping the
+ * file) and warm, with querying the provider for it as the notification used to. Both must read
+ * the same values; the timings are logged.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CurrentForecastSnapshotBenchmarkTest {
+
+    private static final String TAG = "CurrentForecastSnapshot";
+
+    private static final int READS = 2000;
+
+    private static final String[] TODAY_PROJECTION = {
+            WeatherEntry.COLUMN_WEATHER_ID,
+            WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherEntry.COLUMN_MIN_TEMP
+    };
+
+    private File mFile;
+
+    @After
+    public void tearDown() {
+        InstrumentationRegistry.getTargetContext().getContentResolver()
+                .delete(WeatherEntry.CONTENT_URI, null, null);
+        if (mFile != null) {
+            mFile.delete();
+        }
+    }
+
+    @Test
+    public void snapshot_readsTodayFasterThanTheProvider() {
+        Context context = InstrumentationRegistry.getTargetContext();
+        ContentResolver resolver = context.getContentResolver();
+        long today = SunshineDateUtils.normalizeDate(System.currentTimeMillis());
+
+        ContentValues[] forecast = new ContentValues[CurrentForecastSnapshot.MAX_DAYS];
+        for (int i = 0; i < forecast.length; i++) {
+            forecast[i] = ForecastStoreConformanceTest.buildDay(
+                    today + i * SunshineDateUtils.DAY_IN_MILLIS, 800 - i, 20 + i);
+        }
+        resolver.bulkInsert(WeatherEntry.REPLACE_URI, forecast);
+
+        mFile = new File(context.getCacheDir(), "current_forecast_benchmark.snapshot");
+        mFile.delete();
+        new CurrentForecastSnapshot(mFile).publish(resolver);
+
+        CurrentForecastSnapshot.Day day = new CurrentForecastSnapshot.Day();
+        double snapshotChecksum = 0;
+        long start = System.nanoTime();
+        CurrentForecastSnapshot snapshot = new CurrentForecastSnapshot(mFile);
+        assertTrue(snapshot.readDay(today, day));
+        long coldNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < READS; i++) {
+            assertTrue(snapshot.readDay(today, day));
+            snapshotChecksum += day.getWeatherId() + day.getMaxTemp() + day.getMinTemp();
+        }
+        long warmNanos = (System.nanoTime() - start) / READS;
+
+        double providerChecksum = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < READS; i++) {
+            Cursor cursor = resolver.query(WeatherEntry.buildWeatherUriWithDate(today),
+                    TODAY_PROJECTION, null, null, null);
+            assertTrue(cursor.moveToFirst());
+            providerChecksum += cursor.getInt(0) + cursor.getDouble(1) + cursor.getDouble(2);
+            cursor.close();
+        }
+        long providerNanos = (System.nanoTime() - start) / READS;
+
+        Log.i(TAG, "Today from the snapshot: cold " + coldNanos / 1000 + " us, warm "
+                + warmNanos + " ns; from the provider " + providerNanos / 1000 + " us");
+
+        assertEquals(providerChecksum, snapshotChecksum, 1e-6);
+        assertTrue(warmNanos < providerNanos);
+    }
+}
@@ -0,0 +1,211 @@
+package com.example.hazem.sunshineweatherapp.data;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.hazem.sunshineweatherapp.utilities.SunshineDateUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Publishes {@link CurrentForecastSnapshot}s from several threads while others read them, and
+ * checks that no read ever mixes the values of two publishes.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CurrentForecastSnapshotTest {
+
+    private static final String TAG = "CurrentForecastSnapshot";
+
+    private static final int WRITERS = 2;
+    private static final int READERS = 3;
+    private static final int PUBLISHES = 5000;
+
+    private static final long DAY = SunshineDateUtils.DAY_IN_MILLIS;
+    private static final long FIRST_DATE = 100 * DAY;
+
+    private File mFile;
+
+    @Before
+    public void setUp() {
+        mFile = new File(InstrumentationRegistry.getTargetContext().getCacheDir(),
+                "current_forecast_test.snapshot");
+        mFile.delete();
+    }
+
+    @After
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    /*
+     * Every value of a publish derives from its number, k, and the day, so a read that mixes two
+     * publishes can be told apart from one that doesn't.
+     */
+    private static Cursor buildForecast(int k, int days) {
+        MatrixCursor cursor = new MatrixCursor(CurrentForecastSnapshot.PROJECTION);
+        for (int day = 0; day < days; day++) {
+            cursor.addRow(new Object[]{FIRST_DATE + day * DAY, k, k + day + 0.1, k + day + 0.2,
+                    k + day + 0.3, k + day + 0.4, k + day + 0.5, k + day + 0.6, k + day + 0.7,
+                    k + day + 0.8});
+        }
+        return cursor;
+    }
+
+    /* Describes what is inconsistent in a day read from publish buildForecast(k, ...), if any */
+    private static String checkDay(CurrentForecastSnapshot.Day day, int dayIndex) {
+        double base = day.getWeatherId() + dayIndex;
+        double[] values = {day.getMinTemp(), day.getMaxTemp(), day.getHumidity(),
+                day.getPressure(), day.getWindSpeed(), day.getDegrees(), day.getApparentTemp(),
+                day.getDewPoint()};
+        if (day.getDate() != FIRST_DATE + dayIndex * DAY) {
+            return "Read date " + day.getDate() + " for day " + dayIndex;
+        }
+        for (int i = 0; i < values.length; i++) {
+            if (Math.abs(values[i] - (base + 0.1 * (i + 1))) > 1e-9) {
+                return "Read value " + values[i] + " with weather id " + day.getWeatherId()
+                        + " for day " + dayIndex;
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void publish_readsNeverMixTwoPublishes() throws InterruptedException {
+        final CurrentForecastSnapshot snapshot = new CurrentForecastSnapshot(mFile);
+        snapshot.publish(buildForecast(0, CurrentForecastSnapshot.MAX_DAYS));
+
+        final AtomicBoolean publishing = new AtomicBoolean(true);
+        final AtomicReference<String> failure = new AtomicReference<>();
+        final AtomicInteger reads = new AtomicInteger();
+
+        Thread[] readers = new Thread[READERS];
+        for (int i = 0; i < READERS; i++) {
+            readers[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    CurrentForecastSnapshot.Day day = new CurrentForecastSnapshot.Day();
+                    int dayIndex = 0;
+                    while (publishing.get() && failure.get() == null) {
+                        dayIndex = (dayIndex + 1) % CurrentForecastSnapshot.MAX_DAYS;
+                        if (snapshot.readDay(FIRST_DATE + dayIndex * DAY, day)) {
+                            String problem = checkDay(day, dayIndex);
+                            if (problem != null) {
+                                failure.compareAndSet(null, problem);
+                            }
+                            reads.incrementAndGet();
+                        }
+                    }
+                }
+            }, "Reader" + i);
+            readers[i].start();
+        }
+
+        Thread[] writers = new Thread[WRITERS];
+        for (int i = 0; i < WRITERS; i++) {
+            final int writer = i;
+            writers[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int k = writer + 1; k <= PUBLISHES; k += WRITERS) {
+                        snapshot.publish(buildForecast(k, CurrentForecastSnapshot.MAX_DAYS));
+                    }
+                }
+            }, "Writer" + i);
+        }
+
+        long start = SystemClock.elapsedRealtime();
+        try {
+            for (Thread writer : writers) {
+                writer.start();
+            }
+            for (Thread writer : writers) {
+                writer.join();
+            }
+        } finally {
+            publishing.set(false);
+            for (Thread reader : readers) {
+                reader.join();
+            }
+        }
+        Log.i(TAG, PUBLISHES + " publishes in " + (SystemClock.elapsedRealtime() - start)
+                + "ms, " + reads.get() + " concurrent reads");
+
+        assertNull(failure.get(), failure.get());
+        assertTrue(reads.get() > 0);
+        assertEquals(PUBLISHES + 1, snapshot.getVersion());
+    }
+
+    @Test
+    public void readDay_outsideThePublishedDays_returnsFalse() {
+        CurrentForecastSnapshot snapshot = new CurrentForecastSnapshot(mFile);
+        CurrentForecastSnapshot.Day day = new CurrentForecastSnapshot.Day();
+        assertFalse(snapshot.readDay(FIRST_DATE, day));
+        assertEquals(0, snapshot.getVersion());
+
+        snapshot.publish(buildForecast(7, 3));
+        assertFalse(snapshot.readDay(FIRST_DATE - DAY, day));
+        assertFalse(snapshot.readDay(FIRST_DATE + 3 * DAY, day));
+        assertTrue(snapshot.readDay(FIRST_DATE + 2 * DAY, day));
+        assertNull(checkDay(day, 2));
+        assertEquals(7, day.getWeatherId());
+    }
+
+    @Test
+    public void publish_stopsAtAMissingDay() {
+        MatrixCursor cursor = new MatrixCursor(CurrentForecastSnapshot.PROJECTION);
+        cursor.addRow(new Object[]{FIRST_DATE, 1, 1.1, 1.2, 1.3, 1.4, 1.5, 1.6, 1.7, 1.8});
+        cursor.addRow(new Object[]{FIRST_DATE + 2 * DAY, 1, 3.1, 3.2, 3.3, 3.4, 3.5, 3.6, 3.7, 3.8});
+
+        CurrentForecastSnapshot snapshot = new CurrentForecastSnapshot(mFile);
+        snapshot.publish(cursor);
+
+        CurrentForecastSnapshot.Day day = new CurrentForecastSnapshot.Day();
+        assertTrue(snapshot.readDay(FIRST_DATE, day));
+        assertFalse(snapshot.readDay(FIRST_DATE + 2 * DAY, day));
+    }
+
+    @Test
+    public void open_keepsWhatWasPublished() {
+        new CurrentForecastSnapshot(mFile).publish(buildForecast(3, 5));
+
+        CurrentForecastSnapshot reopened = new CurrentForecastSnapshot(mFile);
+        CurrentForecastSnapshot.Day day = new CurrentForecastSnapshot.Day();
+        assertEquals(1, reopened.getVersion());
+        assertTrue(reopened.readDay(FIRST_DATE + 4 * DAY, day));
+        assertNull(checkDay(day, 4));
+    }
+
+    @Test
+    public void open_afterAnInterruptedPublish_resetsTheSnapshot() throws IOException {
+        new CurrentForecastSnapshot(mFile).publish(buildForecast(3, 5));
+
+        /* An odd sequence, as left by a process that died while publishing */
+        RandomAccessFile file = new RandomAccessFile(mFile, "rw");
+        try {
+            file.seek(8);
+            file.writeInt(3);
+        } finally {
+            file.close();
+        }
+
+        CurrentForecastSnapshot reopened = new CurrentForecastSnapshot(mFile);
+        assertEquals(0, reopened.getVersion());
+        assertFalse(reopened.readDay(FIRST_DATE, new CurrentForecastSnapshot.Day()));
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.hazem.sunshineweatherapp.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.os.Debug;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.hazem.sunshineweatherapp.data.WeatherContract.WeatherEntry;
+import com.example.hazem.sunshineweatherapp.utilities.ForecastEnricher;
+import com.example.hazem.sunshineweatherapp.utilities.SunshineDateUtils;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the write half of a sync, building the rows, enriching them and replacing the forecast
+ * through the provider, once with a ContentValues per row and once with a {@link ForecastBatch},
+ * for a 16 day forecast and a 10,000 row one. Both must write the same rows; the objects and
+ * bytes allocated by the thread and the timings are logged.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ForecastBatchBenchmarkTest {
+
+    private static final String TAG = "ForecastBatch";
+
+    private static final long DAY = SunshineDateUtils.DAY_IN_MILLIS;
+
+    private static class Run {
+        int allocCount;
+        int allocSize;
+        long nanos;
+
+        @Override
+        public String toString() {
+            return allocCount + " objects, " + allocSize + " bytes, " + nanos / 1000 + " us";
+        }
+    }
+
+    @After
+    public void tearDown() {
+        InstrumentationRegistry.getTargetContext().getContentResolver()
+                .delete(WeatherEntry.CONTENT_URI, null, null);
+    }
+
+    private static double maxTemp(int day) {
+        return 15 + (day % 20) * 0.5;
+    }
+
+    /* How a sync built, enriched and wrote the forecast before ForecastBatch */
+    private static int writeContentValues(ContentResolver resolver, int days) {
+        ContentValues[] rows = new ContentValues[days];
+        for (int i = 0; i < days; i++) {
+            rows[i] = ForecastStoreConformanceTest.buildDay(i * DAY, 800 - (i % 3) * 100,
+                    maxTemp(i));
+        }
+
+        double[] minTemps = new double[days];
+        double[] maxTemps = new double[days];
+        double[] humidities = new double[days];
+        double[] pressures = new double[days];
+        double[] windSpeeds = new double[days];
+        for (int i = 0; i < days; i++) {
+            minTemps[i] = rows[i].getAsDouble(WeatherEntry.COLUMN_MIN_TEMP);
+            maxTemps[i] = rows[i].getAsDouble(WeatherEntry.COLUMN_MAX_TEMP);
+            humidities[i] = rows[i].getAsDouble(WeatherEntry.COLUMN_HUMIDITY);
+            pressures[i] = rows[i].getAsDouble(WeatherEntry.COLUMN_PRESSURE);
+            windSpeeds[i] = rows[i].getAsDouble(WeatherEntry.COLUMN_WIND_SPEED);
+        }
+        double[] apparentTemps = new double[days];
+        double[] dewPoints = new double[days];
+        double[] pressureTrends = new double[days];
+        double[] comfortIndexes = new double[days];
+        ForecastEnricher.enrich(days, Double.NaN, minTemps, maxTemps, humidities, pressures,
+                windSpeeds, apparentTemps, dewPoints, pressureTrends, comfortIndexes);
+        for (int i = 0; i < days; i++) {
+            rows[i].put(WeatherEntry.COLUMN_APPARENT_TEMP, apparentTemps[i]);
+            rows[i].put(WeatherEntry.COLUMN_DEW_POINT, dewPoints[i]);
+            rows[i].put(WeatherEntry.COLUMN_PRESSURE_TREND, pressureTrends[i]);
+            rows[i].put(WeatherEntry.COLUMN_COMFORT_INDEX, comfortIndexes[i]);
+        }
+
+        return resolver.bulkInsert(WeatherEntry.REPLACE_URI, rows);
+    }
+
+    private static int writeBatch(ContentResolver resolver, int days) {
+        ForecastBatch rows = new ForecastBatch(days);
+        for (int i = 0; i < days; i++) {
+            rows.addDay(i * DAY, 800 - (i % 3) * 100, 12.5, maxTemp(i), 50, 1010.5, 3.5, 180);
+        }
+        ForecastEnricher.enrich(rows, 0, days, Double.NaN);
+        return rows.bulkInsert(resolver, WeatherEntry.REPLACE_URI);
+    }
+
+    /* Sum of the max temperatures and comfort indexes held by the provider */
+    private static double readChecksum(ContentResolver resolver) {
+        Cursor cursor = resolver.query(WeatherEntry.CONTENT_URI,
+                new String[]{WeatherEntry.COLUMN_MAX_TEMP, WeatherEntry.COLUMN_COMFORT_INDEX},
+                null, null, null);
+        try {
+            double checksum = 0;
+            while (cursor.moveToNext()) {
+                checksum += cursor.getDouble(0) + cursor.getDouble(1);
+            }
+            return checksum;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private static Run measure(ContentResolver resolver, int days, boolean batch) {
+        /* Once to warm up the code paths and the database */
+        assertEquals(days, batch ? writeBatch(resolver, days) : writeContentValues(resolver, days));
+
+        Run run = new Run();
+        Debug.resetThreadAllocCount();
+        Debug.resetThreadAllocSize();
+        Debug.startAllocCounting();
+        long start = System.nanoTime();
+        try {
+            assertEquals(days,
+                    batch ? writeBatch(resolver, days) : writeContentValues(resolver, days));
+        } finally {
+            run.nanos = System.nanoTime() - start;
+            Debug.stopAllocCounting();
+        }
+        run.allocCount = Debug.getThreadAllocCount();
+        run.allocSize = Debug.getThreadAllocSize();
+        return run;
+    }
+
+    private static void compare(int days) {
+        ContentResolver resolver = InstrumentationRegistry.getTargetContext().getContentResolver();
+
+        Run contentValues = measure(resolver, days, false);
+        double contentValuesChecksum = readChecksum(resolver);
+        Run batch = measure(resolver, days, true);
+        double batchChecksum = readChecksum(resolver);
+
+        Log.i(TAG, days + " days, ContentValues: " + contentValues);
+        Log.i(TAG, days + " days, ForecastBatch: " + batch);
+
+        assertEquals(contentValuesChecksum, batchChecksum, 1e-6);
+        assertTrue(batch.allocCount < contentValues.allocCount);
+    }
+
+    @Test
+    public void sixteenDays_batchAllocatesLess() {
+        compare(16);
+    }
+
+    @Test
+    public void tenThousandRows_batchAllocatesLess() {
+        compare(10000);
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.hazem.sunshineweatherapp.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.hazem.sunshineweatherapp.data.WeatherContract.WeatherEntry;
+import com.example.hazem.sunshineweatherapp.utilities.SunshineDateUtils;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Converting a {@link ForecastBatch} to and from ContentValues and bundles, and writing it
+ * through {@link WeatherEntry#METHOD_BULK_INSERT_BATCH}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ForecastBatchTest {
+
+    private static final long DAY = SunshineDateUtils.DAY_IN_MILLIS;
+    private static final long FIRST_DATE = 100 * DAY;
+
+    @After
+    public void tearDown() {
+        InstrumentationRegistry.getTargetContext().getContentResolver()
+                .delete(WeatherEntry.CONTENT_URI, null, null);
+    }
+
+    private static ForecastBatch buildBatch() {
+        ForecastBatch batch = new ForecastBatch(1);
+        batch.addDay(FIRST_DATE, 800, 12.5, 20, 50, 1010.5, 3.5, 180);
+        batch.setValue(0, ForecastBatch.DEW_POINT, 9.5);
+        batch.setValue(batch.addRow(FIRST_DATE + DAY), ForecastBatch.PRESSURE_TREND, -1);
+        return batch;
+    }
+
+    private static void assertSameRows(ForecastBatch expected, ForecastBatch actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int row = 0; row < expected.size(); row++) {
+            assertEquals(expected.getDate(row), actual.getDate(row));
+            assertEquals(expected.hasWeatherId(row), actual.hasWeatherId(row));
+            assertEquals(expected.getWeatherId(row), actual.getWeatherId(row));
+            assertEquals(expected.isComplete(row), actual.isComplete(row));
+            for (int column = 0; column < ForecastBatch.VALUE_COLUMNS; column++) {
+                assertEquals(expected.hasValue(row, column), actual.hasValue(row, column));
+                assertEquals(expected.getValue(row, column), actual.getValue(row, column), 0);
+            }
+        }
+    }
+
+    @Test
+    public void contentValues_holdOnlyTheSetColumns() {
+        ContentValues[] rows = buildBatch().toContentValues();
+
+        assertEquals(2, rows.length);
+        assertEquals(10, rows[0].size());
+        assertEquals(9.5, rows[0].getAsDouble(WeatherEntry.COLUMN_DEW_POINT), 0);
+        assertEquals(2, rows[1].size());
+        assertEquals(-1, rows[1].getAsDouble(WeatherEntry.COLUMN_PRESSURE_TREND), 0);
+
+        assertSameRows(buildBatch(), ForecastBatch.fromContentValues(rows));
+    }
+
+    @Test
+    public void bundle_roundTrips() {
+        assertSameRows(buildBatch(), ForecastBatch.fromBundle(buildBatch().toBundle()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void fromContentValues_rejectsAnUnknownColumn() {
+        ContentValues values = new ContentValues();
+        values.put(WeatherEntry.COLUMN_DATE, FIRST_DATE);
+        values.put("snow", 1);
+        ForecastBatch.fromContentValues(new ContentValues[]{values});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void fromContentValues_rejectsARowWithoutADate() {
+        ContentValues values = new ContentValues();
+        values.put(WeatherEntry.COLUMN_WEATHER_ID, 800);
+        ForecastBatch.fromContentValues(new ContentValues[]{values});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void fromContentValues_rejectsANullValue() {
+        ContentValues values = new ContentValues();
+        values.put(WeatherEntry.COLUMN_DATE, FIRST_DATE);
+        values.putNull(WeatherEntry.COLUMN_MAX_TEMP);
+        ForecastBatch.fromContentValues(new ContentValues[]{values});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void fromContentValues_rejectsAValueThatIsNotANumber() {
+        ContentValues values = new ContentValues();
+        values.put(WeatherEntry.COLUMN_DATE, FIRST_DATE);
+        values.put(WeatherEntry.COLUMN_WEATHER_ID, "sunny");
+        ForecastBatch.fromContentValues(new ContentValues[]{values});
+    }
+
+    @Test
+    public void bulkInsert_writesLikeTheProviderBulkInsert() {
+        ContentResolver resolver = InstrumentationRegistry.getTargetContext().getContentResolver();
+        ForecastBatch batch = new ForecastBatch(2);
+        batch.addDay(FIRST_DATE, 800, 12.5, 20, 50, 1010.5, 3.5, 180);
+        batch.addDay(FIRST_DATE + DAY, 500, 10, 15, 80, 1002, 12, 90);
+        assertEquals(2, batch.bulkInsert(resolver, WeatherEntry.REPLACE_URI));
+
+        /* Only the trend of a held day, as a delta sync patches it */
+        ForecastBatch patch = new ForecastBatch(1);
+        patch.setValue(patch.addRow(FIRST_DATE + DAY), ForecastBatch.PRESSURE_TREND, -8.5);
+        assertEquals(1, patch.bulkInsert(resolver,
+                WeatherEntry.buildPatchUri(FIRST_DATE, FIRST_DATE + 2 * DAY)));
+
+        Cursor cursor = resolver.query(WeatherEntry.buildWeatherUriWithDate(FIRST_DATE + DAY),
+                new String[]{WeatherEntry.COLUMN_WEATHER_ID, WeatherEntry.COLUMN_MAX_TEMP,
+                        WeatherEntry.COLUMN_PRESSURE_TREND}, null, null, null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(500, cursor.getInt(0));
+            assertEquals(15, cursor.getDouble(1), 0);
+            assertEquals(-8.5, cursor.getDouble(2), 0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void bulkInsert_rejectsDatesThatArentNormalized() {
+        ForecastBatch batch = new ForecastBatch(1);
+        batch.addDay(FIRST_DATE + 1, 800, 12.5, 20, 50, 1010.5, 3.5, 180);
+        batch.bulkInsert(InstrumentationRegistry.getTargetContext().getContentResolver(),
+                WeatherEntry.CONTENT_URI);
+    }
+}
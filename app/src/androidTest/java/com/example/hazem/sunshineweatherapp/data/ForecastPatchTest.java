@@ -0,0 +1,160 @@
+package com.example.hazem.sunshineweatherapp.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.hazem.sunshineweatherapp.data.WeatherContract.WeatherEntry;
+import com.example.hazem.sunshineweatherapp.utilities.SunshineDateUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Applies forecast deltas through {@link WeatherEntry#buildPatchUri(long, long)} and checks they
+ * change the held rows in place, or not at all when they don't fit them.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ForecastPatchTest {
+
+    private static final int DAYS = 5;
+    private static final long DAY = SunshineDateUtils.DAY_IN_MILLIS;
+
+    private static final long FIRST_DATE = 100 * DAY;
+
+    private static final String[] PROJECTION = {
+            WeatherEntry._ID,
+            WeatherEntry.COLUMN_DATE,
+            WeatherEntry.COLUMN_WEATHER_ID,
+            WeatherEntry.COLUMN_PRESSURE_TREND
+    };
+
+    private ContentResolver mContentResolver;
+
+    @Before
+    public void setUp() {
+        mContentResolver = InstrumentationRegistry.getTargetContext().getContentResolver();
+        ContentValues[] forecast = new ContentValues[DAYS];
+        for (int i = 0; i < DAYS; i++) {
+            forecast[i] = buildDay(FIRST_DATE + i * DAY, 800);
+        }
+        mContentResolver.bulkInsert(WeatherEntry.REPLACE_URI, forecast);
+    }
+
+    @After
+    public void tearDown() {
+        mContentResolver.delete(WeatherEntry.CONTENT_URI, null, null);
+    }
+
+    private static ContentValues buildDay(long date, int weatherId) {
+        ContentValues values = new ContentValues();
+        values.put(WeatherEntry.COLUMN_DATE, date);
+        values.put(WeatherEntry.COLUMN_WEATHER_ID, weatherId);
+        values.put(WeatherEntry.COLUMN_MAX_TEMP, 20);
+        values.put(WeatherEntry.COLUMN_MIN_TEMP, 12);
+        values.put(WeatherEntry.COLUMN_HUMIDITY, 50);
+        values.put(WeatherEntry.COLUMN_PRESSURE, 1010);
+        values.put(WeatherEntry.COLUMN_WIND_SPEED, 3);
+        values.put(WeatherEntry.COLUMN_DEGREES, 180);
+        return values;
+    }
+
+    /* Rows ordered by date, as {_id, date, weather id} */
+    private long[][] readForecast() {
+        Cursor cursor = mContentResolver.query(WeatherEntry.CONTENT_URI, PROJECTION, null, null,
+                WeatherEntry.COLUMN_DATE);
+        try {
+            long[][] rows = new long[cursor.getCount()][];
+            for (int i = 0; cursor.moveToNext(); i++) {
+                rows[i] = new long[]{cursor.getLong(0), cursor.getLong(1), cursor.getLong(2)};
+            }
+            return rows;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void patch_updatesChangedDaysInPlace() {
+        long[][] before = readForecast();
+
+        int patched = mContentResolver.bulkInsert(
+                WeatherEntry.buildPatchUri(FIRST_DATE, FIRST_DATE + DAYS * DAY),
+                new ContentValues[]{buildDay(FIRST_DATE + 2 * DAY, 500)});
+
+        assertEquals(1, patched);
+        long[][] after = readForecast();
+        assertEquals(DAYS, after.length);
+        for (int i = 0; i < DAYS; i++) {
+            /* Same rows, only the changed day has new values */
+            assertEquals(before[i][0], after[i][0]);
+            assertEquals(i == 2 ? 500 : 800, after[i][2]);
+        }
+    }
+
+    @Test
+    public void patch_movesTheDays() {
+        long[][] before = readForecast();
+        long start = FIRST_DATE + DAY;
+        long end = start + DAYS * DAY;
+
+        /* The new last day, and a trend only update of a held day */
+        ContentValues trend = new ContentValues();
+        trend.put(WeatherEntry.COLUMN_DATE, start);
+        trend.put(WeatherEntry.COLUMN_PRESSURE_TREND, 0);
+
+        assertEquals(2, mContentResolver.bulkInsert(WeatherEntry.buildPatchUri(start, end),
+                new ContentValues[]{buildDay(end - DAY, 501), trend}));
+
+        long[][] after = readForecast();
+        assertEquals(DAYS, after.length);
+        assertEquals(start, after[0][1]);
+        assertEquals(before[1][0], after[0][0]);
+        assertEquals(800, after[0][2]);
+        assertEquals(end - DAY, after[DAYS - 1][1]);
+        assertEquals(501, after[DAYS - 1][2]);
+    }
+
+    @Test
+    public void patchNotMatchingTheHeldDays_isRolledBack() {
+        long[][] before = readForecast();
+        long start = FIRST_DATE + 2 * DAY;
+
+        /* Moves two days but only brings one, as if the held forecast were older than expected */
+        assertEquals(-1, mContentResolver.bulkInsert(
+                WeatherEntry.buildPatchUri(start, start + DAYS * DAY),
+                new ContentValues[]{buildDay(start + (DAYS - 1) * DAY, 501)}));
+
+        /* A new day with only some columns */
+        ContentValues trend = new ContentValues();
+        trend.put(WeatherEntry.COLUMN_DATE, FIRST_DATE + DAYS * DAY);
+        trend.put(WeatherEntry.COLUMN_PRESSURE_TREND, 0);
+        assertEquals(-1, mContentResolver.bulkInsert(
+                WeatherEntry.buildPatchUri(FIRST_DATE + DAY, FIRST_DATE + (DAYS + 1) * DAY),
+                new ContentValues[]{trend}));
+
+        assertArrayEquals(before, readForecast());
+    }
+
+    @Test
+    public void patchAfterTheTableWasCleared_isRolledBack() {
+        mContentResolver.delete(WeatherEntry.CONTENT_URI, null, null);
+
+        assertEquals(-1, mContentResolver.bulkInsert(
+                WeatherEntry.buildPatchUri(FIRST_DATE, FIRST_DATE + DAYS * DAY),
+                new ContentValues[]{buildDay(FIRST_DATE, 500)}));
+        assertEquals(0, readForecast().length);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void patchRowOutsideTheRange_isRejected() {
+        mContentResolver.bulkInsert(WeatherEntry.buildPatchUri(FIRST_DATE, FIRST_DATE + DAYS * DAY),
+                new ContentValues[]{buildDay(FIRST_DATE + DAYS * DAY, 500)});
+    }
+}
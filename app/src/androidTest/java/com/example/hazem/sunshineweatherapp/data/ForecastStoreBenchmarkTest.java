@@ -0,0 +1,138 @@
+package com.example.hazem.sunshineweatherapp.data;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.hazem.sunshineweatherapp.data.WeatherContract.WeatherEntry;
+import com.example.hazem.sunshineweatherapp.utilities.SunshineDateUtils;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the same workload against both {@link ForecastStore} engines: a batch upsert, range scans
+ * of a list page, point lookups of a day, small patches and deleting the passed days. Both must
+ * read back the same values; the timings are logged.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ForecastStoreBenchmarkTest {
+
+    private static final String TAG = "ForecastStore";
+
+    private static final String DATABASE_NAME = "forecast_store_benchmark.db";
+
+    private static final int DAYS = 1000;
+    private static final int PAGE = 14;
+    private static final int LOOKUPS = 2000;
+    private static final int PATCHES = 200;
+
+    private static final long DAY = SunshineDateUtils.DAY_IN_MILLIS;
+
+    private static final String[] PAGE_PROJECTION = {
+            WeatherEntry.COLUMN_DATE,
+            WeatherEntry.COLUMN_WEATHER_ID,
+            WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherEntry.COLUMN_MIN_TEMP
+    };
+
+    private static class Timings {
+        long upsertMillis;
+        long scanMillis;
+        long lookupMillis;
+        long patchMillis;
+        long deleteMillis;
+        /* Sum of what was read, to compare the engines */
+        double checksum;
+
+        @Override
+        public String toString() {
+            return "upsert " + upsertMillis + " ms, " + DAYS + " scans " + scanMillis + " ms, "
+                    + LOOKUPS + " lookups " + lookupMillis + " ms, " + PATCHES + " patches "
+                    + patchMillis + " ms, delete before " + deleteMillis + " ms";
+        }
+    }
+
+    private static ForecastBatch buildForecast() {
+        ForecastBatch rows = new ForecastBatch(DAYS);
+        for (int i = 0; i < DAYS; i++) {
+            rows.addDay(i * DAY, 800 - (i % 3) * 100, 12.5, 15 + (i % 20) * 0.5, 50, 1010.5, 3.5,
+                    180);
+        }
+        return rows;
+    }
+
+    private static Timings run(ForecastStore store) {
+        Timings timings = new Timings();
+        ForecastBatch forecast = buildForecast();
+
+        long start = SystemClock.elapsedRealtime();
+        assertEquals(DAYS, store.upsert(forecast));
+        timings.upsertMillis = SystemClock.elapsedRealtime() - start;
+
+        start = SystemClock.elapsedRealtime();
+        for (int i = 0; i < DAYS; i++) {
+            Cursor cursor = store.queryRange(PAGE_PROJECTION, i * DAY, Long.MAX_VALUE, 0, PAGE);
+            while (cursor.moveToNext()) {
+                timings.checksum += cursor.getDouble(2);
+            }
+            cursor.close();
+        }
+        timings.scanMillis = SystemClock.elapsedRealtime() - start;
+
+        start = SystemClock.elapsedRealtime();
+        for (int i = 0; i < LOOKUPS; i++) {
+            Cursor cursor = store.queryDate(null, ((i * 7L) % DAYS) * DAY);
+            assertTrue(cursor.moveToFirst());
+            timings.checksum += cursor.getDouble(cursor.getColumnIndex(WeatherEntry.COLUMN_MAX_TEMP));
+            cursor.close();
+        }
+        timings.lookupMillis = SystemClock.elapsedRealtime() - start;
+
+        start = SystemClock.elapsedRealtime();
+        for (int i = 0; i < PATCHES; i++) {
+            ForecastBatch patch = new ForecastBatch(2);
+            patch.setValue(patch.addRow(((i * 13L) % DAYS) * DAY), ForecastBatch.PRESSURE_TREND,
+                    i % 5);
+            patch.addDay((DAYS + i) * DAY, 500, 12.5, 10, 50, 1010.5, 3.5, 180);
+            store.upsert(patch);
+        }
+        timings.patchMillis = SystemClock.elapsedRealtime() - start;
+
+        start = SystemClock.elapsedRealtime();
+        assertEquals(DAYS / 2, store.deleteBefore(DAYS / 2 * DAY));
+        timings.deleteMillis = SystemClock.elapsedRealtime() - start;
+
+        assertEquals(DAYS / 2 + PATCHES, store.count(Long.MIN_VALUE, Long.MAX_VALUE));
+        return timings;
+    }
+
+    @Test
+    public void bothEngines_runTheWorkloadAlike() {
+        Context context = InstrumentationRegistry.getTargetContext();
+        context.deleteDatabase(DATABASE_NAME);
+        WeatherDbHelper openHelper = new WeatherDbHelper(context, DATABASE_NAME);
+        Timings sqlite;
+        try {
+            sqlite = run(new SqliteForecastStore(openHelper));
+        } finally {
+            openHelper.close();
+            context.deleteDatabase(DATABASE_NAME);
+        }
+
+        Timings memory = run(new InMemoryForecastStore());
+
+        Log.i(TAG, DAYS + " days, " + ForecastStore.SQLITE + ": " + sqlite);
+        Log.i(TAG, DAYS + " days, " + ForecastStore.MEMORY + ": " + memory);
+
+        assertEquals(sqlite.checksum, memory.checksum, 1e-6);
+        /* Reads are what the in-memory engine is for */
+        assertTrue(memory.lookupMillis <= sqlite.lookupMillis);
+        assertTrue(memory.scanMillis <= sqlite.scanMillis);
+    }
+}
@@ -0,0 +1,335 @@
+package com.example.hazem.sunshineweatherapp.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+
+import com.example.hazem.sunshineweatherapp.data.WeatherContract.WeatherEntry;
+import com.example.hazem.sunshineweatherapp.utilities.SunshineDateUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * What every {@link ForecastStore} engine must do the same way. Each engine runs it through a
+ * subclass, see {@link SqliteForecastStoreTest} and {@link InMemoryForecastStoreTest}.
+ */
+public abstract class ForecastStoreConformanceTest {
+
+    private static final long DAY = SunshineDateUtils.DAY_IN_MILLIS;
+    private static final long FIRST_DATE = 100 * DAY;
+
+    private static final String[] PROJECTION = {
+            WeatherEntry.COLUMN_DATE,
+            WeatherEntry.COLUMN_WEATHER_ID,
+            WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherEntry.COLUMN_PRESSURE_TREND
+    };
+
+    private ForecastStore mStore;
+    private final AtomicInteger mChanges = new AtomicInteger();
+
+    /* A new, empty store */
+    protected abstract ForecastStore createStore();
+
+    protected abstract void releaseStore(ForecastStore store);
+
+    @Before
+    public void setUp() {
+        mStore = createStore();
+        mStore.addListener(new ForecastStore.Listener() {
+            @Override
+            public void onForecastChanged(ForecastStore store) {
+                mChanges.incrementAndGet();
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        mStore.close();
+        releaseStore(mStore);
+    }
+
+    /* Values that read back exactly from the compact SQLite layout too */
+    static ContentValues buildDay(long date, int weatherId, double maxTemp) {
+        ContentValues values = new ContentValues();
+        values.put(WeatherEntry.COLUMN_DATE, date);
+        values.put(WeatherEntry.COLUMN_WEATHER_ID, weatherId);
+        values.put(WeatherEntry.COLUMN_MAX_TEMP, maxTemp);
+        values.put(WeatherEntry.COLUMN_MIN_TEMP, 12.5);
+        values.put(WeatherEntry.COLUMN_HUMIDITY, 50);
+        values.put(WeatherEntry.COLUMN_PRESSURE, 1010.5);
+        values.put(WeatherEntry.COLUMN_WIND_SPEED, 3.5);
+        values.put(WeatherEntry.COLUMN_DEGREES, 180);
+        return values;
+    }
+
+    private static ForecastBatch buildDays(int days) {
+        ContentValues[] rows = new ContentValues[days];
+        for (int i = 0; i < days; i++) {
+            rows[i] = buildDay(FIRST_DATE + i * DAY, 800 + i, 20 + i);
+        }
+        return ForecastBatch.fromContentValues(rows);
+    }
+
+    /* Dates of the rows of a cursor, which is closed */
+    private static long[] readDates(Cursor cursor) {
+        try {
+            long[] dates = new long[cursor.getCount()];
+            int dateIndex = cursor.getColumnIndexOrThrow(WeatherEntry.COLUMN_DATE);
+            for (int i = 0; cursor.moveToNext(); i++) {
+                dates[i] = cursor.getLong(dateIndex);
+            }
+            return dates;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static long[] dates(int firstDay, int days) {
+        long[] dates = new long[days];
+        for (int i = 0; i < days; i++) {
+            dates[i] = FIRST_DATE + (firstDay + i) * DAY;
+        }
+        return dates;
+    }
+
+    @Test
+    public void rangeScan_returnsTheRangeByDate() {
+        ForecastBatch rows = buildDays(10);
+        /* Written out of order */
+        ForecastBatch shuffled = new ForecastBatch(10);
+        for (int row : new int[]{7, 2, 9, 0, 5, 1, 8, 3, 6, 4}) {
+            shuffled.addRow(rows, row);
+        }
+        assertEquals(10, mStore.upsert(shuffled));
+
+        assertArrayEquals(dates(0, 10),
+                readDates(mStore.queryRange(PROJECTION, Long.MIN_VALUE, Long.MAX_VALUE, 0, -1)));
+        assertArrayEquals(dates(3, 4), readDates(mStore.queryRange(PROJECTION,
+                FIRST_DATE + 3 * DAY, FIRST_DATE + 7 * DAY, 0, -1)));
+        assertEquals(4, mStore.count(FIRST_DATE + 3 * DAY, FIRST_DATE + 7 * DAY));
+        assertEquals(0, mStore.count(FIRST_DATE + 20 * DAY, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void rangeScan_appliesOffsetAndLimit() {
+        mStore.upsert(buildDays(10));
+
+        assertArrayEquals(dates(2, 3), readDates(mStore.queryRange(PROJECTION,
+                FIRST_DATE, Long.MAX_VALUE, 2, 3)));
+        assertArrayEquals(dates(8, 2), readDates(mStore.queryRange(PROJECTION,
+                FIRST_DATE, Long.MAX_VALUE, 8, 5)));
+        assertArrayEquals(dates(6, 4), readDates(mStore.queryRange(PROJECTION,
+                FIRST_DATE, Long.MAX_VALUE, 6, -1)));
+        assertEquals(0, readDates(mStore.queryRange(PROJECTION,
+                FIRST_DATE, Long.MAX_VALUE, 12, 5)).length);
+    }
+
+    @Test
+    public void pointLookup_returnsTheRowOfTheDate() {
+        mStore.upsert(buildDays(5));
+
+        Cursor cursor = mStore.queryDate(null, FIRST_DATE + 2 * DAY);
+        try {
+            assertArrayEquals(ForecastStore.COLUMNS, cursor.getColumnNames());
+            assertTrue(cursor.moveToFirst());
+            assertEquals(1, cursor.getCount());
+            assertEquals(802, cursor.getInt(cursor.getColumnIndex(WeatherEntry.COLUMN_WEATHER_ID)));
+            assertEquals(22.0, cursor.getDouble(cursor.getColumnIndex(WeatherEntry.COLUMN_MAX_TEMP)), 0);
+            assertEquals(1010.5, cursor.getDouble(cursor.getColumnIndex(WeatherEntry.COLUMN_PRESSURE)), 0);
+            /* Derived columns read as 0 until set */
+            assertEquals(0, cursor.getDouble(cursor.getColumnIndex(WeatherEntry.COLUMN_DEW_POINT)), 0);
+        } finally {
+            cursor.close();
+        }
+
+        assertEquals(0, readDates(mStore.queryDate(PROJECTION, FIRST_DATE + DAY / 2)).length);
+    }
+
+    @Test
+    public void upsert_updatesTheColumnsItHoldsInPlace() {
+        mStore.upsert(buildDays(3));
+        long id = readId(FIRST_DATE + DAY);
+
+        ForecastBatch trend = new ForecastBatch(1);
+        trend.setValue(trend.addRow(FIRST_DATE + DAY), ForecastBatch.PRESSURE_TREND, -2.5);
+        assertEquals(1, mStore.upsert(trend));
+
+        Cursor cursor = mStore.queryDate(PROJECTION, FIRST_DATE + DAY);
+        try {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(801, cursor.getInt(1));
+            assertEquals(21.0, cursor.getDouble(2), 0);
+            assertEquals(-2.5, cursor.getDouble(3), 0);
+        } finally {
+            cursor.close();
+        }
+        assertEquals(id, readId(FIRST_DATE + DAY));
+        assertEquals(3, mStore.count(Long.MIN_VALUE, Long.MAX_VALUE));
+    }
+
+    private long readId(long date) {
+        Cursor cursor = mStore.queryDate(new String[]{WeatherEntry._ID}, date);
+        try {
+            assertTrue(cursor.moveToFirst());
+            return cursor.getLong(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void upsertOfANewDayWithoutEveryColumn_isSkipped() {
+        mStore.upsert(buildDays(2));
+
+        ContentValues partial = new ContentValues();
+        partial.put(WeatherEntry.COLUMN_DATE, FIRST_DATE + 5 * DAY);
+        partial.put(WeatherEntry.COLUMN_PRESSURE_TREND, 1);
+
+        assertEquals(1, mStore.upsert(ForecastBatch.fromContentValues(
+                new ContentValues[]{partial, buildDay(FIRST_DATE + 6 * DAY, 500, 10)})));
+        assertArrayEquals(new long[]{FIRST_DATE, FIRST_DATE + DAY, FIRST_DATE + 6 * DAY},
+                readDates(mStore.queryRange(PROJECTION, Long.MIN_VALUE, Long.MAX_VALUE, 0, -1)));
+    }
+
+    @Test
+    public void replaceAll_replacesEveryRowAndAlwaysNotifies() {
+        mStore.upsert(buildDays(5));
+        mChanges.set(0);
+
+        ForecastBatch rows = ForecastBatch.fromContentValues(new ContentValues[]{
+                buildDay(FIRST_DATE + 10 * DAY, 500, 10),
+                buildDay(FIRST_DATE + 11 * DAY, 501, 11)});
+        assertEquals(2, mStore.replaceAll(rows));
+        assertArrayEquals(dates(10, 2),
+                readDates(mStore.queryRange(PROJECTION, Long.MIN_VALUE, Long.MAX_VALUE, 0, -1)));
+        assertEquals(1, mChanges.get());
+
+        assertEquals(0, mStore.replaceAll(new ForecastBatch(0)));
+        assertEquals(0, mStore.replaceAll(new ForecastBatch(0)));
+        assertEquals(0, mStore.count(Long.MIN_VALUE, Long.MAX_VALUE));
+        assertEquals(3, mChanges.get());
+    }
+
+    @Test
+    public void deleteBeforeAndFrom_deleteTheEndsOfTheForecast() {
+        mStore.upsert(buildDays(10));
+        mChanges.set(0);
+
+        assertEquals(3, mStore.deleteBefore(FIRST_DATE + 3 * DAY));
+        assertEquals(2, mStore.deleteFrom(FIRST_DATE + 8 * DAY));
+        assertEquals(0, mStore.deleteBefore(FIRST_DATE));
+        assertArrayEquals(dates(3, 5),
+                readDates(mStore.queryRange(PROJECTION, Long.MIN_VALUE, Long.MAX_VALUE, 0, -1)));
+        /* Deleting nothing changes nothing */
+        assertEquals(2, mChanges.get());
+
+        assertEquals(5, mStore.deleteBefore(Long.MAX_VALUE));
+        assertEquals(0, mStore.count(Long.MIN_VALUE, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void deleteRange_deletesTheDaysOfTheRangeOnly() {
+        mStore.upsert(buildDays(10));
+        mChanges.set(0);
+
+        assertEquals(1, mStore.deleteRange(FIRST_DATE + 4 * DAY, FIRST_DATE + 4 * DAY + 1));
+        assertEquals(3, mStore.deleteRange(FIRST_DATE + 6 * DAY, FIRST_DATE + 9 * DAY));
+        assertEquals(0, mStore.deleteRange(FIRST_DATE + 4 * DAY, FIRST_DATE + 5 * DAY));
+        assertArrayEquals(new long[]{FIRST_DATE, FIRST_DATE + DAY, FIRST_DATE + 2 * DAY,
+                        FIRST_DATE + 3 * DAY, FIRST_DATE + 5 * DAY, FIRST_DATE + 9 * DAY},
+                readDates(mStore.queryRange(PROJECTION, Long.MIN_VALUE, Long.MAX_VALUE, 0, -1)));
+        assertEquals(2, mChanges.get());
+    }
+
+    @Test
+    public void transaction_isNotifiedOnceWhenItCommits() {
+        mStore.beginTransaction();
+        try {
+            mStore.upsert(buildDays(5));
+            mStore.deleteBefore(FIRST_DATE + DAY);
+            /* The writing thread sees its own writes */
+            assertEquals(4, mStore.count(Long.MIN_VALUE, Long.MAX_VALUE));
+            assertEquals(0, mChanges.get());
+            mStore.setTransactionSuccessful();
+        } finally {
+            mStore.endTransaction();
+        }
+
+        assertEquals(1, mChanges.get());
+        assertEquals(4, mStore.count(Long.MIN_VALUE, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void transactionNotMarkedSuccessful_isRolledBack() {
+        mStore.upsert(buildDays(3));
+        mChanges.set(0);
+
+        mStore.beginTransaction();
+        try {
+            mStore.deleteBefore(Long.MAX_VALUE);
+            mStore.upsert(ForecastBatch.fromContentValues(
+                    new ContentValues[]{buildDay(FIRST_DATE + 9 * DAY, 500, 10)}));
+            /* A nested level that fails fails the whole transaction */
+            mStore.beginTransaction();
+            mStore.endTransaction();
+            mStore.setTransactionSuccessful();
+        } finally {
+            mStore.endTransaction();
+        }
+
+        assertArrayEquals(dates(0, 3),
+                readDates(mStore.queryRange(PROJECTION, Long.MIN_VALUE, Long.MAX_VALUE, 0, -1)));
+        assertEquals(0, mChanges.get());
+    }
+
+    @Test
+    public void otherThreads_seeATransactionOnlyOnceItCommits() throws InterruptedException {
+        mStore.upsert(buildDays(3));
+
+        final int[] countDuringTransaction = new int[1];
+        mStore.beginTransaction();
+        try {
+            mStore.replaceAll(buildDays(7));
+
+            Thread reader = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    countDuringTransaction[0] = mStore.count(Long.MIN_VALUE, Long.MAX_VALUE);
+                }
+            });
+            reader.start();
+            reader.join();
+            mStore.setTransactionSuccessful();
+        } finally {
+            mStore.endTransaction();
+        }
+
+        assertEquals(3, countDuringTransaction[0]);
+        assertEquals(7, mStore.count(Long.MIN_VALUE, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void removedListener_isNotCalled() {
+        final AtomicInteger removedChanges = new AtomicInteger();
+        ForecastStore.Listener listener = new ForecastStore.Listener() {
+            @Override
+            public void onForecastChanged(ForecastStore store) {
+                removedChanges.incrementAndGet();
+            }
+        };
+        mStore.addListener(listener);
+        mStore.upsert(buildDays(1));
+        mStore.removeListener(listener);
+        mStore.upsert(buildDays(2));
+
+        assertEquals(1, removedChanges.get());
+        assertEquals(2, mChanges.get());
+    }
+}
@@ -0,0 +1,232 @@
+package com.example.hazem.sunshineweatherapp.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.hazem.sunshineweatherapp.data.WeatherContract.HourlyWeatherEntry;
+import com.example.hazem.sunshineweatherapp.utilities.SyntheticForecastGenerator;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares one row per sample with the compressed day blocks of {@link HourlyBlockStore} at
+ * 10,000,000 hourly samples: size of the database and how fast a full range scan reads them.
+ */
+@RunWith(AndroidJUnit4.class)
+public class HourlyBlockStorageBenchmarkTest {
+
+    private static final String TAG = "HourlyBlockStorage";
+
+    private static final String ROWS_DATABASE_NAME = "benchmark_hourly_rows.db";
+    private static final String BLOCKS_DATABASE_NAME = "benchmark_hourly_blocks.db";
+
+    private static final int SAMPLES = 10000000;
+
+    /* Samples written per transaction, about a month */
+    private static final int CHUNK_SAMPLES = 24 * 30;
+
+    private static class LayoutStats {
+        long fillMillis;
+        long pageCount;
+        long pageSize;
+        long scanMillis;
+        int samplesScanned;
+        double tempChecksum;
+
+        @Override
+        public String toString() {
+            return pageCount * pageSize + " bytes (" + pageCount + " pages), filled in "
+                    + fillMillis + " ms, scanned in " + scanMillis + " ms ("
+                    + samplesScanned * 1000L / Math.max(scanMillis, 1) + " samples/s)";
+        }
+    }
+
+    /* Hands the samples of the generator over a chunk at a time */
+    private abstract static class ChunkSink implements SyntheticForecastGenerator.HourlySink {
+        private final ContentValues[] mChunk = new ContentValues[CHUNK_SAMPLES];
+        private int mChunkSize;
+
+        @Override
+        public void beginLocation(int location, String name, double latitude, double longitude) {
+        }
+
+        @Override
+        public void addHour(long dateTime, int weatherId, double temp, double humidity,
+                            double pressure, double windSpeed, double windDirection) {
+            ContentValues values = new ContentValues();
+            values.put(HourlyWeatherEntry.COLUMN_DATE_TIME, dateTime);
+            values.put(HourlyWeatherEntry.COLUMN_WEATHER_ID, weatherId);
+            values.put(HourlyWeatherEntry.COLUMN_TEMP, temp);
+            values.put(HourlyWeatherEntry.COLUMN_HUMIDITY, humidity);
+            values.put(HourlyWeatherEntry.COLUMN_PRESSURE, pressure);
+            values.put(HourlyWeatherEntry.COLUMN_WIND_SPEED, windSpeed);
+            values.put(HourlyWeatherEntry.COLUMN_DEGREES, windDirection);
+            mChunk[mChunkSize++] = values;
+            if (mChunkSize == mChunk.length) {
+                flush();
+            }
+        }
+
+        @Override
+        public void endLocation() {
+            flush();
+        }
+
+        private void flush() {
+            if (mChunkSize == 0) {
+                return;
+            }
+            ContentValues[] chunk = mChunkSize == mChunk.length
+                    ? mChunk : Arrays.copyOf(mChunk, mChunkSize);
+            write(chunk);
+            mChunkSize = 0;
+        }
+
+        abstract void write(ContentValues[] chunk);
+    }
+
+    private static void generate(SyntheticForecastGenerator.HourlySink sink) throws IOException {
+        /* The table has no location column, so a single location spans the whole history */
+        new SyntheticForecastGenerator(3).generateHourly(1, SAMPLES, 1, 0, sink);
+    }
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getTargetContext();
+        context.deleteDatabase(ROWS_DATABASE_NAME);
+        context.deleteDatabase(BLOCKS_DATABASE_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        setUp();
+    }
+
+    private static LayoutStats measureRows(Context context) throws IOException {
+        WeatherDbHelper helper = new WeatherDbHelper(context, ROWS_DATABASE_NAME);
+        final SQLiteDatabase db = helper.getWritableDatabase();
+        final SQLiteStatement insert = db.compileStatement("INSERT INTO "
+                + HourlyWeatherEntry.TABLE_NAME + " ("
+                + HourlyWeatherEntry.COLUMN_DATE_TIME + ", " + HourlyWeatherEntry.COLUMN_WEATHER_ID
+                + ", " + HourlyWeatherEntry.COLUMN_TEMP + ", " + HourlyWeatherEntry.COLUMN_HUMIDITY
+                + ", " + HourlyWeatherEntry.COLUMN_PRESSURE + ", "
+                + HourlyWeatherEntry.COLUMN_WIND_SPEED + ", " + HourlyWeatherEntry.COLUMN_DEGREES
+                + ") VALUES (?, ?, ?, ?, ?, ?, ?)");
+
+        LayoutStats stats = new LayoutStats();
+        long start = SystemClock.elapsedRealtime();
+        generate(new ChunkSink() {
+            @Override
+            void write(ContentValues[] chunk) {
+                db.beginTransaction();
+                try {
+                    for (ContentValues values : chunk) {
+                        insert.bindLong(1, values.getAsLong(HourlyWeatherEntry.COLUMN_DATE_TIME));
+                        insert.bindLong(2, values.getAsInteger(HourlyWeatherEntry.COLUMN_WEATHER_ID));
+                        insert.bindDouble(3, values.getAsDouble(HourlyWeatherEntry.COLUMN_TEMP));
+                        insert.bindDouble(4, values.getAsDouble(HourlyWeatherEntry.COLUMN_HUMIDITY));
+                        insert.bindDouble(5, values.getAsDouble(HourlyWeatherEntry.COLUMN_PRESSURE));
+                        insert.bindDouble(6, values.getAsDouble(HourlyWeatherEntry.COLUMN_WIND_SPEED));
+                        insert.bindDouble(7, values.getAsDouble(HourlyWeatherEntry.COLUMN_DEGREES));
+                        insert.executeInsert();
+                    }
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+            }
+        });
+        stats.fillMillis = SystemClock.elapsedRealtime() - start;
+        insert.close();
+
+        stats.pageCount = WeatherDbHelper.getPageCount(db);
+        stats.pageSize = WeatherDbHelper.getPageSize(db);
+
+        start = SystemClock.elapsedRealtime();
+        Cursor cursor = db.query(HourlyWeatherEntry.TABLE_NAME,
+                new String[]{HourlyWeatherEntry.COLUMN_TEMP}, null, null, null, null,
+                HourlyWeatherEntry.COLUMN_DATE_TIME);
+        try {
+            while (cursor.moveToNext()) {
+                stats.tempChecksum += cursor.getDouble(0);
+                stats.samplesScanned++;
+            }
+        } finally {
+            cursor.close();
+        }
+        stats.scanMillis = SystemClock.elapsedRealtime() - start;
+
+        helper.close();
+        return stats;
+    }
+
+    private static LayoutStats measureBlocks(Context context) throws IOException {
+        WeatherDbHelper helper = new WeatherDbHelper(context, BLOCKS_DATABASE_NAME);
+        final HourlyBlockStore store = new HourlyBlockStore(helper);
+
+        LayoutStats stats = new LayoutStats();
+        long start = SystemClock.elapsedRealtime();
+        generate(new ChunkSink() {
+            @Override
+            void write(ContentValues[] chunk) {
+                store.insert(chunk);
+            }
+        });
+        stats.fillMillis = SystemClock.elapsedRealtime() - start;
+
+        SQLiteDatabase db = helper.getReadableDatabase();
+        stats.pageCount = WeatherDbHelper.getPageCount(db);
+        stats.pageSize = WeatherDbHelper.getPageSize(db);
+
+        start = SystemClock.elapsedRealtime();
+        Cursor cursor = store.query(new String[]{HourlyWeatherEntry.COLUMN_TEMP},
+                Long.MIN_VALUE, Long.MAX_VALUE);
+        try {
+            while (cursor.moveToNext()) {
+                stats.tempChecksum += cursor.getDouble(0);
+                stats.samplesScanned++;
+            }
+        } finally {
+            cursor.close();
+        }
+        stats.scanMillis = SystemClock.elapsedRealtime() - start;
+
+        helper.close();
+        return stats;
+    }
+
+    @Test
+    public void blocks_areSmallerAndScanTheSameSamples() throws IOException {
+        Context context = InstrumentationRegistry.getTargetContext();
+
+        LayoutStats rows = measureRows(context);
+        LayoutStats blocks = measureBlocks(context);
+
+        Log.i(TAG, SAMPLES + " samples, one row per sample: " + rows);
+        Log.i(TAG, SAMPLES + " samples, compressed day blocks: " + blocks);
+        Log.i(TAG, "Compression ratio: " + (double) rows.pageCount / blocks.pageCount);
+
+        assertEquals(SAMPLES, rows.samplesScanned);
+        assertEquals(SAMPLES, blocks.samplesScanned);
+        /* The generator rounds to tenths, which the blocks keep exactly */
+        assertEquals(rows.tempChecksum, blocks.tempChecksum, 1);
+
+        /* A row and its date_time index entry take several times the bits of a sample */
+        assertTrue(blocks.pageCount * 3 < rows.pageCount);
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.hazem.sunshineweatherapp.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.hazem.sunshineweatherapp.data.WeatherContract.HourlyWeatherEntry;
+import com.example.hazem.sunshineweatherapp.utilities.SunshineDateUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Writes hourly rows to {@link HourlyBlockStore}, on a database of its own, and reads ranges of
+ * them back through its cursor.
+ */
+@RunWith(AndroidJUnit4.class)
+public class HourlyBlockStoreTest {
+
+    private static final String DATABASE_NAME = "hourly_block_store_test.db";
+
+    private static final long HOUR = SunshineDateUtils.HOUR_IN_MILLIS;
+    private static final long DAY = SunshineDateUtils.DAY_IN_MILLIS;
+
+    /* Some day far from the epoch, so the blocks aren't keyed by 0 */
+    private static final long FIRST_DAY = 17000 * DAY;
+
+    private WeatherDbHelper mOpenHelper;
+    private HourlyBlockStore mStore;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getTargetContext();
+        context.deleteDatabase(DATABASE_NAME);
+        mOpenHelper = new WeatherDbHelper(context, DATABASE_NAME);
+        mStore = new HourlyBlockStore(mOpenHelper);
+    }
+
+    @After
+    public void tearDown() {
+        mOpenHelper.close();
+        InstrumentationRegistry.getTargetContext().deleteDatabase(DATABASE_NAME);
+    }
+
+    private static ContentValues buildHour(long dateTime, double temp) {
+        ContentValues values = new ContentValues();
+        values.put(HourlyWeatherEntry.COLUMN_DATE_TIME, dateTime);
+        values.put(HourlyWeatherEntry.COLUMN_WEATHER_ID, 800);
+        values.put(HourlyWeatherEntry.COLUMN_TEMP, temp);
+        values.put(HourlyWeatherEntry.COLUMN_HUMIDITY, 60);
+        values.put(HourlyWeatherEntry.COLUMN_PRESSURE, 1013.2);
+        values.put(HourlyWeatherEntry.COLUMN_WIND_SPEED, 3.5);
+        values.put(HourlyWeatherEntry.COLUMN_DEGREES, 180);
+        return values;
+    }
+
+    /* Three days of hours, the temperature of each its index in tenths */
+    private ContentValues[] buildThreeDays() {
+        ContentValues[] rows = new ContentValues[72];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = buildHour(FIRST_DAY + i * HOUR, i / 10.0);
+        }
+        return rows;
+    }
+
+    @Test
+    public void query_returnsTheRangeInOrder() {
+        assertEquals(72, mStore.insert(buildThreeDays()));
+
+        /* From the middle of the first day to the middle of the last, ends not on the hour */
+        Cursor cursor = mStore.query(null, FIRST_DAY + 10 * HOUR - 1, FIRST_DAY + 50 * HOUR + 1);
+        try {
+            assertEquals(41, cursor.getCount());
+            int dateTimeIndex = cursor.getColumnIndex(HourlyWeatherEntry.COLUMN_DATE_TIME);
+            int tempIndex = cursor.getColumnIndex(HourlyWeatherEntry.COLUMN_TEMP);
+            for (int i = 10; cursor.moveToNext(); i++) {
+                assertEquals(FIRST_DAY + i * HOUR, cursor.getLong(dateTimeIndex));
+                assertEquals(i / 10.0, cursor.getDouble(tempIndex), 1e-9);
+                assertEquals(1013.2, cursor.getDouble(
+                        cursor.getColumnIndex(HourlyWeatherEntry.COLUMN_PRESSURE)), 1e-9);
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void cursor_movesBackAcrossBlocks() {
+        mStore.insert(buildThreeDays());
+
+        Cursor cursor = mStore.query(new String[]{HourlyWeatherEntry.COLUMN_TEMP},
+                Long.MIN_VALUE, Long.MAX_VALUE);
+        try {
+            assertEquals(72, cursor.getCount());
+            int[] positions = {71, 30, 31, 0, 48, 47, 24};
+            for (int position : positions) {
+                assertTrue(cursor.moveToPosition(position));
+                assertEquals(position / 10.0, cursor.getDouble(0), 1e-9);
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void insert_mergesWithTheHeldSamples() {
+        mStore.insert(buildThreeDays());
+
+        /* Replaces one hour of the second day and adds one to a fourth day */
+        assertEquals(2, mStore.insert(new ContentValues[]{
+                buildHour(FIRST_DAY + 30 * HOUR, -5),
+                buildHour(FIRST_DAY + 3 * DAY, 7)
+        }));
+
+        Cursor cursor = mStore.query(new String[]{HourlyWeatherEntry.COLUMN_TEMP},
+                FIRST_DAY + DAY, Long.MAX_VALUE);
+        try {
+            assertEquals(49, cursor.getCount());
+            assertTrue(cursor.moveToPosition(6));
+            assertEquals(-5, cursor.getDouble(0), 1e-9);
+            assertTrue(cursor.moveToLast());
+            assertEquals(7, cursor.getDouble(0), 1e-9);
+        } finally {
+            cursor.close();
+        }
+
+        assertEquals(73, mStore.deleteAll());
+        cursor = mStore.query(null, Long.MIN_VALUE, Long.MAX_VALUE);
+        assertEquals(0, cursor.getCount());
+        cursor.close();
+    }
+
+    @Test
+    public void replaceAll_dropsTheOtherDays() {
+        mStore.insert(buildThreeDays());
+        assertEquals(1, mStore.replaceAll(new ContentValues[]{buildHour(FIRST_DAY + HOUR, 1)}));
+
+        Cursor cursor = mStore.query(null, Long.MIN_VALUE, Long.MAX_VALUE);
+        try {
+            assertEquals(1, cursor.getCount());
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void insert_rejectsDateTimesOffTheHour() {
+        mStore.insert(new ContentValues[]{buildHour(FIRST_DAY + 1, 0)});
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.hazem.sunshineweatherapp.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.hazem.sunshineweatherapp.utilities.DailyTemperatureAccumulator;
+import com.example.hazem.sunshineweatherapp.utilities.NetworkUtils;
+import com.example.hazem.sunshineweatherapp.utilities.SunshineDateUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.StringReader;
+
+import static org.junit.Assert.*;
+
+/**
+ * Ingest and query benchmark of the hourly forecast: 400 entries for each of 50 locations are
+ * parsed from JSON, bulk inserted and then read back one day at a time.
+ */
+@RunWith(AndroidJUnit4.class)
+public class HourlyWeatherBenchmarkTest {
+
+    private static final String TAG = "HourlyWeatherBenchmark";
+
+    private static final int ENTRIES_PER_LOCATION = 400;
+    private static final int LOCATIONS = 50;
+
+    private ContentResolver mContentResolver;
+
+    @Before
+    public void setUp() {
+        mContentResolver = InstrumentationRegistry.getTargetContext().getContentResolver();
+        mContentResolver.delete(WeatherContract.HourlyWeatherEntry.CONTENT_URI, null, null);
+    }
+
+    @After
+    public void tearDown() {
+        mContentResolver.delete(WeatherContract.HourlyWeatherEntry.CONTENT_URI, null, null);
+    }
+
+    /* Builds a response in the server's hourly format, one entry per hour */
+    private static String buildHourlyJson(long firstHourSeconds) {
+        StringBuilder json = new StringBuilder("{\"cod\":\"200\",\"list\":[");
+        for (int i = 0; i < ENTRIES_PER_LOCATION; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"dt\":").append(firstHourSeconds + i * 3600L)
+                    .append(",\"main\":{\"temp\":").append(10 + (i % 24) / 2.0)
+                    .append(",\"pressure\":").append(1000 + i % 20)
+                    .append(",\"humidity\":").append(40 + i % 50)
+                    .append("},\"weather\":[{\"id\":800,\"main\":\"Clear\"}]")
+                    .append(",\"wind\":{\"speed\":").append(1.5 + i % 7)
+                    .append(",\"deg\":").append(i % 360)
+                    .append("}}");
+        }
+        return json.append("]}").toString();
+    }
+
+    @Test
+    public void ingestAndQuery_400EntriesFor50Locations() throws Exception {
+        long today = SunshineDateUtils.normalizeDate(System.currentTimeMillis());
+
+        long parseMillis = 0;
+        long insertMillis = 0;
+        int rowsInserted = 0;
+
+        for (int location = 0; location < LOCATIONS; location++) {
+            /* The table has no location column, so each location gets its own time range */
+            long firstHourSeconds = (today / SunshineDateUtils.SECOND_IN_MILLIS)
+                    + (long) location * ENTRIES_PER_LOCATION * 3600L;
+            String json = buildHourlyJson(firstHourSeconds);
+
+            long start = SystemClock.elapsedRealtime();
+            DailyTemperatureAccumulator dailyTemperatures = new DailyTemperatureAccumulator();
+            ContentValues[] hourlyValues = NetworkUtils.getHourlyWeatherContentValuesFromJson(
+                    new StringReader(json), dailyTemperatures);
+            parseMillis += SystemClock.elapsedRealtime() - start;
+
+            assertEquals(ENTRIES_PER_LOCATION, hourlyValues.length);
+
+            start = SystemClock.elapsedRealtime();
+            rowsInserted += mContentResolver.bulkInsert(
+                    WeatherContract.HourlyWeatherEntry.CONTENT_URI, hourlyValues);
+            insertMillis += SystemClock.elapsedRealtime() - start;
+        }
+
+        assertEquals(ENTRIES_PER_LOCATION * LOCATIONS, rowsInserted);
+
+        int days = ENTRIES_PER_LOCATION * LOCATIONS / 24;
+        int rowsRead = 0;
+        long start = SystemClock.elapsedRealtime();
+        for (int day = 0; day < days; day++) {
+            Cursor cursor = mContentResolver.query(
+                    WeatherContract.HourlyWeatherEntry.buildHourlyUriWithDate(
+                            today + day * SunshineDateUtils.DAY_IN_MILLIS),
+                    new String[]{WeatherContract.HourlyWeatherEntry.COLUMN_TEMP},
+                    null,
+                    null,
+                    null);
+            rowsRead += cursor.getCount();
+            cursor.close();
+        }
+        long queryMillis = SystemClock.elapsedRealtime() - start;
+
+        assertEquals(days * 24, rowsRead);
+
+        Log.i(TAG, "parse " + parseMillis + "ms, insert " + insertMillis + "ms for "
+                + rowsInserted + " rows; " + days + " day queries " + queryMillis + "ms");
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.hazem.sunshineweatherapp.data;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.runner.RunWith;
+
+/**
+ * Runs {@link ForecastStoreConformanceTest} against {@link InMemoryForecastStore}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InMemoryForecastStoreTest extends ForecastStoreConformanceTest {
+
+    @Override
+    protected ForecastStore createStore() {
+        return new InMemoryForecastStore();
+    }
+
+    @Override
+    protected void releaseStore(ForecastStore store) {
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.hazem.sunshineweatherapp.data;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.CursorWindow;
+import android.database.sqlite.SQLiteCursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.hazem.sunshineweatherapp.data.WeatherContract.WeatherEntry;
+import com.example.hazem.sunshineweatherapp.utilities.SunshineDateUtils;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares the REAL and the compact INTEGER layout of the weather table at 1,000,000 rows: size
+ * of the database file, number of pages, and how many rows fit in one cursor window.
+ */
+@RunWith(AndroidJUnit4.class)
+public class QuantizedStorageBenchmarkTest {
+
+    private static final String TAG = "QuantizedStorage";
+
+    private static final int ROWS = 1000000;
+
+    private static final String[] MEASUREMENT_PROJECTION = {
+            WeatherEntry.COLUMN_DATE,
+            WeatherEntry.COLUMN_WEATHER_ID,
+            WeatherEntry.COLUMN_MIN_TEMP,
+            WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherEntry.COLUMN_HUMIDITY,
+            WeatherEntry.COLUMN_PRESSURE,
+            WeatherEntry.COLUMN_WIND_SPEED,
+            WeatherEntry.COLUMN_DEGREES
+    };
+
+    private static class LayoutStats {
+        long fileBytes;
+        long pageCount;
+        long pageSize;
+        int rowsPerWindow;
+
+        @Override
+        public String toString() {
+            return fileBytes + " bytes, " + pageCount + " pages of " + pageSize + " bytes, "
+                    + rowsPerWindow + " rows per cursor window";
+        }
+    }
+
+    private static SQLiteDatabase openEmptyDatabase(Context context, String name) {
+        context.deleteDatabase(name);
+        return context.openOrCreateDatabase(name, Context.MODE_PRIVATE, null);
+    }
+
+    /* Fills the table with plausible, slowly varying weather in the given layout */
+    private static void fill(SQLiteDatabase db, boolean quantized) {
+        SQLiteStatement insert = db.compileStatement("INSERT INTO " + WeatherEntry.TABLE_NAME + " ("
+                + WeatherEntry.COLUMN_DATE + ", " + WeatherEntry.COLUMN_WEATHER_ID + ", "
+                + WeatherEntry.COLUMN_MIN_TEMP + ", " + WeatherEntry.COLUMN_MAX_TEMP + ", "
+                + WeatherEntry.COLUMN_HUMIDITY + ", " + WeatherEntry.COLUMN_PRESSURE + ", "
+                + WeatherEntry.COLUMN_WIND_SPEED + ", " + WeatherEntry.COLUMN_DEGREES
+                + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?)");
+
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < ROWS; i++) {
+                double max = 15 + 10 * Math.sin(i / 58.1) + (i % 7) * 0.3;
+                double[] measurements = {
+                        max - 7.5 - (i % 5) * 0.2,
+                        max,
+                        40 + (i % 50),
+                        1000 + 15 * Math.cos(i / 11.3),
+                        2 + (i % 90) / 10.0,
+                        (i * 37) % 360
+                };
+
+                insert.bindLong(1, i * SunshineDateUtils.DAY_IN_MILLIS);
+                insert.bindLong(2, 800 - (i % 3) * 100);
+                for (int column = 0; column < measurements.length; column++) {
+                    if (quantized) {
+                        insert.bindLong(column + 3, Math.round(
+                                measurements[column] * WeatherEntry.QUANTIZED_COLUMN_SCALES[column]));
+                    } else {
+                        insert.bindDouble(column + 3, measurements[column]);
+                    }
+                }
+                insert.executeInsert();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        insert.close();
+    }
+
+    private static LayoutStats measure(Context context, String name, boolean quantized) {
+        SQLiteDatabase db = openEmptyDatabase(context, name);
+        WeatherDbHelper.createWeatherTable(db, WeatherEntry.TABLE_NAME, quantized);
+        fill(db, quantized);
+
+        LayoutStats stats = new LayoutStats();
+        stats.pageCount = WeatherDbHelper.getPageCount(db);
+        stats.pageSize = WeatherDbHelper.getPageSize(db);
+
+        Cursor cursor = db.query(WeatherEntry.TABLE_NAME, MEASUREMENT_PROJECTION,
+                null, null, null, null, null);
+        assertTrue(cursor.moveToFirst());
+        CursorWindow window = ((SQLiteCursor) cursor).getWindow();
+        stats.rowsPerWindow = window.getNumRows();
+        cursor.close();
+
+        db.close();
+        File file = context.getDatabasePath(name);
+        stats.fileBytes = file.length();
+        context.deleteDatabase(name);
+        return stats;
+    }
+
+    @Test
+    public void quantizedLayout_isSmallerThanRealLayout() {
+        Context context = InstrumentationRegistry.getTargetContext();
+
+        LayoutStats real = measure(context, "benchmark_real.db", false);
+        LayoutStats quantized = measure(context, "benchmark_quantized.db", true);
+
+        Log.i(TAG, ROWS + " rows, REAL layout: " + real);
+        Log.i(TAG, ROWS + " rows, INTEGER layout: " + quantized);
+
+        assertTrue(quantized.pageCount < real.pageCount);
+        assertTrue(quantized.fileBytes < real.fileBytes);
+        /* Windows keep a fixed size slot per field, so they are not expected to shrink */
+        assertTrue(quantized.rowsPerWindow >= real.rowsPerWindow);
+    }
+
+    @Test
+    public void migration_roundTripsWithinScale() {
+        Context context = InstrumentationRegistry.getTargetContext();
+        SQLiteDatabase db = openEmptyDatabase(context, "benchmark_migration.db");
+        WeatherDbHelper.createWeatherTable(db, WeatherEntry.TABLE_NAME, false);
+        db.execSQL("INSERT INTO " + WeatherEntry.TABLE_NAME + " VALUES "
+                + "(NULL, 0, 500, 12.34, 21.56, 48.7, 1013.26, 3.46, 271.6)");
+
+        WeatherDbHelper.migrateWeatherTable(db, true);
+        assertTrue(WeatherDbHelper.isWeatherTableQuantized(db));
+
+        WeatherDbHelper.migrateWeatherTable(db, false);
+        assertFalse(WeatherDbHelper.isWeatherTableQuantized(db));
+
+        Cursor cursor = db.query(WeatherEntry.TABLE_NAME, MEASUREMENT_PROJECTION,
+                null, null, null, null, null);
+        assertTrue(cursor.moveToFirst());
+        assertEquals(500, cursor.getInt(1));
+        assertEquals(12.3, cursor.getDouble(2), 1e-9);
+        assertEquals(21.6, cursor.getDouble(3), 1e-9);
+        assertEquals(49, cursor.getDouble(4), 1e-9);
+        assertEquals(1013.3, cursor.getDouble(5), 1e-9);
+        assertEquals(3.5, cursor.getDouble(6), 1e-9);
+        assertEquals(272, cursor.getDouble(7), 1e-9);
+        cursor.close();
+
+        db.close();
+        context.deleteDatabase("benchmark_migration.db");
+    }
+}
@@ -0,0 +1,198 @@
+package com.example.hazem.sunshineweatherapp.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.hazem.sunshineweatherapp.data.WeatherContract.WeatherEntry;
+import com.example.hazem.sunshineweatherapp.utilities.SunshineDateUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Replaces the forecast through {@link WeatherEntry#REPLACE_URI} over and over while other
+ * threads query it, and checks that no query ever sees an empty or partly replaced forecast.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ShadowTableSwapTest {
+
+    private static final String TAG = "ShadowTableSwap";
+
+    private static final int SYNCS = 1000;
+    private static final int READERS = 3;
+    private static final int DAYS = 14;
+
+    private static final long FIRST_DATE = 0;
+
+    /* Long enough for observer dispatch to finish */
+    private static final long SETTLE_MILLIS = 1000;
+
+    private static final String[] PROJECTION = {
+            WeatherEntry.COLUMN_DATE,
+            WeatherEntry.COLUMN_WEATHER_ID
+    };
+
+    private ContentResolver mContentResolver;
+
+    @Before
+    public void setUp() {
+        mContentResolver = InstrumentationRegistry.getTargetContext().getContentResolver();
+        mContentResolver.bulkInsert(WeatherEntry.REPLACE_URI, buildForecast(0));
+    }
+
+    @After
+    public void tearDown() {
+        ChangeNotificationCoalescer.setEnabled(true);
+        mContentResolver.delete(WeatherEntry.CONTENT_URI, null, null);
+    }
+
+    /* Every row of a sync carries the sync's number as its weather id */
+    private static ContentValues[] buildForecast(int sync) {
+        ContentValues[] forecast = new ContentValues[DAYS];
+        for (int i = 0; i < DAYS; i++) {
+            ContentValues values = new ContentValues();
+            values.put(WeatherEntry.COLUMN_DATE, FIRST_DATE + i * SunshineDateUtils.DAY_IN_MILLIS);
+            values.put(WeatherEntry.COLUMN_WEATHER_ID, sync);
+            values.put(WeatherEntry.COLUMN_MAX_TEMP, 20);
+            values.put(WeatherEntry.COLUMN_MIN_TEMP, 12);
+            values.put(WeatherEntry.COLUMN_HUMIDITY, 50);
+            values.put(WeatherEntry.COLUMN_PRESSURE, 1010);
+            values.put(WeatherEntry.COLUMN_WIND_SPEED, 3);
+            values.put(WeatherEntry.COLUMN_DEGREES, 180);
+            forecast[i] = values;
+        }
+        return forecast;
+    }
+
+    /*
+     * Reads the whole forecast and returns the sync it came from, or describes what is wrong
+     * with it through the failure reference.
+     */
+    private int readForecast(int lastSync, AtomicReference<String> failure) {
+        Cursor cursor = mContentResolver.query(WeatherEntry.CONTENT_URI, PROJECTION, null, null,
+                WeatherEntry.COLUMN_DATE);
+        try {
+            if (cursor.getCount() != DAYS) {
+                failure.compareAndSet(null, "Read " + cursor.getCount() + " rows");
+                return lastSync;
+            }
+
+            cursor.moveToFirst();
+            int sync = cursor.getInt(1);
+            while (cursor.moveToNext()) {
+                if (cursor.getInt(1) != sync) {
+                    failure.compareAndSet(null, "Rows of syncs " + sync + " and "
+                            + cursor.getInt(1) + " read together");
+                }
+            }
+            if (sync < lastSync) {
+                failure.compareAndSet(null, "Read sync " + sync + " after " + lastSync);
+            }
+            return sync;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void replace_readersNeverSeeAnEmptyOrPartialForecast() throws InterruptedException {
+        final AtomicBoolean syncing = new AtomicBoolean(true);
+        final AtomicReference<String> failure = new AtomicReference<>();
+        final AtomicInteger reads = new AtomicInteger();
+
+        Thread[] readers = new Thread[READERS];
+        for (int i = 0; i < READERS; i++) {
+            readers[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    int lastSync = 0;
+                    while (syncing.get() && failure.get() == null) {
+                        lastSync = readForecast(lastSync, failure);
+                        reads.incrementAndGet();
+                    }
+                }
+            }, "Reader" + i);
+            readers[i].start();
+        }
+
+        long start = SystemClock.elapsedRealtime();
+        try {
+            for (int sync = 1; sync <= SYNCS; sync++) {
+                assertEquals(DAYS, mContentResolver.bulkInsert(WeatherEntry.REPLACE_URI,
+                        buildForecast(sync)));
+            }
+        } finally {
+            syncing.set(false);
+            for (Thread reader : readers) {
+                reader.join();
+            }
+        }
+        Log.i(TAG, SYNCS + " syncs in " + (SystemClock.elapsedRealtime() - start) + "ms, "
+                + reads.get() + " concurrent reads");
+
+        assertNull(failure.get(), failure.get());
+        assertTrue(reads.get() > 0);
+        assertEquals(SYNCS, readForecast(0, failure));
+    }
+
+    @Test
+    public void replace_notifiesOncePerSync() {
+        ChangeNotificationCoalescer.setEnabled(false);
+
+        final AtomicInteger notificationCount = new AtomicInteger();
+        HandlerThread observerThread = new HandlerThread("ObserverThread");
+        observerThread.start();
+        ContentObserver observer = new ContentObserver(new Handler(observerThread.getLooper())) {
+            @Override
+            public void onChange(boolean selfChange) {
+                notificationCount.incrementAndGet();
+            }
+        };
+
+        mContentResolver.registerContentObserver(WeatherEntry.CONTENT_URI, true, observer);
+        try {
+            for (int sync = 1; sync <= 10; sync++) {
+                mContentResolver.bulkInsert(WeatherEntry.REPLACE_URI, buildForecast(sync));
+            }
+            SystemClock.sleep(SETTLE_MILLIS);
+        } finally {
+            mContentResolver.unregisterContentObserver(observer);
+            observerThread.quit();
+        }
+
+        assertEquals(10, notificationCount.get());
+    }
+
+    @Test
+    public void replace_withFewerRows_dropsTheOldOnes() {
+        ContentValues[] forecast = buildForecast(1);
+        ContentValues[] shorter = new ContentValues[DAYS / 2];
+        System.arraycopy(forecast, 0, shorter, 0, shorter.length);
+
+        assertEquals(shorter.length, mContentResolver.bulkInsert(WeatherEntry.REPLACE_URI, shorter));
+
+        Cursor cursor = mContentResolver.query(WeatherEntry.CONTENT_URI, PROJECTION, null, null,
+                null);
+        try {
+            assertEquals(shorter.length, cursor.getCount());
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.hazem.sunshineweatherapp.data;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.runner.RunWith;
+
+/**
+ * Runs {@link ForecastStoreConformanceTest} against {@link SqliteForecastStore}, on a database
+ * of its own.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SqliteForecastStoreTest extends ForecastStoreConformanceTest {
+
+    private static final String DATABASE_NAME = "forecast_store_test.db";
+
+    private WeatherDbHelper mOpenHelper;
+
+    @Override
+    protected ForecastStore createStore() {
+        Context context = InstrumentationRegistry.getTargetContext();
+        context.deleteDatabase(DATABASE_NAME);
+        mOpenHelper = new WeatherDbHelper(context, DATABASE_NAME);
+        return new SqliteForecastStore(mOpenHelper);
+    }
+
+    @Override
+    protected void releaseStore(ForecastStore store) {
+        mOpenHelper.close();
+        InstrumentationRegistry.getTargetContext().deleteDatabase(DATABASE_NAME);
+    }
+}
@@ -0,0 +1,213 @@
+package com.example.hazem.sunshineweatherapp.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.hazem.sunshineweatherapp.data.WeatherContract.SyncJournalEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Writes sync journal rows, directly and through {@link SyncJournal}, and checks how many are
+ * kept and what {@link SyncJournalEntry#SUMMARY_URI} makes of them.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SyncJournalTest {
+
+    private static final long HOUR = 60 * 60 * 1000;
+
+    private ContentResolver mContentResolver;
+
+    @Before
+    public void setUp() {
+        mContentResolver = InstrumentationRegistry.getTargetContext().getContentResolver();
+        mContentResolver.delete(SyncJournalEntry.CONTENT_URI, null, null);
+    }
+
+    @After
+    public void tearDown() {
+        mContentResolver.delete(SyncJournalEntry.CONTENT_URI, null, null);
+    }
+
+    private static ContentValues buildSync(long startTime, long durationMillis, int outcome) {
+        ContentValues values = new ContentValues();
+        values.put(SyncJournalEntry.COLUMN_START_TIME, startTime);
+        values.put(SyncJournalEntry.COLUMN_END_TIME, startTime + durationMillis);
+        values.put(SyncJournalEntry.COLUMN_OUTCOME, outcome);
+        return values;
+    }
+
+    /* Start times of the journal rows, oldest first */
+    private long[] readStartTimes() {
+        Cursor cursor = mContentResolver.query(SyncJournalEntry.CONTENT_URI,
+                new String[]{SyncJournalEntry.COLUMN_START_TIME}, null, null,
+                SyncJournalEntry.COLUMN_START_TIME);
+        try {
+            long[] startTimes = new long[cursor.getCount()];
+            for (int i = 0; cursor.moveToNext(); i++) {
+                startTimes[i] = cursor.getLong(0);
+            }
+            return startTimes;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void insert_keepsTheLatestSyncsOnly() {
+        int syncs = SyncJournalEntry.MAX_ROWS + 10;
+        ContentValues[] rows = new ContentValues[syncs];
+        for (int i = 0; i < syncs; i++) {
+            /* Out of order, so the oldest ones aren't simply the first inserted */
+            long startTime = ((i * 11) % syncs) * HOUR;
+            rows[i] = buildSync(startTime, 1000, SyncJournalEntry.OUTCOME_SUCCESS);
+        }
+        assertEquals(syncs, mContentResolver.bulkInsert(SyncJournalEntry.CONTENT_URI, rows));
+
+        long[] startTimes = readStartTimes();
+        assertEquals(SyncJournalEntry.MAX_ROWS, startTimes.length);
+        assertEquals(10 * HOUR, startTimes[0]);
+        assertEquals((syncs - 1) * HOUR, startTimes[startTimes.length - 1]);
+
+        /* A single insert trims too */
+        mContentResolver.insert(SyncJournalEntry.CONTENT_URI,
+                buildSync(syncs * HOUR, 1000, SyncJournalEntry.OUTCOME_FAILURE));
+        startTimes = readStartTimes();
+        assertEquals(SyncJournalEntry.MAX_ROWS, startTimes.length);
+        assertEquals(11 * HOUR, startTimes[0]);
+    }
+
+    @Test
+    public void summary_ofNoSyncs() {
+        Cursor cursor = mContentResolver.query(SyncJournalEntry.SUMMARY_URI, null, null, null, null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(0, cursor.getInt(cursor.getColumnIndex(SyncJournalEntry.COLUMN_SYNC_COUNT)));
+            assertTrue(cursor.isNull(cursor.getColumnIndex(SyncJournalEntry.COLUMN_SUCCESS_RATE)));
+            assertTrue(cursor.isNull(
+                    cursor.getColumnIndex(SyncJournalEntry.COLUMN_LAST_SUCCESS_TIME)));
+            assertTrue(cursor.isNull(
+                    cursor.getColumnIndex(SyncJournalEntry.COLUMN_STALENESS_MILLIS)));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void summary_countsOutcomesAndStaleness() {
+        long now = System.currentTimeMillis();
+        mContentResolver.bulkInsert(SyncJournalEntry.CONTENT_URI, new ContentValues[]{
+                buildSync(now - 30 * HOUR, 3000, SyncJournalEntry.OUTCOME_FAILURE),
+                buildSync(now - 5 * HOUR, 2000, SyncJournalEntry.OUTCOME_SUCCESS),
+                buildSync(now - 4 * HOUR, 4000, SyncJournalEntry.OUTCOME_SUCCESS),
+                buildSync(now - 3 * HOUR, 1000, SyncJournalEntry.OUTCOME_FAILURE),
+                buildSync(now - 2 * HOUR, 500, SyncJournalEntry.OUTCOME_SUPERSEDED)
+        });
+
+        Cursor cursor = mContentResolver.query(SyncJournalEntry.SUMMARY_URI, null, null, null, null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(5, cursor.getInt(cursor.getColumnIndex(SyncJournalEntry.COLUMN_SYNC_COUNT)));
+            assertEquals(2, cursor.getInt(
+                    cursor.getColumnIndex(SyncJournalEntry.COLUMN_SUCCESS_COUNT)));
+            assertEquals(2, cursor.getInt(
+                    cursor.getColumnIndex(SyncJournalEntry.COLUMN_FAILURE_COUNT)));
+            /* The superseded sync is neither */
+            assertEquals(0.5, cursor.getDouble(
+                    cursor.getColumnIndex(SyncJournalEntry.COLUMN_SUCCESS_RATE)), 1e-9);
+            assertEquals(3000, cursor.getDouble(
+                    cursor.getColumnIndex(SyncJournalEntry.COLUMN_AVG_SUCCESS_MILLIS)), 1e-9);
+            assertEquals(now - 2 * HOUR + 500, cursor.getLong(
+                    cursor.getColumnIndex(SyncJournalEntry.COLUMN_LAST_SYNC_TIME)));
+            assertEquals(now - 4 * HOUR + 4000, cursor.getLong(
+                    cursor.getColumnIndex(SyncJournalEntry.COLUMN_LAST_SUCCESS_TIME)));
+
+            long staleness = cursor.getLong(
+                    cursor.getColumnIndex(SyncJournalEntry.COLUMN_STALENESS_MILLIS));
+            long expectedStaleness = 4 * HOUR - 4000;
+            assertTrue(staleness >= expectedStaleness);
+            assertTrue(staleness < expectedStaleness + 60 * 1000);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void summary_sinceCountsRecentSyncsButKeepsTheLastSuccess() {
+        long now = System.currentTimeMillis();
+        mContentResolver.bulkInsert(SyncJournalEntry.CONTENT_URI, new ContentValues[]{
+                buildSync(now - 30 * HOUR, 1000, SyncJournalEntry.OUTCOME_SUCCESS),
+                buildSync(now - 3 * HOUR, 1000, SyncJournalEntry.OUTCOME_FAILURE),
+                buildSync(now - 2 * HOUR, 1000, SyncJournalEntry.OUTCOME_FAILURE)
+        });
+
+        Cursor cursor = mContentResolver.query(
+                SyncJournalEntry.buildSummaryUriSince(now - 24 * HOUR), null, null, null, null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(2, cursor.getInt(cursor.getColumnIndex(SyncJournalEntry.COLUMN_SYNC_COUNT)));
+            assertEquals(0, cursor.getDouble(
+                    cursor.getColumnIndex(SyncJournalEntry.COLUMN_SUCCESS_RATE)), 0);
+            assertTrue(cursor.isNull(
+                    cursor.getColumnIndex(SyncJournalEntry.COLUMN_AVG_SUCCESS_MILLIS)));
+            assertEquals(now - 30 * HOUR + 1000, cursor.getLong(
+                    cursor.getColumnIndex(SyncJournalEntry.COLUMN_LAST_SUCCESS_TIME)));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void record_writesTheEntriesInTheBackground() throws InterruptedException {
+        SyncJournal.Entry success = new SyncJournal.Entry(System.currentTimeMillis() - 1000);
+        success.setHttpStatus(200);
+        success.addBytes(4096);
+        success.addRowsChanged(14);
+        success.addNetworkMillis(300);
+        success.addParseMillis(20);
+        success.addWriteMillis(40);
+        success.setOutcome(SyncJournalEntry.OUTCOME_SUCCESS);
+
+        SyncJournal.Entry failure = new SyncJournal.Entry(System.currentTimeMillis());
+        failure.setFailed("java.io.IOException: timeout");
+
+        SyncJournal.record(InstrumentationRegistry.getTargetContext(), success);
+        SyncJournal.record(InstrumentationRegistry.getTargetContext(), failure);
+        assertTrue(SyncJournal.awaitWrites(5000));
+
+        Cursor cursor = mContentResolver.query(SyncJournalEntry.CONTENT_URI,
+                new String[]{
+                        SyncJournalEntry.COLUMN_OUTCOME,
+                        SyncJournalEntry.COLUMN_HTTP_STATUS,
+                        SyncJournalEntry.COLUMN_BYTES,
+                        SyncJournalEntry.COLUMN_ROWS_CHANGED,
+                        SyncJournalEntry.COLUMN_NETWORK_MILLIS,
+                        SyncJournalEntry.COLUMN_ERROR
+                }, null, null, SyncJournalEntry.COLUMN_START_TIME);
+        try {
+            assertEquals(2, cursor.getCount());
+
+            assertTrue(cursor.moveToNext());
+            assertEquals(SyncJournalEntry.OUTCOME_SUCCESS, cursor.getInt(0));
+            assertEquals(200, cursor.getInt(1));
+            assertEquals(4096, cursor.getLong(2));
+            assertEquals(14, cursor.getInt(3));
+            assertEquals(300, cursor.getLong(4));
+            assertTrue(cursor.isNull(5));
+
+            assertTrue(cursor.moveToNext());
+            assertEquals(SyncJournalEntry.OUTCOME_FAILURE, cursor.getInt(0));
+            assertEquals("java.io.IOException: timeout", cursor.getString(5));
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.hazem.sunshineweatherapp.data;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.hazem.sunshineweatherapp.utilities.SunshineDateUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares a mixed insert/update/delete workload of 10,000 operations run one call at a time
+ * against the same workload run through {@link WeatherProvider#applyBatch}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class WeatherProviderBatchBenchmarkTest {
+
+    private static final String TAG = "WeatherProviderBatch";
+
+    private static final int OPERATIONS = 10000;
+
+    /* Far in the past, so the benchmark rows never show up in the forecast list */
+    private static final long FIRST_DATE = 0;
+
+    private ContentResolver mContentResolver;
+
+    @Before
+    public void setUp() {
+        mContentResolver = InstrumentationRegistry.getTargetContext().getContentResolver();
+        deleteBenchmarkRows();
+    }
+
+    @After
+    public void tearDown() {
+        deleteBenchmarkRows();
+    }
+
+    private void deleteBenchmarkRows() {
+        mContentResolver.delete(WeatherContract.WeatherEntry.CONTENT_URI,
+                WeatherContract.WeatherEntry.COLUMN_DATE + " < ?",
+                new String[]{Long.toString(FIRST_DATE + OPERATIONS * SunshineDateUtils.DAY_IN_MILLIS)});
+    }
+
+    private static ContentValues weatherValues(long date, double maxTemp) {
+        ContentValues values = new ContentValues();
+        values.put(WeatherContract.WeatherEntry.COLUMN_DATE, date);
+        values.put(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID, 800);
+        values.put(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP, maxTemp);
+        values.put(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP, maxTemp - 8);
+        values.put(WeatherContract.WeatherEntry.COLUMN_HUMIDITY, 50);
+        values.put(WeatherContract.WeatherEntry.COLUMN_PRESSURE, 1010);
+        values.put(WeatherContract.WeatherEntry.COLUMN_WIND_SPEED, 3);
+        values.put(WeatherContract.WeatherEntry.COLUMN_DEGREES, 180);
+        return values;
+    }
+
+    /*
+     * Every third operation inserts a new day, the next updates that day's max temperature and
+     * the one after deletes it again every other time.
+     */
+    private static ArrayList<ContentProviderOperation> buildWorkload() {
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>(OPERATIONS);
+        for (int i = 0; i < OPERATIONS; i++) {
+            long date = FIRST_DATE + (i / 3) * SunshineDateUtils.DAY_IN_MILLIS;
+            Uri dateUri = WeatherContract.WeatherEntry.buildWeatherUriWithDate(date);
+            switch (i % 3) {
+                case 0:
+                    operations.add(ContentProviderOperation
+                            .newInsert(WeatherContract.WeatherEntry.CONTENT_URI)
+                            .withValues(weatherValues(date, 20))
+                            .build());
+                    break;
+                case 1:
+                    ContentValues update = new ContentValues();
+                    update.put(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP, 25);
+                    operations.add(ContentProviderOperation.newUpdate(dateUri)
+                            .withValues(update)
+                            .build());
+                    break;
+                default:
+                    if ((i / 3) % 2 == 0) {
+                        operations.add(ContentProviderOperation.newDelete(dateUri).build());
+                    } else {
+                        operations.add(ContentProviderOperation.newUpdate(dateUri)
+                                .withValues(weatherValues(date, 30))
+                                .build());
+                    }
+                    break;
+            }
+        }
+        return operations;
+    }
+
+    private int countBenchmarkRows() {
+        Cursor cursor = mContentResolver.query(WeatherContract.WeatherEntry.CONTENT_URI,
+                new String[]{WeatherContract.WeatherEntry._ID},
+                WeatherContract.WeatherEntry.COLUMN_DATE + " < ?",
+                new String[]{Long.toString(FIRST_DATE + OPERATIONS * SunshineDateUtils.DAY_IN_MILLIS)},
+                null);
+        int count = cursor.getCount();
+        cursor.close();
+        return count;
+    }
+
+    @Test
+    public void batchedWorkload_matchesAndOutperformsUnbatched() throws Exception {
+        ArrayList<ContentProviderOperation> operations = buildWorkload();
+
+        long start = SystemClock.elapsedRealtime();
+        for (ContentProviderOperation operation : operations) {
+            mContentResolver.applyBatch(WeatherContract.CONTENT_AUTHORITY,
+                    new ArrayList<>(Collections.singletonList(operation)));
+        }
+        long unbatchedMillis = SystemClock.elapsedRealtime() - start;
+        int unbatchedRows = countBenchmarkRows();
+
+        deleteBenchmarkRows();
+
+        start = SystemClock.elapsedRealtime();
+        mContentResolver.applyBatch(WeatherContract.CONTENT_AUTHORITY, operations);
+        long batchedMillis = SystemClock.elapsedRealtime() - start;
+        int batchedRows = countBenchmarkRows();
+
+        Log.i(TAG, OPERATIONS + " operations: unbatched " + unbatchedMillis + "ms ("
+                + OPERATIONS * 1000L / Math.max(1, unbatchedMillis) + " ops/s), batched "
+                + batchedMillis + "ms (" + OPERATIONS * 1000L / Math.max(1, batchedMillis) + " ops/s)");
+
+        assertEquals(unbatchedRows, batchedRows);
+        assertTrue(batchedMillis < unbatchedMillis);
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.hazem.sunshineweatherapp.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.hazem.sunshineweatherapp.data.WeatherContract.WeatherEntry;
+import com.example.hazem.sunshineweatherapp.data.WeatherContract.WeatherStatsEntry;
+import com.example.hazem.sunshineweatherapp.utilities.SunshineDateUtils;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the URIs of {@link WeatherProvider} that don't need SQL on each {@link ForecastStore}
+ * engine, whichever one the build chose: both must answer them the same way.
+ */
+@RunWith(AndroidJUnit4.class)
+public class WeatherProviderEngineTest {
+
+    private static final String[] ENGINES = {ForecastStore.SQLITE, ForecastStore.MEMORY};
+
+    private static final long DAY = SunshineDateUtils.DAY_IN_MILLIS;
+    private static final long FIRST_DATE = 100 * DAY;
+
+    private static final int[] WEATHER_IDS = {800, 500, 501, 800, 200};
+    private static final double[] MAX_TEMPS = {20, 24, 24, 21, 19};
+
+    /* A provider on the engine, holding the days above and nothing else */
+    private static WeatherProvider createProvider(String engine) {
+        WeatherProvider provider = new WeatherProvider(engine);
+        provider.attachInfo(InstrumentationRegistry.getTargetContext(), null);
+        provider.delete(WeatherEntry.CONTENT_URI, null, null);
+
+        ContentValues[] rows = new ContentValues[WEATHER_IDS.length];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = ForecastStoreConformanceTest.buildDay(FIRST_DATE + i * DAY, WEATHER_IDS[i],
+                    MAX_TEMPS[i]);
+        }
+        assertEquals(rows.length, provider.bulkInsert(WeatherEntry.CONTENT_URI, rows));
+        return provider;
+    }
+
+    private static void releaseProvider(WeatherProvider provider) {
+        provider.delete(WeatherEntry.CONTENT_URI, null, null);
+        provider.shutdown();
+    }
+
+    private static int count(WeatherProvider provider) {
+        Cursor cursor = provider.query(WeatherEntry.CONTENT_URI, new String[]{"COUNT(*)"},
+                null, null, null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            return cursor.getInt(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void stats_areTheSameOnEveryEngine() {
+        for (String engine : ENGINES) {
+            WeatherProvider provider = createProvider(engine);
+            try {
+                Cursor cursor = provider.query(WeatherStatsEntry.buildStatsUri(
+                        FIRST_DATE + DAY, FIRST_DATE + 4 * DAY), null, null, null, null);
+                try {
+                    assertTrue(engine, cursor.moveToFirst());
+                    assertEquals(engine, 3, cursor.getInt(
+                            cursor.getColumnIndexOrThrow(WeatherStatsEntry.COLUMN_DAY_COUNT)));
+                    assertEquals(engine, 12.5, cursor.getDouble(
+                            cursor.getColumnIndexOrThrow(WeatherStatsEntry.COLUMN_LOWEST_TEMP)), 0.01);
+                    assertEquals(engine, 24, cursor.getDouble(
+                            cursor.getColumnIndexOrThrow(WeatherStatsEntry.COLUMN_HIGHEST_TEMP)), 0.01);
+                    assertEquals(engine, 23, cursor.getDouble(
+                            cursor.getColumnIndexOrThrow(WeatherStatsEntry.COLUMN_AVG_MAX_TEMP)), 0.01);
+                    assertEquals(engine, 50, cursor.getDouble(
+                            cursor.getColumnIndexOrThrow(WeatherStatsEntry.COLUMN_AVG_HUMIDITY)), 0.01);
+                    /* The first of the warmest days */
+                    assertEquals(engine, FIRST_DATE + DAY, cursor.getLong(
+                            cursor.getColumnIndexOrThrow(WeatherStatsEntry.COLUMN_WARMEST_DATE)));
+                } finally {
+                    cursor.close();
+                }
+
+                cursor = provider.query(WeatherStatsEntry.buildStatsUri(
+                        FIRST_DATE + 10 * DAY, FIRST_DATE + 20 * DAY), null, null, null, null);
+                try {
+                    assertTrue(engine, cursor.moveToFirst());
+                    assertEquals(engine, 0, cursor.getInt(
+                            cursor.getColumnIndexOrThrow(WeatherStatsEntry.COLUMN_DAY_COUNT)));
+                    assertTrue(engine, cursor.isNull(
+                            cursor.getColumnIndexOrThrow(WeatherStatsEntry.COLUMN_LOWEST_TEMP)));
+                } finally {
+                    cursor.close();
+                }
+            } finally {
+                releaseProvider(provider);
+            }
+        }
+    }
+
+    @Test
+    public void conditionCounts_areTheSameOnEveryEngine() {
+        for (String engine : ENGINES) {
+            WeatherProvider provider = createProvider(engine);
+            try {
+                Cursor cursor = provider.query(WeatherStatsEntry.buildConditionsUri(
+                        FIRST_DATE, FIRST_DATE + 5 * DAY), null, null, null, null);
+                try {
+                    int groupIndex = cursor.getColumnIndexOrThrow(
+                            WeatherStatsEntry.COLUMN_CONDITION_GROUP);
+                    int countIndex = cursor.getColumnIndexOrThrow(
+                            WeatherStatsEntry.COLUMN_CONDITION_COUNT);
+                    int[][] expected = {
+                            {WeatherStatsEntry.getConditionGroup(200), 1},
+                            {WeatherStatsEntry.getConditionGroup(500), 2},
+                            {WeatherStatsEntry.getConditionGroup(800), 2}};
+                    assertEquals(engine, expected.length, cursor.getCount());
+                    for (int[] group : expected) {
+                        assertTrue(engine, cursor.moveToNext());
+                        assertEquals(engine, group[0], cursor.getInt(groupIndex));
+                        assertEquals(engine, group[1], cursor.getInt(countIndex));
+                    }
+                } finally {
+                    cursor.close();
+                }
+            } finally {
+                releaseProvider(provider);
+            }
+        }
+    }
+
+    @Test
+    public void dateAndRangeDeletes_workOnEveryEngine() {
+        for (String engine : ENGINES) {
+            WeatherProvider provider = createProvider(engine);
+            try {
+                assertEquals(engine, 1, provider.delete(
+                        WeatherEntry.buildWeatherUriWithDate(FIRST_DATE + 2 * DAY), null, null));
+                assertEquals(engine, 0, provider.delete(
+                        WeatherEntry.buildWeatherUriWithDate(FIRST_DATE + 2 * DAY), null, null));
+                assertEquals(engine, 2, provider.delete(WeatherEntry.buildWeatherUriWithRange(
+                        FIRST_DATE + 3 * DAY, FIRST_DATE + 10 * DAY), null, null));
+                assertEquals(engine, 2, count(provider));
+            } finally {
+                releaseProvider(provider);
+            }
+        }
+    }
+
+    @Test
+    public void selection_needsTheSqliteEngine() {
+        for (String engine : ENGINES) {
+            WeatherProvider provider = createProvider(engine);
+            try {
+                Cursor cursor = provider.query(WeatherStatsEntry.buildStatsUri(
+                        FIRST_DATE, FIRST_DATE + 5 * DAY), null,
+                        WeatherEntry.COLUMN_WEATHER_ID + " = ?", new String[]{"800"}, null);
+                assertEquals(engine, ForecastStore.SQLITE, engine);
+                cursor.close();
+            } catch (UnsupportedOperationException e) {
+                assertEquals(engine, ForecastStore.MEMORY, engine);
+            } finally {
+                releaseProvider(provider);
+            }
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.example.hazem.sunshineweatherapp.data;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.hazem.sunshineweatherapp.data.WeatherContract.WeatherEntry;
+import com.example.hazem.sunshineweatherapp.data.WeatherContract.WeatherStatsEntry;
+import com.example.hazem.sunshineweatherapp.utilities.FakeDataUtils;
+import com.example.hazem.sunshineweatherapp.utilities.SunshineDateUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares the stats URIs of {@link WeatherProvider} with computing the same statistics by
+ * scanning the weather rows through a cursor, over 100,000 rows. Both must agree; the timings
+ * are logged.
+ */
+@RunWith(AndroidJUnit4.class)
+public class WeatherStatsBenchmarkTest {
+
+    private static final String TAG = "WeatherStats";
+
+    private static final int LOCATIONS = 100;
+    private static final int DAYS = 1000;
+
+    private static final int RUNS = 5;
+
+    private static final String[] SCAN_PROJECTION = {
+            WeatherEntry.COLUMN_DATE,
+            WeatherEntry.COLUMN_WEATHER_ID,
+            WeatherEntry.COLUMN_MIN_TEMP,
+            WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherEntry.COLUMN_HUMIDITY
+    };
+
+    private ContentResolver mContentResolver;
+    private long mFirstDate;
+
+    /* What the stats URI returns, computed either way */
+    private static class Stats {
+        int dayCount;
+        double lowestTemp = Double.MAX_VALUE;
+        double highestTemp = -Double.MAX_VALUE;
+        double avgHumidity;
+        long warmestDate;
+    }
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getTargetContext();
+        mContentResolver = context.getContentResolver();
+        mContentResolver.delete(WeatherEntry.CONTENT_URI, null, null);
+
+        mFirstDate = SunshineDateUtils.normalizeDate(System.currentTimeMillis());
+        assertEquals(LOCATIONS * DAYS, FakeDataUtils.insertFakeData(context, 39, LOCATIONS, DAYS));
+    }
+
+    @After
+    public void tearDown() {
+        mContentResolver.delete(WeatherEntry.CONTENT_URI, null, null);
+    }
+
+    private Stats queryStats(long startDate, long endDate) {
+        Cursor cursor = mContentResolver.query(
+                WeatherStatsEntry.buildStatsUri(startDate, endDate), null, null, null, null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            Stats stats = new Stats();
+            stats.dayCount = cursor.getInt(cursor.getColumnIndex(WeatherStatsEntry.COLUMN_DAY_COUNT));
+            stats.lowestTemp = cursor.getDouble(cursor.getColumnIndex(WeatherStatsEntry.COLUMN_LOWEST_TEMP));
+            stats.highestTemp = cursor.getDouble(cursor.getColumnIndex(WeatherStatsEntry.COLUMN_HIGHEST_TEMP));
+            stats.avgHumidity = cursor.getDouble(cursor.getColumnIndex(WeatherStatsEntry.COLUMN_AVG_HUMIDITY));
+            stats.warmestDate = cursor.getLong(cursor.getColumnIndex(WeatherStatsEntry.COLUMN_WARMEST_DATE));
+            return stats;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /* What a screen would have to do without the stats URI */
+    private Stats scanStats(long startDate, long endDate) {
+        Cursor cursor = mContentResolver.query(WeatherEntry.CONTENT_URI, SCAN_PROJECTION,
+                WeatherEntry.COLUMN_DATE + " >= ? AND " + WeatherEntry.COLUMN_DATE + " < ?",
+                new String[]{Long.toString(startDate), Long.toString(endDate)},
+                WeatherEntry.COLUMN_DATE);
+        try {
+            Stats stats = new Stats();
+            double humiditySum = 0;
+            while (cursor.moveToNext()) {
+                double min = cursor.getDouble(2);
+                double max = cursor.getDouble(3);
+                stats.dayCount++;
+                stats.lowestTemp = Math.min(stats.lowestTemp, min);
+                if (max > stats.highestTemp) {
+                    stats.highestTemp = max;
+                    stats.warmestDate = cursor.getLong(0);
+                }
+                humiditySum += cursor.getDouble(4);
+            }
+            stats.avgHumidity = humiditySum / stats.dayCount;
+            return stats;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private TreeMap<Integer, Integer> queryConditions(long startDate, long endDate) {
+        Cursor cursor = mContentResolver.query(
+                WeatherStatsEntry.buildConditionsUri(startDate, endDate), null, null, null, null);
+        TreeMap<Integer, Integer> counts = new TreeMap<>();
+        try {
+            while (cursor.moveToNext()) {
+                counts.put(cursor.getInt(0), cursor.getInt(1));
+            }
+        } finally {
+            cursor.close();
+        }
+        return counts;
+    }
+
+    private TreeMap<Integer, Integer> scanConditions(long startDate, long endDate) {
+        Cursor cursor = mContentResolver.query(WeatherEntry.CONTENT_URI, SCAN_PROJECTION,
+                WeatherEntry.COLUMN_DATE + " >= ? AND " + WeatherEntry.COLUMN_DATE + " < ?",
+                new String[]{Long.toString(startDate), Long.toString(endDate)}, null);
+        TreeMap<Integer, Integer> counts = new TreeMap<>();
+        try {
+            while (cursor.moveToNext()) {
+                int group = WeatherStatsEntry.getConditionGroup(cursor.getInt(1));
+                Integer count = counts.get(group);
+                counts.put(group, count == null ? 1 : count + 1);
+            }
+        } finally {
+            cursor.close();
+        }
+        return counts;
+    }
+
+    @Test
+    public void stats_matchCursorScanAndAreFaster() {
+        long endDate = mFirstDate + LOCATIONS * DAYS * SunshineDateUtils.DAY_IN_MILLIS;
+
+        long sqlNanos = Long.MAX_VALUE;
+        long scanNanos = Long.MAX_VALUE;
+        Stats sql = null;
+        Stats scan = null;
+        for (int run = 0; run < RUNS; run++) {
+            long start = System.nanoTime();
+            sql = queryStats(mFirstDate, endDate);
+            sqlNanos = Math.min(sqlNanos, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            scan = scanStats(mFirstDate, endDate);
+            scanNanos = Math.min(scanNanos, System.nanoTime() - start);
+        }
+        Log.i(TAG, LOCATIONS * DAYS + " rows, stats URI " + sqlNanos / 1000 + "us, cursor scan "
+                + scanNanos / 1000 + "us");
+
+        assertEquals(LOCATIONS * DAYS, sql.dayCount);
+        assertEquals(scan.dayCount, sql.dayCount);
+        assertEquals(scan.lowestTemp, sql.lowestTemp, 0.05);
+        assertEquals(scan.highestTemp, sql.highestTemp, 0.05);
+        assertEquals(scan.avgHumidity, sql.avgHumidity, 0.01);
+        assertEquals(scan.warmestDate, sql.warmestDate);
+        assertTrue(sqlNanos < scanNanos);
+    }
+
+    @Test
+    public void weekStats_useTheDateRange() {
+        long weekEnd = mFirstDate + 7 * SunshineDateUtils.DAY_IN_MILLIS;
+
+        Stats sql = queryStats(mFirstDate, weekEnd);
+        Stats scan = scanStats(mFirstDate, weekEnd);
+
+        assertEquals(7, sql.dayCount);
+        assertEquals(scan.highestTemp, sql.highestTemp, 0.05);
+        assertEquals(scan.warmestDate, sql.warmestDate);
+    }
+
+    @Test
+    public void conditionCounts_matchCursorScanAndAreFaster() {
+        long endDate = mFirstDate + LOCATIONS * DAYS * SunshineDateUtils.DAY_IN_MILLIS;
+
+        long sqlNanos = Long.MAX_VALUE;
+        long scanNanos = Long.MAX_VALUE;
+        TreeMap<Integer, Integer> sql = null;
+        TreeMap<Integer, Integer> scan = null;
+        for (int run = 0; run < RUNS; run++) {
+            long start = System.nanoTime();
+            sql = queryConditions(mFirstDate, endDate);
+            sqlNanos = Math.min(sqlNanos, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            scan = scanConditions(mFirstDate, endDate);
+            scanNanos = Math.min(scanNanos, System.nanoTime() - start);
+        }
+        Log.i(TAG, LOCATIONS * DAYS + " rows, conditions URI " + sqlNanos / 1000
+                + "us, cursor scan " + scanNanos / 1000 + "us: " + sql);
+
+        assertEquals(scan, sql);
+        assertTrue(sql.containsKey(WeatherStatsEntry.CONDITION_GROUP_CLEAR));
+        assertTrue(sql.containsKey(WeatherStatsEntry.CONDITION_GROUP_RAIN));
+        assertTrue(sqlNanos < scanNanos);
+    }
+}
@@ -1,31 +1,49 @@
 package com.example.hazem.sunshineweatherapp;
 
 import android.content.Intent;
-import android.database.Cursor;
+import android.content.SharedPreferences;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.v4.app.LoaderManager;
 import android.support.v4.app.ShareCompat;
-import android.support.v4.content.CursorLoader;
 import android.support.v4.content.Loader;
 import android.support.v7.app.AppCompatActivity;
+import android.support.v7.preference.PreferenceManager;
+import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.widget.TextView;
 
+import com.example.hazem.sunshineweatherapp.data.SunshinePreferences;
 import com.example.hazem.sunshineweatherapp.data.WeatherContract;
-import com.example.hazem.sunshineweatherapp.utilities.SunshineDateUtils;
-import com.example.hazem.sunshineweatherapp.utilities.WeatherUtils;
 
 public class DetailsActivity extends AppCompatActivity
-        implements LoaderManager.LoaderCallbacks<Cursor> {
+        implements LoaderManager.LoaderCallbacks<ForecastDetails>,
+        SharedPreferences.OnSharedPreferenceChangeListener {
 
-    private static final String FORECAST_SHARE_HASHTAG = " #SunshineWeatherApp";
+    private static final String TAG = "DetailsActivity";
 
+    /*
+     * SystemClock#elapsedRealtime of the tap that opened this screen, set by MainActivity. Used
+     * to measure the time from tap to details, see ForecastDetailsPrefetcher.
+     */
+    public static final String EXTRA_TAP_TIME = "tap_time";
+
+    /* The forecast summary to share, precomputed by ForecastDetailsLoader */
     private String dayWeather;
 
+    /* The details currently shown, kept to re-render them when the units change */
+    private ForecastDetails mDetails;
+
+    /* Time the main thread spent in the last bind, in nanoseconds */
+    private long mLastBindNanos;
+
+    /* Tap time of the intent until the first details are bound, then -1 */
+    private long mTapTime;
+
     private Uri mUri;
 
     private TextView mDateView;
@@ -35,6 +53,8 @@ public class DetailsActivity extends AppCompatActivity
     private TextView mHumidityView;
     private TextView mWindView;
     private TextView mPressureView;
+    private TextView mFeelsLikeView;
+    private TextView mDewPointView;
 
     public static final String[] WEATHER_DETAIL_PROJECTION = {
             WeatherContract.WeatherEntry.COLUMN_DATE,
@@ -44,7 +64,9 @@ public class DetailsActivity extends AppCompatActivity
             WeatherContract.WeatherEntry.COLUMN_PRESSURE,
             WeatherContract.WeatherEntry.COLUMN_WIND_SPEED,
             WeatherContract.WeatherEntry.COLUMN_DEGREES,
-            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID
+            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
+            WeatherContract.WeatherEntry.COLUMN_APPARENT_TEMP,
+            WeatherContract.WeatherEntry.COLUMN_DEW_POINT
     };
 
     public static final int INDEX_WEATHER_DATE = 0;
@@ -55,6 +77,8 @@ public class DetailsActivity extends AppCompatActivity
     public static final int INDEX_WEATHER_WIND_SPEED = 5;
     public static final int INDEX_WEATHER_DEGREES = 6;
     public static final int INDEX_WEATHER_CONDITION_ID = 7;
+    public static final int INDEX_WEATHER_APPARENT_TEMP = 8;
+    public static final int INDEX_WEATHER_DEW_POINT = 9;
 
     private static final int ID_DETAIL_LOADER = 353;
 
@@ -70,6 +94,8 @@ public class DetailsActivity extends AppCompatActivity
         mHumidityView = (TextView) findViewById(R.id.humidity);
         mWindView = (TextView) findViewById(R.id.wind);
         mPressureView = (TextView) findViewById(R.id.pressure);
+        mFeelsLikeView = (TextView) findViewById(R.id.feels_like);
+        mDewPointView = (TextView) findViewById(R.id.dew_point);
 
         mUri = getIntent().getData();
 
@@ -77,21 +103,38 @@ public class DetailsActivity extends AppCompatActivity
             throw new NullPointerException("URI for DetailActivity cannot be null");
         }
 
+        /* Only the first creation comes from a tap, not a recreation after a rotation */
+        mTapTime = savedInstanceState == null
+                ? getIntent().getLongExtra(EXTRA_TAP_TIME, -1) : -1;
+
         getSupportLoaderManager().initLoader(ID_DETAIL_LOADER, null, this);
+
+        PreferenceManager.getDefaultSharedPreferences(this)
+                .registerOnSharedPreferenceChangeListener(this);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        PreferenceManager.getDefaultSharedPreferences(this)
+                .unregisterOnSharedPreferenceChangeListener(this);
+    }
+
+    @Override
+    public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+        if (mDetails != null && key.equals(getString(R.string.pref_units_key))) {
+            /* Stored data is always metric, so re-render what is loaded instead of reloading */
+            bindDetails(mDetails.withUnits(this, SunshinePreferences.isMetric(this)));
+        }
     }
 
     @NonNull
     @Override
-    public Loader<Cursor> onCreateLoader(int loaderId, @Nullable Bundle args) {
+    public Loader<ForecastDetails> onCreateLoader(int loaderId, @Nullable Bundle args) {
         switch (loaderId) {
             case ID_DETAIL_LOADER:
-
-                return new CursorLoader(this,
-                        mUri,
-                        WEATHER_DETAIL_PROJECTION,
-                        null,
-                        null,
-                        null);
+                /* Queries and formats on a background thread, see ForecastDetailsLoader */
+                return new ForecastDetailsLoader(this, mUri);
 
             default:
                 throw new RuntimeException("Loader Not Implemented: " + loaderId);
@@ -99,84 +142,59 @@ public class DetailsActivity extends AppCompatActivity
     }
 
     @Override
-    public void onLoadFinished(@NonNull Loader<Cursor> loader, Cursor data) {
-        boolean cursorHasValidData = false;
-        if (data != null && data.moveToFirst()) {
-            /* We have valid data, continue on to bind the data to the UI */
-            cursorHasValidData = true;
-        }
-
-        if (!cursorHasValidData) {
+    public void onLoadFinished(@NonNull Loader<ForecastDetails> loader, ForecastDetails details) {
+        if (details == null) {
             /* No data to display, simply return and do nothing */
             return;
         }
 
+        /* The loader may hand back details it formatted before the units changed */
+        bindDetails(details.withUnits(this, SunshinePreferences.isMetric(this)));
 
-        long localDateMidnightGmt = data.getLong(INDEX_WEATHER_DATE);
-        String dateText = SunshineDateUtils.getFriendlyDateString(this, localDateMidnightGmt, true);
-
-        mDateView.setText(dateText);
-
-        // set weather description
-        int weatherId = data.getInt(INDEX_WEATHER_CONDITION_ID);
-        /* Use the weatherId to obtain the proper description */
-        String description = WeatherUtils.getStringForWeatherCondition(this, weatherId);
-
-        mDescriptionView.setText(description);
-        //End
-
-
-        //set high Temp
-        double highInCelsius = data.getDouble(INDEX_WEATHER_MAX_TEMP);
-
-        String highString = WeatherUtils.formatTemperature(this, highInCelsius);
-
-        mHighTemperatureView.setText(highString);
-        //End
-
-
-        //set low Temp
-        double lowInCelsius = data.getDouble(INDEX_WEATHER_MIN_TEMP);
-
-        String lowString = WeatherUtils.formatTemperature(this, lowInCelsius);
-
-        mLowTemperatureView.setText(lowString);
-        //End
-
-        // set humidity
-        float humidity = data.getFloat(INDEX_WEATHER_HUMIDITY);
-        String humidityString = getString(R.string.format_humidity, humidity);
-
-        /* Set the text */
-        mHumidityView.setText(humidityString);
-        //End
-
-
-        //set wind speed
-        float windSpeed = data.getFloat(INDEX_WEATHER_WIND_SPEED);
-        float windDirection = data.getFloat(INDEX_WEATHER_DEGREES);
-        String windString = WeatherUtils.getFormattedWind(this, windSpeed, windDirection);
+        if (mTapTime != -1) {
+            ForecastDetailsPrefetcher.getInstance(this).recordTapToDetails(
+                    SystemClock.elapsedRealtime() - mTapTime,
+                    ((ForecastDetailsLoader) loader).isPrefetched());
+            mTapTime = -1;
+        }
+    }
 
-        /* Set the text */
-        mWindView.setText(windString);
-        //End
+    private void bindDetails(ForecastDetails details) {
+        mDetails = details;
 
+        long bindStart = System.nanoTime();
 
-        // set pressure
-        float pressure = data.getFloat(INDEX_WEATHER_PRESSURE);
+        /* Everything is already formatted, all that is left to do on the main thread is setText */
+        mDateView.setText(details.getDateText());
+        mDescriptionView.setText(details.getDescription());
+        mHighTemperatureView.setText(details.getHighText());
+        mLowTemperatureView.setText(details.getLowText());
+        mHumidityView.setText(details.getHumidityText());
+        mWindView.setText(details.getWindText());
+        mPressureView.setText(details.getPressureText());
+        mFeelsLikeView.setText(details.getFeelsLikeText());
+        mDewPointView.setText(details.getDewPointText());
 
-        String pressureString = getString(R.string.format_pressure, pressure);
+        dayWeather = details.getShareText();
 
-        mPressureView.setText(pressureString);
-        //End
+        mLastBindNanos = System.nanoTime() - bindStart;
+        if (BuildConfig.DEBUG) {
+            Log.v(TAG, "bind took " + mLastBindNanos / 1000 + "us on the main thread");
+        }
+    }
 
-        /* Store the forecast summary String in our forecast summary field to share later */
-        dayWeather = String.format("%s - %s - %s/%s",
-                dateText, description, highString, lowString);
+    /**
+     * Returns how long the main thread spent binding the last loaded details, which is meant to
+     * stay close to the cost of setting the text of each view.
+     *
+     * @return Duration of the last bind in nanoseconds, 0 if nothing was bound yet
+     */
+    public long getLastBindNanos() {
+        return mLastBindNanos;
     }
 
     @Override
-    public void onLoaderReset(@NonNull Loader<Cursor> loader) {
+    public void onLoaderReset(@NonNull Loader<ForecastDetails> loader) {
 
     }
 
@@ -213,11 +231,9 @@ public class DetailsActivity extends AppCompatActivity
 
     private Intent createShareIntent(){
 
-        String sharingText = dayWeather + "\n" + FORECAST_SHARE_HASHTAG;
-
         Intent shareIntent = ShareCompat.IntentBuilder.from(this)
                 .setType("text/plain")
-                .setText(sharingText)
+                .setText(dayWeather)
                 .getIntent();
 
         return shareIntent;
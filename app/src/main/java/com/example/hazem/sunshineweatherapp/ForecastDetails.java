@@ -0,0 +1,198 @@
+package com.example.hazem.sunshineweatherapp;
+
+import android.content.Context;
+
+import com.example.hazem.sunshineweatherapp.data.SunshinePreferences;
+import com.example.hazem.sunshineweatherapp.utilities.SunshineDateUtils;
+import com.example.hazem.sunshineweatherapp.utilities.WeatherUtils;
+
+/**
+ * Everything the details screen shows for one day, already formatted for display. Instances
+ * are immutable and are built off the main thread by {@link ForecastDetailsLoader}, so binding
+ * them to views is nothing more than assigning text. When only the units change, the raw values
+ * are re-rendered with {@link #withUnits(Context, boolean)} instead of being loaded again.
+ */
+public class ForecastDetails {
+
+    private static final String FORECAST_SHARE_HASHTAG = " #SunshineWeatherApp";
+
+    /* Raw values, as stored in the weather table */
+    private final long mDate;
+    private final int mWeatherId;
+    private final double mMaxTemp;
+    private final double mMinTemp;
+    private final float mHumidity;
+    private final float mPressure;
+    private final float mWindSpeed;
+    private final float mWindDirection;
+
+    /* Computed at ingest time by ForecastEnricher, so only formatted here */
+    private final double mApparentTemp;
+    private final double mDewPoint;
+
+    /* Units the display strings were formatted in */
+    private final boolean mIsMetric;
+
+    /* Display strings derived from the raw values */
+    private final String mDateText;
+    private final String mDescription;
+    private final String mHighText;
+    private final String mLowText;
+    private final String mHumidityText;
+    private final String mWindText;
+    private final String mPressureText;
+    private final String mFeelsLikeText;
+    private final String mDewPointText;
+    private final String mShareText;
+
+    private ForecastDetails(Context context, long date, int weatherId, double maxTemp,
+                            double minTemp, float humidity, float pressure, float windSpeed,
+                            float windDirection, double apparentTemp, double dewPoint,
+                            boolean isMetric) {
+        mDate = date;
+        mWeatherId = weatherId;
+        mMaxTemp = maxTemp;
+        mMinTemp = minTemp;
+        mHumidity = humidity;
+        mPressure = pressure;
+        mWindSpeed = windSpeed;
+        mWindDirection = windDirection;
+        mApparentTemp = apparentTemp;
+        mDewPoint = dewPoint;
+        mIsMetric = isMetric;
+
+        mDateText = SunshineDateUtils.getFriendlyDateString(context, date, true);
+        mDescription = WeatherUtils.getStringForWeatherCondition(context, weatherId);
+        mHighText = WeatherUtils.formatTemperature(context, maxTemp, isMetric);
+        mLowText = WeatherUtils.formatTemperature(context, minTemp, isMetric);
+        mHumidityText = context.getString(R.string.format_humidity, humidity);
+        mWindText = WeatherUtils.getFormattedWind(context, windSpeed, windDirection, isMetric);
+        mPressureText = context.getString(R.string.format_pressure, pressure);
+        mFeelsLikeText = context.getString(R.string.format_feels_like,
+                WeatherUtils.formatTemperature(context, apparentTemp, isMetric));
+        mDewPointText = context.getString(R.string.format_dew_point,
+                WeatherUtils.formatTemperature(context, dewPoint, isMetric));
+
+        /* The forecast summary shared from the details menu */
+        mShareText = String.format("%s - %s - %s/%s",
+                mDateText, mDescription, mHighText, mLowText) + "\n" + FORECAST_SHARE_HASHTAG;
+    }
+
+    /**
+     * Formats one day of weather for the details screen. This does resource and preference
+     * lookups, so it should not be called on the main thread.
+     *
+     * @param context Used to access resources and preferences
+     * @return The formatted details
+     */
+    public static ForecastDetails create(Context context, long date, int weatherId, double maxTemp,
+                                         double minTemp, float humidity, float pressure,
+                                         float windSpeed, float windDirection,
+                                         double apparentTemp, double dewPoint) {
+        return new ForecastDetails(context.getApplicationContext(), date, weatherId, maxTemp,
+                minTemp, humidity, pressure, windSpeed, windDirection, apparentTemp, dewPoint,
+                SunshinePreferences.isMetric(context));
+    }
+
+    /**
+     * Re-renders these details in other units from the raw values already in memory. Nothing is
+     * queried, and temperatures come from the precomputed table in {@link WeatherUtils}, so this
+     * is cheap enough to call on the main thread when the units preference changes.
+     *
+     * @param context  Used to access resources
+     * @param isMetric true for metric units, false for imperial
+     * @return These details in the requested units, or this instance if they already are
+     */
+    public ForecastDetails withUnits(Context context, boolean isMetric) {
+        if (isMetric == mIsMetric) {
+            return this;
+        }
+        return new ForecastDetails(context.getApplicationContext(), mDate, mWeatherId, mMaxTemp,
+                mMinTemp, mHumidity, mPressure, mWindSpeed, mWindDirection, mApparentTemp,
+                mDewPoint, isMetric);
+    }
+
+    public boolean isMetric() {
+        return mIsMetric;
+    }
+
+    public long getDate() {
+        return mDate;
+    }
+
+    public int getWeatherId() {
+        return mWeatherId;
+    }
+
+    public double getMaxTemp() {
+        return mMaxTemp;
+    }
+
+    public double getMinTemp() {
+        return mMinTemp;
+    }
+
+    public float getHumidity() {
+        return mHumidity;
+    }
+
+    public float getPressure() {
+        return mPressure;
+    }
+
+    public float getWindSpeed() {
+        return mWindSpeed;
+    }
+
+    public float getWindDirection() {
+        return mWindDirection;
+    }
+
+    public double getApparentTemp() {
+        return mApparentTemp;
+    }
+
+    public double getDewPoint() {
+        return mDewPoint;
+    }
+
+    public String getDateText() {
+        return mDateText;
+    }
+
+    public String getDescription() {
+        return mDescription;
+    }
+
+    public String getHighText() {
+        return mHighText;
+    }
+
+    public String getLowText() {
+        return mLowText;
+    }
+
+    public String getHumidityText() {
+        return mHumidityText;
+    }
+
+    public String getWindText() {
+        return mWindText;
+    }
+
+    public String getPressureText() {
+        return mPressureText;
+    }
+
+    public String getFeelsLikeText() {
+        return mFeelsLikeText;
+    }
+
+    public String getDewPointText() {
+        return mDewPointText;
+    }
+
+    public String getShareText() {
+        return mShareText;
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.hazem.sunshineweatherapp;
+
+import android.content.ContentUris;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.content.AsyncTaskLoader;
+
+/**
+ * Loads one day of weather and formats it into a {@link ForecastDetails} on a background thread.
+ * Like a CursorLoader, it reloads whenever the data behind its URI changes.
+ * <p>
+ * The first load is served from {@link ForecastDetailsPrefetcher} when the forecast list already
+ * prefetched the day, without querying at all.
+ */
+public class ForecastDetailsLoader extends AsyncTaskLoader<ForecastDetails> {
+
+    private final Uri mUri;
+
+    private final ForceLoadContentObserver mObserver = new ForceLoadContentObserver();
+
+    private ForecastDetails mDetails;
+
+    private boolean mObserverRegistered;
+
+    /* Whether the details delivered came from ForecastDetailsPrefetcher */
+    private boolean mPrefetched;
+
+    public ForecastDetailsLoader(@NonNull Context context, @NonNull Uri uri) {
+        super(context);
+        mUri = uri;
+    }
+
+    @Nullable
+    @Override
+    public ForecastDetails loadInBackground() {
+        Cursor cursor = getContext().getContentResolver().query(
+                mUri,
+                DetailsActivity.WEATHER_DETAIL_PROJECTION,
+                null,
+                null,
+                null);
+
+        if (cursor == null) {
+            return null;
+        }
+
+        try {
+            if (!cursor.moveToFirst()) {
+                /* No data to display */
+                return null;
+            }
+
+            return readDetails(getContext(), cursor);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /*
+     * Formats the row the cursor is on, read with DetailsActivity#WEATHER_DETAIL_PROJECTION.
+     * Shared with ForecastDetailsPrefetcher, which formats the rows the list shows ahead of time.
+     */
+    static ForecastDetails readDetails(Context context, Cursor cursor) {
+        return ForecastDetails.create(context,
+                cursor.getLong(DetailsActivity.INDEX_WEATHER_DATE),
+                cursor.getInt(DetailsActivity.INDEX_WEATHER_CONDITION_ID),
+                cursor.getDouble(DetailsActivity.INDEX_WEATHER_MAX_TEMP),
+                cursor.getDouble(DetailsActivity.INDEX_WEATHER_MIN_TEMP),
+                cursor.getFloat(DetailsActivity.INDEX_WEATHER_HUMIDITY),
+                cursor.getFloat(DetailsActivity.INDEX_WEATHER_PRESSURE),
+                cursor.getFloat(DetailsActivity.INDEX_WEATHER_WIND_SPEED),
+                cursor.getFloat(DetailsActivity.INDEX_WEATHER_DEGREES),
+                cursor.getDouble(DetailsActivity.INDEX_WEATHER_APPARENT_TEMP),
+                cursor.getDouble(DetailsActivity.INDEX_WEATHER_DEW_POINT));
+    }
+
+    @Override
+    public void deliverResult(@Nullable ForecastDetails details) {
+        mDetails = details;
+        if (isStarted()) {
+            super.deliverResult(details);
+        }
+    }
+
+    @Override
+    protected void onStartLoading() {
+        if (!mObserverRegistered) {
+            getContext().getContentResolver().registerContentObserver(mUri, false, mObserver);
+            mObserverRegistered = true;
+        }
+
+        /* Prefetched details are dropped when the forecast changes, so they are current */
+        if (mDetails == null) {
+            mDetails = ForecastDetailsPrefetcher.getInstance(getContext())
+                    .get(ContentUris.parseId(mUri));
+            mPrefetched = mDetails != null;
+        }
+
+        if (mDetails != null) {
+            deliverResult(mDetails);
+        }
+        if (takeContentChanged() || mDetails == null) {
+            forceLoad();
+        }
+    }
+
+    /**
+     * @return true if the details delivered last were prefetched rather than queried
+     */
+    public boolean isPrefetched() {
+        return mPrefetched;
+    }
+
+    @Override
+    protected void onForceLoad() {
+        super.onForceLoad();
+        mPrefetched = false;
+    }
+
+    @Override
+    protected void onStopLoading() {
+        cancelLoad();
+    }
+
+    @Override
+    protected void onReset() {
+        super.onReset();
+        onStopLoading();
+        mDetails = null;
+
+        if (mObserverRegistered) {
+            getContext().getContentResolver().unregisterContentObserver(mObserver);
+            mObserverRegistered = false;
+        }
+    }
+}
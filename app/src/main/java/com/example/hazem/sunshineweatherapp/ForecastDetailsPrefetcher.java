@@ -0,0 +1,220 @@
+package com.example.hazem.sunshineweatherapp;
+
+import android.content.Context;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.util.Log;
+
+import com.example.hazem.sunshineweatherapp.data.PrefetchCache;
+import com.example.hazem.sunshineweatherapp.data.WeatherContract;
+import com.example.hazem.sunshineweatherapp.utilities.SunshineDateUtils;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Loads the details of the days the forecast list shows before they are tapped. The list
+ * projection leaves out the columns only the details screen needs, so without this every tap
+ * waits for a query of its own; with it, {@link ForecastDetailsLoader} finds the day already
+ * queried and formatted.
+ * <p>
+ * At most {@link #MAX_ENTRIES} days are kept, the least recently used evicted first. They are
+ * all dropped whenever the forecast changes, e.g. after a sync.
+ * <p>
+ * Hits and misses are counted, along with the time from tap to details on the screen, see
+ * {@link #recordTapToDetails}.
+ */
+public class ForecastDetailsPrefetcher {
+
+    private static final String TAG = "DetailsPrefetcher";
+
+    /* A couple of screens of the list */
+    public static final int MAX_ENTRIES = 16;
+
+    private static volatile ForecastDetailsPrefetcher sInstance;
+
+    private final Context mContext;
+
+    private final PrefetchCache<ForecastDetails> mCache = new PrefetchCache<>(MAX_ENTRIES);
+
+    /* One prefetch at a time, in the order the list asked for them */
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+
+    private final ContentObserver mForecastObserver = new ContentObserver(null) {
+        @Override
+        public void onChange(boolean selfChange) {
+            mCache.invalidate();
+        }
+    };
+
+    /* Tap to details, in milliseconds, of the taps served by the cache and of the others */
+    private int mPrefetchedTaps;
+    private long mPrefetchedTapMillis;
+    private int mQueriedTaps;
+    private long mQueriedTapMillis;
+
+    private ForecastDetailsPrefetcher(Context context) {
+        mContext = context.getApplicationContext();
+        /* Every write to the forecast notifies a descendant of this URI */
+        mContext.getContentResolver().registerContentObserver(
+                WeatherContract.WeatherEntry.CONTENT_URI, true, mForecastObserver);
+    }
+
+    /**
+     * Returns the prefetcher of the app, creating it on first use.
+     *
+     * @param context Any context of the app
+     * @return The prefetcher, shared by the whole process
+     */
+    public static ForecastDetailsPrefetcher getInstance(Context context) {
+        ForecastDetailsPrefetcher instance = sInstance;
+        if (instance == null) {
+            synchronized (ForecastDetailsPrefetcher.class) {
+                instance = sInstance;
+                if (instance == null) {
+                    instance = new ForecastDetailsPrefetcher(context);
+                    sInstance = instance;
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Loads the details of days in the background, in a single query over their range. Days
+     * already held are skipped, and nothing is queried if all of them are.
+     *
+     * @param dates Normalized dates, e.g. of the rows on screen
+     * @return The pending prefetch, or null if there was nothing to load
+     */
+    public Future<?> prefetch(final long[] dates) {
+        long startDate = Long.MAX_VALUE;
+        long endDate = Long.MIN_VALUE;
+        for (long date : dates) {
+            if (!mCache.contains(date)) {
+                startDate = Math.min(startDate, date);
+                endDate = Math.max(endDate, date + SunshineDateUtils.DAY_IN_MILLIS);
+            }
+        }
+        if (startDate > endDate) {
+            return null;
+        }
+
+        final long rangeStart = startDate;
+        final long rangeEnd = endDate;
+        return mExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                load(rangeStart, rangeEnd);
+            }
+        });
+    }
+
+    private void load(long startDate, long endDate) {
+        /* Read first, so details queried before a change can't outlive it */
+        int generation = mCache.getGeneration();
+
+        Cursor cursor = mContext.getContentResolver().query(
+                WeatherContract.WeatherEntry.buildWeatherUriWithRange(startDate, endDate),
+                DetailsActivity.WEATHER_DETAIL_PROJECTION,
+                null,
+                null,
+                null);
+        if (cursor == null) {
+            return;
+        }
+
+        try {
+            while (cursor.moveToNext()) {
+                long date = cursor.getLong(DetailsActivity.INDEX_WEATHER_DATE);
+                if (mCache.contains(date)) {
+                    continue;
+                }
+                if (!mCache.put(date, ForecastDetailsLoader.readDetails(mContext, cursor),
+                        generation)) {
+                    return;
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Returns the prefetched details of a day, counting a hit or a miss.
+     *
+     * @param date Normalized date
+     * @return The details, or null if the day wasn't prefetched
+     */
+    public ForecastDetails get(long date) {
+        return mCache.get(date);
+    }
+
+    /**
+     * Drops every prefetched day. Done on its own whenever the forecast changes.
+     */
+    public void invalidate() {
+        mCache.invalidate();
+    }
+
+    /**
+     * Waits for the prefetches submitted so far, for tests.
+     *
+     * @return false if they didn't finish in time
+     */
+    boolean awaitPrefetches(long timeoutMillis) throws InterruptedException {
+        Future<?> marker = mExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+            }
+        });
+        try {
+            marker.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (ExecutionException e) {
+            return false;
+        } catch (TimeoutException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Records how long a tap on the list took to show its details, and logs the running figures.
+     *
+     * @param millis     From the tap to the details being bound
+     * @param prefetched Whether the details came from this cache
+     */
+    public synchronized void recordTapToDetails(long millis, boolean prefetched) {
+        if (prefetched) {
+            mPrefetchedTaps++;
+            mPrefetchedTapMillis += millis;
+        } else {
+            mQueriedTaps++;
+            mQueriedTapMillis += millis;
+        }
+        Log.v(TAG, "tap to details " + millis + " ms (" + (prefetched ? "prefetched" : "queried")
+                + "), hit rate " + Math.round(mCache.getHitRate() * 100) + "%, average "
+                + (mPrefetchedTaps == 0 ? "-" : mPrefetchedTapMillis / mPrefetchedTaps)
+                + " ms prefetched, "
+                + (mQueriedTaps == 0 ? "-" : mQueriedTapMillis / mQueriedTaps) + " ms queried");
+    }
+
+    public int getHitCount() {
+        return mCache.getHitCount();
+    }
+
+    public int getMissCount() {
+        return mCache.getMissCount();
+    }
+
+    /**
+     * @return Number of days currently prefetched
+     */
+    public int size() {
+        return mCache.size();
+    }
+}
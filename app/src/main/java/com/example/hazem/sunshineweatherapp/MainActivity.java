@@ -1,15 +1,15 @@
 package com.example.hazem.sunshineweatherapp;
 
 import android.content.Intent;
-import android.database.Cursor;
+import android.content.SharedPreferences;
+import android.database.ContentObserver;
 import android.databinding.DataBindingUtil;
 import android.net.Uri;
 import android.os.Bundle;
-import android.support.annotation.NonNull;
-import android.support.v4.app.LoaderManager;
-import android.support.v4.content.CursorLoader;
-import android.support.v4.content.Loader;
+import android.os.Handler;
+import android.os.SystemClock;
 import android.support.v7.app.AppCompatActivity;
+import android.support.v7.preference.PreferenceManager;
 import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
 import android.util.Log;
@@ -22,18 +22,42 @@ import com.example.hazem.sunshineweatherapp.data.SunshinePreferences;
 import com.example.hazem.sunshineweatherapp.data.WeatherContract;
 import com.example.hazem.sunshineweatherapp.databinding.ActivityMainBinding;
 import com.example.hazem.sunshineweatherapp.sync.SunshineSyncUtils;
-import com.example.hazem.sunshineweatherapp.utilities.FakeDataUtils;
+
+import java.util.Arrays;
 
 public class MainActivity extends AppCompatActivity implements
         ForecastAdapter.ForecastAdapterOnClickHandler,
-        LoaderManager.LoaderCallbacks<Cursor> {
+        ForecastAdapter.ForecastCountListener,
+        SharedPreferences.OnSharedPreferenceChangeListener {
 
     private static final String TAG = "MainActivity";
-    
-    private static final int FORECAST_LOADER_ID = 0;
+
+    /* How long the list has to stay still before the details of its rows are prefetched */
+    private static final long PREFETCH_IDLE_DELAY_MILLIS = 300;
 
     private int mPosition = RecyclerView.NO_POSITION;
 
+    /*
+     * Refreshes the pages the list has in memory whenever the weather table changes. Only rows
+     * whose data changed are rebound, see ForecastAdapter#refresh.
+     */
+    private final ContentObserver mForecastObserver = new ContentObserver(new Handler()) {
+        @Override
+        public void onChange(boolean selfChange) {
+            mForecastAdapter.refresh();
+        }
+    };
+
+    /* Prefetches the details of the rows on screen, see ForecastDetailsPrefetcher */
+    private final Handler mPrefetchHandler = new Handler();
+
+    private final Runnable mPrefetchVisibleDetails = new Runnable() {
+        @Override
+        public void run() {
+            prefetchVisibleDetails();
+        }
+    };
+
     private ActivityMainBinding mainBinding;
 
     private ForecastAdapter mForecastAdapter;
@@ -76,61 +100,103 @@ public class MainActivity extends AppCompatActivity implements
 
         mainBinding.rvWeatherInfo.setAdapter(mForecastAdapter);
 
+        mForecastAdapter.setForecastCountListener(this);
+
+        // prefetch the details of the rows on screen whenever the list settles on new rows
+        mainBinding.rvWeatherInfo.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+                if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+                    schedulePrefetch();
+                } else {
+                    mPrefetchHandler.removeCallbacks(mPrefetchVisibleDetails);
+                }
+            }
+        });
+        mForecastAdapter.registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
+            @Override
+            public void onChanged() {
+                schedulePrefetch();
+            }
+
+            @Override
+            public void onItemRangeChanged(int positionStart, int itemCount) {
+                schedulePrefetch();
+            }
+        });
+
         showLoading();
 
-        //start Loader Manager
-        getSupportLoaderManager().initLoader(FORECAST_LOADER_ID, null, this);
+        // load the first pages of the forecast and keep them up to date
+        getContentResolver().registerContentObserver(
+                WeatherContract.WeatherEntry.CONTENT_URI, true, mForecastObserver);
+        mForecastAdapter.refresh();
+
+        // re-render the loaded rows when the units change, the stored data stays the same
+        PreferenceManager.getDefaultSharedPreferences(this)
+                .registerOnSharedPreferenceChangeListener(this);
 
         //start the intent service that responsible for weather data sync
         SunshineSyncUtils.initialize(this);
     }
 
-    @NonNull
     @Override
-    public Loader<Cursor> onCreateLoader(int loaderId, Bundle bundle) {
-        switch (loaderId) {
-            case FORECAST_LOADER_ID:
-                Uri forecastQueryUri = WeatherContract.WeatherEntry.CONTENT_URI;
-                /* Sort order: Ascending by date */
-                String sortOrder = WeatherContract.WeatherEntry.COLUMN_DATE + " ASC";
-                /*
-                 * A SELECTION in SQL declares which rows you'd like to return. In our case, we
-                 * want all weather data from today onwards that is stored in our weather table.
-                 * We created a handy method to do that in our WeatherEntry class.
-                 */
-                String selection = WeatherContract.WeatherEntry.getSqlSelectForTodayOnwards();
-
-                return new CursorLoader(this,
-                        forecastQueryUri,
-                        MAIN_FORECAST_PROJECTION,
-                        selection,
-                        null,
-                        sortOrder);
+    protected void onDestroy() {
+        super.onDestroy();
+        mPrefetchHandler.removeCallbacks(mPrefetchVisibleDetails);
+        getContentResolver().unregisterContentObserver(mForecastObserver);
+        mForecastAdapter.release();
+        PreferenceManager.getDefaultSharedPreferences(this)
+                .unregisterOnSharedPreferenceChangeListener(this);
+    }
 
-            default:
-                throw new RuntimeException("Loader Not Implemented: " + loaderId);
+    @Override
+    public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+        if (key.equals(getString(R.string.pref_units_key))) {
+            mForecastAdapter.setUnits(SunshinePreferences.isMetric(this));
         }
     }
 
     @Override
-    public void onLoadFinished(@NonNull Loader<Cursor> loader, Cursor data) {
-
-         mForecastAdapter.swapCursor(data);
-
+    public void onForecastCountLoaded(int count) {
         if (mPosition == RecyclerView.NO_POSITION){
             mPosition = 0;
+            mainBinding.rvWeatherInfo.scrollToPosition(mPosition);
         }
 
-        mainBinding.rvWeatherInfo.smoothScrollToPosition(mPosition);
-
-        if (data.getCount() != 0){
+        if (count != 0){
             showWeatherDataView();
         }
     }
 
-    @Override
-    public void onLoaderReset(@NonNull Loader<Cursor> loader) {
-        mForecastAdapter.swapCursor(null);
+    /* Prefetches once the list has been idle for a moment, so scrolling never waits on it */
+    private void schedulePrefetch() {
+        if (mainBinding.rvWeatherInfo.getScrollState() != RecyclerView.SCROLL_STATE_IDLE) {
+            return;
+        }
+        mPrefetchHandler.removeCallbacks(mPrefetchVisibleDetails);
+        mPrefetchHandler.postDelayed(mPrefetchVisibleDetails, PREFETCH_IDLE_DELAY_MILLIS);
+    }
+
+    private void prefetchVisibleDetails() {
+        LinearLayoutManager layoutManager =
+                (LinearLayoutManager) mainBinding.rvWeatherInfo.getLayoutManager();
+        int first = layoutManager.findFirstVisibleItemPosition();
+        int last = layoutManager.findLastVisibleItemPosition();
+        if (first == RecyclerView.NO_POSITION) {
+            return;
+        }
+
+        /* Rows still showing a placeholder have no date yet, they are prefetched once loaded */
+        long[] dates = new long[last - first + 1];
+        int dateCount = 0;
+        for (int position = first; position <= last; position++) {
+            long date = mForecastAdapter.getDateAtPosition(position);
+            if (date != -1) {
+                dates[dateCount++] = date;
+            }
+        }
+        ForecastDetailsPrefetcher.getInstance(this).prefetch(Arrays.copyOf(dates, dateCount));
     }
 
     private void showWeatherDataView() {
@@ -203,6 +269,8 @@ public class MainActivity extends AppCompatActivity implements
 
         Uri uriForDateClicked = WeatherContract.WeatherEntry.buildWeatherUriWithDate(date);
         intentToStartDetailsActivity.setData(uriForDateClicked);
+        intentToStartDetailsActivity.putExtra(DetailsActivity.EXTRA_TAP_TIME,
+                SystemClock.elapsedRealtime());
 
         startActivity(intentToStartDetailsActivity);
     }
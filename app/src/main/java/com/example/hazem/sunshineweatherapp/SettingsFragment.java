@@ -10,7 +10,6 @@ import android.support.v7.preference.PreferenceFragmentCompat;
 import android.support.v7.preference.PreferenceScreen;
 
 import com.example.hazem.sunshineweatherapp.data.SunshinePreferences;
-import com.example.hazem.sunshineweatherapp.data.WeatherContract;
 import com.example.hazem.sunshineweatherapp.sync.SunshineSyncUtils;
 
 public class SettingsFragment extends PreferenceFragmentCompat
@@ -60,12 +59,9 @@ public class SettingsFragment extends PreferenceFragmentCompat
             // Wipe out any potential PlacePicker latlng values so that we can use this text entry.
             SunshinePreferences.resetLocationCoordinates(activity);
 
-            // Sync the weather if the location changes
-            SunshineSyncUtils.startImmediateSync(activity);
-        }
-        else if (key.equals(getString(R.string.pref_units_key))) {
-            // units have changed. update lists of weather entries accordingly
-            activity.getContentResolver().notifyChange(WeatherContract.WeatherEntry.CONTENT_URI, null);
+            // Sync the weather once the location stops changing, superseding older syncs
+            SunshineSyncUtils.requestLocationSync(activity, SunshinePreferences
+                    .getPreferredWeatherLocation(activity));
         }
 
         Preference preference = findPreference(key);
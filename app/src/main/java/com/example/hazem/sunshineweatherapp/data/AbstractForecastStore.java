@@ -0,0 +1,102 @@
+package com.example.hazem.sunshineweatherapp.data;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Transaction bookkeeping and listeners shared by the {@link ForecastStore} engines. Engines
+ * only lock and unlock a level, and apply or discard the writes once the outermost level ends.
+ * <p>
+ * The fields below are only touched by the thread holding the engine's write lock, between
+ * {@link #lockTransaction()} and {@link #unlockTransaction(boolean, boolean)}.
+ */
+abstract class AbstractForecastStore implements ForecastStore {
+
+    private final List<Listener> mListeners = new CopyOnWriteArrayList<>();
+
+    private int mTransactionDepth;
+
+    /* Whether the innermost level was marked successful, and whether any level wasn't */
+    private boolean mLevelSuccessful;
+    private boolean mTransactionFailed;
+
+    /* Whether a write of the transaction changed rows */
+    private boolean mTransactionChanged;
+
+    /**
+     * Enters a level of transaction, blocking while another thread holds one.
+     */
+    protected abstract void lockTransaction();
+
+    /**
+     * Leaves a level of transaction.
+     *
+     * @param outermost true when leaving the outermost level, when the writes are applied
+     * @param commit    Whether this level was marked successful, and for the outermost level,
+     *                  every level within it too
+     */
+    protected abstract void unlockTransaction(boolean outermost, boolean commit);
+
+    @Override
+    public void beginTransaction() {
+        lockTransaction();
+        if (mTransactionDepth++ == 0) {
+            mTransactionFailed = false;
+            mTransactionChanged = false;
+        }
+        mLevelSuccessful = false;
+    }
+
+    @Override
+    public void setTransactionSuccessful() {
+        checkInTransaction();
+        mLevelSuccessful = true;
+    }
+
+    @Override
+    public void endTransaction() {
+        checkInTransaction();
+        boolean levelSuccessful = mLevelSuccessful;
+        mLevelSuccessful = false;
+        if (!levelSuccessful) {
+            mTransactionFailed = true;
+        }
+
+        boolean outermost = --mTransactionDepth == 0;
+        boolean commit = outermost ? !mTransactionFailed : levelSuccessful;
+        boolean notify = outermost && commit && mTransactionChanged;
+        unlockTransaction(outermost, commit);
+
+        if (notify) {
+            for (Listener listener : mListeners) {
+                listener.onForecastChanged(this);
+            }
+        }
+    }
+
+    /* For the engines, whether the calling thread is within a transaction */
+    protected boolean inTransaction() {
+        return mTransactionDepth > 0;
+    }
+
+    /* For the engines, records that a write of the current transaction changed rows */
+    protected void markChanged() {
+        mTransactionChanged = true;
+    }
+
+    private void checkInTransaction() {
+        if (mTransactionDepth == 0) {
+            throw new IllegalStateException("Not in a transaction");
+        }
+    }
+
+    @Override
+    public void addListener(Listener listener) {
+        mListeners.add(listener);
+    }
+
+    @Override
+    public void removeListener(Listener listener) {
+        mListeners.remove(listener);
+    }
+}
@@ -0,0 +1,268 @@
+package com.example.hazem.sunshineweatherapp.data;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records how long {@link WeatherProvider} queries and {@link SunshinePreferences} reads take,
+ * on which thread and from where they were made, so disk access on the main thread and slow
+ * queries can be found in debug builds.
+ * <p>
+ * The watchdog does nothing until {@link #install(Thread, long, int, Listener)} is called, which
+ * only debug builds do. The last accesses are kept in a ring buffer that
+ * {@link #dump(PrintWriter)} prints, e.g. through
+ * {@code adb shell dumpsys activity provider WeatherProvider}. Accesses that are flagged are
+ * also handed to a listener as they happen.
+ * <p>
+ * This class doesn't depend on the Android framework, the main thread is handed in, so it can
+ * be tested by local unit tests.
+ */
+public final class AccessWatchdog {
+
+    public static final String KIND_QUERY = "query";
+    public static final String KIND_PREFERENCES = "preferences";
+
+    /* Flags of a record */
+    public static final int FLAG_MAIN_THREAD = 1;
+    public static final int FLAG_SLOW = 1 << 1;
+
+    /* More than a few frames, a query this slow would be noticed even off the main thread */
+    public static final long DEFAULT_SLOW_QUERY_MILLIS = 50;
+    public static final int DEFAULT_CAPACITY = 128;
+
+    /* Frames of these packages are skipped when looking for the call site */
+    private static final String[] FRAMEWORK_PACKAGES = {
+            "android.", "com.android.", "java.", "javax.", "dalvik.", "sun."
+    };
+
+    /**
+     * Is told about every access that was flagged, on the thread that made it.
+     */
+    public interface Listener {
+        void onFlagged(Record record);
+    }
+
+    /**
+     * One access to the weather table or the preferences.
+     */
+    public static final class Record {
+        public final String kind;
+        public final String operation;
+        public final String threadName;
+        public final long durationNanos;
+        public final String callSite;
+        public final int flags;
+
+        Record(String kind, String operation, String threadName, long durationNanos,
+               String callSite, int flags) {
+            this.kind = kind;
+            this.operation = operation;
+            this.threadName = threadName;
+            this.durationNanos = durationNanos;
+            this.callSite = callSite;
+            this.flags = flags;
+        }
+
+        public boolean isOnMainThread() {
+            return (flags & FLAG_MAIN_THREAD) != 0;
+        }
+
+        public boolean isSlow() {
+            return (flags & FLAG_SLOW) != 0;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder();
+            builder.append(kind).append(' ').append(operation)
+                    .append(' ').append(durationNanos / 1000).append("us")
+                    .append(" on ").append(threadName)
+                    .append(" from ").append(callSite);
+            if (isOnMainThread()) {
+                builder.append(" [MAIN THREAD]");
+            }
+            if (isSlow()) {
+                builder.append(" [SLOW]");
+            }
+            return builder.toString();
+        }
+    }
+
+    private static volatile AccessWatchdog sInstance;
+
+    private final Thread mMainThread;
+    private final long mSlowQueryNanos;
+    private final Listener mListener;
+
+    /* Ring buffer, mNext is where the next record goes */
+    private final Record[] mRecords;
+    private int mNext;
+    private long mRecordCount;
+    private long mFlaggedCount;
+
+    private AccessWatchdog(Thread mainThread, long slowQueryMillis, int capacity,
+                           Listener listener) {
+        mMainThread = mainThread;
+        mSlowQueryNanos = slowQueryMillis * 1000000L;
+        mListener = listener;
+        mRecords = new Record[capacity];
+    }
+
+    /**
+     * Starts recording accesses, replacing the records of a previous install.
+     *
+     * @param mainThread      The thread accesses must not be made on
+     * @param slowQueryMillis Queries that take longer than this are flagged as slow
+     * @param capacity        Number of accesses kept, the oldest are dropped first
+     * @param listener        Told about flagged accesses, may be null
+     */
+    public static void install(Thread mainThread, long slowQueryMillis, int capacity,
+                               Listener listener) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        sInstance = new AccessWatchdog(mainThread, slowQueryMillis, capacity, listener);
+    }
+
+    /**
+     * Stops recording and drops the records.
+     */
+    public static void uninstall() {
+        sInstance = null;
+    }
+
+    /**
+     * @return true if accesses are being recorded
+     */
+    public static boolean isEnabled() {
+        return sInstance != null;
+    }
+
+    /**
+     * Starts timing an access.
+     *
+     * @return The value to pass to {@link #end(String, String, long)}, 0 if not recording
+     */
+    public static long begin() {
+        return sInstance == null ? 0 : System.nanoTime();
+    }
+
+    /**
+     * Records an access that started with {@link #begin()}. Must be called on the thread that
+     * made the access, directly from the instrumented method, so the call site can be found.
+     *
+     * @param kind       {@link #KIND_QUERY} or {@link #KIND_PREFERENCES}
+     * @param operation  What was accessed, e.g. the path of the URI or the preference read
+     * @param startNanos The value returned by {@link #begin()}
+     */
+    public static void end(String kind, String operation, long startNanos) {
+        AccessWatchdog watchdog = sInstance;
+        if (watchdog == null || startNanos == 0) {
+            return;
+        }
+        watchdog.record(kind, operation, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * @return The records kept, oldest first, empty if not recording
+     */
+    public static List<Record> getRecords() {
+        AccessWatchdog watchdog = sInstance;
+        return watchdog == null ? new ArrayList<Record>() : watchdog.snapshot();
+    }
+
+    /**
+     * Prints a summary and the records kept, oldest first.
+     *
+     * @param writer Where to print
+     */
+    public static void dump(PrintWriter writer) {
+        AccessWatchdog watchdog = sInstance;
+        if (watchdog == null) {
+            writer.println("Access watchdog not installed");
+            return;
+        }
+
+        List<Record> records = watchdog.snapshot();
+        synchronized (watchdog) {
+            writer.println("Access watchdog: " + watchdog.mRecordCount + " accesses, "
+                    + watchdog.mFlaggedCount + " flagged, last " + records.size() + ":");
+        }
+        for (Record record : records) {
+            writer.print("  ");
+            writer.println(record);
+        }
+        writer.flush();
+    }
+
+    private void record(String kind, String operation, long durationNanos) {
+        Thread thread = Thread.currentThread();
+
+        int flags = 0;
+        if (thread == mMainThread) {
+            flags |= FLAG_MAIN_THREAD;
+        }
+        if (KIND_QUERY.equals(kind) && durationNanos > mSlowQueryNanos) {
+            flags |= FLAG_SLOW;
+        }
+
+        Record record = new Record(kind, operation, thread.getName(), durationNanos,
+                findCallSite(new Throwable().getStackTrace()), flags);
+
+        synchronized (this) {
+            mRecords[mNext] = record;
+            mNext = (mNext + 1) % mRecords.length;
+            mRecordCount++;
+            if (flags != 0) {
+                mFlaggedCount++;
+            }
+        }
+
+        if (flags != 0 && mListener != null) {
+            mListener.onFlagged(record);
+        }
+    }
+
+    private synchronized List<Record> snapshot() {
+        List<Record> records = new ArrayList<>(mRecords.length);
+        for (int i = 0; i < mRecords.length; i++) {
+            Record record = mRecords[(mNext + i) % mRecords.length];
+            if (record != null) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    /*
+     * The stack is this class, then the instrumented method, then possibly framework frames
+     * (ContentResolver and the provider's transport for a query), then the caller we want.
+     */
+    static String findCallSite(StackTraceElement[] stack) {
+        int i = 0;
+        while (i < stack.length && stack[i].getClassName().equals(AccessWatchdog.class.getName())) {
+            i++;
+        }
+        /* The instrumented method itself */
+        i++;
+        while (i < stack.length && isFramework(stack[i].getClassName())) {
+            i++;
+        }
+        if (i >= stack.length) {
+            return "unknown";
+        }
+        StackTraceElement element = stack[i];
+        return element.getClassName() + "." + element.getMethodName()
+                + "(" + element.getFileName() + ":" + element.getLineNumber() + ")";
+    }
+
+    private static boolean isFramework(String className) {
+        for (String prefix : FRAMEWORK_PACKAGES) {
+            if (className.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
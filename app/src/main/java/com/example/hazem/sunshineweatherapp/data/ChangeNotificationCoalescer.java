@@ -0,0 +1,119 @@
+package com.example.hazem.sunshineweatherapp.data;
+
+import android.content.ContentResolver;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Collects the URIs {@link WeatherProvider} changes and notifies each of them once, after a short
+ * quiet period. A sync that deletes and then inserts the forecast therefore wakes every
+ * observing loader once instead of twice.
+ * <p>
+ * Every new change restarts the quiet period, but a notification is never delayed by more than
+ * {@link #MAX_DELAY_MILLIS} after the first pending change. Coalescing can be switched off with
+ * {@link #setEnabled(boolean)}, in which case every change is notified immediately.
+ */
+public class ChangeNotificationCoalescer {
+
+    /* Quiet period after the last change before observers are notified */
+    public static final long WINDOW_MILLIS = 100;
+
+    /* Upper bound on how long a change can wait, so a steady stream of writes can't starve it */
+    public static final long MAX_DELAY_MILLIS = 500;
+
+    private static volatile boolean sEnabled = true;
+
+    private final ContentResolver mContentResolver;
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    private final Set<Uri> mPendingUris = new LinkedHashSet<>();
+
+    /* Uptime at which the oldest pending change was recorded */
+    private long mFirstPendingUptime;
+
+    private final Runnable mFlushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    public ChangeNotificationCoalescer(ContentResolver contentResolver) {
+        mContentResolver = contentResolver;
+    }
+
+    /**
+     * Switches coalescing on or off for every provider in the process. Tests that count
+     * notifications can turn it off to get one notification per write.
+     *
+     * @param enabled false to notify every change immediately
+     */
+    public static void setEnabled(boolean enabled) {
+        sEnabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    /**
+     * Records a change. Observers of the URI are notified when the quiet period ends.
+     *
+     * @param uri The URI that changed
+     */
+    public void onChange(Uri uri) {
+        if (!sEnabled) {
+            mContentResolver.notifyChange(uri, null);
+            return;
+        }
+
+        synchronized (mPendingUris) {
+            long now = SystemClock.uptimeMillis();
+            if (mPendingUris.isEmpty()) {
+                mFirstPendingUptime = now;
+            }
+            mPendingUris.add(uri);
+
+            long flushAt = Math.min(now + WINDOW_MILLIS, mFirstPendingUptime + MAX_DELAY_MILLIS);
+            mHandler.removeCallbacks(mFlushRunnable);
+            mHandler.postAtTime(mFlushRunnable, flushAt);
+        }
+    }
+
+    /**
+     * Records the changes of a transaction that just committed and notifies them right away,
+     * together with anything else that was pending.
+     *
+     * @param uris The URIs changed by the transaction
+     */
+    public void onTransactionCommitted(Set<Uri> uris) {
+        synchronized (mPendingUris) {
+            mPendingUris.addAll(uris);
+        }
+        flush();
+    }
+
+    /**
+     * Notifies every pending URI once.
+     */
+    public void flush() {
+        List<Uri> uris;
+        synchronized (mPendingUris) {
+            mHandler.removeCallbacks(mFlushRunnable);
+            uris = new ArrayList<>(mPendingUris);
+            mPendingUris.clear();
+        }
+
+        for (Uri uri : uris) {
+            mContentResolver.notifyChange(uri, null);
+        }
+    }
+}
@@ -0,0 +1,334 @@
+package com.example.hazem.sunshineweatherapp.data;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+import android.util.Log;
+
+import com.example.hazem.sunshineweatherapp.utilities.SunshineDateUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * The first days of the forecast, published by each sync to a small memory-mapped file, so the
+ * weather notification can read today's values without opening the database or allocating a
+ * cursor. Screens still query {@link WeatherProvider}.
+ * <p>
+ * The file has a fixed layout: a header, then {@link #MAX_DAYS} fixed-size day records from
+ * the first day on.
+ * <pre>
+ *   0  int   magic
+ *   4  int   layout version
+ *   8  int   sequence, odd while a publish is in progress
+ *  12  int   number of days
+ *  16  long  version, incremented by every publish
+ *  24  long  publish time
+ *  32  day records of {@link #DAY_BYTES} bytes: date, weather id, then the doubles of
+ *      {@link #PROJECTION} from the min temperature on
+ * </pre>
+ * Readers don't lock: they read the sequence, the values, and the sequence again, and retry if
+ * it changed or was odd, as a seqlock does. Publishes are serialized by the instance.
+ */
+public class CurrentForecastSnapshot {
+
+    private static final String TAG = CurrentForecastSnapshot.class.getSimpleName();
+
+    public static final String FILE_NAME = "current_forecast.snapshot";
+
+    public static final int MAX_DAYS = 14;
+
+    /* Columns a publish reads, in the order of the day records */
+    public static final String[] PROJECTION = {
+            WeatherContract.WeatherEntry.COLUMN_DATE,
+            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
+            WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
+            WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherContract.WeatherEntry.COLUMN_HUMIDITY,
+            WeatherContract.WeatherEntry.COLUMN_PRESSURE,
+            WeatherContract.WeatherEntry.COLUMN_WIND_SPEED,
+            WeatherContract.WeatherEntry.COLUMN_DEGREES,
+            WeatherContract.WeatherEntry.COLUMN_APPARENT_TEMP,
+            WeatherContract.WeatherEntry.COLUMN_DEW_POINT
+    };
+
+    private static final int INDEX_DATE = 0;
+    private static final int INDEX_WEATHER_ID = 1;
+    private static final int FIRST_VALUE_INDEX = 2;
+    private static final int VALUES = PROJECTION.length - FIRST_VALUE_INDEX;
+
+    private static final int MAGIC = 0x534e4643;
+    private static final int LAYOUT_VERSION = 1;
+
+    private static final int MAGIC_OFFSET = 0;
+    private static final int LAYOUT_VERSION_OFFSET = 4;
+    private static final int SEQUENCE_OFFSET = 8;
+    private static final int DAY_COUNT_OFFSET = 12;
+    private static final int VERSION_OFFSET = 16;
+    private static final int PUBLISHED_AT_OFFSET = 24;
+    private static final int HEADER_BYTES = 32;
+
+    /* Date, weather id padded to 8 bytes, the values */
+    private static final int DAY_BYTES = 8 + 8 + VALUES * 8;
+
+    public static final int FILE_BYTES = HEADER_BYTES + MAX_DAYS * DAY_BYTES;
+
+    /* Retries before a reader gives up on a writer that keeps publishing */
+    private static final int MAX_READ_ATTEMPTS = 100;
+
+    private static volatile CurrentForecastSnapshot sInstance;
+
+    /*
+     * Written and read around the reads and writes of the buffer, as a fence: a volatile write
+     * keeps the accesses before it from moving after it, and the volatile read that follows
+     * keeps the accesses after it from moving before.
+     */
+    private static volatile int sFence;
+
+    /* Null if the file couldn't be mapped, in which case there is never anything to read */
+    private final MappedByteBuffer mBuffer;
+
+    /**
+     * One day of the snapshot. Readers keep one and have it filled by
+     * {@link #readDay(long, Day)}, so reading allocates nothing.
+     */
+    public static final class Day {
+        long mDate;
+        int mWeatherId;
+        final double[] mValues = new double[VALUES];
+
+        public long getDate() {
+            return mDate;
+        }
+
+        public int getWeatherId() {
+            return mWeatherId;
+        }
+
+        public double getMinTemp() {
+            return mValues[0];
+        }
+
+        public double getMaxTemp() {
+            return mValues[1];
+        }
+
+        public double getHumidity() {
+            return mValues[2];
+        }
+
+        public double getPressure() {
+            return mValues[3];
+        }
+
+        public double getWindSpeed() {
+            return mValues[4];
+        }
+
+        public double getDegrees() {
+            return mValues[5];
+        }
+
+        public double getApparentTemp() {
+            return mValues[6];
+        }
+
+        public double getDewPoint() {
+            return mValues[7];
+        }
+    }
+
+    /**
+     * Returns the snapshot of the app, mapping its file on first use.
+     *
+     * @param context Used to find the file
+     * @return The snapshot, shared by the whole process
+     */
+    public static CurrentForecastSnapshot getInstance(Context context) {
+        CurrentForecastSnapshot instance = sInstance;
+        if (instance == null) {
+            synchronized (CurrentForecastSnapshot.class) {
+                instance = sInstance;
+                if (instance == null) {
+                    instance = new CurrentForecastSnapshot(
+                            new File(context.getApplicationContext().getFilesDir(), FILE_NAME));
+                    sInstance = instance;
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Maps a snapshot file, creating it if needed. A file of another layout, or left mid-publish
+     * by a process that died, is reset to an empty snapshot.
+     *
+     * @param file The file, e.g. one of a test's own
+     */
+    CurrentForecastSnapshot(File file) {
+        MappedByteBuffer buffer = null;
+        try {
+            RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+            try {
+                randomAccessFile.setLength(FILE_BYTES);
+                /* The mapping stays valid once the file is closed */
+                buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0,
+                        FILE_BYTES);
+            } finally {
+                randomAccessFile.close();
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Can't map " + file + ": " + e.getMessage());
+        }
+        mBuffer = buffer;
+
+        if (mBuffer != null && (mBuffer.getInt(MAGIC_OFFSET) != MAGIC
+                || mBuffer.getInt(LAYOUT_VERSION_OFFSET) != LAYOUT_VERSION
+                || (mBuffer.getInt(SEQUENCE_OFFSET) & 1) != 0)) {
+            mBuffer.putInt(MAGIC_OFFSET, MAGIC);
+            mBuffer.putInt(LAYOUT_VERSION_OFFSET, LAYOUT_VERSION);
+            mBuffer.putInt(SEQUENCE_OFFSET, 0);
+            mBuffer.putInt(DAY_COUNT_OFFSET, 0);
+            mBuffer.putLong(VERSION_OFFSET, 0);
+            mBuffer.putLong(PUBLISHED_AT_OFFSET, 0);
+        }
+    }
+
+    private static void fence() {
+        sFence = 0;
+        int ignored = sFence;
+    }
+
+    /**
+     * Reads a day without allocating.
+     *
+     * @param date The normalized date, e.g. today
+     * @param out  Filled with the day if it is in the snapshot
+     * @return false if the day isn't in the snapshot, or couldn't be read consistently because
+     * publishes kept coming
+     */
+    public boolean readDay(long date, Day out) {
+        if (mBuffer == null) {
+            return false;
+        }
+
+        for (int attempt = 0; attempt < MAX_READ_ATTEMPTS; attempt++) {
+            int sequence = mBuffer.getInt(SEQUENCE_OFFSET);
+            if ((sequence & 1) != 0) {
+                Thread.yield();
+                continue;
+            }
+            fence();
+
+            boolean found = false;
+            int dayCount = mBuffer.getInt(DAY_COUNT_OFFSET);
+            if (dayCount > 0 && dayCount <= MAX_DAYS) {
+                long firstDate = mBuffer.getLong(HEADER_BYTES);
+                long index = (date - firstDate) / SunshineDateUtils.DAY_IN_MILLIS;
+                if (date >= firstDate && index < dayCount) {
+                    int offset = HEADER_BYTES + (int) index * DAY_BYTES;
+                    out.mDate = mBuffer.getLong(offset);
+                    out.mWeatherId = mBuffer.getInt(offset + 8);
+                    for (int i = 0; i < VALUES; i++) {
+                        out.mValues[i] = mBuffer.getDouble(offset + 16 + i * 8);
+                    }
+                    found = out.mDate == date;
+                }
+            }
+
+            fence();
+            if (mBuffer.getInt(SEQUENCE_OFFSET) == sequence) {
+                return found;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return Version of the snapshot, 0 if nothing was ever published
+     */
+    public long getVersion() {
+        if (mBuffer == null) {
+            return 0;
+        }
+        while (true) {
+            int sequence = mBuffer.getInt(SEQUENCE_OFFSET);
+            fence();
+            long version = mBuffer.getLong(VERSION_OFFSET);
+            fence();
+            if ((sequence & 1) == 0 && mBuffer.getInt(SEQUENCE_OFFSET) == sequence) {
+                return version;
+            }
+            Thread.yield();
+        }
+    }
+
+    /**
+     * Publishes the forecast from today on, as the provider holds it. Called by a sync once it
+     * has written the forecast.
+     *
+     * @param resolver Used to read the forecast
+     */
+    public void publish(ContentResolver resolver) {
+        long today = SunshineDateUtils.normalizeDate(System.currentTimeMillis());
+        Cursor cursor = resolver.query(
+                WeatherContract.WeatherEntry.buildWeatherUriFromDate(today, MAX_DAYS),
+                PROJECTION,
+                null,
+                null,
+                WeatherContract.WeatherEntry.COLUMN_DATE + " ASC");
+        if (cursor == null) {
+            return;
+        }
+        try {
+            publish(cursor);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Publishes consecutive days.
+     *
+     * @param cursor Rows of {@link #PROJECTION} by ascending date, one per day; only the first
+     *               {@link #MAX_DAYS} are published, and none after a missing day
+     */
+    public synchronized void publish(Cursor cursor) {
+        if (mBuffer == null) {
+            return;
+        }
+
+        /* Runs the query now rather than while readers wait for the publish to end */
+        cursor.getCount();
+
+        int sequence = mBuffer.getInt(SEQUENCE_OFFSET);
+        mBuffer.putInt(SEQUENCE_OFFSET, sequence + 1);
+        fence();
+
+        int dayCount = 0;
+        long expectedDate = 0;
+        while (dayCount < MAX_DAYS && cursor.moveToNext()) {
+            long date = cursor.getLong(INDEX_DATE);
+            if (dayCount > 0 && date != expectedDate) {
+                break;
+            }
+            int offset = HEADER_BYTES + dayCount * DAY_BYTES;
+            mBuffer.putLong(offset, date);
+            mBuffer.putInt(offset + 8, cursor.getInt(INDEX_WEATHER_ID));
+            for (int i = 0; i < VALUES; i++) {
+                mBuffer.putDouble(offset + 16 + i * 8, cursor.getDouble(FIRST_VALUE_INDEX + i));
+            }
+            expectedDate = date + SunshineDateUtils.DAY_IN_MILLIS;
+            dayCount++;
+        }
+        mBuffer.putInt(DAY_COUNT_OFFSET, dayCount);
+        mBuffer.putLong(VERSION_OFFSET, mBuffer.getLong(VERSION_OFFSET) + 1);
+        mBuffer.putLong(PUBLISHED_AT_OFFSET, System.currentTimeMillis());
+
+        fence();
+        mBuffer.putInt(SEQUENCE_OFFSET, sequence + 2);
+    }
+}
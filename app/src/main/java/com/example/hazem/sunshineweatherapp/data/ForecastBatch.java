@@ -0,0 +1,392 @@
+package com.example.hazem.sunshineweatherapp.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.net.Uri;
+import android.os.Bundle;
+
+import com.example.hazem.sunshineweatherapp.data.WeatherContract.WeatherEntry;
+
+import java.util.Arrays;
+
+/**
+ * Rows of the daily forecast held column by column in primitive arrays. This is how the forecast
+ * moves through the app: NetworkUtils parses it, ForecastEnricher enriches it, the alert engine
+ * checks it and the {@link ForecastStore} writes it. No row is a map and no value is boxed.
+ * Only callers of {@link WeatherProvider#bulkInsert} outside the app use ContentValues, and the
+ * provider converts those with {@link #fromContentValues(ContentValues[])}.
+ * <p>
+ * A row always has a date. Its other columns are either set or not. A row that sets only some
+ * of them updates just those columns of its day when written, see {@link ForecastStore#upsert}.
+ */
+public final class ForecastBatch {
+
+    /* Value columns, in the order of ForecastStore#COLUMNS from the min temperature on */
+    public static final int MIN_TEMP = 0;
+    public static final int MAX_TEMP = 1;
+    public static final int HUMIDITY = 2;
+    public static final int PRESSURE = 3;
+    public static final int WIND_SPEED = 4;
+    public static final int DEGREES = 5;
+    public static final int APPARENT_TEMP = 6;
+    public static final int DEW_POINT = 7;
+    public static final int PRESSURE_TREND = 8;
+    public static final int COMFORT_INDEX = 9;
+
+    public static final int VALUE_COLUMNS = 10;
+
+    /* The value columns a new day must hold, from MIN_TEMP on; the others are derived */
+    public static final int REQUIRED_VALUE_COLUMNS = 6;
+
+    private static final String[] VALUE_COLUMN_NAMES = {
+            WeatherEntry.COLUMN_MIN_TEMP,
+            WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherEntry.COLUMN_HUMIDITY,
+            WeatherEntry.COLUMN_PRESSURE,
+            WeatherEntry.COLUMN_WIND_SPEED,
+            WeatherEntry.COLUMN_DEGREES,
+            WeatherEntry.COLUMN_APPARENT_TEMP,
+            WeatherEntry.COLUMN_DEW_POINT,
+            WeatherEntry.COLUMN_PRESSURE_TREND,
+            WeatherEntry.COLUMN_COMFORT_INDEX
+    };
+
+    /* Set columns of a row: bit n for value column n, and the bit above them for the weather id */
+    private static final int WEATHER_ID_BIT = 1 << VALUE_COLUMNS;
+    private static final int REQUIRED_BITS = WEATHER_ID_BIT | ((1 << REQUIRED_VALUE_COLUMNS) - 1);
+
+    /* Keys of the bundle a batch travels in, see toBundle */
+    private static final String KEY_SIZE = "size";
+    private static final String KEY_DATES = "dates";
+    private static final String KEY_WEATHER_IDS = "weatherIds";
+    private static final String KEY_SET_COLUMNS = "setColumns";
+    private static final String KEY_VALUES = "values";
+
+    private int mSize;
+    private long[] mDates;
+    private int[] mWeatherIds;
+    private int[] mSetColumns;
+    private final double[][] mValues = new double[VALUE_COLUMNS][];
+
+    /**
+     * @param capacity Number of rows to make room for, the batch grows past it if needed
+     */
+    public ForecastBatch(int capacity) {
+        mDates = new long[capacity];
+        mWeatherIds = new int[capacity];
+        mSetColumns = new int[capacity];
+        for (int column = 0; column < VALUE_COLUMNS; column++) {
+            mValues[column] = new double[capacity];
+        }
+    }
+
+    /**
+     * @param column One of the value columns, e.g. {@link #MAX_TEMP}
+     * @return Its name in {@link WeatherEntry}
+     */
+    public static String getValueColumnName(int column) {
+        return VALUE_COLUMN_NAMES[column];
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Empties the batch, keeping its arrays for the next rows.
+     */
+    public void clear() {
+        mSize = 0;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= mDates.length) {
+            return;
+        }
+        capacity = Math.max(capacity, Math.max(16, mDates.length * 2));
+        mDates = Arrays.copyOf(mDates, capacity);
+        mWeatherIds = Arrays.copyOf(mWeatherIds, capacity);
+        mSetColumns = Arrays.copyOf(mSetColumns, capacity);
+        for (int column = 0; column < VALUE_COLUMNS; column++) {
+            mValues[column] = Arrays.copyOf(mValues[column], capacity);
+        }
+    }
+
+    /**
+     * Adds a row with nothing but a date.
+     *
+     * @param date The normalized date
+     * @return Index of the row
+     */
+    public int addRow(long date) {
+        ensureCapacity(mSize + 1);
+        mDates[mSize] = date;
+        mSetColumns[mSize] = 0;
+        return mSize++;
+    }
+
+    /**
+     * Adds a row with every column a new day must hold.
+     *
+     * @return Index of the row
+     */
+    public int addDay(long date, int weatherId, double minTemp, double maxTemp, double humidity,
+                      double pressure, double windSpeed, double degrees) {
+        int row = addRow(date);
+        mWeatherIds[row] = weatherId;
+        mValues[MIN_TEMP][row] = minTemp;
+        mValues[MAX_TEMP][row] = maxTemp;
+        mValues[HUMIDITY][row] = humidity;
+        mValues[PRESSURE][row] = pressure;
+        mValues[WIND_SPEED][row] = windSpeed;
+        mValues[DEGREES][row] = degrees;
+        mSetColumns[row] = REQUIRED_BITS;
+        return row;
+    }
+
+    /**
+     * Adds a copy of a row of another batch.
+     *
+     * @return Index of the row
+     */
+    public int addRow(ForecastBatch source, int sourceRow) {
+        int row = addRow(source.mDates[sourceRow]);
+        mWeatherIds[row] = source.mWeatherIds[sourceRow];
+        for (int column = 0; column < VALUE_COLUMNS; column++) {
+            mValues[column][row] = source.mValues[column][sourceRow];
+        }
+        mSetColumns[row] = source.mSetColumns[sourceRow];
+        return row;
+    }
+
+    public long getDate(int row) {
+        return mDates[row];
+    }
+
+    public void setDate(int row, long date) {
+        mDates[row] = date;
+    }
+
+    public boolean hasWeatherId(int row) {
+        return (mSetColumns[row] & WEATHER_ID_BIT) != 0;
+    }
+
+    public int getWeatherId(int row) {
+        return mWeatherIds[row];
+    }
+
+    public void setWeatherId(int row, int weatherId) {
+        mWeatherIds[row] = weatherId;
+        mSetColumns[row] |= WEATHER_ID_BIT;
+    }
+
+    public boolean hasValue(int row, int column) {
+        return (mSetColumns[row] & (1 << column)) != 0;
+    }
+
+    /**
+     * @return The value, 0 if not set
+     */
+    public double getValue(int row, int column) {
+        return hasValue(row, column) ? mValues[column][row] : 0;
+    }
+
+    public void setValue(int row, int column, double value) {
+        mValues[column][row] = value;
+        mSetColumns[row] |= 1 << column;
+    }
+
+    /**
+     * @return Whether the row holds every column a new day must hold
+     */
+    public boolean isComplete(int row) {
+        return (mSetColumns[row] & REQUIRED_BITS) == REQUIRED_BITS;
+    }
+
+    /* The set columns of a row as a bit set, rows setting the same columns have the same one */
+    int getSetColumns(int row) {
+        return mSetColumns[row];
+    }
+
+    /**
+     * Returns the dates for reading in bulk. The array is the batch's own and may be longer than
+     * the batch: only the first {@link #size()} elements are rows.
+     */
+    public long[] getDates() {
+        return mDates;
+    }
+
+    /**
+     * Same as {@link #getDates()} for the weather ids, which are meaningless where not set.
+     */
+    public int[] getWeatherIds() {
+        return mWeatherIds;
+    }
+
+    /**
+     * Same as {@link #getDates()} for a value column, meaningless where not set. After writing
+     * to the array in bulk, mark the rows written with {@link #markValuesSet(int, int, int)}.
+     *
+     * @param column One of the value columns, e.g. {@link #MAX_TEMP}
+     */
+    public double[] getValues(int column) {
+        return mValues[column];
+    }
+
+    /**
+     * Marks a value column as set in a range of rows, once it has been written through
+     * {@link #getValues(int)}.
+     *
+     * @param column One of the value columns
+     * @param from   First row
+     * @param to     Row after the last one
+     */
+    public void markValuesSet(int column, int from, int to) {
+        int bit = 1 << column;
+        for (int row = from; row < to; row++) {
+            mSetColumns[row] |= bit;
+        }
+    }
+
+    /**
+     * Converts a row for a caller that takes ContentValues.
+     */
+    public ContentValues toContentValues(int row) {
+        ContentValues values = new ContentValues();
+        values.put(WeatherEntry.COLUMN_DATE, mDates[row]);
+        if (hasWeatherId(row)) {
+            values.put(WeatherEntry.COLUMN_WEATHER_ID, mWeatherIds[row]);
+        }
+        for (int column = 0; column < VALUE_COLUMNS; column++) {
+            if (hasValue(row, column)) {
+                values.put(VALUE_COLUMN_NAMES[column], mValues[column][row]);
+            }
+        }
+        return values;
+    }
+
+    public ContentValues[] toContentValues() {
+        ContentValues[] rows = new ContentValues[mSize];
+        for (int row = 0; row < mSize; row++) {
+            rows[row] = toContentValues(row);
+        }
+        return rows;
+    }
+
+    /**
+     * Converts rows as passed to {@link WeatherProvider#bulkInsert}. An _id is ignored, as the
+     * store assigns its own.
+     *
+     * @param rows Rows with the columns of {@link WeatherEntry}
+     * @return The rows as a batch
+     * @throws IllegalArgumentException if a row has no date, a column the weather table
+     *                                  doesn't have, or a null or non-numeric value, none of
+     *                                  which the table's NOT NULL columns would take
+     */
+    public static ForecastBatch fromContentValues(ContentValues[] rows) {
+        ForecastBatch batch = new ForecastBatch(rows.length);
+        for (ContentValues values : rows) {
+            Long date = values.getAsLong(WeatherEntry.COLUMN_DATE);
+            if (date == null) {
+                throw new IllegalArgumentException("Forecast row without a date");
+            }
+            int row = batch.addRow(date);
+
+            for (String column : values.keySet()) {
+                if (WeatherEntry.COLUMN_DATE.equals(column) || WeatherEntry._ID.equals(column)) {
+                    continue;
+                }
+                if (WeatherEntry.COLUMN_WEATHER_ID.equals(column)) {
+                    batch.setWeatherId(row, requireNumber(values, column).intValue());
+                    continue;
+                }
+                int valueColumn = indexOfValueColumn(column);
+                if (valueColumn < 0) {
+                    throw new IllegalArgumentException("Unknown column: " + column);
+                }
+                batch.setValue(row, valueColumn, requireNumber(values, column));
+            }
+        }
+        return batch;
+    }
+
+    /* getAsDouble returns null for both a null value and a string that isn't a number */
+    private static Double requireNumber(ContentValues values, String column) {
+        Double value = values.getAsDouble(column);
+        if (value == null) {
+            throw new IllegalArgumentException("Not a number in " + column + ": "
+                    + values.get(column));
+        }
+        return value;
+    }
+
+    private static int indexOfValueColumn(String column) {
+        for (int i = 0; i < VALUE_COLUMNS; i++) {
+            if (VALUE_COLUMN_NAMES[i].equals(column)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Puts the batch in a bundle. The bundle holds the batch's own arrays rather than copies,
+     * so neither is to be changed while the other is in use.
+     */
+    public Bundle toBundle() {
+        Bundle bundle = new Bundle();
+        bundle.putInt(KEY_SIZE, mSize);
+        bundle.putLongArray(KEY_DATES, mDates);
+        bundle.putIntArray(KEY_WEATHER_IDS, mWeatherIds);
+        bundle.putIntArray(KEY_SET_COLUMNS, mSetColumns);
+        for (int column = 0; column < VALUE_COLUMNS; column++) {
+            bundle.putDoubleArray(KEY_VALUES + column, mValues[column]);
+        }
+        return bundle;
+    }
+
+    /**
+     * Reads a batch put in a bundle by {@link #toBundle()}, sharing its arrays.
+     *
+     * @throws IllegalArgumentException if the bundle doesn't hold a batch
+     */
+    public static ForecastBatch fromBundle(Bundle bundle) {
+        ForecastBatch batch = new ForecastBatch(0);
+        int size = bundle == null ? -1 : bundle.getInt(KEY_SIZE, -1);
+        long[] dates = size < 0 ? null : bundle.getLongArray(KEY_DATES);
+        int[] weatherIds = size < 0 ? null : bundle.getIntArray(KEY_WEATHER_IDS);
+        int[] setColumns = size < 0 ? null : bundle.getIntArray(KEY_SET_COLUMNS);
+        if (dates == null || weatherIds == null || setColumns == null || dates.length < size
+                || weatherIds.length < size || setColumns.length < size) {
+            throw new IllegalArgumentException("Not a forecast batch: " + bundle);
+        }
+        for (int column = 0; column < VALUE_COLUMNS; column++) {
+            double[] values = bundle.getDoubleArray(KEY_VALUES + column);
+            if (values == null || values.length < size) {
+                throw new IllegalArgumentException("Not a forecast batch: " + bundle);
+            }
+            batch.mValues[column] = values;
+        }
+        batch.mSize = size;
+        batch.mDates = dates;
+        batch.mWeatherIds = weatherIds;
+        batch.mSetColumns = setColumns;
+        return batch;
+    }
+
+    /**
+     * Writes the batch as {@link ContentResolver#bulkInsert} would write its rows, through
+     * {@link WeatherEntry#METHOD_BULK_INSERT_BATCH}. Within the app's process the bundle reaches
+     * the provider as it is, without a copy.
+     *
+     * @param resolver Resolver of the app's WeatherProvider
+     * @param uri      {@link WeatherEntry#CONTENT_URI}, {@link WeatherEntry#REPLACE_URI} or a
+     *                 patch URI
+     * @return What bulkInsert would have returned
+     */
+    public int bulkInsert(ContentResolver resolver, Uri uri) {
+        Bundle result = resolver.call(uri, WeatherEntry.METHOD_BULK_INSERT_BATCH, uri.toString(),
+                toBundle());
+        return result == null ? 0 : result.getInt(WeatherEntry.EXTRA_ROW_COUNT);
+    }
+}
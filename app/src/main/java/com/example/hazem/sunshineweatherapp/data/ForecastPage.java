@@ -0,0 +1,64 @@
+package com.example.hazem.sunshineweatherapp.data;
+
+/**
+ * One page of the forecast list, holding only the columns the main list shows
+ * ({@link com.example.hazem.sunshineweatherapp.MainActivity#MAIN_FORECAST_PROJECTION}) in
+ * primitive arrays, sorted by ascending date.
+ */
+public class ForecastPage {
+
+    private final int mSize;
+    private final long[] mDates;
+    private final double[] mMaxTemps;
+    private final double[] mMinTemps;
+    private final int[] mWeatherIds;
+
+    public ForecastPage(long[] dates, double[] maxTemps, double[] minTemps, int[] weatherIds, int size) {
+        mSize = size;
+        mDates = dates;
+        mMaxTemps = maxTemps;
+        mMinTemps = minTemps;
+        mWeatherIds = weatherIds;
+    }
+
+    public int getSize() {
+        return mSize;
+    }
+
+    public long getDate(int row) {
+        return mDates[row];
+    }
+
+    public double getMaxTemp(int row) {
+        return mMaxTemps[row];
+    }
+
+    public double getMinTemp(int row) {
+        return mMinTemps[row];
+    }
+
+    public int getWeatherId(int row) {
+        return mWeatherIds[row];
+    }
+
+    /* The date of the last row, which is the key the following page is loaded after */
+    public long getLastDate() {
+        return mDates[mSize - 1];
+    }
+
+    /**
+     * Returns true if a row of this page shows exactly the same data as a row of another page,
+     * in which case it doesn't need to be bound again.
+     *
+     * @param row       Row in this page
+     * @param other     The page to compare with
+     * @param otherRow  Row in the other page
+     * @return true if both rows have the same contents
+     */
+    public boolean isSameRow(int row, ForecastPage other, int otherRow) {
+        return mDates[row] == other.mDates[otherRow]
+                && mWeatherIds[row] == other.mWeatherIds[otherRow]
+                && Double.compare(mMaxTemps[row], other.mMaxTemps[otherRow]) == 0
+                && Double.compare(mMinTemps[row], other.mMinTemps[otherRow]) == 0;
+    }
+}
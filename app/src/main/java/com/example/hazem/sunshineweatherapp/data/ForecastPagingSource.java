@@ -0,0 +1,95 @@
+package com.example.hazem.sunshineweatherapp.data;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+
+import com.example.hazem.sunshineweatherapp.MainActivity;
+import com.example.hazem.sunshineweatherapp.recyclerViewPack.ForecastPageWindow;
+import com.example.hazem.sunshineweatherapp.utilities.SunshineDateUtils;
+
+/**
+ * Loads the forecast list from {@link WeatherProvider} one page at a time. Pages are read by
+ * date (from the day after the last date of the previous page) rather than by offset whenever
+ * possible, so each page is a short range scan of the forecast store no matter how deep the
+ * list is.
+ */
+public class ForecastPagingSource implements ForecastPageWindow.PageLoader {
+
+    private static final String[] COUNT_PROJECTION = {"COUNT(*)"};
+
+    private static final String SORT_ORDER = WeatherContract.WeatherEntry.COLUMN_DATE + " ASC";
+
+    private final ContentResolver mContentResolver;
+
+    public ForecastPagingSource(Context context) {
+        mContentResolver = context.getApplicationContext().getContentResolver();
+    }
+
+    @Override
+    public int loadCount() {
+        Cursor cursor = mContentResolver.query(
+                WeatherContract.WeatherEntry.buildWeatherUriFromToday(),
+                COUNT_PROJECTION,
+                null,
+                null,
+                null);
+
+        if (cursor == null) {
+            return 0;
+        }
+        int count = cursor.moveToFirst() ? cursor.getInt(0) : 0;
+        cursor.close();
+        return count;
+    }
+
+    @Override
+    public ForecastPage loadPageAfter(long afterDate, int size) {
+        long today = SunshineDateUtils.normalizeDate(System.currentTimeMillis());
+
+        Cursor cursor = mContentResolver.query(
+                WeatherContract.WeatherEntry.buildWeatherUriFromDate(
+                        Math.max(today, afterDate + 1), size),
+                MainActivity.MAIN_FORECAST_PROJECTION,
+                null,
+                null,
+                SORT_ORDER);
+
+        return readPage(cursor, size);
+    }
+
+    @Override
+    public ForecastPage loadPageAt(int offset, int size) {
+        long today = SunshineDateUtils.normalizeDate(System.currentTimeMillis());
+
+        Cursor cursor = mContentResolver.query(
+                WeatherContract.WeatherEntry.buildWeatherUriFromDate(today, offset, size),
+                MainActivity.MAIN_FORECAST_PROJECTION,
+                null,
+                null,
+                SORT_ORDER);
+
+        return readPage(cursor, size);
+    }
+
+    private static ForecastPage readPage(Cursor cursor, int size) {
+        long[] dates = new long[size];
+        double[] maxTemps = new double[size];
+        double[] minTemps = new double[size];
+        int[] weatherIds = new int[size];
+
+        int rows = 0;
+        if (cursor != null) {
+            while (rows < size && cursor.moveToNext()) {
+                dates[rows] = cursor.getLong(MainActivity.INDEX_WEATHER_DATE);
+                maxTemps[rows] = cursor.getDouble(MainActivity.INDEX_WEATHER_MAX_TEMP);
+                minTemps[rows] = cursor.getDouble(MainActivity.INDEX_WEATHER_MIN_TEMP);
+                weatherIds[rows] = cursor.getInt(MainActivity.INDEX_WEATHER_CONDITION_ID);
+                rows++;
+            }
+            cursor.close();
+        }
+
+        return new ForecastPage(dates, maxTemps, minTemps, weatherIds, rows);
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.hazem.sunshineweatherapp.data;
+
+import android.database.Cursor;
+
+/**
+ * Storage engine underneath {@link WeatherProvider} for the daily forecast, one row per
+ * normalized date with the columns of {@link WeatherContract.WeatherEntry}. The provider maps its
+ * URIs onto these operations, so the forecast can be kept in SQLite
+ * ({@link SqliteForecastStore}) or in memory ({@link InMemoryForecastStore}), chosen by
+ * {@link com.example.hazem.sunshineweatherapp.BuildConfig#FORECAST_STORE}.
+ * <p>
+ * Date ranges have an inclusive start and an exclusive end. Values go in and come out in their
+ * natural units whatever the engine stores. Writes are grouped the way SQLiteDatabase groups
+ * them: between {@link #beginTransaction()} and {@link #endTransaction()} they are seen by the
+ * writing thread only, and become visible to other threads all at once, or not at all if the
+ * transaction wasn't marked successful. Transactions nest; a write outside of one is a
+ * transaction of its own. Listeners are told once per committed transaction that changed rows.
+ */
+public interface ForecastStore {
+
+    /* Values of BuildConfig.FORECAST_STORE */
+    String SQLITE = "sqlite";
+    String MEMORY = "memory";
+
+    /* Every column of a forecast row, what a null projection returns */
+    String[] COLUMNS = {
+            WeatherContract.WeatherEntry._ID,
+            WeatherContract.WeatherEntry.COLUMN_DATE,
+            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
+            WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
+            WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherContract.WeatherEntry.COLUMN_HUMIDITY,
+            WeatherContract.WeatherEntry.COLUMN_PRESSURE,
+            WeatherContract.WeatherEntry.COLUMN_WIND_SPEED,
+            WeatherContract.WeatherEntry.COLUMN_DEGREES,
+            WeatherContract.WeatherEntry.COLUMN_APPARENT_TEMP,
+            WeatherContract.WeatherEntry.COLUMN_DEW_POINT,
+            WeatherContract.WeatherEntry.COLUMN_PRESSURE_TREND,
+            WeatherContract.WeatherEntry.COLUMN_COMFORT_INDEX
+    };
+
+    interface Listener {
+
+        /**
+         * Called on the writing thread once a transaction that changed rows has committed.
+         *
+         * @param store The store that changed
+         */
+        void onForecastChanged(ForecastStore store);
+    }
+
+    /**
+     * Reads the rows of a date range, by ascending date.
+     *
+     * @param projection Columns to return, among {@link #COLUMNS}, or null for all of them
+     * @param startDate  First date of the range
+     * @param endDate    Date after the last one
+     * @param offset     Number of rows of the range to skip
+     * @param limit      Maximum number of rows to return, or -1 for all
+     * @return A cursor over the rows
+     */
+    Cursor queryRange(String[] projection, long startDate, long endDate, int offset, int limit);
+
+    /**
+     * Reads the row of one date.
+     *
+     * @param projection Columns to return, or null for all of them
+     * @param date       The normalized date
+     * @return A cursor holding the row, or no row if there is none for that date
+     */
+    Cursor queryDate(String[] projection, long date);
+
+    /**
+     * @return Number of rows in a date range
+     */
+    int count(long startDate, long endDate);
+
+    /**
+     * Writes rows by date: a row updates the columns it sets in the row of its date, or is
+     * inserted if there is none. An inserted row must be {@link ForecastBatch#isComplete
+     * complete}, its derived columns read as 0 until set; one that isn't is skipped.
+     *
+     * @param rows The rows, each with a normalized date
+     * @return Number of rows updated or inserted
+     */
+    int upsert(ForecastBatch rows);
+
+    /**
+     * Replaces every row. Readers on other threads see either the old rows or the new ones.
+     * Listeners are told even if there were no rows before and none after.
+     *
+     * @param rows The new rows, each complete; one that isn't is skipped
+     * @return Number of rows inserted
+     */
+    int replaceAll(ForecastBatch rows);
+
+    /**
+     * Deletes the rows before a date, e.g. the days that have passed.
+     *
+     * @param date First date to keep, Long.MAX_VALUE to delete every row
+     * @return Number of rows deleted
+     */
+    int deleteBefore(long date);
+
+    /**
+     * Deletes the rows of a date and the ones after it.
+     *
+     * @param date First date to delete
+     * @return Number of rows deleted
+     */
+    int deleteFrom(long date);
+
+    /**
+     * Deletes the rows of a date range, e.g. a single day.
+     *
+     * @param startDate First date to delete
+     * @param endDate   Date after the last one to delete
+     * @return Number of rows deleted
+     */
+    int deleteRange(long startDate, long endDate);
+
+    void beginTransaction();
+
+    void setTransactionSuccessful();
+
+    void endTransaction();
+
+    void addListener(Listener listener);
+
+    void removeListener(Listener listener);
+
+    void close();
+}
@@ -0,0 +1,459 @@
+package com.example.hazem.sunshineweatherapp.data;
+
+import android.content.ContentValues;
+import android.database.AbstractCursor;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+import com.example.hazem.sunshineweatherapp.data.WeatherContract.HourlyWeatherEntry;
+import com.example.hazem.sunshineweatherapp.utilities.SunshineDateUtils;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compressed storage of the hourly rows, used instead of one row per sample when
+ * {@link WeatherDbHelper#COMPRESSED_HOURLY_STORAGE} is set. The samples of a UTC day are packed
+ * into a single BLOB by {@link HourlySampleCodec}, one row of
+ * {@link HourlyWeatherEntry#BLOCKS_TABLE_NAME} per day, which keeps years of history small and
+ * fast to scan.
+ * <p>
+ * Values are stored at the resolution of the compact weather layout, temperatures, pressure and
+ * wind speed in tenths and the rest in whole units (see
+ * {@link WeatherContract.WeatherEntry#QUANTIZED_COLUMNS}): XORed with each other, whole numbers
+ * compress several times better than decimal fractions do.
+ * <p>
+ * Writing to a day decodes its block, merges the new samples in and encodes it again. Queries
+ * return a {@link Cursor} that decodes the samples as it moves through them, one block at a
+ * time, so a range query costs the blocks actually read rather than the whole range.
+ */
+public class HourlyBlockStore {
+
+    /* Hourly columns stored by the codec, in the order of its value columns */
+    private static final String[] VALUE_COLUMNS = {
+            HourlyWeatherEntry.COLUMN_TEMP,
+            HourlyWeatherEntry.COLUMN_HUMIDITY,
+            HourlyWeatherEntry.COLUMN_PRESSURE,
+            HourlyWeatherEntry.COLUMN_WIND_SPEED,
+            HourlyWeatherEntry.COLUMN_DEGREES
+    };
+
+    private static final int[] VALUE_SCALES = {10, 1, 10, 10, 1};
+
+    /* Columns of a query without a projection. The _ID of a sample is its date time */
+    private static final String[] ALL_COLUMNS = {
+            HourlyWeatherEntry._ID,
+            HourlyWeatherEntry.COLUMN_DATE_TIME,
+            HourlyWeatherEntry.COLUMN_WEATHER_ID,
+            HourlyWeatherEntry.COLUMN_TEMP,
+            HourlyWeatherEntry.COLUMN_HUMIDITY,
+            HourlyWeatherEntry.COLUMN_PRESSURE,
+            HourlyWeatherEntry.COLUMN_WIND_SPEED,
+            HourlyWeatherEntry.COLUMN_DEGREES
+    };
+
+    /* What a cursor column reads, the value columns are 0 to VALUE_COLUMNS.length - 1 */
+    private static final int COLUMN_KIND_DATE_TIME = -1;
+    private static final int COLUMN_KIND_WEATHER_ID = -2;
+
+    private static final long HOUR = SunshineDateUtils.HOUR_IN_MILLIS;
+    private static final long DAY = SunshineDateUtils.DAY_IN_MILLIS;
+
+    private final SQLiteOpenHelper mOpenHelper;
+
+    /* A sample being merged into a block, values already scaled */
+    private static class Sample {
+        final int weatherId;
+        final double[] values;
+
+        Sample(int weatherId, double[] values) {
+            this.weatherId = weatherId;
+            this.values = values;
+        }
+    }
+
+    /**
+     * @param openHelper Database holding {@link HourlyWeatherEntry#BLOCKS_TABLE_NAME}
+     */
+    public HourlyBlockStore(SQLiteOpenHelper openHelper) {
+        mOpenHelper = openHelper;
+    }
+
+    /**
+     * Inserts rows, replacing the samples held for the same date times, in one transaction.
+     *
+     * @param rows Rows with every hourly column, each date time a whole hour. Rows missing a
+     *             column aren't inserted, as with the one row per sample layout
+     * @return Number of rows inserted
+     */
+    public int insert(ContentValues[] rows) {
+        SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            int rowsInserted = insert(db, rows, true);
+            db.setTransactionSuccessful();
+            return rowsInserted;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Replaces every sample with the rows, in one transaction.
+     *
+     * @param rows Rows as for {@link #insert(ContentValues[])}
+     * @return Number of rows inserted
+     */
+    public int replaceAll(ContentValues[] rows) {
+        SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            db.delete(HourlyWeatherEntry.BLOCKS_TABLE_NAME, null, null);
+            int rowsInserted = insert(db, rows, false);
+            db.setTransactionSuccessful();
+            return rowsInserted;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Deletes every sample.
+     *
+     * @return Number of samples deleted
+     */
+    public int deleteAll() {
+        SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            Cursor cursor = db.rawQuery("SELECT TOTAL(" + HourlyWeatherEntry.COLUMN_SAMPLE_COUNT
+                    + ") FROM " + HourlyWeatherEntry.BLOCKS_TABLE_NAME, null);
+            int samplesDeleted;
+            try {
+                cursor.moveToFirst();
+                samplesDeleted = cursor.getInt(0);
+            } finally {
+                cursor.close();
+            }
+            db.delete(HourlyWeatherEntry.BLOCKS_TABLE_NAME, null, null);
+            db.setTransactionSuccessful();
+            return samplesDeleted;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private static int insert(SQLiteDatabase db, ContentValues[] rows, boolean mergeHeldSamples) {
+        /* Samples by day, then by date time in hours */
+        Map<Long, TreeMap<Long, Sample>> days = new TreeMap<>();
+        int rowsInserted = 0;
+        for (ContentValues row : rows) {
+            Long dateTime = row.getAsLong(HourlyWeatherEntry.COLUMN_DATE_TIME);
+            Integer weatherId = row.getAsInteger(HourlyWeatherEntry.COLUMN_WEATHER_ID);
+            if (dateTime == null || weatherId == null) {
+                continue;
+            }
+            if (dateTime % HOUR != 0) {
+                throw new IllegalArgumentException("Date time must be a whole hour to insert");
+            }
+
+            double[] values = new double[VALUE_COLUMNS.length];
+            boolean complete = true;
+            for (int column = 0; column < VALUE_COLUMNS.length && complete; column++) {
+                Double value = row.getAsDouble(VALUE_COLUMNS[column]);
+                complete = value != null;
+                if (complete) {
+                    values[column] = Math.round(value * VALUE_SCALES[column]);
+                }
+            }
+            if (!complete) {
+                continue;
+            }
+
+            long day = SunshineDateUtils.normalizeDate(dateTime);
+            TreeMap<Long, Sample> samples = days.get(day);
+            if (samples == null) {
+                samples = new TreeMap<>();
+                days.put(day, samples);
+            }
+            samples.put(dateTime / HOUR, new Sample(weatherId, values));
+            rowsInserted++;
+        }
+
+        for (Map.Entry<Long, TreeMap<Long, Sample>> day : days.entrySet()) {
+            TreeMap<Long, Sample> samples = day.getValue();
+            if (mergeHeldSamples) {
+                readHeldSamples(db, day.getKey(), samples);
+            }
+
+            HourlySampleCodec.Encoder encoder = new HourlySampleCodec.Encoder();
+            for (Map.Entry<Long, Sample> sample : samples.entrySet()) {
+                encoder.add(sample.getKey(), sample.getValue().weatherId, sample.getValue().values);
+            }
+
+            /* Replaces the day's block, see the UNIQUE constraint of the table */
+            ContentValues block = new ContentValues();
+            block.put(HourlyWeatherEntry.COLUMN_DAY, day.getKey());
+            block.put(HourlyWeatherEntry.COLUMN_SAMPLE_COUNT, encoder.getCount());
+            block.put(HourlyWeatherEntry.COLUMN_SAMPLES, encoder.toByteArray());
+            db.insertOrThrow(HourlyWeatherEntry.BLOCKS_TABLE_NAME, null, block);
+        }
+        return rowsInserted;
+    }
+
+    /* Adds the held samples of a day to samples, except those it already has a newer value of */
+    private static void readHeldSamples(SQLiteDatabase db, long day, TreeMap<Long, Sample> samples) {
+        Cursor cursor = db.rawQuery("SELECT " + HourlyWeatherEntry.COLUMN_SAMPLE_COUNT + ", "
+                        + HourlyWeatherEntry.COLUMN_SAMPLES
+                        + " FROM " + HourlyWeatherEntry.BLOCKS_TABLE_NAME
+                        + " WHERE " + HourlyWeatherEntry.COLUMN_DAY + " = ?",
+                new String[]{Long.toString(day)});
+        try {
+            if (!cursor.moveToFirst()) {
+                return;
+            }
+            HourlySampleCodec.Decoder decoder =
+                    new HourlySampleCodec.Decoder(cursor.getBlob(1), cursor.getInt(0));
+            while (decoder.next()) {
+                if (samples.containsKey(decoder.getTimestamp())) {
+                    continue;
+                }
+                double[] values = new double[VALUE_COLUMNS.length];
+                for (int column = 0; column < values.length; column++) {
+                    values[column] = decoder.getValue(column);
+                }
+                samples.put(decoder.getTimestamp(),
+                        new Sample(decoder.getWeatherId(), values));
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Returns the samples of a time range, ordered by date time.
+     *
+     * @param projection    Hourly columns to return, null for all of them
+     * @param startDateTime First date time, inclusive
+     * @param endDateTime   Last date time, exclusive
+     * @return A cursor decoding the samples as it moves
+     */
+    public Cursor query(String[] projection, long startDateTime, long endDateTime) {
+        SQLiteDatabase db = mOpenHelper.getReadableDatabase();
+
+        /* Blocks are keyed by the start of their day, the first one may start before the range */
+        long firstDay = startDateTime == Long.MIN_VALUE
+                ? Long.MIN_VALUE : SunshineDateUtils.normalizeDate(startDateTime);
+        String[] rangeArgs = {Long.toString(firstDay), Long.toString(endDateTime)};
+
+        /*
+         * One query reads the days, their counts and their samples, so a sync writing the blocks
+         * meanwhile can't make them disagree. The read transaction keeps the cursor on one
+         * snapshot while it is filled.
+         */
+        Cursor blocks;
+        long[] blockDays;
+        int[] blockSampleCounts;
+        db.beginTransactionNonExclusive();
+        try {
+            blocks = db.rawQuery("SELECT " + HourlyWeatherEntry.COLUMN_DAY + ", "
+                    + HourlyWeatherEntry.COLUMN_SAMPLE_COUNT + ", "
+                    + HourlyWeatherEntry.COLUMN_SAMPLES
+                    + " FROM " + HourlyWeatherEntry.BLOCKS_TABLE_NAME
+                    + " WHERE " + HourlyWeatherEntry.COLUMN_DAY + " >= ? AND "
+                    + HourlyWeatherEntry.COLUMN_DAY + " < ?"
+                    + " ORDER BY " + HourlyWeatherEntry.COLUMN_DAY, rangeArgs);
+            blockDays = new long[blocks.getCount()];
+            blockSampleCounts = new int[blocks.getCount()];
+            for (int i = 0; blocks.moveToNext(); i++) {
+                blockDays[i] = blocks.getLong(0);
+                blockSampleCounts[i] = blocks.getInt(1);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        return new BlockCursor(projection == null ? ALL_COLUMNS : projection, blocks,
+                blockDays, blockSampleCounts, startDateTime, endDateTime);
+    }
+
+    /**
+     * Walks the samples of a range, decoding the block of the current position. Moving forward
+     * within a block decodes the samples in between, moving back restarts from the block's
+     * start, so reading in order decodes every sample once.
+     */
+    private static class BlockCursor extends AbstractCursor {
+        private final String[] mColumnNames;
+        private final int[] mColumnKinds;
+        private final Cursor mBlocks;
+        private final int[] mBlockSampleCounts;
+        private final long mStartHour;
+        /* Cursor position of the first sample of each block, then the count */
+        private final int[] mBlockStarts;
+
+        private int mBlockIndex = -1;
+        private HourlySampleCodec.Decoder mDecoder;
+        /* Cursor position of the decoder's current sample */
+        private int mDecodedPosition;
+
+        BlockCursor(String[] columnNames, Cursor blocks, long[] blockDays,
+                    int[] blockSampleCounts, long startDateTime, long endDateTime) {
+            mColumnNames = columnNames;
+            mBlocks = blocks;
+            mBlockSampleCounts = blockSampleCounts;
+            mStartHour = toHoursRoundingUp(startDateTime);
+            long endHour = toHoursRoundingUp(endDateTime);
+
+            mColumnKinds = new int[columnNames.length];
+            for (int i = 0; i < columnNames.length; i++) {
+                mColumnKinds[i] = getColumnKind(columnNames[i]);
+            }
+
+            /* Only the blocks the range ends in are decoded to count their samples */
+            mBlockStarts = new int[blockDays.length + 1];
+            for (int block = 0; block < blockDays.length; block++) {
+                int count = blockSampleCounts[block];
+                if (blockDays[block] < startDateTime || blockDays[block] + DAY > endDateTime) {
+                    count = 0;
+                    HourlySampleCodec.Decoder decoder = openBlock(block);
+                    while (decoder.next()) {
+                        long hour = decoder.getTimestamp();
+                        if (hour >= mStartHour && hour < endHour) {
+                            count++;
+                        }
+                    }
+                }
+                mBlockStarts[block + 1] = mBlockStarts[block] + count;
+            }
+        }
+
+        /* The first whole hour at or after a date time, without overflowing at the extremes */
+        private static long toHoursRoundingUp(long dateTime) {
+            long hours = dateTime / HOUR;
+            return hours * HOUR < dateTime ? hours + 1 : hours;
+        }
+
+        private static int getColumnKind(String columnName) {
+            if (HourlyWeatherEntry._ID.equals(columnName)
+                    || HourlyWeatherEntry.COLUMN_DATE_TIME.equals(columnName)) {
+                return COLUMN_KIND_DATE_TIME;
+            }
+            if (HourlyWeatherEntry.COLUMN_WEATHER_ID.equals(columnName)) {
+                return COLUMN_KIND_WEATHER_ID;
+            }
+            for (int column = 0; column < VALUE_COLUMNS.length; column++) {
+                if (VALUE_COLUMNS[column].equals(columnName)) {
+                    return column;
+                }
+            }
+            throw new IllegalArgumentException("Unknown hourly column: " + columnName);
+        }
+
+        private HourlySampleCodec.Decoder openBlock(int block) {
+            mBlocks.moveToPosition(block);
+            return new HourlySampleCodec.Decoder(mBlocks.getBlob(2), mBlockSampleCounts[block]);
+        }
+
+        @Override
+        public boolean onMove(int oldPosition, int newPosition) {
+            /* The last block holding a sample at or before newPosition */
+            int low = 0;
+            int high = mBlockSampleCounts.length - 1;
+            while (low < high) {
+                int middle = (low + high + 1) >>> 1;
+                if (mBlockStarts[middle] <= newPosition) {
+                    low = middle;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            while (mBlockStarts[low + 1] <= newPosition) {
+                low++;
+            }
+
+            if (low != mBlockIndex || newPosition < mDecodedPosition) {
+                mBlockIndex = low;
+                mDecoder = openBlock(low);
+                mDecodedPosition = mBlockStarts[low] - 1;
+            }
+            while (mDecodedPosition < newPosition) {
+                /* Samples before the range only occur at the start of the first block */
+                do {
+                    mDecoder.next();
+                } while (mDecoder.getTimestamp() < mStartHour);
+                mDecodedPosition++;
+            }
+            return true;
+        }
+
+        @Override
+        public int getCount() {
+            return mBlockStarts[mBlockStarts.length - 1];
+        }
+
+        @Override
+        public String[] getColumnNames() {
+            return mColumnNames;
+        }
+
+        @Override
+        public String getString(int column) {
+            int kind = mColumnKinds[column];
+            return kind < 0 ? Long.toString(getLong(column)) : Double.toString(getDouble(column));
+        }
+
+        @Override
+        public short getShort(int column) {
+            return (short) getLong(column);
+        }
+
+        @Override
+        public int getInt(int column) {
+            return (int) getLong(column);
+        }
+
+        @Override
+        public long getLong(int column) {
+            switch (mColumnKinds[column]) {
+                case COLUMN_KIND_DATE_TIME:
+                    return mDecoder.getTimestamp() * HOUR;
+                case COLUMN_KIND_WEATHER_ID:
+                    return mDecoder.getWeatherId();
+                default:
+                    return (long) getDouble(column);
+            }
+        }
+
+        @Override
+        public float getFloat(int column) {
+            return (float) getDouble(column);
+        }
+
+        @Override
+        public double getDouble(int column) {
+            int kind = mColumnKinds[column];
+            if (kind < 0) {
+                return getLong(column);
+            }
+            return mDecoder.getValue(kind) / VALUE_SCALES[kind];
+        }
+
+        @Override
+        public int getType(int column) {
+            return mColumnKinds[column] < 0 ? FIELD_TYPE_INTEGER : FIELD_TYPE_FLOAT;
+        }
+
+        @Override
+        public boolean isNull(int column) {
+            return false;
+        }
+
+        @Override
+        public void close() {
+            super.close();
+            mBlocks.close();
+        }
+    }
+}
@@ -0,0 +1,329 @@
+package com.example.hazem.sunshineweatherapp.data;
+
+import java.util.Arrays;
+
+/**
+ * Packs a run of hourly samples into a few bits each, the way Gorilla (Facebook's time series
+ * store) does:
+ * <ul>
+ *     <li>Timestamps are stored as the difference between consecutive deltas, which is 0 for
+ *     evenly spaced samples and then takes a single bit.</li>
+ *     <li>Each value is XORed with the value before it in the same column. Slowly changing
+ *     values share their sign, exponent and leading mantissa bits, so only the few meaningful
+ *     bits in between are stored, and a repeated value takes a single bit.</li>
+ *     <li>The weather id takes a single bit when it repeats.</li>
+ * </ul>
+ * The samples of a block are interleaved, every column of a sample before the next sample, so
+ * a {@link Decoder} hands them out one at a time without decoding the block up front. Values
+ * come back bit for bit as they were encoded.
+ * <p>
+ * This class doesn't depend on the Android framework, so it is tested by local unit tests.
+ */
+public final class HourlySampleCodec {
+
+    /* Value columns of a sample, in the order they are encoded */
+    public static final int TEMP = 0;
+    public static final int HUMIDITY = 1;
+    public static final int PRESSURE = 2;
+    public static final int WIND_SPEED = 3;
+    public static final int DEGREES = 4;
+    public static final int VALUE_COLUMNS = 5;
+
+    private HourlySampleCodec() {
+    }
+
+    /**
+     * Encodes samples in increasing timestamp order.
+     */
+    public static final class Encoder {
+        private final BitWriter mWriter = new BitWriter();
+
+        private int mCount;
+        private long mTimestamp;
+        private long mDelta;
+        private int mWeatherId;
+        private final long[] mValueBits = new long[VALUE_COLUMNS];
+        /* Window of meaningful bits of the last XOR of each column, as Gorilla reuses it */
+        private final int[] mLeadingZeros = new int[VALUE_COLUMNS];
+        private final int[] mTrailingZeros = new int[VALUE_COLUMNS];
+
+        /**
+         * Appends a sample.
+         *
+         * @param timestamp Time of the sample, in any unit, after the previous sample's. Whole
+         *                  hours rather than milliseconds keep the deltas small
+         * @param weatherId OpenWeatherMap weather id
+         * @param values    The {@link #VALUE_COLUMNS} values of the sample
+         */
+        public void add(long timestamp, int weatherId, double[] values) {
+            if (mCount == 0) {
+                mWriter.write(timestamp, 64);
+                mWriter.write(weatherId, 32);
+                for (int column = 0; column < VALUE_COLUMNS; column++) {
+                    mValueBits[column] = Double.doubleToRawLongBits(values[column]);
+                    mWriter.write(mValueBits[column], 64);
+                    /* No window yet, the first XOR writes its own */
+                    mLeadingZeros[column] = Integer.MAX_VALUE;
+                }
+            } else {
+                if (timestamp <= mTimestamp) {
+                    throw new IllegalArgumentException("Timestamps must increase: " + timestamp
+                            + " after " + mTimestamp);
+                }
+                long delta = timestamp - mTimestamp;
+                writeDeltaOfDelta(delta - mDelta);
+                mDelta = delta;
+
+                if (weatherId == mWeatherId) {
+                    mWriter.write(0, 1);
+                } else {
+                    mWriter.write(1, 1);
+                    mWriter.write(weatherId, 32);
+                }
+
+                for (int column = 0; column < VALUE_COLUMNS; column++) {
+                    writeValue(column, Double.doubleToRawLongBits(values[column]));
+                }
+            }
+            mTimestamp = timestamp;
+            mWeatherId = weatherId;
+            mCount++;
+        }
+
+        /* '0' for 0, then '10', '110' and '1110' for deltas of delta fitting 7, 9 and 12 bits */
+        private void writeDeltaOfDelta(long deltaOfDelta) {
+            if (deltaOfDelta == 0) {
+                mWriter.write(0, 1);
+            } else if (deltaOfDelta >= -63 && deltaOfDelta <= 64) {
+                mWriter.write(0b10, 2);
+                mWriter.write(deltaOfDelta + 63, 7);
+            } else if (deltaOfDelta >= -255 && deltaOfDelta <= 256) {
+                mWriter.write(0b110, 3);
+                mWriter.write(deltaOfDelta + 255, 9);
+            } else if (deltaOfDelta >= -2047 && deltaOfDelta <= 2048) {
+                mWriter.write(0b1110, 4);
+                mWriter.write(deltaOfDelta + 2047, 12);
+            } else {
+                mWriter.write(0b1111, 4);
+                mWriter.write(deltaOfDelta, 64);
+            }
+        }
+
+        /*
+         * '0' for the same value; '10' and the meaningful bits if they fit the column's window;
+         * '11', 5 bits of leading zeros, 6 bits of length and the meaningful bits otherwise.
+         */
+        private void writeValue(int column, long bits) {
+            long xor = bits ^ mValueBits[column];
+            mValueBits[column] = bits;
+            if (xor == 0) {
+                mWriter.write(0, 1);
+                return;
+            }
+
+            /* 5 bits hold up to 31 leading zeros */
+            int leadingZeros = Math.min(Long.numberOfLeadingZeros(xor), 31);
+            int trailingZeros = Long.numberOfTrailingZeros(xor);
+            if (leadingZeros >= mLeadingZeros[column] && trailingZeros >= mTrailingZeros[column]) {
+                mWriter.write(0b10, 2);
+                mWriter.write(xor >>> mTrailingZeros[column],
+                        64 - mLeadingZeros[column] - mTrailingZeros[column]);
+            } else {
+                int length = 64 - leadingZeros - trailingZeros;
+                mWriter.write(0b11, 2);
+                mWriter.write(leadingZeros, 5);
+                /* A length of 64 only happens without leading zeros and is written as 0 */
+                mWriter.write(length & 63, 6);
+                mWriter.write(xor >>> trailingZeros, length);
+                mLeadingZeros[column] = leadingZeros;
+                mTrailingZeros[column] = trailingZeros;
+            }
+        }
+
+        public int getCount() {
+            return mCount;
+        }
+
+        /**
+         * @return The encoded samples, to be decoded with a {@link Decoder} given
+         * {@link #getCount()}
+         */
+        public byte[] toByteArray() {
+            return mWriter.toByteArray();
+        }
+    }
+
+    /**
+     * Reads back the samples of an {@link Encoder}, one {@link #next()} at a time.
+     */
+    public static final class Decoder {
+        private final BitReader mReader;
+        private final int mCount;
+
+        private int mPosition = -1;
+        private long mTimestamp;
+        private long mDelta;
+        private int mWeatherId;
+        private final long[] mValueBits = new long[VALUE_COLUMNS];
+        private final int[] mLeadingZeros = new int[VALUE_COLUMNS];
+        private final int[] mTrailingZeros = new int[VALUE_COLUMNS];
+
+        /**
+         * @param data  Bytes returned by {@link Encoder#toByteArray()}
+         * @param count Number of samples encoded in data
+         */
+        public Decoder(byte[] data, int count) {
+            mReader = new BitReader(data);
+            mCount = count;
+        }
+
+        public int getCount() {
+            return mCount;
+        }
+
+        /**
+         * Moves to the next sample.
+         *
+         * @return false, leaving the last sample current, if there are no more samples
+         */
+        public boolean next() {
+            if (mPosition + 1 >= mCount) {
+                return false;
+            }
+            mPosition++;
+
+            if (mPosition == 0) {
+                mTimestamp = mReader.read(64);
+                mWeatherId = (int) mReader.read(32);
+                for (int column = 0; column < VALUE_COLUMNS; column++) {
+                    mValueBits[column] = mReader.read(64);
+                }
+                return true;
+            }
+
+            mDelta += readDeltaOfDelta();
+            mTimestamp += mDelta;
+
+            if (mReader.read(1) != 0) {
+                mWeatherId = (int) mReader.read(32);
+            }
+
+            for (int column = 0; column < VALUE_COLUMNS; column++) {
+                readValue(column);
+            }
+            return true;
+        }
+
+        private long readDeltaOfDelta() {
+            if (mReader.read(1) == 0) {
+                return 0;
+            }
+            if (mReader.read(1) == 0) {
+                return mReader.read(7) - 63;
+            }
+            if (mReader.read(1) == 0) {
+                return mReader.read(9) - 255;
+            }
+            if (mReader.read(1) == 0) {
+                return mReader.read(12) - 2047;
+            }
+            return mReader.read(64);
+        }
+
+        private void readValue(int column) {
+            if (mReader.read(1) == 0) {
+                return;
+            }
+            if (mReader.read(1) != 0) {
+                mLeadingZeros[column] = (int) mReader.read(5);
+                int length = (int) mReader.read(6);
+                if (length == 0) {
+                    length = 64;
+                }
+                mTrailingZeros[column] = 64 - mLeadingZeros[column] - length;
+            }
+            int length = 64 - mLeadingZeros[column] - mTrailingZeros[column];
+            mValueBits[column] ^= mReader.read(length) << mTrailingZeros[column];
+        }
+
+        /* Index of the current sample, -1 before the first call to next */
+        public int getPosition() {
+            return mPosition;
+        }
+
+        public long getTimestamp() {
+            return mTimestamp;
+        }
+
+        public int getWeatherId() {
+            return mWeatherId;
+        }
+
+        /**
+         * @param column One of the value column constants
+         * @return The value of the current sample
+         */
+        public double getValue(int column) {
+            return Double.longBitsToDouble(mValueBits[column]);
+        }
+    }
+
+    /* Appends bits to a growing byte array, most significant bit first */
+    private static final class BitWriter {
+        private byte[] mBytes = new byte[64];
+        private long mBitCount;
+
+        /* Writes the low bitCount bits of value, from 1 to 64 */
+        void write(long value, int bitCount) {
+            ensureCapacity(mBitCount + bitCount);
+            for (int remaining = bitCount; remaining > 0; ) {
+                int byteIndex = (int) (mBitCount >>> 3);
+                int freeBits = 8 - (int) (mBitCount & 7);
+                int chunk = Math.min(freeBits, remaining);
+                int bits = (int) (value >>> (remaining - chunk)) & ((1 << chunk) - 1);
+                mBytes[byteIndex] |= bits << (freeBits - chunk);
+                mBitCount += chunk;
+                remaining -= chunk;
+            }
+        }
+
+        private void ensureCapacity(long bitCount) {
+            int byteCount = (int) ((bitCount + 7) >>> 3);
+            if (byteCount > mBytes.length) {
+                mBytes = Arrays.copyOf(mBytes, Math.max(byteCount, mBytes.length * 2));
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(mBytes, (int) ((mBitCount + 7) >>> 3));
+        }
+    }
+
+    /* Reads the bits of a BitWriter back */
+    private static final class BitReader {
+        private final byte[] mBytes;
+        private long mBitPosition;
+
+        BitReader(byte[] bytes) {
+            mBytes = bytes;
+        }
+
+        /* Reads bitCount bits, from 1 to 64, as the low bits of the result */
+        long read(int bitCount) {
+            long value = 0;
+            for (int remaining = bitCount; remaining > 0; ) {
+                int byteIndex = (int) (mBitPosition >>> 3);
+                if (byteIndex >= mBytes.length) {
+                    throw new IllegalStateException("Read past the end of the samples");
+                }
+                int availableBits = 8 - (int) (mBitPosition & 7);
+                int chunk = Math.min(availableBits, remaining);
+                int bits = (mBytes[byteIndex] >>> (availableBits - chunk)) & ((1 << chunk) - 1);
+                value = (value << chunk) | bits;
+                mBitPosition += chunk;
+                remaining -= chunk;
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,352 @@
+package com.example.hazem.sunshineweatherapp.data;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * {@link ForecastStore} keeping the forecast in memory, column by column in primitive arrays
+ * sorted by date, for widgets, tests and hot reads. Nothing is persisted: the forecast is gone
+ * with the process and comes back with the next sync.
+ * <p>
+ * The rows readers see are never written again. A transaction writes to a copy, taken on its
+ * first write, and publishes it when it commits, so reads take no lock and never wait for a
+ * write. A forecast is a few hundred rows at most, copying them costs less than a single
+ * SQLite statement.
+ */
+public class InMemoryForecastStore extends AbstractForecastStore {
+
+    /*
+     * Columns held as doubles, those after _id, date and weather id in ForecastStore#COLUMNS,
+     * which are the value columns of ForecastBatch
+     */
+    private static final int FIRST_VALUE_COLUMN = 3;
+    private static final int VALUE_COLUMNS = ForecastBatch.VALUE_COLUMNS;
+
+    /* The rows by ascending date, one array per column */
+    private static final class Rows {
+        int mSize;
+        long[] mIds;
+        long[] mDates;
+        int[] mWeatherIds;
+        double[][] mValues;
+
+        Rows(int capacity) {
+            mIds = new long[capacity];
+            mDates = new long[capacity];
+            mWeatherIds = new int[capacity];
+            mValues = new double[VALUE_COLUMNS][capacity];
+        }
+
+        Rows copy() {
+            Rows copy = new Rows(0);
+            copy.mSize = mSize;
+            copy.mIds = Arrays.copyOf(mIds, mSize);
+            copy.mDates = Arrays.copyOf(mDates, mSize);
+            copy.mWeatherIds = Arrays.copyOf(mWeatherIds, mSize);
+            for (int column = 0; column < VALUE_COLUMNS; column++) {
+                copy.mValues[column] = Arrays.copyOf(mValues[column], mSize);
+            }
+            return copy;
+        }
+
+        /* Index of the first row dated date or later */
+        int lowerBound(long date) {
+            int low = 0;
+            int high = mSize;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (mDates[mid] < date) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /* Opens an empty row at index */
+        void insertAt(int index) {
+            if (mSize == mDates.length) {
+                int capacity = Math.max(16, mSize * 2);
+                mIds = Arrays.copyOf(mIds, capacity);
+                mDates = Arrays.copyOf(mDates, capacity);
+                mWeatherIds = Arrays.copyOf(mWeatherIds, capacity);
+                for (int column = 0; column < VALUE_COLUMNS; column++) {
+                    mValues[column] = Arrays.copyOf(mValues[column], capacity);
+                }
+            }
+            int moved = mSize - index;
+            System.arraycopy(mIds, index, mIds, index + 1, moved);
+            System.arraycopy(mDates, index, mDates, index + 1, moved);
+            System.arraycopy(mWeatherIds, index, mWeatherIds, index + 1, moved);
+            for (int column = 0; column < VALUE_COLUMNS; column++) {
+                System.arraycopy(mValues[column], index, mValues[column], index + 1, moved);
+                mValues[column][index] = 0;
+            }
+            mSize++;
+        }
+
+        void removeRange(int from, int to) {
+            int moved = mSize - to;
+            System.arraycopy(mIds, to, mIds, from, moved);
+            System.arraycopy(mDates, to, mDates, from, moved);
+            System.arraycopy(mWeatherIds, to, mWeatherIds, from, moved);
+            for (int column = 0; column < VALUE_COLUMNS; column++) {
+                System.arraycopy(mValues[column], to, mValues[column], from, moved);
+            }
+            mSize -= to - from;
+        }
+
+        /* Value of a column of ForecastStore#COLUMNS, as MatrixCursor takes it */
+        Object get(int column, int row) {
+            switch (column) {
+                case 0:
+                    return mIds[row];
+                case 1:
+                    return mDates[row];
+                case 2:
+                    return mWeatherIds[row];
+                default:
+                    return mValues[column - FIRST_VALUE_COLUMN][row];
+            }
+        }
+    }
+
+    private final ReentrantLock mWriteLock = new ReentrantLock();
+
+    private volatile Rows mRows = new Rows(0);
+
+    /* What the transaction of the thread holding mWriteLock has written, null before it writes */
+    private Rows mPending;
+
+    private long mNextId = 1;
+    private long mPendingNextId;
+
+    /* The rows the calling thread sees, its own pending writes included */
+    private Rows readableRows() {
+        if (mWriteLock.isHeldByCurrentThread() && mPending != null) {
+            return mPending;
+        }
+        return mRows;
+    }
+
+    /* Called within a transaction */
+    private Rows writableRows() {
+        if (mPending == null) {
+            mPending = mRows.copy();
+        }
+        return mPending;
+    }
+
+    private static int[] resolveProjection(String[] projection) {
+        if (projection == null) {
+            projection = COLUMNS;
+        }
+        int[] columns = new int[projection.length];
+        for (int i = 0; i < projection.length; i++) {
+            columns[i] = indexOfColumn(projection[i]);
+            if (columns[i] < 0) {
+                throw new IllegalArgumentException("Unknown column: " + projection[i]);
+            }
+        }
+        return columns;
+    }
+
+    private static int indexOfColumn(String column) {
+        for (int i = 0; i < COLUMNS.length; i++) {
+            if (COLUMNS[i].equals(column)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static Cursor toCursor(String[] projection, Rows rows, int from, int to) {
+        int[] columns = resolveProjection(projection);
+        MatrixCursor cursor = new MatrixCursor(projection == null ? COLUMNS : projection,
+                Math.max(0, to - from));
+        Object[] values = new Object[columns.length];
+        for (int row = from; row < to; row++) {
+            for (int i = 0; i < columns.length; i++) {
+                values[i] = rows.get(columns[i], row);
+            }
+            cursor.addRow(values);
+        }
+        return cursor;
+    }
+
+    @Override
+    public Cursor queryRange(String[] projection, long startDate, long endDate, int offset,
+                             int limit) {
+        Rows rows = readableRows();
+        int from = Math.min(rows.lowerBound(startDate) + offset, rows.mSize);
+        int to = Math.max(from, rows.lowerBound(endDate));
+        if (limit >= 0) {
+            to = Math.min(to, from + limit);
+        }
+        return toCursor(projection, rows, from, to);
+    }
+
+    @Override
+    public Cursor queryDate(String[] projection, long date) {
+        Rows rows = readableRows();
+        int index = rows.lowerBound(date);
+        boolean found = index < rows.mSize && rows.mDates[index] == date;
+        return toCursor(projection, rows, index, found ? index + 1 : index);
+    }
+
+    @Override
+    public int count(long startDate, long endDate) {
+        Rows rows = readableRows();
+        return Math.max(0, rows.lowerBound(endDate) - rows.lowerBound(startDate));
+    }
+
+    /*
+     * Writes one row as described by ForecastStore#upsert.
+     *
+     * @return false if the row was skipped
+     */
+    private boolean put(Rows rows, ForecastBatch batch, int row) {
+        long date = batch.getDate(row);
+        int index = rows.lowerBound(date);
+        if (index == rows.mSize || rows.mDates[index] != date) {
+            if (!batch.isComplete(row)) {
+                return false;
+            }
+            rows.insertAt(index);
+            rows.mIds[index] = mPendingNextId++;
+            rows.mDates[index] = date;
+        }
+
+        if (batch.hasWeatherId(row)) {
+            rows.mWeatherIds[index] = batch.getWeatherId(row);
+        }
+        for (int column = 0; column < VALUE_COLUMNS; column++) {
+            if (batch.hasValue(row, column)) {
+                rows.mValues[column][index] = batch.getValue(row, column);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int upsert(ForecastBatch rows) {
+        int rowsWritten = 0;
+
+        beginTransaction();
+        try {
+            Rows pending = writableRows();
+            for (int row = 0; row < rows.size(); row++) {
+                if (put(pending, rows, row)) {
+                    rowsWritten++;
+                }
+            }
+            if (rowsWritten > 0) {
+                markChanged();
+            }
+            setTransactionSuccessful();
+        } finally {
+            endTransaction();
+        }
+        return rowsWritten;
+    }
+
+    @Override
+    public int replaceAll(ForecastBatch rows) {
+        int rowsInserted = 0;
+
+        beginTransaction();
+        try {
+            mPending = new Rows(rows.size());
+            for (int row = 0; row < rows.size(); row++) {
+                if (put(mPending, rows, row)) {
+                    rowsInserted++;
+                }
+            }
+            markChanged();
+            setTransactionSuccessful();
+        } finally {
+            endTransaction();
+        }
+        return rowsInserted;
+    }
+
+    @Override
+    public int deleteBefore(long date) {
+        beginTransaction();
+        try {
+            int end = readableRows().lowerBound(date);
+            if (end > 0) {
+                writableRows().removeRange(0, end);
+                markChanged();
+            }
+            setTransactionSuccessful();
+            return end;
+        } finally {
+            endTransaction();
+        }
+    }
+
+    @Override
+    public int deleteFrom(long date) {
+        beginTransaction();
+        try {
+            Rows rows = readableRows();
+            int start = rows.lowerBound(date);
+            int deleted = rows.mSize - start;
+            if (deleted > 0) {
+                writableRows().removeRange(start, start + deleted);
+                markChanged();
+            }
+            setTransactionSuccessful();
+            return deleted;
+        } finally {
+            endTransaction();
+        }
+    }
+
+    @Override
+    public int deleteRange(long startDate, long endDate) {
+        beginTransaction();
+        try {
+            Rows rows = readableRows();
+            int start = rows.lowerBound(startDate);
+            int deleted = Math.max(0, rows.lowerBound(endDate) - start);
+            if (deleted > 0) {
+                writableRows().removeRange(start, start + deleted);
+                markChanged();
+            }
+            setTransactionSuccessful();
+            return deleted;
+        } finally {
+            endTransaction();
+        }
+    }
+
+    @Override
+    protected void lockTransaction() {
+        mWriteLock.lock();
+        if (mWriteLock.getHoldCount() == 1) {
+            mPendingNextId = mNextId;
+        }
+    }
+
+    @Override
+    protected void unlockTransaction(boolean outermost, boolean commit) {
+        if (outermost) {
+            if (commit && mPending != null) {
+                mRows = mPending;
+                mNextId = mPendingNextId;
+            }
+            mPending = null;
+        }
+        mWriteLock.unlock();
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,217 @@
+package com.example.hazem.sunshineweatherapp.data;
+
+import com.example.hazem.sunshineweatherapp.utilities.GeohashUtils;
+import com.example.hazem.sunshineweatherapp.utilities.SunshineDateUtils;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Maps free-text location queries ("Mountain View, CA 94043") to the coordinates the weather
+ * server resolved them to. Once a query is resolved, syncs use the coordinate form of the request
+ * instead of asking the server to resolve the same text again.
+ * <p>
+ * Entries expire after {@link #DEFAULT_TTL_MILLIS} and the least recently used entry is evicted
+ * beyond {@link #DEFAULT_MAX_ENTRIES}. Each entry remembers when it was last used, so the order
+ * of eviction survives being persisted through
+ * {@link SunshinePreferences#getLocationResolutionCache} and
+ * {@link SunshinePreferences#saveLocationResolutionCache}. {@link #takeChanged()} tells when
+ * there is something new to persist.
+ * <p>
+ * The app keeps a single instance, shared by every sync, so all methods are synchronized.
+ */
+public class LocationResolutionCache {
+
+    public static final long DEFAULT_TTL_MILLIS = 30 * SunshineDateUtils.DAY_IN_MILLIS;
+    public static final int DEFAULT_MAX_ENTRIES = 32;
+
+    private static final String FIELD_SEPARATOR = "\t";
+
+    private final long mTtlMillis;
+    private final int mMaxEntries;
+
+    /* Access ordered, so the eldest entry is always the least recently used one */
+    private final LinkedHashMap<String, Entry> mEntries;
+
+    /* Whether entries or their recency changed since the last takeChanged */
+    private boolean mChanged;
+
+    /**
+     * A resolved location.
+     */
+    public static class Entry {
+        private final double mLatitude;
+        private final double mLongitude;
+        private final String mGeohash;
+        private final long mResolvedAt;
+        /* Only changed by the cache, under its lock */
+        private long mLastUsedAt;
+
+        Entry(double latitude, double longitude, long resolvedAt, long lastUsedAt) {
+            mLatitude = latitude;
+            mLongitude = longitude;
+            mGeohash = GeohashUtils.encode(latitude, longitude, GeohashUtils.FORECAST_BUCKET_PRECISION);
+            mResolvedAt = resolvedAt;
+            mLastUsedAt = lastUsedAt;
+        }
+
+        public double getLatitude() {
+            return mLatitude;
+        }
+
+        public double getLongitude() {
+            return mLongitude;
+        }
+
+        /* The forecast bucket of this location, shared by every location in the same cell */
+        public String getGeohash() {
+            return mGeohash;
+        }
+
+        public long getResolvedAt() {
+            return mResolvedAt;
+        }
+    }
+
+    public LocationResolutionCache() {
+        this(DEFAULT_TTL_MILLIS, DEFAULT_MAX_ENTRIES);
+    }
+
+    public LocationResolutionCache(long ttlMillis, final int maxEntries) {
+        mTtlMillis = ttlMillis;
+        mMaxEntries = maxEntries;
+        mEntries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > mMaxEntries;
+            }
+        };
+    }
+
+    /**
+     * Normalizes a location query so trivially different spellings share one entry, e.g.
+     * " mountain view ,CA  94043" and "Mountain View, CA 94043".
+     *
+     * @param locationQuery The query as typed by the user
+     * @return The normalized query
+     */
+    public static String normalizeQuery(String locationQuery) {
+        return locationQuery.trim()
+                .toLowerCase(Locale.US)
+                .replaceAll("\\s+", " ")
+                .replaceAll(" ?, ?", ",");
+    }
+
+    /**
+     * Looks up a query, making it the most recently used on a hit. Expired entries are removed
+     * and reported as a miss.
+     *
+     * @param locationQuery The query, normalized or not
+     * @param nowMillis     The current time
+     * @return The resolved location, or null on a miss
+     */
+    public synchronized Entry get(String locationQuery, long nowMillis) {
+        String key = normalizeQuery(locationQuery);
+        Entry entry = mEntries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (nowMillis - entry.mResolvedAt >= mTtlMillis) {
+            mEntries.remove(key);
+            mChanged = true;
+            return null;
+        }
+        entry.mLastUsedAt = nowMillis;
+        mChanged = true;
+        return entry;
+    }
+
+    /**
+     * Records the coordinates the server resolved a query to.
+     *
+     * @param locationQuery The query, normalized or not
+     * @param latitude      The resolved latitude
+     * @param longitude     The resolved longitude
+     * @param nowMillis     The current time
+     */
+    public synchronized void put(String locationQuery, double latitude, double longitude,
+                                 long nowMillis) {
+        mEntries.put(normalizeQuery(locationQuery),
+                new Entry(latitude, longitude, nowMillis, nowMillis));
+        mChanged = true;
+    }
+
+    public synchronized int size() {
+        return mEntries.size();
+    }
+
+    /**
+     * Returns whether a put, a hit or an expiry changed the cache since the last call, and
+     * resets that state. A true result means the cache should be saved again.
+     *
+     * @return true if the cache changed
+     */
+    public synchronized boolean takeChanged() {
+        boolean changed = mChanged;
+        mChanged = false;
+        return changed;
+    }
+
+    /**
+     * Serializes the cache for SharedPreferences. Each element is one tab separated entry.
+     *
+     * @return The entries of the cache
+     */
+    public synchronized Set<String> toStringSet() {
+        Set<String> serialized = new HashSet<>();
+        for (Map.Entry<String, Entry> entry : mEntries.entrySet()) {
+            Entry value = entry.getValue();
+            serialized.add(entry.getKey() + FIELD_SEPARATOR + value.mLatitude + FIELD_SEPARATOR
+                    + value.mLongitude + FIELD_SEPARATOR + value.mResolvedAt + FIELD_SEPARATOR
+                    + value.mLastUsedAt);
+        }
+        return serialized;
+    }
+
+    /**
+     * Restores entries serialized by {@link #toStringSet()}. String sets are unordered, so the
+     * recency is restored from the time each entry was last used. Entries saved before that time
+     * was kept count as last used when resolved. Malformed entries are skipped.
+     *
+     * @param serialized The serialized entries
+     */
+    public synchronized void restore(Set<String> serialized) {
+        LinkedHashMap<String, Entry> restored = new LinkedHashMap<>();
+        for (String line : serialized) {
+            String[] fields = line.split(FIELD_SEPARATOR);
+            if (fields.length != 4 && fields.length != 5) {
+                continue;
+            }
+            try {
+                long resolvedAt = Long.parseLong(fields[3]);
+                restored.put(fields[0], new Entry(
+                        Double.parseDouble(fields[1]),
+                        Double.parseDouble(fields[2]),
+                        resolvedAt,
+                        fields.length == 5 ? Long.parseLong(fields[4]) : resolvedAt));
+            } catch (NumberFormatException e) {
+                /* Skip the entry, it will be resolved again */
+            }
+        }
+
+        /* Insert least recently used first so the eldest entry is evicted first */
+        while (!restored.isEmpty()) {
+            String eldestKey = null;
+            for (Map.Entry<String, Entry> entry : restored.entrySet()) {
+                if (eldestKey == null
+                        || entry.getValue().mLastUsedAt < restored.get(eldestKey).mLastUsedAt) {
+                    eldestKey = entry.getKey();
+                }
+            }
+            mEntries.put(eldestKey, restored.remove(eldestKey));
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.hazem.sunshineweatherapp.data;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A small least recently used cache of values loaded ahead of being asked for, keyed by date,
+ * that counts how often a lookup finds what was prefetched.
+ * <p>
+ * Each {@link #invalidate()} starts a new generation. A prefetch reads the generation before it
+ * queries and hands it back to {@link #put}, so values read before a change can't land in the
+ * cache after the change cleared it.
+ * <p>
+ * All methods are synchronized: prefetches run on a background thread while lookups come from
+ * the main thread.
+ *
+ * @param <V> Type of the cached values
+ */
+public class PrefetchCache<V> {
+
+    private final int mMaxEntries;
+
+    /* Access ordered, so the eldest entry is always the least recently used one */
+    private final LinkedHashMap<Long, V> mEntries;
+
+    private int mGeneration;
+
+    private int mHitCount;
+    private int mMissCount;
+
+    public PrefetchCache(final int maxEntries) {
+        mMaxEntries = maxEntries;
+        mEntries = new LinkedHashMap<Long, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, V> eldest) {
+                return size() > mMaxEntries;
+            }
+        };
+    }
+
+    /**
+     * @return The generation to pass to {@link #put}, read before loading the values
+     */
+    public synchronized int getGeneration() {
+        return mGeneration;
+    }
+
+    /**
+     * Adds a prefetched value, evicting the least recently used one beyond the capacity.
+     *
+     * @param date       Key of the value
+     * @param value      The value
+     * @param generation What {@link #getGeneration()} returned before the value was loaded
+     * @return false if the cache was invalidated since, in which case the value is dropped
+     */
+    public synchronized boolean put(long date, V value, int generation) {
+        if (generation != mGeneration) {
+            return false;
+        }
+        mEntries.put(date, value);
+        return true;
+    }
+
+    /**
+     * Looks up a value and counts the lookup as a hit or a miss.
+     *
+     * @param date Key of the value
+     * @return The value, or null on a miss
+     */
+    public synchronized V get(long date) {
+        V value = mEntries.get(date);
+        if (value != null) {
+            mHitCount++;
+        } else {
+            mMissCount++;
+        }
+        return value;
+    }
+
+    /**
+     * Whether a value is cached, without counting a lookup or changing the order of eviction.
+     * Lets a prefetch skip what it already holds.
+     */
+    public synchronized boolean contains(long date) {
+        return mEntries.containsKey(date);
+    }
+
+    /**
+     * Drops every value, e.g. because the data they were loaded from changed, and starts a new
+     * generation.
+     */
+    public synchronized void invalidate() {
+        mEntries.clear();
+        mGeneration++;
+    }
+
+    public synchronized int size() {
+        return mEntries.size();
+    }
+
+    public synchronized int getHitCount() {
+        return mHitCount;
+    }
+
+    public synchronized int getMissCount() {
+        return mMissCount;
+    }
+
+    /**
+     * @return Share of the lookups that found a value, 0 before the first lookup
+     */
+    public synchronized double getHitRate() {
+        int lookups = mHitCount + mMissCount;
+        return lookups == 0 ? 0 : (double) mHitCount / lookups;
+    }
+}
@@ -0,0 +1,355 @@
+package com.example.hazem.sunshineweatherapp.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQueryBuilder;
+import android.database.sqlite.SQLiteStatement;
+import android.util.SparseArray;
+
+import com.example.hazem.sunshineweatherapp.data.WeatherContract.WeatherEntry;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * {@link ForecastStore} keeping the forecast in the weather table of {@link WeatherDbHelper},
+ * in whichever layout {@link WeatherDbHelper#QUANTIZED_STORAGE} selects. Range scans and point
+ * lookups use the unique index on date. Besides the store operations it serves the SQL
+ * selections and aggregates of {@link WeatherProvider}, which only this engine supports.
+ */
+public class SqliteForecastStore extends AbstractForecastStore {
+
+    /* Reads the compact weather layout back in natural units, see WeatherDbHelper#QUANTIZED_STORAGE */
+    private static final Map<String, String> sDequantizingProjectionMap =
+            buildDequantizingProjectionMap();
+
+    private static final String DATE_SELECTION = WeatherEntry.COLUMN_DATE + " = ?";
+    private static final String RANGE_SELECTION =
+            WeatherEntry.COLUMN_DATE + " >= ? AND " + WeatherEntry.COLUMN_DATE + " < ?";
+
+    /* Scale each value column of ForecastBatch is stored at in the compact layout, 0 if none */
+    private static final int[] sValueColumnScales = buildValueColumnScales();
+
+    private final WeatherDbHelper mOpenHelper;
+
+    public SqliteForecastStore(WeatherDbHelper openHelper) {
+        mOpenHelper = openHelper;
+    }
+
+    private static Map<String, String> buildDequantizingProjectionMap() {
+        Map<String, String> projectionMap = new HashMap<>();
+        projectionMap.put(WeatherEntry._ID, WeatherEntry._ID);
+        projectionMap.put(WeatherEntry.COLUMN_DATE, WeatherEntry.COLUMN_DATE);
+        projectionMap.put(WeatherEntry.COLUMN_WEATHER_ID, WeatherEntry.COLUMN_WEATHER_ID);
+        /* Used by ForecastPagingSource to count the rows */
+        projectionMap.put("COUNT(*)", "COUNT(*)");
+
+        for (String column : WeatherEntry.DERIVED_COLUMNS) {
+            projectionMap.put(column, column);
+        }
+
+        for (String column : WeatherEntry.QUANTIZED_COLUMNS) {
+            projectionMap.put(column,
+                    WeatherEntry.getDequantizedExpression(column) + " AS " + column);
+        }
+        return projectionMap;
+    }
+
+    private static int[] buildValueColumnScales() {
+        int[] scales = new int[ForecastBatch.VALUE_COLUMNS];
+        for (int i = 0; i < WeatherEntry.QUANTIZED_COLUMNS.length; i++) {
+            for (int column = 0; column < scales.length; column++) {
+                if (ForecastBatch.getValueColumnName(column).equals(WeatherEntry.QUANTIZED_COLUMNS[i])) {
+                    scales[column] = WeatherEntry.QUANTIZED_COLUMN_SCALES[i];
+                }
+            }
+        }
+        return scales;
+    }
+
+    /* Converts weather values to the layout they are stored in */
+    static ContentValues toStorage(ContentValues values) {
+        if (!WeatherDbHelper.QUANTIZED_STORAGE || values == null) {
+            return values;
+        }
+        return WeatherEntry.quantize(values);
+    }
+
+    /**
+     * Queries the weather table in whichever layout it is stored. Note that with the compact
+     * layout, a selection on a quantized column compares the stored scaled values; the app only
+     * ever selects weather rows by date.
+     */
+    Cursor query(String[] projection, String selection, String[] selectionArgs,
+                 String sortOrder, String limit) {
+        final SQLiteDatabase db = mOpenHelper.getReadableDatabase();
+
+        if (!WeatherDbHelper.QUANTIZED_STORAGE) {
+            return db.query(
+                    WeatherEntry.TABLE_NAME,
+                    projection,
+                    selection,
+                    selectionArgs,
+                    null,
+                    null,
+                    sortOrder,
+                    limit);
+        }
+
+        if (projection == null) {
+            /* Every column, rather than every entry of the projection map */
+            projection = COLUMNS;
+        }
+
+        SQLiteQueryBuilder builder = new SQLiteQueryBuilder();
+        builder.setTables(WeatherEntry.TABLE_NAME);
+        builder.setProjectionMap(sDequantizingProjectionMap);
+        return builder.query(db, projection, selection, selectionArgs, null, null, sortOrder, limit);
+    }
+
+    @Override
+    public Cursor queryRange(String[] projection, long startDate, long endDate, int offset,
+                             int limit) {
+        return query(projection, RANGE_SELECTION,
+                new String[]{Long.toString(startDate), Long.toString(endDate)},
+                WeatherEntry.COLUMN_DATE + " ASC",
+                limit < 0 ? (offset > 0 ? offset + "," + Integer.MAX_VALUE : null)
+                        : offset + "," + limit);
+    }
+
+    @Override
+    public Cursor queryDate(String[] projection, long date) {
+        return query(projection, DATE_SELECTION, new String[]{Long.toString(date)}, null, null);
+    }
+
+    @Override
+    public int count(long startDate, long endDate) {
+        return (int) DatabaseUtils.queryNumEntries(mOpenHelper.getReadableDatabase(),
+                WeatherEntry.TABLE_NAME, RANGE_SELECTION,
+                new String[]{Long.toString(startDate), Long.toString(endDate)});
+    }
+
+    /*
+     * Statements writing rows to a table, compiled once per set of columns the rows set and
+     * reused for every row of a write that sets the same ones. Rows are bound straight from the
+     * batch's arrays.
+     */
+    private static final class RowStatements {
+        private final SQLiteDatabase mDb;
+        private final String mTableName;
+        private final SparseArray<SQLiteStatement> mUpdates = new SparseArray<>();
+        private final SparseArray<SQLiteStatement> mInserts = new SparseArray<>();
+
+        RowStatements(SQLiteDatabase db, String tableName) {
+            mDb = db;
+            mTableName = tableName;
+        }
+
+        /* Updates the row of the date of a batch row, returns whether there was one */
+        boolean update(ForecastBatch rows, int row) {
+            int setColumns = rows.getSetColumns(row);
+            SQLiteStatement update = mUpdates.get(setColumns);
+            if (update == null) {
+                StringBuilder sql = new StringBuilder("UPDATE ").append(mTableName)
+                        .append(" SET ").append(WeatherEntry.COLUMN_DATE).append(" = ?");
+                for (String column : getSetColumnNames(rows, row)) {
+                    sql.append(", ").append(column).append(" = ?");
+                }
+                sql.append(" WHERE ").append(DATE_SELECTION);
+                update = mDb.compileStatement(sql.toString());
+                mUpdates.put(setColumns, update);
+            }
+            int index = bind(update, rows, row);
+            update.bindLong(index, rows.getDate(row));
+            return update.executeUpdateDelete() > 0;
+        }
+
+        /* Inserts a complete batch row, returns whether it was inserted */
+        boolean insert(ForecastBatch rows, int row) {
+            int setColumns = rows.getSetColumns(row);
+            SQLiteStatement insert = mInserts.get(setColumns);
+            if (insert == null) {
+                StringBuilder sql = new StringBuilder("INSERT INTO ").append(mTableName)
+                        .append(" (").append(WeatherEntry.COLUMN_DATE);
+                StringBuilder parameters = new StringBuilder("?");
+                for (String column : getSetColumnNames(rows, row)) {
+                    sql.append(", ").append(column);
+                    parameters.append(", ?");
+                }
+                sql.append(") VALUES (").append(parameters).append(")");
+                insert = mDb.compileStatement(sql.toString());
+                mInserts.put(setColumns, insert);
+            }
+            bind(insert, rows, row);
+            return insert.executeInsert() != -1;
+        }
+
+        void close() {
+            for (int i = 0; i < mUpdates.size(); i++) {
+                mUpdates.valueAt(i).close();
+            }
+            for (int i = 0; i < mInserts.size(); i++) {
+                mInserts.valueAt(i).close();
+            }
+        }
+
+        /* Columns a row sets besides its date, in the order they are bound */
+        private static String[] getSetColumnNames(ForecastBatch rows, int row) {
+            String[] columns = new String[Integer.bitCount(rows.getSetColumns(row))];
+            int count = 0;
+            if (rows.hasWeatherId(row)) {
+                columns[count++] = WeatherEntry.COLUMN_WEATHER_ID;
+            }
+            for (int column = 0; column < ForecastBatch.VALUE_COLUMNS; column++) {
+                if (rows.hasValue(row, column)) {
+                    columns[count++] = ForecastBatch.getValueColumnName(column);
+                }
+            }
+            return columns;
+        }
+
+        /* Binds the date then the set columns, returns the index of the next parameter */
+        private static int bind(SQLiteStatement statement, ForecastBatch rows, int row) {
+            int index = 1;
+            statement.bindLong(index++, rows.getDate(row));
+            if (rows.hasWeatherId(row)) {
+                statement.bindLong(index++, rows.getWeatherId(row));
+            }
+            for (int column = 0; column < ForecastBatch.VALUE_COLUMNS; column++) {
+                if (!rows.hasValue(row, column)) {
+                    continue;
+                }
+                double value = rows.getValue(row, column);
+                if (WeatherDbHelper.QUANTIZED_STORAGE && sValueColumnScales[column] != 0) {
+                    statement.bindLong(index++, Math.round(value * sValueColumnScales[column]));
+                } else {
+                    statement.bindDouble(index++, value);
+                }
+            }
+            return index;
+        }
+    }
+
+    @Override
+    public int upsert(ForecastBatch rows) {
+        RowStatements statements =
+                new RowStatements(mOpenHelper.getWritableDatabase(), WeatherEntry.TABLE_NAME);
+
+        int rowsWritten = 0;
+
+        beginTransaction();
+        try {
+            for (int row = 0; row < rows.size(); row++) {
+                if (statements.update(rows, row)
+                        || (rows.isComplete(row) && statements.insert(rows, row))) {
+                    rowsWritten++;
+                }
+            }
+            if (rowsWritten > 0) {
+                markChanged();
+            }
+            setTransactionSuccessful();
+        } finally {
+            statements.close();
+            endTransaction();
+        }
+        return rowsWritten;
+    }
+
+    /**
+     * Stages the rows in a shadow table which is then swapped in for the live one. Queries
+     * running meanwhile on other connections keep reading the live table, thanks to write-ahead
+     * logging, until the transaction commits.
+     */
+    @Override
+    public int replaceAll(ForecastBatch rows) {
+        final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        String shadowTableName = WeatherDbHelper.getShadowTableName(WeatherEntry.TABLE_NAME);
+
+        int rowsInserted = 0;
+
+        beginTransaction();
+        RowStatements statements = null;
+        try {
+            WeatherDbHelper.createShadowTable(db, WeatherEntry.TABLE_NAME);
+            statements = new RowStatements(db, shadowTableName);
+            for (int row = 0; row < rows.size(); row++) {
+                if (rows.isComplete(row) && statements.insert(rows, row)) {
+                    rowsInserted++;
+                }
+            }
+            /* Compiled against the shadow table, which is about to be renamed */
+            statements.close();
+            statements = null;
+            WeatherDbHelper.swapInShadowTable(db, WeatherEntry.TABLE_NAME);
+            markChanged();
+            setTransactionSuccessful();
+        } finally {
+            if (statements != null) {
+                statements.close();
+            }
+            endTransaction();
+        }
+        return rowsInserted;
+    }
+
+    @Override
+    public int deleteBefore(long date) {
+        return delete(WeatherEntry.COLUMN_DATE + " < ?", date);
+    }
+
+    @Override
+    public int deleteFrom(long date) {
+        return delete(WeatherEntry.COLUMN_DATE + " >= ?", date);
+    }
+
+    @Override
+    public int deleteRange(long startDate, long endDate) {
+        return delete(WeatherEntry.COLUMN_DATE + " >= ? AND " + WeatherEntry.COLUMN_DATE + " < ?",
+                startDate, endDate);
+    }
+
+    private int delete(String selection, long... dates) {
+        int rowsDeleted;
+
+        String[] selectionArgs = new String[dates.length];
+        for (int i = 0; i < dates.length; i++) {
+            selectionArgs[i] = Long.toString(dates[i]);
+        }
+
+        beginTransaction();
+        try {
+            rowsDeleted = mOpenHelper.getWritableDatabase().delete(WeatherEntry.TABLE_NAME,
+                    selection, selectionArgs);
+            if (rowsDeleted > 0) {
+                markChanged();
+            }
+            setTransactionSuccessful();
+        } finally {
+            endTransaction();
+        }
+        return rowsDeleted;
+    }
+
+    /* SQLite nests the transactions itself and holds other writers off until the outermost ends */
+    @Override
+    protected void lockTransaction() {
+        mOpenHelper.getWritableDatabase().beginTransaction();
+    }
+
+    @Override
+    protected void unlockTransaction(boolean outermost, boolean commit) {
+        final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        if (commit) {
+            db.setTransactionSuccessful();
+        }
+        db.endTransaction();
+    }
+
+    /* The helper belongs to the provider, which closes it */
+    @Override
+    public void close() {
+    }
+}
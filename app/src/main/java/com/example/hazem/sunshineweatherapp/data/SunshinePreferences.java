@@ -6,6 +6,15 @@ import android.support.v7.preference.PreferenceManager;
 
 import com.example.hazem.sunshineweatherapp.R;
 
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Reads and writes the user's preferences. The first read loads the preferences file from disk,
+ * so reads are timed by {@link AccessWatchdog} in debug builds to find the ones made on the main
+ * thread.
+ */
 public class SunshinePreferences {
     /*
      * In order to uniquely pinpoint the location on the map when we launch the
@@ -55,6 +64,8 @@ public class SunshinePreferences {
      * "94043,USA" if SharedPreferences have not been implemented yet.
      */
     public static String getPreferredWeatherLocation(Context context) {
+        long start = AccessWatchdog.begin();
+
         SharedPreferences sharedPreferences =
                 PreferenceManager.getDefaultSharedPreferences(context);
 
@@ -63,6 +74,8 @@ public class SunshinePreferences {
 
         String valueForLocation = sharedPreferences.getString(keyForLocation,defaultLocation);
 
+        AccessWatchdog.end(AccessWatchdog.KIND_PREFERENCES, "getPreferredWeatherLocation", start);
+
         return valueForLocation;
     }
 
@@ -73,6 +86,8 @@ public class SunshinePreferences {
      * @return true If metric display should be used
      */
     public static boolean isMetric(Context context) {
+        long start = AccessWatchdog.begin();
+
         SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
 
         String keyForUnits = context.getString(R.string.pref_units_key);
@@ -85,6 +100,8 @@ public class SunshinePreferences {
             userPrefersMetric = true;
         }
 
+        AccessWatchdog.end(AccessWatchdog.KIND_PREFERENCES, "isMetric", start);
+
         return userPrefersMetric;
     }
 
@@ -97,6 +114,8 @@ public class SunshinePreferences {
      * @return An array containing the two coordinate values.
      */
     public static double[] getLocationCoordinates(Context context) {
+        long start = AccessWatchdog.begin();
+
         SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
 
         double[] preferredCoordinates = new double[2];
@@ -115,6 +134,8 @@ public class SunshinePreferences {
         preferredCoordinates[1] = Double
                 .longBitsToDouble(sp.getLong(PREF_COORD_LONG, Double.doubleToRawLongBits(0.0)));
 
+        AccessWatchdog.end(AccessWatchdog.KIND_PREFERENCES, "getLocationCoordinates", start);
+
         return preferredCoordinates;
     }
 
@@ -126,6 +147,8 @@ public class SunshinePreferences {
      * @return true if lat/long are set
      */
     public static boolean isLocationLatLonAvailable(Context context) {
+        long start = AccessWatchdog.begin();
+
         SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
 
         boolean spContainLatitude = sp.contains(PREF_COORD_LAT);
@@ -136,6 +159,8 @@ public class SunshinePreferences {
             spContainBothLatitudeAndLongitude = true;
         }
 
+        AccessWatchdog.end(AccessWatchdog.KIND_PREFERENCES, "isLocationLatLonAvailable", start);
+
         return spContainBothLatitudeAndLongitude;
     }
 
@@ -147,6 +172,8 @@ public class SunshinePreferences {
      * @return true if the user prefers to see notifications, false otherwise
      */
     public static boolean areNotificationsEnabled(Context context) {
+        long start = AccessWatchdog.begin();
+
         /* Key for accessing the preference for showing notifications */
         String displayNotificationsKey = context.getString(R.string.pref_enable_notifications_key);
 
@@ -166,6 +193,8 @@ public class SunshinePreferences {
         boolean shouldDisplayNotifications = sp
                 .getBoolean(displayNotificationsKey, shouldDisplayNotificationsByDefault);
 
+        AccessWatchdog.end(AccessWatchdog.KIND_PREFERENCES, "areNotificationsEnabled", start);
+
         return shouldDisplayNotifications;
     }
 
@@ -176,6 +205,8 @@ public class SunshinePreferences {
      * @return UNIX time of when the last notification was shown
      */
     public static long getLastNotificationTimeInMillis(Context context) {
+        long start = AccessWatchdog.begin();
+
         /* Key for accessing the time at which Sunshine last displayed a notification */
         String lastNotificationKey = context.getString(R.string.pref_last_notification);
 
@@ -194,6 +225,9 @@ public class SunshinePreferences {
          */
         long lastNotificationTime = sp.getLong(lastNotificationKey, 0);
 
+        AccessWatchdog.end(AccessWatchdog.KIND_PREFERENCES, "getLastNotificationTimeInMillis",
+                start);
+
         return lastNotificationTime;
     }
 
@@ -226,4 +260,115 @@ public class SunshinePreferences {
         editor.putLong(lastNotificationKey, timeOfNotification);
         editor.apply();
     }
+
+    /**
+     * Returns the keys of the weather alerts that were already shown to the user, so the same
+     * rule doesn't notify twice for the same day.
+     *
+     * @param context Used to access SharedPreferences
+     * @return Set of alert keys in the form ruleId|date, empty if none were shown yet
+     */
+    public static Set<String> getFiredWeatherAlertKeys(Context context) {
+        long start = AccessWatchdog.begin();
+
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
+        String firedAlertsKey = context.getString(R.string.pref_fired_weather_alerts);
+
+        /* The returned set must not be modified, so hand out a copy */
+        Set<String> firedKeys =
+                new HashSet<>(sp.getStringSet(firedAlertsKey, Collections.<String>emptySet()));
+
+        AccessWatchdog.end(AccessWatchdog.KIND_PREFERENCES, "getFiredWeatherAlertKeys", start);
+
+        return firedKeys;
+    }
+
+    /**
+     * Saves the keys of the weather alerts that were shown to the user.
+     *
+     * @param context   Used to access SharedPreferences
+     * @param firedKeys Set of alert keys in the form ruleId|date
+     */
+    public static void saveFiredWeatherAlertKeys(Context context, Set<String> firedKeys) {
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
+        SharedPreferences.Editor editor = sp.edit();
+        String firedAlertsKey = context.getString(R.string.pref_fired_weather_alerts);
+        editor.putStringSet(firedAlertsKey, firedKeys);
+        editor.apply();
+    }
+
+    /* Loaded from the preferences on first use, then shared by the whole process */
+    private static LocationResolutionCache sLocationResolutionCache;
+
+    /**
+     * Returns the cache of location queries the weather server has already resolved to
+     * coordinates. The same instance is returned every time, so the recency of its entries is
+     * kept between syncs; save it after it changes.
+     *
+     * @param context Used to access SharedPreferences
+     * @return The cache, empty if nothing was resolved yet
+     */
+    public static synchronized LocationResolutionCache getLocationResolutionCache(Context context) {
+        if (sLocationResolutionCache != null) {
+            return sLocationResolutionCache;
+        }
+
+        long start = AccessWatchdog.begin();
+
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
+        String cacheKey = context.getString(R.string.pref_location_resolution_cache);
+
+        LocationResolutionCache cache = new LocationResolutionCache();
+        cache.restore(sp.getStringSet(cacheKey, Collections.<String>emptySet()));
+        AccessWatchdog.end(AccessWatchdog.KIND_PREFERENCES, "getLocationResolutionCache", start);
+
+        sLocationResolutionCache = cache;
+        return cache;
+    }
+
+    /**
+     * Saves the cache of resolved location queries.
+     *
+     * @param context Used to access SharedPreferences
+     * @param cache   The cache to persist
+     */
+    public static void saveLocationResolutionCache(Context context, LocationResolutionCache cache) {
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
+        SharedPreferences.Editor editor = sp.edit();
+        String cacheKey = context.getString(R.string.pref_location_resolution_cache);
+        editor.putStringSet(cacheKey, cache.toStringSet());
+        editor.apply();
+    }
+
+    /**
+     * Returns the version of the daily forecast held by the weather table, as sent by the
+     * weather server. The next sync sends it back to only download what changed since.
+     *
+     * @param context Used to access SharedPreferences
+     * @return The version, or an empty string if the held forecast has none
+     */
+    public static String getForecastVersion(Context context) {
+        long start = AccessWatchdog.begin();
+
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
+        String version = sp.getString(context.getString(R.string.pref_forecast_version), "");
+
+        AccessWatchdog.end(AccessWatchdog.KIND_PREFERENCES, "getForecastVersion", start);
+
+        return version;
+    }
+
+    /**
+     * Saves the version of the daily forecast the weather table was just brought to.
+     *
+     * @param context Used to access SharedPreferences
+     * @param version The version, null or empty if the forecast has none
+     */
+    public static void saveForecastVersion(Context context, String version) {
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
+        SharedPreferences.Editor editor = sp.edit();
+        editor.putString(context.getString(R.string.pref_forecast_version),
+                version == null ? "" : version);
+        editor.apply();
+    }
 }
@@ -0,0 +1,203 @@
+package com.example.hazem.sunshineweatherapp.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.util.Log;
+
+import com.example.hazem.sunshineweatherapp.data.WeatherContract.SyncJournalEntry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Writes the {@link SyncJournalEntry} rows. A sync fills an {@link Entry} as it goes and hands it
+ * to {@link #record(Context, Entry)} when it's over, which only queues it: the rows are written
+ * on a background thread, every entry queued by then in one bulk insert, so the sync neither
+ * waits for the database nor takes a transaction of its own for the journal.
+ * <p>
+ * A failure to write the journal is logged and otherwise ignored, it never fails a sync.
+ */
+public final class SyncJournal {
+
+    private static final String TAG = "SyncJournal";
+
+    private static final ExecutorService sWriter = Executors.newSingleThreadExecutor(
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, TAG);
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    /* Rows queued since the last write, a write is scheduled whenever this isn't empty */
+    private static final List<ContentValues> sPendingRows = new ArrayList<>();
+
+    private SyncJournal() {
+    }
+
+    /**
+     * What one sync did. Every value but the outcome starts at zero or null, and stage times
+     * add up, so a sync that starts over counts both attempts.
+     */
+    public static class Entry {
+        private final long mStartTime;
+        private int mOutcome = SyncJournalEntry.OUTCOME_FAILURE;
+        private int mHttpStatus;
+        private long mBytes;
+        private int mRowsChanged;
+        private long mNetworkMillis;
+        private long mParseMillis;
+        private long mWriteMillis;
+        private String mError;
+
+        /**
+         * @param startTime When the sync started, in UTC milliseconds
+         */
+        public Entry(long startTime) {
+            mStartTime = startTime;
+        }
+
+        public long getStartTime() {
+            return mStartTime;
+        }
+
+        public int getOutcome() {
+            return mOutcome;
+        }
+
+        /**
+         * @param outcome One of the {@link SyncJournalEntry} OUTCOME constants
+         */
+        public void setOutcome(int outcome) {
+            mOutcome = outcome;
+        }
+
+        public void setHttpStatus(int httpStatus) {
+            mHttpStatus = httpStatus;
+        }
+
+        public void addBytes(long bytes) {
+            mBytes += bytes;
+        }
+
+        public void addRowsChanged(int rows) {
+            mRowsChanged += rows;
+        }
+
+        public void addNetworkMillis(long millis) {
+            mNetworkMillis += millis;
+        }
+
+        public void addParseMillis(long millis) {
+            mParseMillis += millis;
+        }
+
+        public void addWriteMillis(long millis) {
+            mWriteMillis += millis;
+        }
+
+        /**
+         * Marks the sync as failed.
+         *
+         * @param error What went wrong, e.g. the message of the exception
+         */
+        public void setFailed(String error) {
+            mOutcome = SyncJournalEntry.OUTCOME_FAILURE;
+            mError = error;
+        }
+
+        /**
+         * @param endTime When the sync ended, in UTC milliseconds
+         * @return The journal row of the sync
+         */
+        ContentValues toContentValues(long endTime) {
+            ContentValues values = new ContentValues();
+            values.put(SyncJournalEntry.COLUMN_START_TIME, mStartTime);
+            values.put(SyncJournalEntry.COLUMN_END_TIME, endTime);
+            values.put(SyncJournalEntry.COLUMN_OUTCOME, mOutcome);
+            values.put(SyncJournalEntry.COLUMN_HTTP_STATUS, mHttpStatus);
+            values.put(SyncJournalEntry.COLUMN_BYTES, mBytes);
+            values.put(SyncJournalEntry.COLUMN_ROWS_CHANGED, mRowsChanged);
+            values.put(SyncJournalEntry.COLUMN_NETWORK_MILLIS, mNetworkMillis);
+            values.put(SyncJournalEntry.COLUMN_PARSE_MILLIS, mParseMillis);
+            values.put(SyncJournalEntry.COLUMN_WRITE_MILLIS, mWriteMillis);
+            if (mOutcome == SyncJournalEntry.OUTCOME_FAILURE) {
+                values.put(SyncJournalEntry.COLUMN_ERROR, mError);
+            }
+            return values;
+        }
+    }
+
+    /**
+     * Queues the journal row of a sync that just ended. Returns right away.
+     *
+     * @param context Used to get the ContentResolver
+     * @param entry   What the sync did, ending now
+     */
+    public static void record(Context context, Entry entry) {
+        final ContentResolver resolver = context.getApplicationContext().getContentResolver();
+        ContentValues row = entry.toContentValues(System.currentTimeMillis());
+
+        boolean scheduleWrite;
+        synchronized (sPendingRows) {
+            scheduleWrite = sPendingRows.isEmpty();
+            sPendingRows.add(row);
+        }
+
+        /* Rows queued before the write runs join it */
+        if (scheduleWrite) {
+            sWriter.execute(new Runnable() {
+                @Override
+                public void run() {
+                    writePendingRows(resolver);
+                }
+            });
+        }
+    }
+
+    private static void writePendingRows(ContentResolver resolver) {
+        ContentValues[] rows;
+        synchronized (sPendingRows) {
+            rows = sPendingRows.toArray(new ContentValues[sPendingRows.size()]);
+            sPendingRows.clear();
+        }
+
+        try {
+            resolver.bulkInsert(SyncJournalEntry.CONTENT_URI, rows);
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Dropping " + rows.length + " journal rows", e);
+        }
+    }
+
+    /**
+     * Waits until the rows queued so far are written, for tests.
+     *
+     * @param timeoutMillis How long to wait at most
+     * @return false if the rows weren't written in time
+     */
+    static boolean awaitWrites(long timeoutMillis) throws InterruptedException {
+        Future<?> marker = sWriter.submit(new Runnable() {
+            @Override
+            public void run() {
+            }
+        });
+        try {
+            marker.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (ExecutionException e) {
+            return false;
+        } catch (TimeoutException e) {
+            return false;
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.example.hazem.sunshineweatherapp.data;
 
+import android.content.ContentResolver;
+import android.content.ContentValues;
 import android.net.Uri;
 import android.provider.BaseColumns;
 
@@ -13,11 +15,59 @@ public class WeatherContract {
 
     public static final String PATH_WEATHER = "weather";
 
+    public static final String PATH_HOURLY_WEATHER = "hourly";
+
+    public static final String PATH_STATS = "stats";
+
+    public static final String PATH_CONDITIONS = "conditions";
+
+    public static final String PATH_REPLACE = "replace";
+
+    public static final String PATH_PATCH = "patch";
+
+    public static final String PATH_SYNC_JOURNAL = "sync_journal";
+
+    public static final String PATH_SUMMARY = "summary";
+
     public static final class WeatherEntry implements BaseColumns {
         public static final Uri CONTENT_URI = BASE_CONTENT_URI.buildUpon()
                 .appendPath(PATH_WEATHER)
                 .build();
 
+        /*
+         * Bulk inserting into this URI replaces every weather row with the inserted ones in a
+         * single transaction, notifying CONTENT_URI once. Queries see either the old forecast or
+         * the new one, never an empty table in between as with a delete followed by an insert.
+         */
+        public static final Uri REPLACE_URI = CONTENT_URI.buildUpon()
+                .appendPath(PATH_REPLACE)
+                .build();
+
+        /*
+         * Bulk inserting into a URI built by buildPatchUri applies a forecast delta in place, in
+         * a single transaction: every inserted row updates the row of its date, or is inserted
+         * if there is none, and the rows outside the patch's date range are deleted. A row may
+         * hold only some columns when it updates an existing day. If the days in the range don't
+         * then come out complete, one row per day, the patch is rolled back and -1 is returned,
+         * telling the sync to fall back to a full replace.
+         */
+        public static final Uri PATCH_URI = CONTENT_URI.buildUpon()
+                .appendPath(PATH_PATCH)
+                .build();
+
+        /*
+         * Query parameters of PATCH_URI, the date range the forecast covers once patched, both
+         * normalized dates. The start is inclusive and the end exclusive.
+         */
+        public static final String QUERY_PARAMETER_PATCH_START = "start";
+        public static final String QUERY_PARAMETER_PATCH_END = "end";
+
+        /* MIME types returned by WeatherProvider#getType */
+        public static final String CONTENT_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_WEATHER;
+        public static final String CONTENT_ITEM_TYPE =
+                ContentResolver.CURSOR_ITEM_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_WEATHER;
+
         public static final String TABLE_NAME = "weather";
 
         public static final String COLUMN_DATE = "date";
@@ -35,6 +85,115 @@ public class WeatherContract {
 
         public static final String COLUMN_DEGREES = "degrees";
 
+        /*
+         * Metrics derived from the columns above when a sync ingests the forecast, see
+         * ForecastEnricher: apparent temperature and dew point in °C, pressure change since the
+         * day before in hPa, and a comfort index from 0 to 100. They are stored as REALs in both
+         * layouts of the table.
+         */
+        public static final String COLUMN_APPARENT_TEMP = "apparent_temp";
+        public static final String COLUMN_DEW_POINT = "dew_point";
+        public static final String COLUMN_PRESSURE_TREND = "pressure_trend";
+        public static final String COLUMN_COMFORT_INDEX = "comfort_index";
+
+        public static final String[] DERIVED_COLUMNS = {
+                COLUMN_APPARENT_TEMP,
+                COLUMN_DEW_POINT,
+                COLUMN_PRESSURE_TREND,
+                COLUMN_COMFORT_INDEX
+        };
+
+        /*
+         * Optional query parameter on CONTENT_URI that limits the number of rows returned. The
+         * value is either "count" or "offset,count", as accepted by SQLite's LIMIT clause.
+         */
+        public static final String QUERY_PARAMETER_LIMIT = "limit";
+
+        /*
+         * Optional query parameters on CONTENT_URI that restrict the rows to a date range, see
+         * buildWeatherUriWithRange. The start is inclusive and the end exclusive. Queried without
+         * a selection and by date, the range is served by the ForecastStore whichever engine is
+         * in use, while a selection needs the SQLite one.
+         */
+        public static final String QUERY_PARAMETER_START = "start";
+        public static final String QUERY_PARAMETER_END = "end";
+
+        /*
+         * ContentResolver#call method that writes a ForecastBatch the way bulk inserting its
+         * rows into the URI passed as the argument would: CONTENT_URI, REPLACE_URI or a patch
+         * URI. The batch travels as primitive arrays rather than a ContentValues per row, see
+         * ForecastBatch#bulkInsert. The result holds what bulkInsert would have returned under
+         * EXTRA_ROW_COUNT.
+         */
+        public static final String METHOD_BULK_INSERT_BATCH = "bulkInsertBatch";
+        public static final String EXTRA_ROW_COUNT = "rowCount";
+
+
+        /*
+         * Columns stored as scaled integers by the compact layout (see WeatherDbHelper), and the
+         * scale of each. A column with scale 10 holds tenths, e.g. 21.5° is stored as 215:
+         * temperatures and wind speed in tenths, pressure in tenths of hPa, humidity in whole
+         * percent and the wind bearing in whole degrees. Cursors returned by WeatherProvider
+         * always hold the unscaled values, whichever layout is in use.
+         */
+        public static final String[] QUANTIZED_COLUMNS = {
+                COLUMN_MIN_TEMP,
+                COLUMN_MAX_TEMP,
+                COLUMN_HUMIDITY,
+                COLUMN_PRESSURE,
+                COLUMN_WIND_SPEED,
+                COLUMN_DEGREES
+        };
+
+        public static final int[] QUANTIZED_COLUMN_SCALES = {10, 10, 1, 10, 10, 1};
+
+        /**
+         * Converts values as passed to WeatherProvider to the compact layout, rounding every
+         * quantized column to its scale. Other columns are copied as they are.
+         *
+         * @param values Values with the measurements in their natural units
+         * @return A copy of values with the quantized columns as scaled integers
+         */
+        public static ContentValues quantize(ContentValues values) {
+            ContentValues quantized = new ContentValues(values);
+            for (int i = 0; i < QUANTIZED_COLUMNS.length; i++) {
+                Double value = values.getAsDouble(QUANTIZED_COLUMNS[i]);
+                if (value != null) {
+                    quantized.put(QUANTIZED_COLUMNS[i], Math.round(value * QUANTIZED_COLUMN_SCALES[i]));
+                }
+            }
+            return quantized;
+        }
+
+        /**
+         * Returns the SQL expression that reads a quantized column back in its natural unit,
+         * e.g. "min / 10.0".
+         *
+         * @param column One of {@link #QUANTIZED_COLUMNS}
+         * @return An expression evaluating to the unscaled value
+         */
+        public static String getDequantizedExpression(String column) {
+            return getDequantizedExpression(column, column);
+        }
+
+        /**
+         * Same as {@link #getDequantizedExpression(String)} for an expression that evaluates to
+         * a stored value of the column, e.g. "MAX(max)", which gives "MAX(max) / 10.0".
+         *
+         * @param column           One of {@link #QUANTIZED_COLUMNS}
+         * @param storedExpression Expression in the stored scale of the column
+         * @return An expression evaluating to the unscaled value
+         */
+        public static String getDequantizedExpression(String column, String storedExpression) {
+            for (int i = 0; i < QUANTIZED_COLUMNS.length; i++) {
+                if (QUANTIZED_COLUMNS[i].equals(column)) {
+                    return QUANTIZED_COLUMN_SCALES[i] == 1
+                            ? "CAST(" + storedExpression + " AS REAL)"
+                            : storedExpression + " / " + QUANTIZED_COLUMN_SCALES[i] + ".0";
+                }
+            }
+            throw new IllegalArgumentException("Not a quantized column: " + column);
+        }
 
         public static Uri buildWeatherUriWithDate(long date) {
             return CONTENT_URI.buildUpon()
@@ -42,9 +201,368 @@ public class WeatherContract {
                     .build();
         }
 
-        public static String getSqlSelectForTodayOnwards() {
-            long normalizedUtcNow = SunshineDateUtils.normalizeDate(System.currentTimeMillis());
-            return WeatherContract.WeatherEntry.COLUMN_DATE + " >= " + normalizedUtcNow;
+        /**
+         * Builds a URI that returns the rows of a date range.
+         *
+         * @param startDate First date, normalized
+         * @param endDate   Date after the last one, normalized
+         * @return Uri to query the weather rows of the range
+         */
+        public static Uri buildWeatherUriWithRange(long startDate, long endDate) {
+            return CONTENT_URI.buildUpon()
+                    .appendQueryParameter(QUERY_PARAMETER_START, Long.toString(startDate))
+                    .appendQueryParameter(QUERY_PARAMETER_END, Long.toString(endDate))
+                    .build();
+        }
+
+        /**
+         * Builds a URI that returns the rows from a date on, e.g. from today.
+         *
+         * @param startDate First date
+         * @return Uri to query the weather rows from startDate on
+         */
+        public static Uri buildWeatherUriFromDate(long startDate) {
+            return CONTENT_URI.buildUpon()
+                    .appendQueryParameter(QUERY_PARAMETER_START, Long.toString(startDate))
+                    .build();
+        }
+
+        /**
+         * Builds a URI that returns at most count rows from a date on. Used to page through the
+         * weather rows by date (keyset paging), starting each page after the last date of the
+         * previous one.
+         *
+         * @param startDate First date
+         * @param count     Maximum number of rows to return
+         * @return Uri to query at most count weather rows from startDate on
+         */
+        public static Uri buildWeatherUriFromDate(long startDate, int count) {
+            return buildWeatherUriFromDate(startDate).buildUpon()
+                    .appendQueryParameter(QUERY_PARAMETER_LIMIT, Integer.toString(count))
+                    .build();
+        }
+
+        /**
+         * Builds a URI that skips offset rows from a date on and returns at most count rows.
+         * Only used when there is no known date to page from, e.g. after a fast scroll.
+         *
+         * @param startDate First date
+         * @param offset    Number of rows to skip
+         * @param count     Maximum number of rows to return
+         * @return Uri to query at most count weather rows starting at offset
+         */
+        public static Uri buildWeatherUriFromDate(long startDate, int offset, int count) {
+            return buildWeatherUriFromDate(startDate).buildUpon()
+                    .appendQueryParameter(QUERY_PARAMETER_LIMIT, offset + "," + count)
+                    .build();
+        }
+
+        /**
+         * Builds the URI a forecast delta is bulk inserted into, see {@link #PATCH_URI}.
+         *
+         * @param startDate First day the forecast covers, normalized
+         * @param endDate   Day after the last one, normalized
+         * @return Uri to patch the forecast with
+         */
+        public static Uri buildPatchUri(long startDate, long endDate) {
+            return PATCH_URI.buildUpon()
+                    .appendQueryParameter(QUERY_PARAMETER_PATCH_START, Long.toString(startDate))
+                    .appendQueryParameter(QUERY_PARAMETER_PATCH_END, Long.toString(endDate))
+                    .build();
+        }
+
+        /* The rows from today on, the forecast the app shows */
+        public static Uri buildWeatherUriFromToday() {
+            return buildWeatherUriFromDate(
+                    SunshineDateUtils.normalizeDate(System.currentTimeMillis()));
+        }
+    }
+
+    /**
+     * Statistics over the weather rows of a date range, computed by SQLite rather than by
+     * scanning the rows through a cursor; the in-memory engine scans its own rows, and takes no
+     * selection on these URIs. {@link #CONTENT_URI} returns a single row with the
+     * aggregates below; {@link #CONDITIONS_URI} returns one row per condition group with the
+     * number of days in it. Both are notified whenever the weather table changes.
+     */
+    public static final class WeatherStatsEntry {
+        public static final Uri CONTENT_URI = WeatherEntry.CONTENT_URI.buildUpon()
+                .appendPath(PATH_STATS)
+                .build();
+
+        public static final Uri CONDITIONS_URI = CONTENT_URI.buildUpon()
+                .appendPath(PATH_CONDITIONS)
+                .build();
+
+        public static final String CONTENT_ITEM_TYPE =
+                ContentResolver.CURSOR_ITEM_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_STATS;
+        public static final String CONDITIONS_CONTENT_TYPE = ContentResolver.CURSOR_DIR_BASE_TYPE
+                + "/" + CONTENT_AUTHORITY + "/" + PATH_STATS + "/" + PATH_CONDITIONS;
+
+        /*
+         * Optional query parameters bounding the date range, both normalized dates. The start is
+         * inclusive and the end exclusive; a missing bound leaves that side open.
+         */
+        public static final String QUERY_PARAMETER_START = "start";
+        public static final String QUERY_PARAMETER_END = "end";
+
+        /* Columns of CONTENT_URI. Aggregates over no rows are null, except for the count */
+        public static final String COLUMN_DAY_COUNT = "day_count";
+        public static final String COLUMN_LOWEST_TEMP = "lowest_temp";
+        public static final String COLUMN_HIGHEST_TEMP = "highest_temp";
+        public static final String COLUMN_AVG_MIN_TEMP = "avg_min_temp";
+        public static final String COLUMN_AVG_MAX_TEMP = "avg_max_temp";
+        public static final String COLUMN_AVG_HUMIDITY = "avg_humidity";
+        public static final String COLUMN_AVG_PRESSURE = "avg_pressure";
+        public static final String COLUMN_AVG_WIND_SPEED = "avg_wind";
+        /* Date of the day with the highest max temperature, the earliest one on a tie */
+        public static final String COLUMN_WARMEST_DATE = "warmest_date";
+
+        /* Columns of CONDITIONS_URI, one row per group in ascending group order */
+        public static final String COLUMN_CONDITION_GROUP = "condition_group";
+        public static final String COLUMN_CONDITION_COUNT = "condition_count";
+
+        /*
+         * Condition groups of the OpenWeatherMap weather ids: the hundreds of the id, except for
+         * clear sky (800) which gets a group of its own apart from the clouds (801 to 804).
+         */
+        public static final int CONDITION_GROUP_CLEAR = 1;
+        public static final int CONDITION_GROUP_THUNDERSTORM = 2;
+        public static final int CONDITION_GROUP_DRIZZLE = 3;
+        public static final int CONDITION_GROUP_RAIN = 5;
+        public static final int CONDITION_GROUP_SNOW = 6;
+        public static final int CONDITION_GROUP_ATMOSPHERE = 7;
+        public static final int CONDITION_GROUP_CLOUDS = 8;
+        public static final int CONDITION_GROUP_EXTREME = 9;
+
+        /* SQL equivalent of getConditionGroup */
+        public static final String SQL_CONDITION_GROUP = "CASE WHEN "
+                + WeatherEntry.COLUMN_WEATHER_ID + " = 800 THEN " + CONDITION_GROUP_CLEAR
+                + " ELSE " + WeatherEntry.COLUMN_WEATHER_ID + " / 100 END";
+
+        /**
+         * Returns the condition group of a weather id, as reported by {@link #CONDITIONS_URI}.
+         *
+         * @param weatherId OpenWeatherMap weather id
+         * @return One of the CONDITION_GROUP constants
+         */
+        public static int getConditionGroup(int weatherId) {
+            return weatherId == 800 ? CONDITION_GROUP_CLEAR : weatherId / 100;
+        }
+
+        /**
+         * Builds a URI returning the statistics of the days from startDate up to, but not
+         * including, endDate.
+         *
+         * @param startDate First day, normalized
+         * @param endDate   Day after the last one, normalized
+         * @return Uri to query the statistics of the range
+         */
+        public static Uri buildStatsUri(long startDate, long endDate) {
+            return withRange(CONTENT_URI, startDate, endDate);
+        }
+
+        /**
+         * Builds a URI returning the number of days of each condition group from startDate up
+         * to, but not including, endDate.
+         *
+         * @param startDate First day, normalized
+         * @param endDate   Day after the last one, normalized
+         * @return Uri to query the condition counts of the range
+         */
+        public static Uri buildConditionsUri(long startDate, long endDate) {
+            return withRange(CONDITIONS_URI, startDate, endDate);
+        }
+
+        private static Uri withRange(Uri uri, long startDate, long endDate) {
+            return uri.buildUpon()
+                    .appendQueryParameter(QUERY_PARAMETER_START, Long.toString(startDate))
+                    .appendQueryParameter(QUERY_PARAMETER_END, Long.toString(endDate))
+                    .build();
+        }
+    }
+
+    /**
+     * Forecast at a finer resolution than one row per day, typically one row every 3 hours. The
+     * daily rows in {@link WeatherEntry} get their min and max temperatures from these rows.
+     */
+    public static final class HourlyWeatherEntry implements BaseColumns {
+        public static final Uri CONTENT_URI = BASE_CONTENT_URI.buildUpon()
+                .appendPath(PATH_HOURLY_WEATHER)
+                .build();
+
+        /* Replaces every hourly row, like WeatherEntry#REPLACE_URI */
+        public static final Uri REPLACE_URI = CONTENT_URI.buildUpon()
+                .appendPath(PATH_REPLACE)
+                .build();
+
+        /* MIME type returned by WeatherProvider#getType, also for the rows of a single day */
+        public static final String CONTENT_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_HOURLY_WEATHER;
+
+        public static final String TABLE_NAME = "hourly_weather";
+
+        /*
+         * Table of the compressed layout (see WeatherDbHelper#COMPRESSED_HOURLY_STORAGE): one
+         * row per UTC day, the day's samples packed into a BLOB by HourlySampleCodec. Only
+         * WeatherProvider reads it, through HourlyBlockStore.
+         */
+        public static final String BLOCKS_TABLE_NAME = "hourly_weather_blocks";
+        public static final String COLUMN_DAY = "day";
+        public static final String COLUMN_SAMPLE_COUNT = "sample_count";
+        public static final String COLUMN_SAMPLES = "samples";
+
+        /*
+         * Optional query parameters on CONTENT_URI that restrict the rows to a range of date
+         * times, see buildHourlyUriWithRange. The start is inclusive and the end exclusive. With
+         * the compressed layout, ranges are the only selection available.
+         */
+        public static final String QUERY_PARAMETER_START = "start";
+        public static final String QUERY_PARAMETER_END = "end";
+
+        /* Start of the forecast slot in UTC milliseconds, always a whole hour */
+        public static final String COLUMN_DATE_TIME = "date_time";
+
+        public static final String COLUMN_WEATHER_ID = "weather_id";
+
+        public static final String COLUMN_TEMP = "temp";
+
+        public static final String COLUMN_HUMIDITY = "humidity";
+
+        public static final String COLUMN_PRESSURE = "pressure";
+
+        public static final String COLUMN_WIND_SPEED = "wind";
+
+        public static final String COLUMN_DEGREES = "degrees";
+
+        /**
+         * Builds a URI that returns the hourly rows of one day, in the same normalized date form
+         * used by {@link WeatherEntry#buildWeatherUriWithDate(long)}.
+         *
+         * @param normalizedDate The day, normalized to UTC midnight
+         * @return Uri to query the hourly rows of that day
+         */
+        public static Uri buildHourlyUriWithDate(long normalizedDate) {
+            return CONTENT_URI.buildUpon()
+                    .appendPath(Long.toString(normalizedDate))
+                    .build();
+        }
+
+        /**
+         * Builds a URI that returns the hourly rows of a range of date times.
+         *
+         * @param startDateTime First date time, in UTC milliseconds
+         * @param endDateTime   Date time after the last one
+         * @return Uri to query the hourly rows of the range
+         */
+        public static Uri buildHourlyUriWithRange(long startDateTime, long endDateTime) {
+            return CONTENT_URI.buildUpon()
+                    .appendQueryParameter(QUERY_PARAMETER_START, Long.toString(startDateTime))
+                    .appendQueryParameter(QUERY_PARAMETER_END, Long.toString(endDateTime))
+                    .build();
+        }
+
+        public static String getSqlSelectForNowOnwards() {
+            long currentHour = System.currentTimeMillis()
+                    / SunshineDateUtils.HOUR_IN_MILLIS * SunshineDateUtils.HOUR_IN_MILLIS;
+            return COLUMN_DATE_TIME + " >= " + currentHour;
+        }
+    }
+
+    /**
+     * One row per sync, written by {@link SyncJournal} once the sync is over: when it ran, how it
+     * ended, what it downloaded and wrote, and how long each stage took. Only the last
+     * {@link #MAX_ROWS} syncs are kept. {@link #SUMMARY_URI} returns a single row summing them
+     * up, including how old the forecast is, and is notified with {@link #CONTENT_URI}.
+     */
+    public static final class SyncJournalEntry implements BaseColumns {
+        public static final Uri CONTENT_URI = BASE_CONTENT_URI.buildUpon()
+                .appendPath(PATH_SYNC_JOURNAL)
+                .build();
+
+        public static final Uri SUMMARY_URI = CONTENT_URI.buildUpon()
+                .appendPath(PATH_SUMMARY)
+                .build();
+
+        public static final String CONTENT_TYPE = ContentResolver.CURSOR_DIR_BASE_TYPE
+                + "/" + CONTENT_AUTHORITY + "/" + PATH_SYNC_JOURNAL;
+        public static final String SUMMARY_CONTENT_ITEM_TYPE = ContentResolver.CURSOR_ITEM_BASE_TYPE
+                + "/" + CONTENT_AUTHORITY + "/" + PATH_SYNC_JOURNAL + "/" + PATH_SUMMARY;
+
+        public static final String TABLE_NAME = "sync_journal";
+
+        /* Inserting more rows deletes the oldest ones, by start time, beyond this many */
+        public static final int MAX_ROWS = 200;
+
+        /* Wall clock times in UTC milliseconds */
+        public static final String COLUMN_START_TIME = "start_time";
+        public static final String COLUMN_END_TIME = "end_time";
+
+        /* One of the OUTCOME constants */
+        public static final String COLUMN_OUTCOME = "outcome";
+
+        /*
+         * HTTP status of the forecast response, or 0 if the server never answered, e.g. the
+         * connection failed or timed out. Of a hedged request, the status of the attempt that
+         * succeeded, or the error status of a failed one.
+         */
+        public static final String COLUMN_HTTP_STATUS = "http_status";
+
+        /* Size of the daily forecast response body, in bytes read from the connection */
+        public static final String COLUMN_BYTES = "bytes";
+
+        /* Number of daily rows inserted or updated */
+        public static final String COLUMN_ROWS_CHANGED = "rows_changed";
+
+        /*
+         * Time spent downloading both forecasts (the hourly one is parsed as it downloads),
+         * parsing and enriching the daily forecast, and writing to the provider, in milliseconds
+         */
+        public static final String COLUMN_NETWORK_MILLIS = "network_millis";
+        public static final String COLUMN_PARSE_MILLIS = "parse_millis";
+        public static final String COLUMN_WRITE_MILLIS = "write_millis";
+
+        /* Why the sync failed, null unless it did */
+        public static final String COLUMN_ERROR = "error";
+
+        /*
+         * The forecast was written; nothing was written because of an error or an empty
+         * response; or another location was requested meanwhile, which isn't a failure.
+         */
+        public static final int OUTCOME_SUCCESS = 0;
+        public static final int OUTCOME_FAILURE = 1;
+        public static final int OUTCOME_SUPERSEDED = 2;
+
+        /*
+         * Optional query parameter of SUMMARY_URI, in UTC milliseconds: only the syncs started
+         * since then are counted. The last success and the staleness always cover every row.
+         */
+        public static final String QUERY_PARAMETER_SINCE = "since";
+
+        /* Columns of SUMMARY_URI. Times and averages over no rows are null */
+        public static final String COLUMN_SYNC_COUNT = "sync_count";
+        public static final String COLUMN_SUCCESS_COUNT = "success_count";
+        public static final String COLUMN_FAILURE_COUNT = "failure_count";
+        /* Successes over successes and failures, from 0 to 1; superseded syncs are left out */
+        public static final String COLUMN_SUCCESS_RATE = "success_rate";
+        /* Average time from start to end of the successful syncs, in milliseconds */
+        public static final String COLUMN_AVG_SUCCESS_MILLIS = "avg_success_millis";
+        /* End of the last sync, whatever its outcome */
+        public static final String COLUMN_LAST_SYNC_TIME = "last_sync_time";
+        public static final String COLUMN_LAST_SUCCESS_TIME = "last_success_time";
+        /* Time since the last success ended, when the summary was queried, in milliseconds */
+        public static final String COLUMN_STALENESS_MILLIS = "staleness_millis";
+
+        /**
+         * Builds a URI returning the summary of the syncs started since a time.
+         *
+         * @param since Time in UTC milliseconds
+         * @return Uri to query the summary of the recent syncs
+         */
+        public static Uri buildSummaryUriSince(long since) {
+            return SUMMARY_URI.buildUpon()
+                    .appendQueryParameter(QUERY_PARAMETER_SINCE, Long.toString(since))
+                    .build();
         }
     }
 }
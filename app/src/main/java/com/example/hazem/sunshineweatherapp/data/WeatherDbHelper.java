@@ -1,39 +1,95 @@
 package com.example.hazem.sunshineweatherapp.data;
 
 import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.os.Build;
 
+import com.example.hazem.sunshineweatherapp.BuildConfig;
+import com.example.hazem.sunshineweatherapp.data.WeatherContract.HourlyWeatherEntry;
+import com.example.hazem.sunshineweatherapp.data.WeatherContract.SyncJournalEntry;
 import com.example.hazem.sunshineweatherapp.data.WeatherContract.WeatherEntry;
 
 public class WeatherDbHelper extends SQLiteOpenHelper {
 
     public static final String DATABASE_NAME = "weather.db";
-    private static final int DATABASE_VERSION = 1;
+    private static final int DATABASE_VERSION = 5;
+
+    /*
+     * When true the weather table uses the compact layout: the measurement columns are stored as
+     * scaled INTEGERs instead of REALs, see WeatherEntry#QUANTIZED_COLUMNS. WeatherProvider
+     * converts on the way in and out, so callers see the same values either way. An existing
+     * database is migrated to the configured layout the next time it is opened.
+     */
+    public static final boolean QUANTIZED_STORAGE = BuildConfig.QUANTIZED_WEATHER_STORAGE;
+
+    /*
+     * When true the hourly rows are packed into one compressed BLOB per day, see
+     * HourlyBlockStore, instead of one row per sample. Both tables always exist, switching only
+     * changes which one WeatherProvider uses; the hourly forecast is refilled by the next sync.
+     */
+    public static final boolean COMPRESSED_HOURLY_STORAGE = BuildConfig.COMPRESSED_HOURLY_STORAGE;
+
+    /* Temporary table the weather rows are copied to while switching layouts */
+    private static final String MIGRATION_TABLE_NAME = WeatherEntry.TABLE_NAME + "_migration";
+
+    /* Suffix of the table a replacement is staged in before being swapped in, see below */
+    private static final String SHADOW_TABLE_SUFFIX = "_shadow";
 
     public WeatherDbHelper(Context context) {
-        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        this(context, DATABASE_NAME);
     }
 
-    @Override
-    public void onCreate(SQLiteDatabase db) {
+    /**
+     * @param context Used to open the database
+     * @param name    File name of the database, e.g. to let tests work on a database of their own
+     */
+    public WeatherDbHelper(Context context, String name) {
+        super(context, name, null, DATABASE_VERSION);
+
+        /*
+         * With write-ahead logging, queries on other threads keep reading the last committed
+         * state while a sync writes, instead of waiting for it or seeing it half done.
+         */
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            setWriteAheadLoggingEnabled(true);
+        }
+    }
+
+    /**
+     * Creates a table with the columns of the weather table.
+     *
+     * @param db        The database to create the table in
+     * @param tableName Name of the table
+     * @param quantized true for the compact INTEGER layout, false for REAL columns
+     */
+    public static void createWeatherTable(SQLiteDatabase db, String tableName, boolean quantized) {
+        final String measurementType = quantized ? " INTEGER NOT NULL, " : " REAL NOT NULL, ";
 
         final String SQL_CREATE_WEATHER_TABLE =
-                "CREATE TABLE " + WeatherEntry.TABLE_NAME + " (" +
+                "CREATE TABLE " + tableName + " (" +
                         WeatherEntry._ID               + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
 
                         WeatherEntry.COLUMN_DATE       + " INTEGER NOT NULL, "                 +
 
                         WeatherEntry.COLUMN_WEATHER_ID + " INTEGER NOT NULL,"                  +
 
-                        WeatherEntry.COLUMN_MIN_TEMP   + " REAL NOT NULL, "                    +
-                        WeatherEntry.COLUMN_MAX_TEMP   + " REAL NOT NULL, "                    +
+                        WeatherEntry.COLUMN_MIN_TEMP   + measurementType                       +
+                        WeatherEntry.COLUMN_MAX_TEMP   + measurementType                       +
+
+                        WeatherEntry.COLUMN_HUMIDITY   + measurementType                       +
+                        WeatherEntry.COLUMN_PRESSURE   + measurementType                       +
 
-                        WeatherEntry.COLUMN_HUMIDITY   + " REAL NOT NULL, "                    +
-                        WeatherEntry.COLUMN_PRESSURE   + " REAL NOT NULL, "                    +
+                        WeatherEntry.COLUMN_WIND_SPEED + measurementType                       +
+                        WeatherEntry.COLUMN_DEGREES    + measurementType                       +
 
-                        WeatherEntry.COLUMN_WIND_SPEED + " REAL NOT NULL, "                    +
-                        WeatherEntry.COLUMN_DEGREES    + " REAL NOT NULL, "                    +
+                        /* Rows inserted without going through ForecastEnricher read as 0 */
+                        WeatherEntry.COLUMN_APPARENT_TEMP  + " REAL NOT NULL DEFAULT 0, "      +
+                        WeatherEntry.COLUMN_DEW_POINT      + " REAL NOT NULL DEFAULT 0, "      +
+                        WeatherEntry.COLUMN_PRESSURE_TREND + " REAL NOT NULL DEFAULT 0, "      +
+                        WeatherEntry.COLUMN_COMFORT_INDEX  + " REAL NOT NULL DEFAULT 0, "      +
 
                         " UNIQUE (" + WeatherEntry.COLUMN_DATE + ") ON CONFLICT REPLACE);";
 
@@ -41,9 +97,241 @@ public class WeatherDbHelper extends SQLiteOpenHelper {
         db.execSQL(SQL_CREATE_WEATHER_TABLE);
     }
 
+    /**
+     * Creates a table with the columns of the hourly weather table.
+     *
+     * @param db        The database to create the table in
+     * @param tableName Name of the table
+     */
+    public static void createHourlyWeatherTable(SQLiteDatabase db, String tableName) {
+        final String SQL_CREATE_HOURLY_WEATHER_TABLE =
+                "CREATE TABLE " + tableName + " (" +
+                        HourlyWeatherEntry._ID               + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+
+                        HourlyWeatherEntry.COLUMN_DATE_TIME  + " INTEGER NOT NULL, "                 +
+
+                        HourlyWeatherEntry.COLUMN_WEATHER_ID + " INTEGER NOT NULL, "                 +
+
+                        HourlyWeatherEntry.COLUMN_TEMP       + " REAL NOT NULL, "                    +
+
+                        HourlyWeatherEntry.COLUMN_HUMIDITY   + " REAL NOT NULL, "                    +
+                        HourlyWeatherEntry.COLUMN_PRESSURE   + " REAL NOT NULL, "                    +
+
+                        HourlyWeatherEntry.COLUMN_WIND_SPEED + " REAL NOT NULL, "                    +
+                        HourlyWeatherEntry.COLUMN_DEGREES    + " REAL NOT NULL, "                    +
+
+                        " UNIQUE (" + HourlyWeatherEntry.COLUMN_DATE_TIME + ") ON CONFLICT REPLACE);";
+
+        db.execSQL(SQL_CREATE_HOURLY_WEATHER_TABLE);
+    }
+
+    /**
+     * Creates the table of the compressed hourly layout, see
+     * {@link HourlyWeatherEntry#BLOCKS_TABLE_NAME}.
+     *
+     * @param db The database to create the table in
+     */
+    public static void createHourlyWeatherBlocksTable(SQLiteDatabase db) {
+        final String SQL_CREATE_HOURLY_WEATHER_BLOCKS_TABLE =
+                "CREATE TABLE " + HourlyWeatherEntry.BLOCKS_TABLE_NAME + " (" +
+                        HourlyWeatherEntry._ID                 + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+
+                        HourlyWeatherEntry.COLUMN_DAY          + " INTEGER NOT NULL, "                 +
+
+                        HourlyWeatherEntry.COLUMN_SAMPLE_COUNT + " INTEGER NOT NULL, "                 +
+                        HourlyWeatherEntry.COLUMN_SAMPLES      + " BLOB NOT NULL, "                    +
+
+                        " UNIQUE (" + HourlyWeatherEntry.COLUMN_DAY + ") ON CONFLICT REPLACE);";
+
+        db.execSQL(SQL_CREATE_HOURLY_WEATHER_BLOCKS_TABLE);
+    }
+
+    /**
+     * Creates the sync journal table, see {@link SyncJournalEntry}. Rows are trimmed and
+     * summarized by start time, which is indexed.
+     *
+     * @param db The database to create the table in
+     */
+    public static void createSyncJournalTable(SQLiteDatabase db) {
+        final String SQL_CREATE_SYNC_JOURNAL_TABLE =
+                "CREATE TABLE " + SyncJournalEntry.TABLE_NAME + " (" +
+                        SyncJournalEntry._ID                 + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+
+                        SyncJournalEntry.COLUMN_START_TIME   + " INTEGER NOT NULL, "                 +
+                        SyncJournalEntry.COLUMN_END_TIME     + " INTEGER NOT NULL, "                 +
+
+                        SyncJournalEntry.COLUMN_OUTCOME      + " INTEGER NOT NULL, "                 +
+                        SyncJournalEntry.COLUMN_HTTP_STATUS  + " INTEGER NOT NULL DEFAULT 0, "       +
+
+                        SyncJournalEntry.COLUMN_BYTES        + " INTEGER NOT NULL DEFAULT 0, "       +
+                        SyncJournalEntry.COLUMN_ROWS_CHANGED + " INTEGER NOT NULL DEFAULT 0, "       +
+
+                        SyncJournalEntry.COLUMN_NETWORK_MILLIS + " INTEGER NOT NULL DEFAULT 0, "     +
+                        SyncJournalEntry.COLUMN_PARSE_MILLIS   + " INTEGER NOT NULL DEFAULT 0, "     +
+                        SyncJournalEntry.COLUMN_WRITE_MILLIS   + " INTEGER NOT NULL DEFAULT 0, "     +
+
+                        SyncJournalEntry.COLUMN_ERROR        + " TEXT);";
+
+        db.execSQL(SQL_CREATE_SYNC_JOURNAL_TABLE);
+        db.execSQL("CREATE INDEX " + SyncJournalEntry.TABLE_NAME + "_start_time ON "
+                + SyncJournalEntry.TABLE_NAME + " (" + SyncJournalEntry.COLUMN_START_TIME + ")");
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+
+        createWeatherTable(db, WeatherEntry.TABLE_NAME, QUANTIZED_STORAGE);
+        createHourlyWeatherTable(db, HourlyWeatherEntry.TABLE_NAME);
+        createHourlyWeatherBlocksTable(db);
+        createSyncJournalTable(db);
+    }
+
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
         db.execSQL("DROP TABLE IF EXISTS " + WeatherEntry.TABLE_NAME);
+        db.execSQL("DROP TABLE IF EXISTS " + HourlyWeatherEntry.TABLE_NAME);
+        db.execSQL("DROP TABLE IF EXISTS " + HourlyWeatherEntry.BLOCKS_TABLE_NAME);
+        db.execSQL("DROP TABLE IF EXISTS " + SyncJournalEntry.TABLE_NAME);
         onCreate(db);
     }
+
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        super.onOpen(db);
+
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN && !db.isReadOnly()) {
+            db.enableWriteAheadLogging();
+        }
+
+        if (!db.isReadOnly() && isWeatherTableQuantized(db) != QUANTIZED_STORAGE) {
+            migrateWeatherTable(db, QUANTIZED_STORAGE);
+        }
+    }
+
+    /**
+     * Returns whether the weather table of a database uses the compact INTEGER layout.
+     *
+     * @param db The database to inspect
+     * @return true if the measurement columns are INTEGERs
+     */
+    public static boolean isWeatherTableQuantized(SQLiteDatabase db) {
+        Cursor cursor = db.rawQuery("PRAGMA table_info(" + WeatherEntry.TABLE_NAME + ")", null);
+        try {
+            int nameIndex = cursor.getColumnIndexOrThrow("name");
+            int typeIndex = cursor.getColumnIndexOrThrow("type");
+            while (cursor.moveToNext()) {
+                if (WeatherEntry.COLUMN_MIN_TEMP.equals(cursor.getString(nameIndex))) {
+                    return "INTEGER".equalsIgnoreCase(cursor.getString(typeIndex));
+                }
+            }
+            return false;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Converts the weather table to the other layout, keeping its rows. Values are rounded to
+     * the scale of each column when converting to the compact layout.
+     *
+     * @param db        The database to migrate
+     * @param quantized The layout to convert to
+     */
+    public static void migrateWeatherTable(SQLiteDatabase db, boolean quantized) {
+        StringBuilder columns = new StringBuilder(WeatherEntry._ID)
+                .append(", ").append(WeatherEntry.COLUMN_DATE)
+                .append(", ").append(WeatherEntry.COLUMN_WEATHER_ID);
+        for (String column : WeatherEntry.DERIVED_COLUMNS) {
+            columns.append(", ").append(column);
+        }
+        StringBuilder values = new StringBuilder(columns);
+
+        for (int i = 0; i < WeatherEntry.QUANTIZED_COLUMNS.length; i++) {
+            String column = WeatherEntry.QUANTIZED_COLUMNS[i];
+            columns.append(", ").append(column);
+            if (quantized) {
+                values.append(", CAST(ROUND(").append(column).append(" * ")
+                        .append(WeatherEntry.QUANTIZED_COLUMN_SCALES[i]).append(") AS INTEGER)");
+            } else {
+                values.append(", ").append(WeatherEntry.getDequantizedExpression(column));
+            }
+        }
+
+        db.beginTransaction();
+        try {
+            db.execSQL("DROP TABLE IF EXISTS " + MIGRATION_TABLE_NAME);
+            createWeatherTable(db, MIGRATION_TABLE_NAME, quantized);
+            db.execSQL("INSERT INTO " + MIGRATION_TABLE_NAME + " (" + columns + ") SELECT "
+                    + values + " FROM " + WeatherEntry.TABLE_NAME);
+            db.execSQL("DROP TABLE " + WeatherEntry.TABLE_NAME);
+            db.execSQL("ALTER TABLE " + MIGRATION_TABLE_NAME + " RENAME TO " + WeatherEntry.TABLE_NAME);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Returns the name of the table a replacement of a table is staged in.
+     *
+     * @param tableName The weather or the hourly weather table
+     * @return Name of its shadow table
+     */
+    public static String getShadowTableName(String tableName) {
+        return tableName + SHADOW_TABLE_SUFFIX;
+    }
+
+    /**
+     * Creates an empty shadow table with the same columns as a table, dropping what a previous
+     * replacement may have left behind. Rows for the replacement are then inserted into it and
+     * it is swapped in with {@link #swapInShadowTable(SQLiteDatabase, String)}.
+     *
+     * @param db        The database, within a transaction
+     * @param tableName The weather or the hourly weather table
+     */
+    public static void createShadowTable(SQLiteDatabase db, String tableName) {
+        String shadowTableName = getShadowTableName(tableName);
+        db.execSQL("DROP TABLE IF EXISTS " + shadowTableName);
+
+        if (WeatherEntry.TABLE_NAME.equals(tableName)) {
+            createWeatherTable(db, shadowTableName, QUANTIZED_STORAGE);
+        } else if (HourlyWeatherEntry.TABLE_NAME.equals(tableName)) {
+            createHourlyWeatherTable(db, shadowTableName);
+        } else {
+            throw new IllegalArgumentException("No shadow table for " + tableName);
+        }
+    }
+
+    /**
+     * Replaces a table with its shadow table. Dropping and renaming don't depend on the number
+     * of rows, unlike deleting them, and the whole swap becomes visible to other connections at
+     * once when the caller's transaction commits.
+     *
+     * @param db        The database, within the transaction the shadow table was filled in
+     * @param tableName The table to replace
+     */
+    public static void swapInShadowTable(SQLiteDatabase db, String tableName) {
+        db.execSQL("DROP TABLE " + tableName);
+        db.execSQL("ALTER TABLE " + getShadowTableName(tableName) + " RENAME TO " + tableName);
+    }
+
+    /**
+     * Returns the number of pages the database file is made of, see also {@link #getPageSize}.
+     *
+     * @param db The database to inspect
+     * @return Number of pages
+     */
+    public static long getPageCount(SQLiteDatabase db) {
+        return DatabaseUtils.longForQuery(db, "PRAGMA page_count", null);
+    }
+
+    /**
+     * Returns the size of one database page.
+     *
+     * @param db The database to inspect
+     * @return Page size in bytes
+     */
+    public static long getPageSize(SQLiteDatabase db) {
+        return DatabaseUtils.longForQuery(db, "PRAGMA page_size", null);
+    }
 }
@@ -1,26 +1,80 @@
 package com.example.hazem.sunshineweatherapp.data;
 
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentValues;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
+import android.database.MatrixCursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.net.Uri;
+import android.os.Bundle;
+import android.os.Looper;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.util.Log;
 
+import com.example.hazem.sunshineweatherapp.BuildConfig;
 import com.example.hazem.sunshineweatherapp.utilities.SunshineDateUtils;
 
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
 public class WeatherProvider extends ContentProvider {
 
+    private static final String TAG = WeatherProvider.class.getSimpleName();
 
     public static final int CODE_WEATHER = 100;
     public static final int CODE_WEATHER_WITH_DATE = 101;
+    public static final int CODE_WEATHER_STATS = 102;
+    public static final int CODE_WEATHER_STATS_CONDITIONS = 103;
+    public static final int CODE_WEATHER_REPLACE = 104;
+    public static final int CODE_WEATHER_PATCH = 105;
+
+    public static final int CODE_HOURLY_WEATHER = 200;
+    public static final int CODE_HOURLY_WEATHER_WITH_DATE = 201;
+    public static final int CODE_HOURLY_WEATHER_REPLACE = 202;
+
+    public static final int CODE_SYNC_JOURNAL = 300;
+    public static final int CODE_SYNC_JOURNAL_SUMMARY = 301;
 
     private WeatherDbHelper mOpenHelper;
 
+    /* Engine of mForecastStore, BuildConfig#FORECAST_STORE unless a test picks one */
+    private final String mForecastStoreName;
+
+    /* Holds the daily forecast, see BuildConfig#FORECAST_STORE. Hourly rows stay in mOpenHelper */
+    private ForecastStore mForecastStore;
+
+    /* Holds the hourly rows when WeatherDbHelper#COMPRESSED_HOURLY_STORAGE is set, else null */
+    private HourlyBlockStore mHourlyBlockStore;
+
+    private ChangeNotificationCoalescer mNotificationCoalescer;
+
     private static final UriMatcher sUriMatcher = buildUriMatcher();
 
+    /*
+     * URIs changed by the batch running on the current thread, if any. Within applyBatch,
+     * notifications are collected here and sent once the transaction has committed.
+     */
+    private final ThreadLocal<Set<Uri>> mBatchChangedUris = new ThreadLocal<>();
+
+    public WeatherProvider() {
+        this(BuildConfig.FORECAST_STORE);
+    }
+
+    /* Runs on the given engine, so tests can cover both whatever the build chose */
+    WeatherProvider(String forecastStoreName) {
+        mForecastStoreName = forecastStoreName;
+    }
+
     public static UriMatcher buildUriMatcher() {
         final UriMatcher matcher = new UriMatcher(UriMatcher.NO_MATCH);
         final String authority = WeatherContract.CONTENT_AUTHORITY;
@@ -34,14 +88,429 @@ public class WeatherProvider extends ContentProvider {
                 WeatherContract.PATH_WEATHER + "/#",
                 CODE_WEATHER_WITH_DATE);
 
+        matcher.addURI(authority,
+                WeatherContract.PATH_WEATHER + "/" + WeatherContract.PATH_STATS,
+                CODE_WEATHER_STATS);
+
+        matcher.addURI(authority,
+                WeatherContract.PATH_WEATHER + "/" + WeatherContract.PATH_STATS + "/"
+                        + WeatherContract.PATH_CONDITIONS,
+                CODE_WEATHER_STATS_CONDITIONS);
+
+        matcher.addURI(authority,
+                WeatherContract.PATH_WEATHER + "/" + WeatherContract.PATH_REPLACE,
+                CODE_WEATHER_REPLACE);
+
+        matcher.addURI(authority,
+                WeatherContract.PATH_WEATHER + "/" + WeatherContract.PATH_PATCH,
+                CODE_WEATHER_PATCH);
+
+        matcher.addURI(authority,
+                WeatherContract.PATH_HOURLY_WEATHER,
+                CODE_HOURLY_WEATHER);
+
+        matcher.addURI(authority,
+                WeatherContract.PATH_HOURLY_WEATHER + "/#",
+                CODE_HOURLY_WEATHER_WITH_DATE);
+
+        matcher.addURI(authority,
+                WeatherContract.PATH_HOURLY_WEATHER + "/" + WeatherContract.PATH_REPLACE,
+                CODE_HOURLY_WEATHER_REPLACE);
+
+        matcher.addURI(authority,
+                WeatherContract.PATH_SYNC_JOURNAL,
+                CODE_SYNC_JOURNAL);
+
+        matcher.addURI(authority,
+                WeatherContract.PATH_SYNC_JOURNAL + "/" + WeatherContract.PATH_SUMMARY,
+                CODE_SYNC_JOURNAL_SUMMARY);
+
         return matcher;
     }
 
+    /*
+     * Aggregates a weather column in SQL, in natural units whichever layout is in use. With the
+     * compact layout the aggregate runs over the stored integers and only its result is scaled.
+     */
+    private static String aggregate(String function, String column) {
+        String expression = function + "(" + column + ")";
+        if (!WeatherDbHelper.QUANTIZED_STORAGE) {
+            return expression;
+        }
+        return WeatherContract.WeatherEntry.getDequantizedExpression(column, expression);
+    }
+
+    /*
+     * Builds the selection of the date range given by the start and end query parameters of a
+     * stats or weather URI, combined with the caller's own selection. Ranges use the unique
+     * index on date.
+     */
+    private static String buildRangeSelection(Uri uri, String selection, String[] selectionArgs,
+                                              ArrayList<String> args) {
+        return buildRangeSelection(uri, WeatherContract.WeatherEntry.COLUMN_DATE, selection,
+                selectionArgs, args);
+    }
+
+    /* Same as above, for the range of any date column, e.g. the hourly date_time */
+    private static String buildRangeSelection(Uri uri, String dateColumn, String selection,
+                                              String[] selectionArgs, ArrayList<String> args) {
+        StringBuilder where = new StringBuilder("1");
+
+        String start = uri.getQueryParameter(WeatherContract.WeatherStatsEntry.QUERY_PARAMETER_START);
+        if (start != null) {
+            where.append(" AND ").append(dateColumn).append(" >= ?");
+            args.add(parseDate(start));
+        }
+
+        String end = uri.getQueryParameter(WeatherContract.WeatherStatsEntry.QUERY_PARAMETER_END);
+        if (end != null) {
+            where.append(" AND ").append(dateColumn).append(" < ?");
+            args.add(parseDate(end));
+        }
+
+        if (selection != null) {
+            where.append(" AND (").append(selection).append(")");
+            if (selectionArgs != null) {
+                for (String selectionArg : selectionArgs) {
+                    args.add(selectionArg);
+                }
+            }
+        }
+        return where.toString();
+    }
+
+    private static String parseDate(String date) {
+        if (!date.matches("\\d+")) {
+            throw new IllegalArgumentException("Invalid date: " + date);
+        }
+        return date;
+    }
+
+    /* One row of aggregates over a date range, see WeatherContract.WeatherStatsEntry */
+    private Cursor queryWeatherStats(Uri uri, String selection, String[] selectionArgs) {
+        ArrayList<String> args = new ArrayList<>();
+        String where = buildRangeSelection(uri, selection, selectionArgs, args);
+
+        /* The subquery repeats the selection, and so its arguments */
+        ArrayList<String> allArgs = new ArrayList<>(args);
+        allArgs.addAll(args);
+
+        String sql = "SELECT "
+                + "COUNT(*) AS " + WeatherContract.WeatherStatsEntry.COLUMN_DAY_COUNT + ", "
+                + aggregate("MIN", WeatherContract.WeatherEntry.COLUMN_MIN_TEMP)
+                + " AS " + WeatherContract.WeatherStatsEntry.COLUMN_LOWEST_TEMP + ", "
+                + aggregate("MAX", WeatherContract.WeatherEntry.COLUMN_MAX_TEMP)
+                + " AS " + WeatherContract.WeatherStatsEntry.COLUMN_HIGHEST_TEMP + ", "
+                + aggregate("AVG", WeatherContract.WeatherEntry.COLUMN_MIN_TEMP)
+                + " AS " + WeatherContract.WeatherStatsEntry.COLUMN_AVG_MIN_TEMP + ", "
+                + aggregate("AVG", WeatherContract.WeatherEntry.COLUMN_MAX_TEMP)
+                + " AS " + WeatherContract.WeatherStatsEntry.COLUMN_AVG_MAX_TEMP + ", "
+                + aggregate("AVG", WeatherContract.WeatherEntry.COLUMN_HUMIDITY)
+                + " AS " + WeatherContract.WeatherStatsEntry.COLUMN_AVG_HUMIDITY + ", "
+                + aggregate("AVG", WeatherContract.WeatherEntry.COLUMN_PRESSURE)
+                + " AS " + WeatherContract.WeatherStatsEntry.COLUMN_AVG_PRESSURE + ", "
+                + aggregate("AVG", WeatherContract.WeatherEntry.COLUMN_WIND_SPEED)
+                + " AS " + WeatherContract.WeatherStatsEntry.COLUMN_AVG_WIND_SPEED + ", "
+                + "(SELECT " + WeatherContract.WeatherEntry.COLUMN_DATE
+                + " FROM " + WeatherContract.WeatherEntry.TABLE_NAME
+                + " WHERE " + where
+                + " ORDER BY " + WeatherContract.WeatherEntry.COLUMN_MAX_TEMP + " DESC, "
+                + WeatherContract.WeatherEntry.COLUMN_DATE + " LIMIT 1)"
+                + " AS " + WeatherContract.WeatherStatsEntry.COLUMN_WARMEST_DATE
+                + " FROM " + WeatherContract.WeatherEntry.TABLE_NAME
+                + " WHERE " + where;
+
+        return mOpenHelper.getReadableDatabase()
+                .rawQuery(sql, allArgs.toArray(new String[allArgs.size()]));
+    }
+
+    /* Number of days per condition group over a date range */
+    private Cursor queryWeatherConditionCounts(Uri uri, String selection, String[] selectionArgs) {
+        ArrayList<String> args = new ArrayList<>();
+        String where = buildRangeSelection(uri, selection, selectionArgs, args);
+
+        String sql = "SELECT "
+                + WeatherContract.WeatherStatsEntry.SQL_CONDITION_GROUP
+                + " AS " + WeatherContract.WeatherStatsEntry.COLUMN_CONDITION_GROUP + ", "
+                + "COUNT(*) AS " + WeatherContract.WeatherStatsEntry.COLUMN_CONDITION_COUNT
+                + " FROM " + WeatherContract.WeatherEntry.TABLE_NAME
+                + " WHERE " + where
+                + " GROUP BY " + WeatherContract.WeatherStatsEntry.COLUMN_CONDITION_GROUP
+                + " ORDER BY " + WeatherContract.WeatherStatsEntry.COLUMN_CONDITION_GROUP;
+
+        return mOpenHelper.getReadableDatabase()
+                .rawQuery(sql, args.toArray(new String[args.size()]));
+    }
+
+    /*
+     * Reads the rows of the date range of a stats URI from the store, for the engines without
+     * SQL. The caller's own selection can't be applied to them.
+     */
+    private Cursor queryStatsRange(Uri uri, String selection, String[] projection) {
+        if (selection != null) {
+            throw new UnsupportedOperationException(
+                    "Needs the " + ForecastStore.SQLITE + " forecast store: " + uri);
+        }
+        return mForecastStore.queryRange(projection,
+                getDateParameter(uri, WeatherContract.WeatherEntry.QUERY_PARAMETER_START,
+                        Long.MIN_VALUE),
+                getDateParameter(uri, WeatherContract.WeatherEntry.QUERY_PARAMETER_END,
+                        Long.MAX_VALUE),
+                0, -1);
+    }
+
+    /* Same row as queryWeatherStats, computed by scanning the rows of the store */
+    private Cursor scanWeatherStats(Uri uri, String selection) {
+        String[] projection = {
+                WeatherContract.WeatherEntry.COLUMN_DATE,
+                WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
+                WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
+                WeatherContract.WeatherEntry.COLUMN_HUMIDITY,
+                WeatherContract.WeatherEntry.COLUMN_PRESSURE,
+                WeatherContract.WeatherEntry.COLUMN_WIND_SPEED
+        };
+
+        int dayCount = 0;
+        double lowestTemp = Double.MAX_VALUE;
+        double highestTemp = -Double.MAX_VALUE;
+        long warmestDate = 0;
+        double[] sums = new double[projection.length];
+
+        Cursor rows = queryStatsRange(uri, selection, projection);
+        try {
+            /* By ascending date, so the first of the warmest days is kept, as in SQL */
+            while (rows.moveToNext()) {
+                dayCount++;
+                for (int column = 1; column < projection.length; column++) {
+                    sums[column] += rows.getDouble(column);
+                }
+                lowestTemp = Math.min(lowestTemp, rows.getDouble(1));
+                if (rows.getDouble(2) > highestTemp) {
+                    highestTemp = rows.getDouble(2);
+                    warmestDate = rows.getLong(0);
+                }
+            }
+        } finally {
+            rows.close();
+        }
+
+        MatrixCursor cursor = new MatrixCursor(new String[]{
+                WeatherContract.WeatherStatsEntry.COLUMN_DAY_COUNT,
+                WeatherContract.WeatherStatsEntry.COLUMN_LOWEST_TEMP,
+                WeatherContract.WeatherStatsEntry.COLUMN_HIGHEST_TEMP,
+                WeatherContract.WeatherStatsEntry.COLUMN_AVG_MIN_TEMP,
+                WeatherContract.WeatherStatsEntry.COLUMN_AVG_MAX_TEMP,
+                WeatherContract.WeatherStatsEntry.COLUMN_AVG_HUMIDITY,
+                WeatherContract.WeatherStatsEntry.COLUMN_AVG_PRESSURE,
+                WeatherContract.WeatherStatsEntry.COLUMN_AVG_WIND_SPEED,
+                WeatherContract.WeatherStatsEntry.COLUMN_WARMEST_DATE}, 1);
+        if (dayCount == 0) {
+            /* Aggregates over no rows are NULL in SQL */
+            cursor.addRow(new Object[]{0, null, null, null, null, null, null, null, null});
+        } else {
+            cursor.addRow(new Object[]{dayCount, lowestTemp, highestTemp,
+                    sums[1] / dayCount, sums[2] / dayCount, sums[3] / dayCount,
+                    sums[4] / dayCount, sums[5] / dayCount, warmestDate});
+        }
+        return cursor;
+    }
+
+    /* Same rows as queryWeatherConditionCounts, computed by scanning the rows of the store */
+    private Cursor scanWeatherConditionCounts(Uri uri, String selection) {
+        TreeMap<Integer, Integer> counts = new TreeMap<>();
+
+        Cursor rows = queryStatsRange(uri, selection,
+                new String[]{WeatherContract.WeatherEntry.COLUMN_WEATHER_ID});
+        try {
+            while (rows.moveToNext()) {
+                int group = WeatherContract.WeatherStatsEntry.getConditionGroup(rows.getInt(0));
+                Integer count = counts.get(group);
+                counts.put(group, count == null ? 1 : count + 1);
+            }
+        } finally {
+            rows.close();
+        }
+
+        MatrixCursor cursor = new MatrixCursor(new String[]{
+                WeatherContract.WeatherStatsEntry.COLUMN_CONDITION_GROUP,
+                WeatherContract.WeatherStatsEntry.COLUMN_CONDITION_COUNT}, counts.size());
+        for (Map.Entry<Integer, Integer> entry : counts.entrySet()) {
+            cursor.addRow(new Object[]{entry.getKey(), entry.getValue()});
+        }
+        return cursor;
+    }
+
+    /*
+     * One row summing up the sync journal, see WeatherContract.SyncJournalEntry#SUMMARY_URI.
+     * The staleness is computed against the time of the query.
+     */
+    private Cursor querySyncJournalSummary(Uri uri) {
+        String since = uri.getQueryParameter(
+                WeatherContract.SyncJournalEntry.QUERY_PARAMETER_SINCE);
+
+        String outcome = WeatherContract.SyncJournalEntry.COLUMN_OUTCOME;
+        String success = outcome + " = " + WeatherContract.SyncJournalEntry.OUTCOME_SUCCESS;
+        String failure = outcome + " = " + WeatherContract.SyncJournalEntry.OUTCOME_FAILURE;
+        String lastSuccessTime = "(SELECT MAX(" + WeatherContract.SyncJournalEntry.COLUMN_END_TIME
+                + ") FROM " + WeatherContract.SyncJournalEntry.TABLE_NAME
+                + " WHERE " + success + ")";
+
+        String sql = "SELECT "
+                + "COUNT(*) AS " + WeatherContract.SyncJournalEntry.COLUMN_SYNC_COUNT + ", "
+                + "COUNT(CASE WHEN " + success + " THEN 1 END)"
+                + " AS " + WeatherContract.SyncJournalEntry.COLUMN_SUCCESS_COUNT + ", "
+                + "COUNT(CASE WHEN " + failure + " THEN 1 END)"
+                + " AS " + WeatherContract.SyncJournalEntry.COLUMN_FAILURE_COUNT + ", "
+                /* AVG skips the NULLs of the superseded syncs */
+                + "AVG(CASE WHEN " + success + " THEN 1.0 WHEN " + failure + " THEN 0.0 END)"
+                + " AS " + WeatherContract.SyncJournalEntry.COLUMN_SUCCESS_RATE + ", "
+                + "AVG(CASE WHEN " + success + " THEN "
+                + WeatherContract.SyncJournalEntry.COLUMN_END_TIME + " - "
+                + WeatherContract.SyncJournalEntry.COLUMN_START_TIME + " END)"
+                + " AS " + WeatherContract.SyncJournalEntry.COLUMN_AVG_SUCCESS_MILLIS + ", "
+                + "MAX(" + WeatherContract.SyncJournalEntry.COLUMN_END_TIME + ")"
+                + " AS " + WeatherContract.SyncJournalEntry.COLUMN_LAST_SYNC_TIME + ", "
+                + lastSuccessTime
+                + " AS " + WeatherContract.SyncJournalEntry.COLUMN_LAST_SUCCESS_TIME + ", "
+                + "? - " + lastSuccessTime
+                + " AS " + WeatherContract.SyncJournalEntry.COLUMN_STALENESS_MILLIS
+                + " FROM " + WeatherContract.SyncJournalEntry.TABLE_NAME
+                + " WHERE " + WeatherContract.SyncJournalEntry.COLUMN_START_TIME + " >= ?";
+
+        return mOpenHelper.getReadableDatabase().rawQuery(sql, new String[]{
+                Long.toString(System.currentTimeMillis()),
+                since == null ? Long.toString(Long.MIN_VALUE) : parseDate(since)});
+    }
+
+    /*
+     * Inserts journal rows and deletes the oldest ones beyond SyncJournalEntry#MAX_ROWS, in one
+     * transaction.
+     */
+    private int insertSyncJournal(ContentValues[] values) {
+        final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+
+        int rowsInserted = 0;
+
+        db.beginTransaction();
+        try {
+            for (ContentValues value : values) {
+                if (db.insert(WeatherContract.SyncJournalEntry.TABLE_NAME, null, value) != -1) {
+                    rowsInserted++;
+                }
+            }
+            db.delete(WeatherContract.SyncJournalEntry.TABLE_NAME,
+                    WeatherContract.SyncJournalEntry._ID + " IN (SELECT "
+                            + WeatherContract.SyncJournalEntry._ID
+                            + " FROM " + WeatherContract.SyncJournalEntry.TABLE_NAME
+                            + " ORDER BY " + WeatherContract.SyncJournalEntry.COLUMN_START_TIME
+                            + " DESC, " + WeatherContract.SyncJournalEntry._ID + " DESC"
+                            + " LIMIT -1 OFFSET " + WeatherContract.SyncJournalEntry.MAX_ROWS + ")",
+                    null);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        if (rowsInserted > 0) {
+            notifyChange(WeatherContract.SyncJournalEntry.CONTENT_URI);
+        }
+        return rowsInserted;
+    }
+
+    /*
+     * Creates the engine mForecastStoreName names. Whichever it is, its changes are
+     * notified on CONTENT_URI, which covers the stats URIs too.
+     */
+    private ForecastStore createForecastStore() {
+        ForecastStore store;
+        switch (mForecastStoreName) {
+            case ForecastStore.SQLITE:
+                store = new SqliteForecastStore(mOpenHelper);
+                break;
+            case ForecastStore.MEMORY:
+                store = new InMemoryForecastStore();
+                break;
+            default:
+                throw new IllegalStateException("Unknown forecast store: "
+                        + mForecastStoreName);
+        }
+
+        store.addListener(new ForecastStore.Listener() {
+            @Override
+            public void onForecastChanged(ForecastStore store) {
+                notifyChange(WeatherContract.WeatherEntry.CONTENT_URI);
+            }
+        });
+        return store;
+    }
+
+    /*
+     * Returns the SQLite engine, for what only SQL can do: selections and sort orders other than
+     * by date. Stats and deletes of whole days work on every engine.
+     */
+    private SqliteForecastStore requireSqliteStore(Uri uri) {
+        if (!(mForecastStore instanceof SqliteForecastStore)) {
+            throw new UnsupportedOperationException(
+                    "Needs the " + ForecastStore.SQLITE + " forecast store: " + uri);
+        }
+        return (SqliteForecastStore) mForecastStore;
+    }
+
+    /*
+     * Returns the compressed hourly store for a query, which hands out the rows of a date time
+     * range in date time order and nothing else: selections and other orders need the row per
+     * sample layout.
+     */
+    private HourlyBlockStore requireHourlyBlockQuery(Uri uri, String selection, String sortOrder) {
+        if (selection != null || !(sortOrder == null || sortOrder.trim().matches("(?i)"
+                + WeatherContract.HourlyWeatherEntry.COLUMN_DATE_TIME + "( ASC)?"))) {
+            throw new UnsupportedOperationException(
+                    "Compressed hourly rows only support date time ranges: " + uri);
+        }
+        return mHourlyBlockStore;
+    }
+
+    private static long getDateParameter(Uri uri, String name, long defaultDate) {
+        String date = uri.getQueryParameter(name);
+        return date == null ? defaultDate : Long.parseLong(parseDate(date));
+    }
+
+    /* Whether rows in this order can come from ForecastStore#queryRange */
+    private static boolean isDateOrder(String sortOrder) {
+        return sortOrder == null
+                || sortOrder.trim().matches("(?i)" + WeatherContract.WeatherEntry.COLUMN_DATE
+                + "( ASC)?");
+    }
+
+    private static boolean isCountProjection(String[] projection) {
+        return projection != null && projection.length == 1 && "COUNT(*)".equals(projection[0]);
+    }
+
     @Override
     public boolean onCreate() {
 
         mOpenHelper = new WeatherDbHelper(getContext());
 
+        mForecastStore = createForecastStore();
+
+        if (WeatherDbHelper.COMPRESSED_HOURLY_STORAGE) {
+            mHourlyBlockStore = new HourlyBlockStore(mOpenHelper);
+        }
+
+        mNotificationCoalescer = new ChangeNotificationCoalescer(getContext().getContentResolver());
+
+        /* The provider is created before any activity, so every access is seen */
+        if (BuildConfig.DEBUG) {
+            AccessWatchdog.install(Looper.getMainLooper().getThread(),
+                    AccessWatchdog.DEFAULT_SLOW_QUERY_MILLIS, AccessWatchdog.DEFAULT_CAPACITY,
+                    new AccessWatchdog.Listener() {
+                        @Override
+                        public void onFlagged(AccessWatchdog.Record record) {
+                            Log.w(TAG, record.toString());
+                        }
+                    });
+        }
+
         return true;
     }
 
@@ -49,6 +518,20 @@ public class WeatherProvider extends ContentProvider {
     @Override
     public Cursor query(@NonNull Uri uri, @Nullable String[] projection, @Nullable String selection, @Nullable String[] selectionArgs, @Nullable String sortOrder) {
 
+        if (!AccessWatchdog.isEnabled()) {
+            return queryUri(uri, projection, selection, selectionArgs, sortOrder);
+        }
+
+        long start = AccessWatchdog.begin();
+        Cursor cursor = queryUri(uri, projection, selection, selectionArgs, sortOrder);
+        /* SQLite only runs a query when its cursor is first read, read it here so it's timed */
+        cursor.getCount();
+        AccessWatchdog.end(AccessWatchdog.KIND_QUERY, uri.getPath(), start);
+        return cursor;
+    }
+
+    private Cursor queryUri(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder) {
+
         Cursor cursor;
 
         switch (sUriMatcher.match(uri)){
@@ -59,12 +542,98 @@ public class WeatherProvider extends ContentProvider {
                 */
                 String normalizedUtcDateString = uri.getLastPathSegment();
 
-                String[] selectionArguments = new String[]{normalizedUtcDateString};
+                cursor = mForecastStore.queryDate(projection,
+                        Long.parseLong(normalizedUtcDateString));
+
+                break;
+            }
+            case CODE_WEATHER:{
+                /* null means no limit, e.g. for the CursorLoaders that load every row */
+                String limit = uri.getQueryParameter(WeatherContract.WeatherEntry.QUERY_PARAMETER_LIMIT);
+                if (limit != null && !limit.matches("\\d+(,\\d+)?")) {
+                    throw new IllegalArgumentException("Invalid limit: " + limit);
+                }
+
+                if (selection != null || !isDateOrder(sortOrder)) {
+                    ArrayList<String> args = new ArrayList<>();
+                    String where = buildRangeSelection(uri, selection, selectionArgs, args);
+                    cursor = requireSqliteStore(uri).query(
+                            projection,
+                            where,
+                            args.toArray(new String[args.size()]),
+                            sortOrder,
+                            limit);
+
+                    break;
+                }
+
+                long startDate = getDateParameter(uri,
+                        WeatherContract.WeatherEntry.QUERY_PARAMETER_START, Long.MIN_VALUE);
+                long endDate = getDateParameter(uri,
+                        WeatherContract.WeatherEntry.QUERY_PARAMETER_END, Long.MAX_VALUE);
+
+                if (isCountProjection(projection)) {
+                    MatrixCursor countCursor = new MatrixCursor(projection, 1);
+                    countCursor.addRow(new Object[]{mForecastStore.count(startDate, endDate)});
+                    cursor = countCursor;
+
+                    break;
+                }
+
+                int offset = 0;
+                int count = -1;
+                if (limit != null) {
+                    int comma = limit.indexOf(',');
+                    if (comma >= 0) {
+                        offset = Integer.parseInt(limit.substring(0, comma));
+                    }
+                    count = Integer.parseInt(limit.substring(comma + 1));
+                }
+
+                cursor = mForecastStore.queryRange(projection, startDate, endDate, offset, count);
+
+                break;
+            }
+
+            case CODE_WEATHER_STATS:{
+                /* Aggregates have fixed columns, the projection and sort order don't apply */
+                if (mForecastStore instanceof SqliteForecastStore) {
+                    cursor = queryWeatherStats(uri, selection, selectionArgs);
+                } else {
+                    cursor = scanWeatherStats(uri, selection);
+                }
+
+                break;
+            }
+            case CODE_WEATHER_STATS_CONDITIONS:{
+                if (mForecastStore instanceof SqliteForecastStore) {
+                    cursor = queryWeatherConditionCounts(uri, selection, selectionArgs);
+                } else {
+                    cursor = scanWeatherConditionCounts(uri, selection);
+                }
+
+                break;
+            }
+
+            case CODE_HOURLY_WEATHER_WITH_DATE:{
+                /* Every slot starting within the day, uses the unique index on date_time */
+                long normalizedUtcDate = Long.parseLong(uri.getLastPathSegment());
+
+                if (mHourlyBlockStore != null) {
+                    cursor = requireHourlyBlockQuery(uri, selection, sortOrder).query(projection,
+                            normalizedUtcDate, normalizedUtcDate + SunshineDateUtils.DAY_IN_MILLIS);
+                    break;
+                }
+
+                String[] selectionArguments = new String[]{
+                        Long.toString(normalizedUtcDate),
+                        Long.toString(normalizedUtcDate + SunshineDateUtils.DAY_IN_MILLIS)};
 
                 cursor = mOpenHelper.getReadableDatabase().query(
-                        WeatherContract.WeatherEntry.TABLE_NAME,
+                        WeatherContract.HourlyWeatherEntry.TABLE_NAME,
                         projection,
-                        WeatherContract.WeatherEntry.COLUMN_DATE + " = ? ",
+                        WeatherContract.HourlyWeatherEntry.COLUMN_DATE_TIME + " >= ? AND "
+                                + WeatherContract.HourlyWeatherEntry.COLUMN_DATE_TIME + " < ? ",
                         selectionArguments,
                         null,
                         null,
@@ -72,9 +641,38 @@ public class WeatherProvider extends ContentProvider {
 
                 break;
             }
-            case CODE_WEATHER:{
+            case CODE_HOURLY_WEATHER:{
+                if (mHourlyBlockStore != null) {
+                    /* Decoded a sample at a time as the cursor moves, see HourlyBlockStore */
+                    cursor = requireHourlyBlockQuery(uri, selection, sortOrder).query(projection,
+                            getDateParameter(uri,
+                                    WeatherContract.HourlyWeatherEntry.QUERY_PARAMETER_START,
+                                    Long.MIN_VALUE),
+                            getDateParameter(uri,
+                                    WeatherContract.HourlyWeatherEntry.QUERY_PARAMETER_END,
+                                    Long.MAX_VALUE));
+                    break;
+                }
+
+                ArrayList<String> args = new ArrayList<>();
+                String where = buildRangeSelection(uri,
+                        WeatherContract.HourlyWeatherEntry.COLUMN_DATE_TIME, selection,
+                        selectionArgs, args);
                 cursor = mOpenHelper.getReadableDatabase().query(
-                        WeatherContract.WeatherEntry.TABLE_NAME,
+                        WeatherContract.HourlyWeatherEntry.TABLE_NAME,
+                        projection,
+                        where,
+                        args.toArray(new String[args.size()]),
+                        null,
+                        null,
+                        sortOrder);
+
+                break;
+            }
+
+            case CODE_SYNC_JOURNAL:{
+                cursor = mOpenHelper.getReadableDatabase().query(
+                        WeatherContract.SyncJournalEntry.TABLE_NAME,
                         projection,
                         selection,
                         selectionArgs,
@@ -84,25 +682,146 @@ public class WeatherProvider extends ContentProvider {
 
                 break;
             }
+            case CODE_SYNC_JOURNAL_SUMMARY:{
+                /* Like the stats, the summary has fixed columns */
+                cursor = querySyncJournalSummary(uri);
+
+                break;
+            }
 
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
 
-        cursor.setNotificationUri(getContext().getContentResolver(), uri);
+        /* Paged queries are notified like any other query of the same path */
+        cursor.setNotificationUri(getContext().getContentResolver(), uri.buildUpon().clearQuery().build());
         return cursor;
     }
 
     @Nullable
     @Override
     public String getType(@NonNull Uri uri) {
-        return null;
+        switch (sUriMatcher.match(uri)) {
+            case CODE_WEATHER:
+            case CODE_WEATHER_REPLACE:
+            case CODE_WEATHER_PATCH:
+                return WeatherContract.WeatherEntry.CONTENT_TYPE;
+            case CODE_WEATHER_WITH_DATE:
+                return WeatherContract.WeatherEntry.CONTENT_ITEM_TYPE;
+            case CODE_WEATHER_STATS:
+                return WeatherContract.WeatherStatsEntry.CONTENT_ITEM_TYPE;
+            case CODE_WEATHER_STATS_CONDITIONS:
+                return WeatherContract.WeatherStatsEntry.CONDITIONS_CONTENT_TYPE;
+            case CODE_HOURLY_WEATHER:
+            case CODE_HOURLY_WEATHER_WITH_DATE:
+            case CODE_HOURLY_WEATHER_REPLACE:
+                return WeatherContract.HourlyWeatherEntry.CONTENT_TYPE;
+            case CODE_SYNC_JOURNAL:
+                return WeatherContract.SyncJournalEntry.CONTENT_TYPE;
+            case CODE_SYNC_JOURNAL_SUMMARY:
+                return WeatherContract.SyncJournalEntry.SUMMARY_CONTENT_ITEM_TYPE;
+            default:
+                throw new UnsupportedOperationException("Unknown uri: " + uri);
+        }
     }
 
     @Nullable
     @Override
     public Uri insert(@NonNull Uri uri, @Nullable ContentValues values) {
-        return null;
+        Uri insertedUri;
+
+        switch (sUriMatcher.match(uri)) {
+            case CODE_WEATHER: {
+                ForecastBatch row = ForecastBatch.fromContentValues(new ContentValues[]{values});
+                checkDatesNormalized(row);
+
+                /* Notified by the store */
+                if (mForecastStore.upsert(row) == 0) {
+                    return null;
+                }
+                return WeatherContract.WeatherEntry.buildWeatherUriWithDate(row.getDate(0));
+            }
+            case CODE_HOURLY_WEATHER: {
+                long dateTime = values.getAsLong(WeatherContract.HourlyWeatherEntry.COLUMN_DATE_TIME);
+                if (dateTime % SunshineDateUtils.HOUR_IN_MILLIS != 0) {
+                    throw new IllegalArgumentException("Date time must be a whole hour to insert");
+                }
+
+                if (mHourlyBlockStore != null) {
+                    if (mHourlyBlockStore.insert(new ContentValues[]{values}) == 0) {
+                        return null;
+                    }
+                } else {
+                    long _id = mOpenHelper.getWritableDatabase()
+                            .insert(WeatherContract.HourlyWeatherEntry.TABLE_NAME, null, values);
+                    if (_id == -1) {
+                        return null;
+                    }
+                }
+                /* Hourly rows are addressed by day, return the day the slot belongs to */
+                insertedUri = WeatherContract.HourlyWeatherEntry
+                        .buildHourlyUriWithDate(SunshineDateUtils.normalizeDate(dateTime));
+                break;
+            }
+            case CODE_SYNC_JOURNAL:
+                /* Notified by insertSyncJournal, which also applies the retention */
+                return insertSyncJournal(new ContentValues[]{values}) == 0
+                        ? null : WeatherContract.SyncJournalEntry.CONTENT_URI;
+            default:
+                throw new UnsupportedOperationException("Unknown uri: " + uri);
+        }
+
+        notifyChange(uri);
+        return insertedUri;
+    }
+
+    /**
+     * Runs every operation of the batch in a single transaction. Either all of them are applied
+     * or, if one fails, none are. Observers are notified once per changed URI after the
+     * transaction has committed, rather than once per operation.
+     */
+    @NonNull
+    @Override
+    public ContentProviderResult[] applyBatch(@NonNull ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+
+        Set<Uri> changedUris = new LinkedHashSet<>();
+        mBatchChangedUris.set(changedUris);
+
+        ContentProviderResult[] results = new ContentProviderResult[operations.size()];
+        /* The forecast store may not keep its rows in db, it takes part in the batch on its own */
+        db.beginTransaction();
+        mForecastStore.beginTransaction();
+        try {
+            for (int i = 0; i < operations.size(); i++) {
+                results[i] = operations.get(i).apply(this, results, i);
+            }
+            mForecastStore.setTransactionSuccessful();
+            db.setTransactionSuccessful();
+        } finally {
+            mForecastStore.endTransaction();
+            db.endTransaction();
+            mBatchChangedUris.remove();
+        }
+
+        mNotificationCoalescer.onTransactionCommitted(changedUris);
+        return results;
+    }
+
+    /**
+     * Notifies observers of a change through the {@link ChangeNotificationCoalescer}, or defers the
+     * notification to the end of the batch if called from within {@link #applyBatch(ArrayList)}.
+     *
+     * @param uri The URI that changed
+     */
+    private void notifyChange(Uri uri) {
+        Set<Uri> batchChangedUris = mBatchChangedUris.get();
+        if (batchChangedUris != null) {
+            batchChangedUris.add(uri);
+        } else {
+            mNotificationCoalescer.onChange(uri);
+        }
     }
 
     @Override
@@ -110,22 +829,36 @@ public class WeatherProvider extends ContentProvider {
         final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
 
         switch (sUriMatcher.match(uri)){
-            case CODE_WEATHER:{
+            case CODE_WEATHER:
+            case CODE_WEATHER_REPLACE:
+            case CODE_WEATHER_PATCH:
+                /* Converted once, the forecast is written as a batch from here on */
+                return bulkInsertBatch(uri, ForecastBatch.fromContentValues(values));
+            case CODE_HOURLY_WEATHER:{
+                if (mHourlyBlockStore != null) {
+                    /* Merged into the blocks of their days in a single transaction */
+                    int rowsInserted = mHourlyBlockStore.insert(values);
+                    if (rowsInserted > 0) {
+                        notifyChange(uri);
+                    }
+                    return rowsInserted;
+                }
+
                 db.beginTransaction();
 
                 int rowsInserted = 0;
 
                 try {
                     for (ContentValues value : values) {
-                        long weatherDate =
-                                value.getAsLong(WeatherContract.WeatherEntry.COLUMN_DATE);
-                        if (!SunshineDateUtils.isDateNormalized(weatherDate)) {
-                            throw new IllegalArgumentException("Date must be normalized to insert");
+                        long dateTime =
+                                value.getAsLong(WeatherContract.HourlyWeatherEntry.COLUMN_DATE_TIME);
+                        if (dateTime % SunshineDateUtils.HOUR_IN_MILLIS != 0) {
+                            throw new IllegalArgumentException("Date time must be a whole hour to insert");
                         }
 
                         long _id =
                                 db.insert(
-                                        WeatherContract.WeatherEntry.TABLE_NAME,
+                                        WeatherContract.HourlyWeatherEntry.TABLE_NAME,
                                         null,
                                         value);
 
@@ -138,21 +871,218 @@ public class WeatherProvider extends ContentProvider {
                     db.endTransaction();
                 }
                 if (rowsInserted > 0) {
-                    getContext().getContentResolver().notifyChange(uri, null);
+                    notifyChange(uri);
                 }
 
-               return rowsInserted;
+                return rowsInserted;
             }
+            case CODE_HOURLY_WEATHER_REPLACE:{
+                for (ContentValues value : values) {
+                    long dateTime =
+                            value.getAsLong(WeatherContract.HourlyWeatherEntry.COLUMN_DATE_TIME);
+                    if (dateTime % SunshineDateUtils.HOUR_IN_MILLIS != 0) {
+                        throw new IllegalArgumentException("Date time must be a whole hour to insert");
+                    }
+                }
+
+                if (mHourlyBlockStore != null) {
+                    int rowsInserted = mHourlyBlockStore.replaceAll(values);
+                    notifyChange(WeatherContract.HourlyWeatherEntry.CONTENT_URI);
+                    return rowsInserted;
+                }
+
+                return replaceTable(WeatherContract.HourlyWeatherEntry.TABLE_NAME, values,
+                        WeatherContract.HourlyWeatherEntry.CONTENT_URI);
+            }
+            case CODE_SYNC_JOURNAL:
+                return insertSyncJournal(values);
             default:
                 return super.bulkInsert(uri, values);
         }
     }
 
+    /**
+     * Serves {@link WeatherContract.WeatherEntry#METHOD_BULK_INSERT_BATCH}, through which the
+     * app writes the forecast without converting it to ContentValues.
+     */
+    @Nullable
+    @Override
+    public Bundle call(@NonNull String method, @Nullable String arg, @Nullable Bundle extras) {
+        if (WeatherContract.WeatherEntry.METHOD_BULK_INSERT_BATCH.equals(method)) {
+            if (arg == null) {
+                throw new IllegalArgumentException("No URI to insert into");
+            }
+            Bundle result = new Bundle();
+            result.putInt(WeatherContract.WeatherEntry.EXTRA_ROW_COUNT,
+                    bulkInsertBatch(Uri.parse(arg), ForecastBatch.fromBundle(extras)));
+            return result;
+        }
+        return super.call(method, arg, extras);
+    }
+
+    private static void checkDatesNormalized(ForecastBatch rows) {
+        long[] dates = rows.getDates();
+        for (int row = 0; row < rows.size(); row++) {
+            if (!SunshineDateUtils.isDateNormalized(dates[row])) {
+                throw new IllegalArgumentException("Date must be normalized to insert");
+            }
+        }
+    }
+
+    /**
+     * Bulk inserts forecast rows into one of the forecast URIs.
+     *
+     * @param uri  {@link WeatherContract.WeatherEntry#CONTENT_URI},
+     *             {@link WeatherContract.WeatherEntry#REPLACE_URI} or a patch URI
+     * @param rows The rows
+     * @return What {@link #bulkInsert(Uri, ContentValues[])} returns for the URI
+     */
+    private int bulkInsertBatch(Uri uri, ForecastBatch rows) {
+        checkDatesNormalized(rows);
+
+        switch (sUriMatcher.match(uri)) {
+            case CODE_WEATHER:
+                /* One transaction of the store, which notifies if rows were written */
+                return mForecastStore.upsert(rows);
+
+            case CODE_WEATHER_REPLACE:
+                return mForecastStore.replaceAll(rows);
+
+            case CODE_WEATHER_PATCH: {
+                String start = uri.getQueryParameter(
+                        WeatherContract.WeatherEntry.QUERY_PARAMETER_PATCH_START);
+                String end = uri.getQueryParameter(
+                        WeatherContract.WeatherEntry.QUERY_PARAMETER_PATCH_END);
+                if (start == null || end == null) {
+                    throw new IllegalArgumentException("Patch range missing: " + uri);
+                }
+                long startDate = Long.parseLong(parseDate(start));
+                long endDate = Long.parseLong(parseDate(end));
+                if (!SunshineDateUtils.isDateNormalized(startDate)
+                        || !SunshineDateUtils.isDateNormalized(endDate) || endDate < startDate) {
+                    throw new IllegalArgumentException("Invalid patch range: " + uri);
+                }
+
+                long[] dates = rows.getDates();
+                for (int row = 0; row < rows.size(); row++) {
+                    if (dates[row] < startDate || dates[row] >= endDate) {
+                        throw new IllegalArgumentException("Date outside the patch range");
+                    }
+                }
+
+                return patchWeather(startDate, endDate, rows);
+            }
+            default:
+                throw new UnsupportedOperationException("Unknown uri: " + uri);
+        }
+    }
+
+    /**
+     * Replaces every row of a table. The rows are staged in a shadow table which is then swapped
+     * in for the live one, all in one transaction. Queries running meanwhile on other
+     * connections keep reading the live table, thanks to write-ahead logging, until the
+     * transaction commits, so they see either the old rows or the new ones.
+     *
+     * @param tableName Table to replace the rows of
+     * @param rows      The new rows, already validated
+     * @param notifyUri URI notified once, whether or not the table was empty
+     * @return Number of rows inserted
+     */
+    private int replaceTable(String tableName, ContentValues[] rows, Uri notifyUri) {
+        final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        String shadowTableName = WeatherDbHelper.getShadowTableName(tableName);
+
+        int rowsInserted = 0;
+
+        db.beginTransaction();
+        try {
+            WeatherDbHelper.createShadowTable(db, tableName);
+            for (ContentValues row : rows) {
+                if (db.insert(shadowTableName, null, row) != -1) {
+                    rowsInserted++;
+                }
+            }
+            WeatherDbHelper.swapInShadowTable(db, tableName);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        notifyChange(notifyUri);
+        return rowsInserted;
+    }
+
+    /**
+     * Applies a forecast delta in place, see {@link WeatherContract.WeatherEntry#PATCH_URI}.
+     * Unlike a replace, rows the delta doesn't touch aren't rewritten.
+     *
+     * @param startDate First day the forecast covers once patched
+     * @param endDate   Day after the last one
+     * @param rows      Rows of the changed days, already validated
+     * @return Number of rows updated or inserted, or -1 if the patch was rolled back because it
+     * didn't leave exactly one row per day of the range
+     */
+    private int patchWeather(long startDate, long endDate, ForecastBatch rows) {
+        int rowsPatched;
+
+        /* Notified by the store if the transaction commits */
+        mForecastStore.beginTransaction();
+        try {
+            mForecastStore.deleteBefore(startDate);
+            mForecastStore.deleteFrom(endDate);
+
+            rowsPatched = mForecastStore.upsert(rows);
+            if (rowsPatched != rows.size()) {
+                /* A new day without every column, the delta wasn't made for these rows */
+                return -1;
+            }
+
+            long days = (endDate - startDate) / SunshineDateUtils.DAY_IN_MILLIS;
+            if (mForecastStore.count(startDate, endDate) != days) {
+                return -1;
+            }
+            mForecastStore.setTransactionSuccessful();
+        } finally {
+            mForecastStore.endTransaction();
+        }
+        return rowsPatched;
+    }
+
     @Override
     public int delete(@NonNull Uri uri, @Nullable String selection, @Nullable String[] selectionArgs) {
 
         int numRowsDeleted;
 
+        /*
+         * Whole days are deleted by the store, which notifies if it deleted any: the row of a
+         * date URI, and without a selection the range of the start and end parameters, or all
+         * of the rows.
+         */
+        if (sUriMatcher.match(uri) == CODE_WEATHER_WITH_DATE) {
+            long date = Long.parseLong(uri.getLastPathSegment());
+            return mForecastStore.deleteRange(date, date + 1);
+        }
+        if (selection == null && sUriMatcher.match(uri) == CODE_WEATHER) {
+            return mForecastStore.deleteRange(
+                    getDateParameter(uri, WeatherContract.WeatherEntry.QUERY_PARAMETER_START,
+                            Long.MIN_VALUE),
+                    getDateParameter(uri, WeatherContract.WeatherEntry.QUERY_PARAMETER_END,
+                            Long.MAX_VALUE));
+        }
+
+        /* The compressed hourly rows can only be deleted all at once */
+        if (mHourlyBlockStore != null && sUriMatcher.match(uri) == CODE_HOURLY_WEATHER) {
+            if (selection != null) {
+                throw new UnsupportedOperationException(
+                        "Compressed hourly rows can only be deleted all at once: " + uri);
+            }
+            numRowsDeleted = mHourlyBlockStore.deleteAll();
+            if (numRowsDeleted != 0) {
+                notifyChange(uri);
+            }
+            return numRowsDeleted;
+        }
+
         /*
          * If we pass null as the selection to SQLiteDatabase#delete, our entire table will be
          * deleted. However, if we do pass null and delete all of the rows in the table, we won't
@@ -164,9 +1094,29 @@ public class WeatherProvider extends ContentProvider {
             selection = "1";
 
         switch (sUriMatcher.match(uri)) {
-           case CODE_WEATHER:
+           case CODE_WEATHER: {
+                requireSqliteStore(uri);
+                ArrayList<String> args = new ArrayList<>();
+                String where = buildRangeSelection(uri, selection, selectionArgs, args);
                 numRowsDeleted = mOpenHelper.getWritableDatabase().delete(
                         WeatherContract.WeatherEntry.TABLE_NAME,
+                        where,
+                        args.toArray(new String[args.size()]));
+
+                break;
+            }
+
+            case CODE_HOURLY_WEATHER:
+                numRowsDeleted = mOpenHelper.getWritableDatabase().delete(
+                        WeatherContract.HourlyWeatherEntry.TABLE_NAME,
+                        selection,
+                        selectionArgs);
+
+                break;
+
+            case CODE_SYNC_JOURNAL:
+                numRowsDeleted = mOpenHelper.getWritableDatabase().delete(
+                        WeatherContract.SyncJournalEntry.TABLE_NAME,
                         selection,
                         selectionArgs);
 
@@ -177,7 +1127,7 @@ public class WeatherProvider extends ContentProvider {
         }
 
         if (numRowsDeleted != 0) {
-            getContext().getContentResolver().notifyChange(uri, null);
+            notifyChange(uri);
         }
 
         return numRowsDeleted;
@@ -185,11 +1135,78 @@ public class WeatherProvider extends ContentProvider {
 
     @Override
     public int update(@NonNull Uri uri, @Nullable ContentValues values, @Nullable String selection, @Nullable String[] selectionArgs) {
-        return 0;
+
+        int numRowsUpdated;
+
+        switch (sUriMatcher.match(uri)) {
+            case CODE_WEATHER_WITH_DATE:
+                /* Updates the row of a single day, e.g. content://.../weather/1472214172 */
+                return updateWeatherDate(Long.parseLong(uri.getLastPathSegment()), values);
+
+            case CODE_WEATHER:
+                requireSqliteStore(uri);
+                numRowsUpdated = mOpenHelper.getWritableDatabase().update(
+                        WeatherContract.WeatherEntry.TABLE_NAME,
+                        SqliteForecastStore.toStorage(values),
+                        selection,
+                        selectionArgs);
+
+                break;
+
+            case CODE_HOURLY_WEATHER:
+                if (mHourlyBlockStore != null) {
+                    throw new UnsupportedOperationException(
+                            "Compressed hourly rows are only written by inserts: " + uri);
+                }
+                numRowsUpdated = mOpenHelper.getWritableDatabase().update(
+                        WeatherContract.HourlyWeatherEntry.TABLE_NAME,
+                        values,
+                        selection,
+                        selectionArgs);
+
+                break;
+
+            default:
+                throw new UnsupportedOperationException("Unknown uri: " + uri);
+        }
+
+        if (numRowsUpdated != 0) {
+            notifyChange(uri);
+        }
+
+        return numRowsUpdated;
+    }
+
+    /* Updates the row of a day if there is one, through the store, which notifies */
+    private int updateWeatherDate(long date, ContentValues values) {
+        if (values == null || values.size() == 0) {
+            throw new IllegalArgumentException("No values to update the date with");
+        }
+        ContentValues row = new ContentValues(values);
+        row.put(WeatherContract.WeatherEntry.COLUMN_DATE, date);
+
+        mForecastStore.beginTransaction();
+        try {
+            int numRowsUpdated = mForecastStore.count(date, date + 1) == 0
+                    ? 0 : mForecastStore.upsert(ForecastBatch.fromContentValues(
+                    new ContentValues[]{row}));
+            mForecastStore.setTransactionSuccessful();
+            return numRowsUpdated;
+        } finally {
+            mForecastStore.endTransaction();
+        }
+    }
+
+    /* adb shell dumpsys activity provider WeatherProvider, debug builds list the last accesses */
+    @Override
+    public void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        AccessWatchdog.dump(writer);
     }
 
     @Override
     public void shutdown() {
+        mNotificationCoalescer.flush();
+        mForecastStore.close();
         mOpenHelper.close();
         super.shutdown();
     }
@@ -0,0 +1,242 @@
+package com.example.hazem.sunshineweatherapp.recyclerViewPack;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.v7.widget.RecyclerView;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import com.example.hazem.sunshineweatherapp.R;
+import com.example.hazem.sunshineweatherapp.data.ForecastPage;
+import com.example.hazem.sunshineweatherapp.data.ForecastPagingSource;
+import com.example.hazem.sunshineweatherapp.data.SunshinePreferences;
+import com.example.hazem.sunshineweatherapp.utilities.SunshineDateUtils;
+import com.example.hazem.sunshineweatherapp.utilities.WeatherUtils;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Adapter for the forecast list. Rows are loaded from {@link ForecastPagingSource} a page at a
+ * time as the list scrolls, rows that aren't loaded yet are shown as empty placeholders, and a
+ * refresh only rebinds the rows whose data actually changed.
+ */
+public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapterViewHolder> {
+
+    /* Rows per page, and rows kept loaded on each side of the visible position */
+    private static final int PAGE_SIZE = 30;
+    private static final int PREFETCH_DISTANCE = 30;
+    private static final int MAX_PAGES = 5;
+
+    private final Context mContext;
+
+    private final ForecastAdapterOnClickHandler mClickHandler;
+
+    private final ForecastPageWindow mPageWindow =
+            new ForecastPageWindow(PAGE_SIZE, MAX_PAGES, PREFETCH_DISTANCE);
+
+    private final ForecastPageWindow.PageLoader mPageLoader;
+
+    /* Pages are loaded one at a time, in order, off the main thread */
+    private final ExecutorService mLoadExecutor = Executors.newSingleThreadExecutor();
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /* Set by release, after which no load is started and no result is delivered */
+    private boolean mReleased;
+
+    private ForecastCountListener mCountListener;
+
+    /* Units rows are rendered in, read once instead of on every bind */
+    private boolean mIsMetric;
+
+    /**
+     * The interface that receives onClick messages.
+     */
+    public interface ForecastAdapterOnClickHandler {
+        void onClick(long date);
+    }
+
+    /**
+     * Notified on the main thread every time the number of rows in the list is known.
+     */
+    public interface ForecastCountListener {
+        void onForecastCountLoaded(int count);
+    }
+
+    public ForecastAdapter(@NonNull Context context, ForecastAdapterOnClickHandler clickHandler) {
+        mContext = context;
+        mClickHandler = clickHandler;
+        mPageLoader = new ForecastPagingSource(context);
+        mIsMetric = SunshinePreferences.isMetric(context);
+    }
+
+    public void setForecastCountListener(ForecastCountListener countListener) {
+        mCountListener = countListener;
+    }
+
+    @NonNull
+    @Override
+    public ForecastAdapterViewHolder onCreateViewHolder(@NonNull ViewGroup viewGroup, int viewType) {
+        View view = LayoutInflater.from(mContext)
+                .inflate(R.layout.main_list_item, viewGroup, false);
+        return new ForecastAdapterViewHolder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ForecastAdapterViewHolder holder, int position) {
+        mPageWindow.onPositionAccessed(position);
+        loadPendingPages();
+
+        ForecastPage page = mPageWindow.getPageForPosition(position);
+        if (page == null) {
+            /* Placeholder until the page holding this position is loaded */
+            holder.mWeatherTextView.setText("");
+            return;
+        }
+
+        int row = mPageWindow.getRowInPage(position);
+        String dateString = SunshineDateUtils.getFriendlyDateString(mContext, page.getDate(row), false);
+        String description = WeatherUtils.getStringForWeatherCondition(mContext, page.getWeatherId(row));
+        String highAndLow = WeatherUtils.formatHighLows(mContext,
+                page.getMaxTemp(row), page.getMinTemp(row), mIsMetric);
+
+        holder.mWeatherTextView.setText(dateString + " - " + description + " - " + highAndLow);
+    }
+
+    @Override
+    public int getItemCount() {
+        return mPageWindow.getTotalCount();
+    }
+
+    /**
+     * Reloads the row count and every page currently in memory. Rows that didn't change are not
+     * rebound; if the count changed, the whole list is rebound since positions may have shifted.
+     */
+    public void refresh() {
+        if (mReleased) {
+            return;
+        }
+        mLoadExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                /* Before any row is bound, so the main thread finds the format table built */
+                WeatherUtils.prepareTemperatureFormat(mContext);
+                final int count = mPageLoader.loadCount();
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (mReleased) {
+                            return;
+                        }
+                        boolean countChanged = mPageWindow.setTotalCount(count);
+                        mPageWindow.invalidate();
+                        if (countChanged) {
+                            notifyDataSetChanged();
+                        }
+                        loadPendingPages();
+
+                        if (mCountListener != null) {
+                            mCountListener.onForecastCountLoaded(count);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Stops loading pages, for when the list goes away: the load thread is shut down and results
+     * still on their way to the main thread are dropped. Call on the main thread.
+     */
+    public void release() {
+        mReleased = true;
+        mLoadExecutor.shutdownNow();
+        mMainHandler.removeCallbacksAndMessages(null);
+    }
+
+    /**
+     * Re-renders the rows in other units. The loaded pages are kept; stored temperatures are
+     * always Celsius, so nothing needs to be queried again.
+     *
+     * @param isMetric true for metric units, false for imperial
+     */
+    public void setUnits(boolean isMetric) {
+        if (isMetric == mIsMetric) {
+            return;
+        }
+        mIsMetric = isMetric;
+        notifyDataSetChanged();
+    }
+
+    /**
+     * Returns the date shown at a position, or -1 if that position is still a placeholder.
+     *
+     * @param position Adapter position
+     * @return Normalized UTC date of the row
+     */
+    public long getDateAtPosition(int position) {
+        ForecastPage page = mPageWindow.getPageForPosition(position);
+        if (page == null) {
+            return -1;
+        }
+        return page.getDate(mPageWindow.getRowInPage(position));
+    }
+
+    private void loadPendingPages() {
+        if (mReleased) {
+            return;
+        }
+        ForecastPageWindow.PageRequest request;
+        while ((request = mPageWindow.nextRequest()) != null) {
+            final ForecastPageWindow.PageRequest pageRequest = request;
+            mLoadExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    final ForecastPage page = pageRequest.load(mPageLoader);
+                    mMainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (mReleased) {
+                                return;
+                            }
+                            for (int position : mPageWindow.onPageLoaded(pageRequest, page)) {
+                                notifyItemChanged(position);
+                            }
+                        }
+                    });
+                }
+            });
+        }
+    }
+
+    /**
+     * Cache of the children views for a forecast list item.
+     */
+    class ForecastAdapterViewHolder extends RecyclerView.ViewHolder implements View.OnClickListener {
+
+        final TextView mWeatherTextView;
+
+        ForecastAdapterViewHolder(View view) {
+            super(view);
+            mWeatherTextView = (TextView) view.findViewById(R.id.tv_weather_data);
+            view.setOnClickListener(this);
+        }
+
+        @Override
+        public void onClick(View v) {
+            int position = getAdapterPosition();
+            if (position == RecyclerView.NO_POSITION) {
+                return;
+            }
+            long date = getDateAtPosition(position);
+            if (date != -1) {
+                mClickHandler.onClick(date);
+            }
+        }
+    }
+}
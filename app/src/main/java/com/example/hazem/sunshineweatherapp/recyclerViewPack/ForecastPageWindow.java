@@ -0,0 +1,296 @@
+package com.example.hazem.sunshineweatherapp.recyclerViewPack;
+
+import com.example.hazem.sunshineweatherapp.data.ForecastPage;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps a bounded window of {@link ForecastPage}s around the position the list is showing.
+ * <p>
+ * Positions that aren't loaded yet are placeholders. Pages within the prefetch distance of the
+ * last accessed position are queued for loading, and pages are loaded by date (keyset paging)
+ * after the page before them whenever that page is in memory and up to date. When more than maxPages are loaded,
+ * the pages farthest from the last accessed position are dropped, so memory is bounded by the
+ * window and not by the size of the table.
+ * <p>
+ * This class does no I/O and is not thread safe: loading happens elsewhere (see
+ * {@link ForecastAdapter}) and all calls are expected on the same (main) thread.
+ */
+public class ForecastPageWindow {
+
+    /**
+     * Loads pages of the forecast. Called off the main thread.
+     */
+    public interface PageLoader {
+        /* Total number of rows the list should show */
+        int loadCount();
+
+        /* The first size rows with a date strictly after afterDate */
+        ForecastPage loadPageAfter(long afterDate, int size);
+
+        /* size rows starting at offset, used when the previous page isn't known */
+        ForecastPage loadPageAt(int offset, int size);
+    }
+
+    /**
+     * A page that should be loaded, as returned by {@link #nextRequest()}.
+     */
+    public static class PageRequest {
+        private final int mPageIndex;
+        private final int mOffset;
+        private final int mSize;
+        private final boolean mHasKey;
+        private final long mAfterDate;
+        private final int mGeneration;
+
+        PageRequest(int pageIndex, int offset, int size, boolean hasKey, long afterDate, int generation) {
+            mPageIndex = pageIndex;
+            mOffset = offset;
+            mSize = size;
+            mHasKey = hasKey;
+            mAfterDate = afterDate;
+            mGeneration = generation;
+        }
+
+        public int getPageIndex() {
+            return mPageIndex;
+        }
+
+        /**
+         * Loads the requested page, by date if the previous page is known and by offset otherwise.
+         *
+         * @param loader The loader to use
+         * @return The loaded page
+         */
+        public ForecastPage load(PageLoader loader) {
+            if (mHasKey) {
+                return loader.loadPageAfter(mAfterDate, mSize);
+            }
+            return loader.loadPageAt(mOffset, mSize);
+        }
+    }
+
+    private static final int[] NO_POSITIONS = new int[0];
+
+    private final int mPageSize;
+    private final int mMaxPages;
+    private final int mPrefetchDistance;
+
+    private final Map<Integer, ForecastPage> mPages = new HashMap<>();
+    private final Set<Integer> mPendingPages = new HashSet<>();
+    private final Set<Integer> mLoadingPages = new HashSet<>();
+    /* Loaded pages kept from before the last invalidation, not reloaded yet */
+    private final Set<Integer> mStalePages = new HashSet<>();
+
+    private int mTotalCount;
+    private int mLastAccessedPosition;
+
+    /* Incremented on every invalidation so results of older loads can be told apart */
+    private int mGeneration;
+
+    /**
+     * @param pageSize         Rows per page
+     * @param maxPages         Maximum number of pages kept in memory, must cover the prefetch
+     *                         distance on both sides of the visible position
+     * @param prefetchDistance Number of rows around the accessed position that are kept loaded
+     */
+    public ForecastPageWindow(int pageSize, int maxPages, int prefetchDistance) {
+        if (maxPages < 2 * ((prefetchDistance + pageSize - 1) / pageSize) + 1) {
+            throw new IllegalArgumentException("maxPages doesn't cover the prefetch distance");
+        }
+        mPageSize = pageSize;
+        mMaxPages = maxPages;
+        mPrefetchDistance = prefetchDistance;
+    }
+
+    public int getTotalCount() {
+        return mTotalCount;
+    }
+
+    /**
+     * Sets the number of rows the list shows, placeholders included.
+     *
+     * @param totalCount The new row count
+     * @return true if the count changed, in which case positions may have shifted
+     */
+    public boolean setTotalCount(int totalCount) {
+        if (totalCount == mTotalCount) {
+            return false;
+        }
+        mTotalCount = totalCount;
+
+        /* Drop pages that are now entirely past the end of the list */
+        int lastPage = totalCount == 0 ? -1 : (totalCount - 1) / mPageSize;
+        Iterator<Integer> iterator = mPages.keySet().iterator();
+        while (iterator.hasNext()) {
+            int pageIndex = iterator.next();
+            if (pageIndex > lastPage) {
+                iterator.remove();
+                mStalePages.remove(pageIndex);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the page holding a position, or null if the position is still a placeholder.
+     * Use {@link #getRowInPage(int)} to find the row inside the page.
+     *
+     * @param position Adapter position
+     * @return The loaded page or null
+     */
+    public ForecastPage getPageForPosition(int position) {
+        ForecastPage page = mPages.get(position / mPageSize);
+        if (page == null || getRowInPage(position) >= page.getSize()) {
+            return null;
+        }
+        return page;
+    }
+
+    public int getRowInPage(int position) {
+        return position % mPageSize;
+    }
+
+    public int getLoadedPageCount() {
+        return mPages.size();
+    }
+
+    /**
+     * Records that a position is being shown and queues every missing page within the prefetch
+     * distance of it.
+     *
+     * @param position Adapter position being bound
+     */
+    public void onPositionAccessed(int position) {
+        mLastAccessedPosition = position;
+
+        if (mTotalCount == 0) {
+            return;
+        }
+        int firstPage = Math.max(0, position - mPrefetchDistance) / mPageSize;
+        int lastPage = Math.min(mTotalCount - 1, position + mPrefetchDistance) / mPageSize;
+
+        for (int pageIndex = firstPage; pageIndex <= lastPage; pageIndex++) {
+            if (!mPages.containsKey(pageIndex) && !mLoadingPages.contains(pageIndex)) {
+                mPendingPages.add(pageIndex);
+            }
+        }
+    }
+
+    /**
+     * Returns the next page to load, closest to the last accessed position first, and marks it as
+     * loading.
+     *
+     * @return The request to run, or null if nothing needs loading
+     */
+    public PageRequest nextRequest() {
+        int accessedPage = mLastAccessedPosition / mPageSize;
+        int bestPage = -1;
+        for (int pageIndex : mPendingPages) {
+            if (bestPage == -1
+                    || Math.abs(pageIndex - accessedPage) < Math.abs(bestPage - accessedPage)) {
+                bestPage = pageIndex;
+            }
+        }
+        if (bestPage == -1) {
+            return null;
+        }
+
+        mPendingPages.remove(bestPage);
+        mLoadingPages.add(bestPage);
+
+        /*
+         * A stale previous page may no longer end where this page starts, e.g. after a sync
+         * dropped a day before it, so only a reloaded one gives the key.
+         */
+        ForecastPage previousPage = mPages.get(bestPage - 1);
+        boolean hasKey = bestPage == 0 || (previousPage != null
+                && !mStalePages.contains(bestPage - 1)
+                && previousPage.getSize() == mPageSize);
+        long afterDate = bestPage == 0 ? Long.MIN_VALUE : hasKey ? previousPage.getLastDate() : 0;
+
+        return new PageRequest(bestPage, bestPage * mPageSize, mPageSize, hasKey, afterDate, mGeneration);
+    }
+
+    /**
+     * Stores a loaded page and works out which positions have to be bound again.
+     *
+     * @param request The request that was loaded
+     * @param page    The result of the request
+     * @return Positions whose contents changed, only the rows that differ if the page replaces
+     * an older copy of itself
+     */
+    public int[] onPageLoaded(PageRequest request, ForecastPage page) {
+        if (request.mGeneration != mGeneration) {
+            /* Invalidated while loading, the page has already been queued again */
+            return NO_POSITIONS;
+        }
+        int pageIndex = request.mPageIndex;
+        mLoadingPages.remove(pageIndex);
+
+        ForecastPage oldPage = mPages.put(pageIndex, page);
+        mStalePages.remove(pageIndex);
+        int firstPosition = pageIndex * mPageSize;
+
+        List<Integer> changed = new ArrayList<>();
+        for (int row = 0; row < Math.max(page.getSize(), oldPage == null ? 0 : oldPage.getSize()); row++) {
+            boolean same = oldPage != null
+                    && row < page.getSize()
+                    && row < oldPage.getSize()
+                    && page.isSameRow(row, oldPage, row);
+            if (!same && firstPosition + row < mTotalCount) {
+                changed.add(firstPosition + row);
+            }
+        }
+
+        evictFarthestPages(pageIndex);
+
+        int[] positions = new int[changed.size()];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = changed.get(i);
+        }
+        return positions;
+    }
+
+    /**
+     * Marks every loaded page as stale. Their data stays visible until the reload finishes, at
+     * which point {@link #onPageLoaded} reports only the rows that actually changed.
+     */
+    public void invalidate() {
+        mGeneration++;
+        mStalePages.addAll(mPages.keySet());
+        mPendingPages.addAll(mPages.keySet());
+        mPendingPages.addAll(mLoadingPages);
+        mLoadingPages.clear();
+    }
+
+    private void evictFarthestPages(int justLoadedPage) {
+        int accessedPage = mLastAccessedPosition / mPageSize;
+        while (mPages.size() > mMaxPages) {
+            int farthestPage = -1;
+            for (int pageIndex : mPages.keySet()) {
+                if (pageIndex != justLoadedPage && (farthestPage == -1
+                        || Math.abs(pageIndex - accessedPage) > Math.abs(farthestPage - accessedPage))) {
+                    farthestPage = pageIndex;
+                }
+            }
+            mPages.remove(farthestPage);
+            mStalePages.remove(farthestPage);
+        }
+
+        /* Pages that scrolled out of reach before they were loaded aren't worth loading */
+        Iterator<Integer> iterator = mPendingPages.iterator();
+        while (iterator.hasNext()) {
+            int pageIndex = iterator.next();
+            if (Math.abs(pageIndex - accessedPage) * mPageSize > mPrefetchDistance + mPageSize) {
+                iterator.remove();
+            }
+        }
+    }
+}
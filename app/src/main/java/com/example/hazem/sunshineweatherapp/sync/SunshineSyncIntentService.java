@@ -10,12 +10,24 @@ import android.support.annotation.Nullable;
  */
 public class SunshineSyncIntentService extends IntentService {
 
+    /* Set by SyncRequestQueue syncs, so a sync superseded while queued doesn't run */
+    static final String EXTRA_LOCATION = "location";
+    static final String EXTRA_GENERATION = "generation";
+
     public SunshineSyncIntentService() {
         super("SunshineSyncIntentService");
     }
 
     @Override
     protected void onHandleIntent(@Nullable Intent intent) {
-        SunshineSyncTask.syncWeatherData(this);
+        SyncRequestQueue.Token token;
+        if (intent != null && intent.hasExtra(EXTRA_GENERATION)) {
+            token = SunshineSyncUtils.getSyncQueue(this).restoreToken(
+                    intent.getLongExtra(EXTRA_GENERATION, 0),
+                    intent.getStringExtra(EXTRA_LOCATION));
+        } else {
+            token = SunshineSyncUtils.getTokenForPreferredLocation(this);
+        }
+        SunshineSyncTask.syncWeatherData(this, token);
     }
 }
@@ -3,19 +3,40 @@ package com.example.hazem.sunshineweatherapp.sync;
 import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.SystemClock;
 import android.text.format.DateUtils;
 import android.util.Log;
 
+import com.example.hazem.sunshineweatherapp.BuildConfig;
+import com.example.hazem.sunshineweatherapp.data.CurrentForecastSnapshot;
+import com.example.hazem.sunshineweatherapp.data.ForecastBatch;
 import com.example.hazem.sunshineweatherapp.data.SunshinePreferences;
+import com.example.hazem.sunshineweatherapp.data.SyncJournal;
 import com.example.hazem.sunshineweatherapp.data.WeatherContract;
+import com.example.hazem.sunshineweatherapp.utilities.DailyTemperatureAccumulator;
+import com.example.hazem.sunshineweatherapp.utilities.ForecastEnricher;
+import com.example.hazem.sunshineweatherapp.utilities.HedgedRequestExecutor;
 import com.example.hazem.sunshineweatherapp.utilities.NetworkUtils;
 import com.example.hazem.sunshineweatherapp.utilities.NotificationUtils;
+import com.example.hazem.sunshineweatherapp.utilities.SunshineDateUtils;
+
+import org.json.JSONObject;
 
 import java.net.URL;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 public class SunshineSyncTask {
 
     private static final String TAG = "SunshineSyncTask";
+
+    /* Compiled once and reused by every sync, guarded by the syncWeatherData lock */
+    private static WeatherAlertEngine sAlertEngine;
+
     /**
      * Performs the network request for updated weather, parses the JSON from that request, and
      * inserts the new weather information into our ContentProvider. Will notify the user that new
@@ -24,74 +45,371 @@ public class SunshineSyncTask {
      *
      * @param context Used to access utility methods and the ContentResolver
      */
-    synchronized public static void syncWeatherData(Context context) {
+    public static void syncWeatherData(Context context) {
+        syncWeatherData(context, SunshineSyncUtils.getTokenForPreferredLocation(context));
+    }
+
+    /**
+     * Same as {@link #syncWeatherData(Context)}, for a sync that stops as soon as another
+     * location is requested through the {@link SyncRequestQueue}. Its results are only written
+     * if it is still current by then. Whatever the outcome, the sync is recorded in the
+     * {@link SyncJournal}.
+     *
+     * @param context Used to access utility methods and the ContentResolver
+     * @param token   Token of the sync, finished when this method returns
+     */
+    synchronized public static void syncWeatherData(Context context,
+                                                    SyncRequestQueue.Token token) {
 
+        SyncJournal.Entry journalEntry = new SyncJournal.Entry(System.currentTimeMillis());
         try {
-            URL weatherRequestUrl = NetworkUtils.getUrl(context);
+            /* Superseded while waiting for the previous sync to finish */
+            if (token.isCancelled()) {
+                Log.d(TAG, "Skipping superseded sync of " + token);
+                journalEntry.setOutcome(WeatherContract.SyncJournalEntry.OUTCOME_SUPERSEDED);
+                return;
+            }
+
+            String heldVersion = SunshinePreferences.getForecastVersion(context);
+            if (!syncForecast(context, token, heldVersion, journalEntry)) {
+                /*
+                 * The rows don't match the version they were saved with, e.g. the table was
+                 * cleared meanwhile. Start over from the whole forecast.
+                 */
+                Log.d(TAG, "Forecast delta rejected, falling back to a full sync of " + token);
+                SunshinePreferences.saveForecastVersion(context, "");
+                syncForecast(context, token, "", journalEntry);
+            }
+
+            /* If the code reaches this point, the outcome of the sync is in journalEntry */
+        } catch (Exception e) {
+            Log.e(TAG, "syncWeatherData Function: " + e.getMessage(), e);
+            journalEntry.setFailed(e.toString());
+        } finally {
+            token.finish();
+            /* Only queued, written off this thread */
+            SyncJournal.record(context, journalEntry);
+        }
+
+    }
+
+    /**
+     * Downloads the forecast and writes it to the ContentProvider. With a held version, only the
+     * days that changed since are downloaded, and patched into the held rows in place; servers
+     * without delta support send the whole forecast, which replaces the held rows as usual.
+     *
+     * @param context      Used to access utility methods and the ContentResolver
+     * @param token        Token of the sync
+     * @param heldVersion  Version of the forecast held by the weather table, empty if unknown
+     * @param journalEntry Receives the outcome, stage times and sizes of the sync
+     * @return false if a delta was downloaded but didn't apply to the held rows, in which case
+     * nothing was written, true otherwise
+     */
+    private static boolean syncForecast(final Context context, SyncRequestQueue.Token token,
+                                        String heldVersion, SyncJournal.Entry journalEntry) {
+        URL weatherRequestUrl = NetworkUtils.buildDeltaUrl(NetworkUtils.getUrl(context), heldVersion);
+
+        long stageStart = SystemClock.elapsedRealtime();
+        HedgedRequestExecutor.Response weatherResponse =
+                NetworkUtils.getResponseFromHttpUrl(weatherRequestUrl);
+        journalEntry.addNetworkMillis(SystemClock.elapsedRealtime() - stageStart);
+        journalEntry.setHttpStatus(weatherResponse.getStatus());
+        journalEntry.addBytes(weatherResponse.getByteCount());
 
-            String jsonWeatherResponse = NetworkUtils.getResponseFromHttpUrl(weatherRequestUrl);
+        /* Parsed once, the version and the days are both read from the same tree */
+        stageStart = SystemClock.elapsedRealtime();
+        JSONObject forecastJson = NetworkUtils.parseForecastResponse(weatherResponse.getBody());
+        final NetworkUtils.ForecastDelta delta = NetworkUtils.getForecastDeltaFromJson(forecastJson);
+        final boolean isDelta = delta != null && delta.isDelta();
 
-            ContentValues[] weatherData =  NetworkUtils.getWeatherContentValuesFromJson(context,jsonWeatherResponse);
+        ForecastBatch weatherData;
+        if (isDelta) {
+            weatherData = delta.getChangedDays();
+        } else {
+            weatherData = NetworkUtils.getForecastFromJson(context, forecastJson);
+            if (delta != null && weatherData != null) {
+                /* Dated by the server's days rather than the local ones, so deltas line up */
+                for (int i = 0; i < weatherData.size(); i++) {
+                    weatherData.setDate(i,
+                            delta.getStartDate() + i * SunshineDateUtils.DAY_IN_MILLIS);
+                }
+            }
+        }
+        journalEntry.addParseMillis(SystemClock.elapsedRealtime() - stageStart);
+
+        /*
+         * The hourly forecast is optional: if the server has none, or it can't be fetched or
+         * parsed, the daily rows are still inserted with the server's own min and max
+         * temperatures.
+         */
+        DailyTemperatureAccumulator dailyTemperatures = new DailyTemperatureAccumulator();
+        ContentValues[] hourlyData = null;
+        if (BuildConfig.HOURLY_FORECAST) {
+            stageStart = SystemClock.elapsedRealtime();
+            hourlyData = NetworkUtils.getHourlyWeatherFromHttpUrl(
+                    NetworkUtils.getHourlyUrl(context), dailyTemperatures);
+            journalEntry.addNetworkMillis(SystemClock.elapsedRealtime() - stageStart);
+        }
+
+        /*
+         * In cases where our JSON contained an error code, getForecastFromJson
+         * would have returned null. We need to check for those cases here to prevent any
+         * NullPointerExceptions being thrown. We also have no reason to insert fresh data if
+         * there isn't any to insert, unless it's a delta, which may only move the days.
+         */
+        if (token.isCancelled()) {
+            Log.d(TAG, "Dropping superseded sync of " + token);
+            journalEntry.setOutcome(WeatherContract.SyncJournalEntry.OUTCOME_SUPERSEDED);
+            return true;
+        }
+
+        if (!isDelta && (weatherData == null || weatherData.size() == 0)) {
+            journalEntry.setFailed("No forecast in the response");
+        } else {
+            /* Get a handle on the ContentResolver to replace the data */
+            final ContentResolver sunshineContentResolver = context.getContentResolver();
+
+            stageStart = SystemClock.elapsedRealtime();
+            if (hourlyData != null) {
+                applyHourlyTemperatures(weatherData, dailyTemperatures);
+            }
 
             /*
-             * In cases where our JSON contained an error code, getWeatherContentValuesFromJson
-             * would have returned null. We need to check for those cases here to prevent any
-             * NullPointerExceptions being thrown. We also have no reason to insert fresh data if
-             * there isn't any to insert.
+             * Derived metrics are computed once here, from the final min and max, and stored
+             * with the rows so the UI only reads them.
              */
-            if (weatherData != null && weatherData.length != 0) {
-                /* Get a handle on the ContentResolver to delete and insert data */
-                ContentResolver sunshineContentResolver = context.getContentResolver();
-
-                //If we have valid results, delete the old data and insert the new
-                /* Delete old weather data because we don't need to keep multiple days' data */
-                sunshineContentResolver.delete(
-                        WeatherContract.WeatherEntry.CONTENT_URI,
-                        null,
-                        null);
-
-                /* Insert our new weather data into Sunshine's ContentProvider */
-                sunshineContentResolver.bulkInsert(
-                        WeatherContract.WeatherEntry.CONTENT_URI,
-                        weatherData);
-
-                // Check if notifications are enabled
-                /*
-                 * Finally, after we insert data into the ContentProvider, determine whether or not
-                 * we should notify the user that the weather has been refreshed.
-                 */
-                boolean notificationsEnabled = SunshinePreferences.areNotificationsEnabled(context);
+            final Uri weatherUri;
+            final ForecastBatch newWeatherData;
+            if (isDelta) {
+                weatherUri = WeatherContract.WeatherEntry.buildPatchUri(delta.getStartDate(),
+                        delta.getEndDate());
+                newWeatherData = enrichDelta(sunshineContentResolver, weatherData, delta);
+            } else {
+                ForecastEnricher.enrich(weatherData, 0, weatherData.size(), Double.NaN);
+                weatherUri = WeatherContract.WeatherEntry.REPLACE_URI;
+                newWeatherData = weatherData;
+            }
+            journalEntry.addParseMillis(SystemClock.elapsedRealtime() - stageStart);
 
-                /*
-                 * If the last notification was shown was more than 1 day ago, we want to send
-                 * another notification to the user that the weather has been updated. Remember,
-                 * it's important that you shouldn't spam your users with notifications.
-                 */
-                long timeSinceLastNotification = SunshinePreferences
-                        .getEllapsedTimeSinceLastNotification(context);
+            /*
+             * Old weather data is replaced rather than kept, we don't need multiple days'
+             * data. The replace URIs swap the new rows in atomically, so loaders never see
+             * an empty forecast between deleting the old rows and inserting the new ones.
+             * A delta is patched in atomically too. The write is dropped if another location
+             * was requested during the download.
+             */
+            final ContentValues[] newHourlyData = hourlyData;
+            final boolean[] patchRejected = new boolean[1];
+            final int[] rowsChanged = new int[1];
+            stageStart = SystemClock.elapsedRealtime();
+            boolean committed = token.commit(new Runnable() {
+                @Override
+                public void run() {
+                    rowsChanged[0] = newWeatherData.bulkInsert(sunshineContentResolver, weatherUri);
+                    if (rowsChanged[0] < 0) {
+                        patchRejected[0] = true;
+                        return;
+                    }
+
+                    if (newHourlyData != null && newHourlyData.length != 0) {
+                        sunshineContentResolver.bulkInsert(
+                                WeatherContract.HourlyWeatherEntry.REPLACE_URI,
+                                newHourlyData);
+                    }
 
-                boolean oneDayPassedSinceLastNotification = false;
+                    /* Saved with the rows, so the version always describes what is stored */
+                    SunshinePreferences.saveForecastVersion(context,
+                            delta != null ? delta.getVersion() : "");
 
-//              Check if a day has passed since the last notification
-                if (timeSinceLastNotification >= DateUtils.DAY_IN_MILLIS) {
-                    oneDayPassedSinceLastNotification = true;
+                    /* The first days are also mapped to a file, for reads that skip the database */
+                    CurrentForecastSnapshot.getInstance(context).publish(sunshineContentResolver);
                 }
+            });
+            journalEntry.addWriteMillis(SystemClock.elapsedRealtime() - stageStart);
+            if (!committed) {
+                Log.d(TAG, "Dropping superseded sync of " + token);
+                journalEntry.setOutcome(WeatherContract.SyncJournalEntry.OUTCOME_SUPERSEDED);
+                return true;
+            }
+            if (patchRejected[0]) {
+                return false;
+            }
+            journalEntry.addRowsChanged(rowsChanged[0]);
+            journalEntry.setOutcome(WeatherContract.SyncJournalEntry.OUTCOME_SUCCESS);
 
-                /*
-                 * We only want to show the notification if the user wants them shown and we
-                 * haven't shown a notification in the past day.
-                 */
-//              If more than a day have passed and notifications are enabled, notify the user
-                if (notificationsEnabled && oneDayPassedSinceLastNotification) {
-                    NotificationUtils.notifyUserOfNewWeather(context);
+            // Check if notifications are enabled
+            /*
+             * Finally, after we insert data into the ContentProvider, determine whether or not
+             * we should notify the user that the weather has been refreshed.
+             */
+            boolean notificationsEnabled = SunshinePreferences.areNotificationsEnabled(context);
+
+            /*
+             * If the last notification was shown was more than 1 day ago, we want to send
+             * another notification to the user that the weather has been updated. Remember,
+             * it's important that you shouldn't spam your users with notifications.
+             */
+            long timeSinceLastNotification = SunshinePreferences
+                    .getEllapsedTimeSinceLastNotification(context);
+
+            boolean oneDayPassedSinceLastNotification = false;
+
+//          Check if a day has passed since the last notification
+            if (timeSinceLastNotification >= DateUtils.DAY_IN_MILLIS) {
+                oneDayPassedSinceLastNotification = true;
+            }
+
+            /*
+             * We only want to show the notification if the user wants them shown and we
+             * haven't shown a notification in the past day.
+             */
+//          If more than a day have passed and notifications are enabled, notify the user
+            if (notificationsEnabled && oneDayPassedSinceLastNotification) {
+                NotificationUtils.notifyUserOfNewWeather(context);
+            }
+
+            /*
+             * Alerts are evaluated over the rows this sync wrote rather than the whole
+             * table, and aren't subject to the once a day limit above. For a delta, these
+             * are the changed days, the others were evaluated when they were written.
+             */
+            /* Enriched, so each day carries its pressure trend; a delta's changed days come first */
+            List<WeatherAlertEngine.Alert> alerts =
+                    evaluateWeatherAlerts(context, newWeatherData, weatherData.size());
+            if (notificationsEnabled && !alerts.isEmpty()) {
+                NotificationUtils.notifyUserOfWeatherAlerts(context, alerts);
+            }
+
+        }
+        return true;
+    }
+
+    /**
+     * Adds the derived columns to the changed days of a delta. The pressure trend of a day
+     * depends on the day before, which the delta may not hold, so the held pressures are read
+     * back. The held days following a changed day get their trend updated too, and so does the
+     * first day, which has no trend after a full sync.
+     *
+     * @param resolver    Used to read the held rows
+     * @param changedDays Rows of the changed days
+     * @param delta       The delta they came with
+     * @return The rows to patch: the enriched changed days, then the trend updates
+     */
+    private static ForecastBatch enrichDelta(ContentResolver resolver, ForecastBatch changedDays,
+                                             NetworkUtils.ForecastDelta delta) {
+        Map<Long, Double> pressures = new HashMap<>();
+        Cursor cursor = resolver.query(
+                WeatherContract.WeatherEntry.buildWeatherUriWithRange(
+                        delta.getStartDate(), delta.getEndDate()),
+                new String[]{
+                        WeatherContract.WeatherEntry.COLUMN_DATE,
+                        WeatherContract.WeatherEntry.COLUMN_PRESSURE
+                },
+                null,
+                null,
+                null);
+        if (cursor != null) {
+            try {
+                while (cursor.moveToNext()) {
+                    pressures.put(cursor.getLong(0), cursor.getDouble(1));
                 }
+            } finally {
+                cursor.close();
+            }
+        }
 
+        /* Row of each changed day in changedDays, by date */
+        Map<Long, Integer> changedByDate = new TreeMap<>();
+        for (int i = 0; i < changedDays.size(); i++) {
+            long date = changedDays.getDate(i);
+            changedByDate.put(date, i);
+            pressures.put(date, changedDays.getValue(i, ForecastBatch.PRESSURE));
+        }
+
+        ForecastBatch rows = new ForecastBatch(changedDays.size() * 2 + 1);
+        for (Map.Entry<Long, Integer> changed : changedByDate.entrySet()) {
+            long date = changed.getKey();
+            Double previousPressure = date == delta.getStartDate()
+                    ? null
+                    : pressures.get(date - SunshineDateUtils.DAY_IN_MILLIS);
+            int row = rows.addRow(changedDays, changed.getValue());
+            ForecastEnricher.enrich(rows, row, 1,
+                    previousPressure == null ? Double.NaN : previousPressure);
+        }
+
+        for (long date : changedByDate.keySet()) {
+            long nextDate = date + SunshineDateUtils.DAY_IN_MILLIS;
+            if (nextDate < delta.getEndDate() && !changedByDate.containsKey(nextDate)
+                    && pressures.containsKey(nextDate)) {
+                addPressureTrend(rows, nextDate, pressures.get(nextDate) - pressures.get(date));
             }
+        }
+        if (!changedByDate.containsKey(delta.getStartDate())
+                && pressures.containsKey(delta.getStartDate())) {
+            addPressureTrend(rows, delta.getStartDate(), 0);
+        }
 
-            /* If the code reaches this point, we have successfully performed our sync */
-        } catch (Exception e) {
-            Log.e(TAG, "syncWeatherData Function: " +e.getMessage());
+        return rows;
+    }
+
+    /* A partial row that only updates the pressure trend of a held day */
+    private static void addPressureTrend(ForecastBatch rows, long date, double pressureTrend) {
+        rows.setValue(rows.addRow(date), ForecastBatch.PRESSURE_TREND, pressureTrend);
+    }
+
+    /**
+     * Replaces the server's daily min and max temperatures with the ones computed from the hourly
+     * forecast, for every day the hourly forecast fully covers.
+     *
+     * @param weatherData       The daily rows about to be inserted
+     * @param dailyTemperatures Min and max per day, computed while parsing the hourly forecast
+     */
+    private static void applyHourlyTemperatures(ForecastBatch weatherData,
+                                                DailyTemperatureAccumulator dailyTemperatures) {
+        for (int row = 0; row < weatherData.size(); row++) {
+            int index = dailyTemperatures.indexOfDay(weatherData.getDate(row));
+
+            if (index >= 0 && dailyTemperatures.isDayComplete(index)) {
+                weatherData.setValue(row, ForecastBatch.MIN_TEMP,
+                        dailyTemperatures.getMinTemp(index));
+                weatherData.setValue(row, ForecastBatch.MAX_TEMP,
+                        dailyTemperatures.getMaxTemp(index));
+            }
         }
+    }
+
+    /**
+     * Runs the weather alert rules over the rows a sync has just inserted and records the alerts
+     * that fired, so they are not reported again by the next sync.
+     *
+     * @param context     Used to access SharedPreferences
+     * @param weatherData The rows that were inserted by this sync, enriched, in date order
+     * @param count       Number of complete rows at the start of weatherData
+     * @return The newly fired alerts
+     */
+    private static List<WeatherAlertEngine.Alert> evaluateWeatherAlerts(Context context,
+                                                                        ForecastBatch weatherData,
+                                                                        int count) {
+        if (sAlertEngine == null) {
+            sAlertEngine = new WeatherAlertEngine(WeatherAlertRule.getDefaultRules());
+            sAlertEngine.restoreFiredKeys(SunshinePreferences.getFiredWeatherAlertKeys(context));
+        }
+
+        /* The batch is columnar already, the engine reads its arrays as they are */
+        long now = System.currentTimeMillis();
+        List<WeatherAlertEngine.Alert> alerts = sAlertEngine.evaluate(
+                weatherData.getDates(),
+                weatherData.getWeatherIds(),
+                weatherData.getValues(ForecastBatch.MAX_TEMP),
+                weatherData.getValues(ForecastBatch.MIN_TEMP),
+                weatherData.getValues(ForecastBatch.PRESSURE_TREND),
+                count,
+                now);
+
+        /* Forget alerts for days that have already passed, then persist what is left */
+        sAlertEngine.pruneFiredBefore(SunshineDateUtils.normalizeDate(now));
+        SunshinePreferences.saveFiredWeatherAlertKeys(context, sAlertEngine.getFiredKeys());
 
+        return alerts;
     }
 }
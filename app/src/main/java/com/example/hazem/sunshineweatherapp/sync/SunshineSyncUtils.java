@@ -4,8 +4,12 @@ import android.content.Context;
 import android.content.Intent;
 import android.database.Cursor;
 import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
 
+import com.example.hazem.sunshineweatherapp.data.SunshinePreferences;
 import com.example.hazem.sunshineweatherapp.data.WeatherContract;
 import com.firebase.jobdispatcher.Constraint;
 import com.firebase.jobdispatcher.Driver;
@@ -33,6 +37,9 @@ public class SunshineSyncUtils {
     // Add a sync tag to identify our sync job
     private static final String SUNSHINE_SYNC_TAG = "sunshine-sync";
 
+    /* Debounces location changes into syncs, see getSyncQueue */
+    private static SyncRequestQueue sSyncQueue;
+
 
     // Create a method to schedule our periodic weather sync
     /**
@@ -126,8 +133,8 @@ public class SunshineSyncUtils {
             @Override
             public void run() {
 
-                /* URI for every row of weather data in our weather table*/
-                Uri forecastQueryUri = WeatherContract.WeatherEntry.CONTENT_URI;
+                /* URI for every row of weather data from today on */
+                Uri forecastQueryUri = WeatherContract.WeatherEntry.buildWeatherUriFromToday();
 
                 /*
                  * Since this query is going to be used only as a check to see if we have any
@@ -136,14 +143,12 @@ public class SunshineSyncUtils {
                  * to determine what weather details need to be displayed.
                  */
                 String[] projectionColumns = {WeatherContract.WeatherEntry._ID};
-                String selectionStatement = WeatherContract.WeatherEntry
-                        .getSqlSelectForTodayOnwards();
 
                 /* Here, we perform the query to check to see if we have any weather data */
                 Cursor cursor = context.getContentResolver().query(
                         forecastQueryUri,
                         projectionColumns,
-                        selectionStatement,
+                        null,
                         null,
                         null);
                 /*
@@ -183,4 +188,67 @@ public class SunshineSyncUtils {
         Intent intentToSyncImmediately = new Intent(context, SunshineSyncIntentService.class);
         context.startService(intentToSyncImmediately);
     }
+
+    /**
+     * Returns the queue location changes go through. Its syncs run in
+     * {@link SunshineSyncIntentService}, and every other sync takes a token from it so it can be
+     * superseded as well.
+     *
+     * @param context Used to start the sync service
+     * @return The queue, created on first use
+     */
+    synchronized public static SyncRequestQueue getSyncQueue(@NonNull Context context) {
+        if (sSyncQueue == null) {
+            final Context appContext = context.getApplicationContext();
+            final Handler handler = new Handler(Looper.getMainLooper());
+
+            sSyncQueue = new SyncRequestQueue(
+                    new SyncRequestQueue.Scheduler() {
+                        @Override
+                        public long uptimeMillis() {
+                            return SystemClock.uptimeMillis();
+                        }
+
+                        @Override
+                        public void postDelayed(Runnable task, long delayMillis) {
+                            handler.postDelayed(task, delayMillis);
+                        }
+                    },
+                    new SyncRequestQueue.Syncer() {
+                        @Override
+                        public void startSync(SyncRequestQueue.Token token) {
+                            Intent intent = new Intent(appContext, SunshineSyncIntentService.class);
+                            intent.putExtra(SunshineSyncIntentService.EXTRA_LOCATION,
+                                    token.getLocation());
+                            intent.putExtra(SunshineSyncIntentService.EXTRA_GENERATION,
+                                    token.getGeneration());
+                            appContext.startService(intent);
+                        }
+                    });
+        }
+        return sSyncQueue;
+    }
+
+    /**
+     * Syncs the weather of a location the user just chose, once they stop changing it. Any sync
+     * of a location chosen before is cancelled.
+     *
+     * @param context  Used to start the sync service
+     * @param location The new location preference
+     */
+    public static void requestLocationSync(@NonNull Context context, @NonNull String location) {
+        getSyncQueue(context).request(location);
+    }
+
+    /**
+     * Returns the token of a sync of the current location preference that wasn't requested
+     * through the queue, like the periodic sync.
+     *
+     * @param context Used to read the location preference
+     * @return Token for the sync
+     */
+    static SyncRequestQueue.Token getTokenForPreferredLocation(@NonNull Context context) {
+        return getSyncQueue(context)
+                .tokenFor(SunshinePreferences.getPreferredWeatherLocation(context));
+    }
 }
@@ -0,0 +1,226 @@
+package com.example.hazem.sunshineweatherapp.sync;
+
+/**
+ * Turns location changes into syncs. Requests are keyed by the location they target:
+ * <ul>
+ *     <li>A burst of requests is debounced, only the last location is synced once the requests
+ *     have been quiet for {@link #DEBOUNCE_MILLIS}.</li>
+ *     <li>Requesting another location supersedes the pending request and cancels the sync in
+ *     flight, if any, which then stops at its next check of {@link Token#isCancelled()}.</li>
+ *     <li>Requesting the location already being synced doesn't start another sync.</li>
+ * </ul>
+ * Every change of target location starts a new generation, and a sync holds a {@link Token} of
+ * the generation it was started for. A sync writes its results through
+ * {@link Token#commit(Runnable)}, which only runs the write if no other location was requested
+ * since, so stale results are never written over newer ones.
+ * <p>
+ * Time and delayed work come from a {@link Scheduler}, so tests can drive the queue with a
+ * virtual clock.
+ */
+public class SyncRequestQueue {
+
+    /* Quiet period after the last request before the sync starts */
+    public static final long DEBOUNCE_MILLIS = 750;
+
+    /**
+     * Source of time and delayed execution.
+     */
+    public interface Scheduler {
+        /**
+         * @return Current time in milliseconds, from a monotonic clock
+         */
+        long uptimeMillis();
+
+        /**
+         * Runs a task once, after a delay.
+         */
+        void postDelayed(Runnable task, long delayMillis);
+    }
+
+    /**
+     * Starts the syncs the queue decides on.
+     */
+    public interface Syncer {
+        /**
+         * Starts syncing a location, on another thread. The sync must call
+         * {@link Token#finish()} when done, whatever the outcome.
+         *
+         * @param token Token of the sync, holds the location to sync
+         */
+        void startSync(Token token);
+    }
+
+    /**
+     * Identifies one sync, and tells it whether it has been superseded.
+     */
+    public final class Token {
+        private final long mGeneration;
+        private final String mLocation;
+
+        private Token(long generation, String location) {
+            mGeneration = generation;
+            mLocation = location;
+        }
+
+        public long getGeneration() {
+            return mGeneration;
+        }
+
+        public String getLocation() {
+            return mLocation;
+        }
+
+        /**
+         * @return true if another location was requested since this sync was started, in which
+         * case the sync should stop
+         */
+        public boolean isCancelled() {
+            synchronized (SyncRequestQueue.this) {
+                return mGeneration != mGenerationCount || !mLocation.equals(mTargetLocation);
+            }
+        }
+
+        /**
+         * Runs a write of the sync's results, unless the sync was cancelled. Commits are
+         * serialized, so a sync that was current when its write started always finishes writing
+         * before a newer sync writes.
+         *
+         * @param write Writes the results
+         * @return true if the write was run, false if the sync was cancelled
+         */
+        public boolean commit(Runnable write) {
+            synchronized (mCommitLock) {
+                if (isCancelled()) {
+                    return false;
+                }
+                write.run();
+                return true;
+            }
+        }
+
+        /**
+         * Tells the queue the sync is over, so the same location can be synced again.
+         */
+        public void finish() {
+            synchronized (SyncRequestQueue.this) {
+                if (mInFlightGeneration == mGeneration) {
+                    mInFlightGeneration = NONE;
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return mLocation + "#" + mGeneration;
+        }
+    }
+
+    private static final long NONE = -1;
+
+    private final Scheduler mScheduler;
+    private final Syncer mSyncer;
+
+    private final Object mCommitLock = new Object();
+
+    /* Location of the latest request, and the generation that started with it */
+    private String mTargetLocation;
+    private long mGenerationCount;
+
+    /* Generation of the sync started by this queue and not finished yet, NONE if there is none */
+    private long mInFlightGeneration = NONE;
+
+    /* Time at which the pending request may start, and whether a check is already posted */
+    private boolean mPending;
+    private long mStartAtMillis;
+    private boolean mCheckPosted;
+
+    private final Runnable mCheckRunnable = new Runnable() {
+        @Override
+        public void run() {
+            checkPending();
+        }
+    };
+
+    public SyncRequestQueue(Scheduler scheduler, Syncer syncer) {
+        mScheduler = scheduler;
+        mSyncer = syncer;
+    }
+
+    /**
+     * Requests a sync of a location, after the debounce period.
+     *
+     * @param location The location the user just chose
+     */
+    public synchronized void request(String location) {
+        if (!location.equals(mTargetLocation)) {
+            mTargetLocation = location;
+            mGenerationCount++;
+        } else if (mInFlightGeneration == mGenerationCount) {
+            /* Already being synced */
+            return;
+        }
+
+        mPending = true;
+        mStartAtMillis = mScheduler.uptimeMillis() + DEBOUNCE_MILLIS;
+        if (!mCheckPosted) {
+            mCheckPosted = true;
+            mScheduler.postDelayed(mCheckRunnable, DEBOUNCE_MILLIS);
+        }
+    }
+
+    /**
+     * Returns a token for a sync that wasn't requested through the queue, like the periodic
+     * sync. It is cancelled, like any other, as soon as another location is requested. The
+     * location is read from the preferences when the sync starts, so it is never older than the
+     * last request: if it differs, it was changed since and supersedes that request.
+     *
+     * @param location The location that sync is about to fetch
+     * @return Token for the sync
+     */
+    public synchronized Token tokenFor(String location) {
+        if (!location.equals(mTargetLocation)) {
+            mTargetLocation = location;
+            mGenerationCount++;
+        }
+        return new Token(mGenerationCount, location);
+    }
+
+    /**
+     * Returns the token of a sync started by {@link Syncer#startSync(Token)}, from its generation
+     * and location, e.g. once they've been passed to a service through an Intent.
+     */
+    public Token restoreToken(long generation, String location) {
+        return new Token(generation, location);
+    }
+
+    /**
+     * @return true if a request is waiting for its debounce period to end
+     */
+    public synchronized boolean isPending() {
+        return mPending;
+    }
+
+    private void checkPending() {
+        Token token;
+        synchronized (this) {
+            mCheckPosted = false;
+            if (!mPending) {
+                return;
+            }
+
+            /* Requests made since the check was posted pushed the start back */
+            long remainingMillis = mStartAtMillis - mScheduler.uptimeMillis();
+            if (remainingMillis > 0) {
+                mCheckPosted = true;
+                mScheduler.postDelayed(mCheckRunnable, remainingMillis);
+                return;
+            }
+
+            mPending = false;
+            mInFlightGeneration = mGenerationCount;
+            token = new Token(mGenerationCount, mTargetLocation);
+        }
+
+        mSyncer.startSync(token);
+    }
+}
@@ -0,0 +1,262 @@
+package com.example.hazem.sunshineweatherapp.sync;
+
+import com.example.hazem.sunshineweatherapp.utilities.SunshineDateUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Evaluates a set of {@link WeatherAlertRule}s against the weather rows written by a sync.
+ * <p>
+ * The rules are compiled once into sorted primitive threshold arrays (one per rule type), so
+ * evaluating a row is a binary search per rule type instead of a loop over every rule. Only the
+ * rows a sync actually changed are passed to {@link #evaluate}; the weather table is never
+ * rescanned. Alerts are de-duplicated by rule and date, so a condition that is still present on
+ * the next sync is not reported twice.
+ */
+public class WeatherAlertEngine {
+
+    private static final String FIRED_KEY_SEPARATOR = "|";
+
+    /* Compiled rules, each group sorted ascending by its threshold */
+    private final double[] mMaxTempThresholds;
+    private final WeatherAlertRule[] mMaxTempRules;
+
+    private final double[] mMinTempThresholds;
+    private final WeatherAlertRule[] mMinTempRules;
+
+    private final long[] mStormWindowsMillis;
+    private final WeatherAlertRule[] mStormRules;
+
+    private final double[] mPressureDropThresholds;
+    private final WeatherAlertRule[] mPressureDropRules;
+
+    /* Keys (ruleId|date) of alerts that were already reported */
+    private final Set<String> mFiredKeys = new HashSet<>();
+
+    /**
+     * A rule that fired for a particular forecast date.
+     */
+    public static class Alert {
+        private final WeatherAlertRule mRule;
+        private final long mDate;
+        private final double mValue;
+
+        Alert(WeatherAlertRule rule, long date, double value) {
+            mRule = rule;
+            mDate = date;
+            mValue = value;
+        }
+
+        public WeatherAlertRule getRule() {
+            return mRule;
+        }
+
+        /* The normalized UTC date of the row that triggered the alert */
+        public long getDate() {
+            return mDate;
+        }
+
+        /* The observed value: temperature, pressure drop or weather_id depending on the rule */
+        public double getValue() {
+            return mValue;
+        }
+    }
+
+    public WeatherAlertEngine(WeatherAlertRule[] rules) {
+        List<WeatherAlertRule> maxRules = new ArrayList<>();
+        List<WeatherAlertRule> minRules = new ArrayList<>();
+        List<WeatherAlertRule> stormRules = new ArrayList<>();
+        List<WeatherAlertRule> pressureRules = new ArrayList<>();
+
+        for (WeatherAlertRule rule : rules) {
+            switch (rule.getType()) {
+                case WeatherAlertRule.TYPE_MAX_TEMP_ABOVE:
+                    maxRules.add(rule);
+                    break;
+                case WeatherAlertRule.TYPE_MIN_TEMP_BELOW:
+                    minRules.add(rule);
+                    break;
+                case WeatherAlertRule.TYPE_STORM_WITHIN:
+                    stormRules.add(rule);
+                    break;
+                case WeatherAlertRule.TYPE_PRESSURE_DROP:
+                    pressureRules.add(rule);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown rule type: " + rule.getType());
+            }
+        }
+
+        mMaxTempRules = sortByThreshold(maxRules);
+        mMaxTempThresholds = thresholdsOf(mMaxTempRules);
+
+        mMinTempRules = sortByThreshold(minRules);
+        mMinTempThresholds = thresholdsOf(mMinTempRules);
+
+        mPressureDropRules = sortByThreshold(pressureRules);
+        mPressureDropThresholds = thresholdsOf(mPressureDropRules);
+
+        mStormRules = stormRules.toArray(new WeatherAlertRule[stormRules.size()]);
+        Arrays.sort(mStormRules, new Comparator<WeatherAlertRule>() {
+            @Override
+            public int compare(WeatherAlertRule a, WeatherAlertRule b) {
+                return Long.compare(a.getWindowHours(), b.getWindowHours());
+            }
+        });
+        mStormWindowsMillis = new long[mStormRules.length];
+        for (int i = 0; i < mStormRules.length; i++) {
+            mStormWindowsMillis[i] = mStormRules[i].getWindowHours() * SunshineDateUtils.HOUR_IN_MILLIS;
+        }
+    }
+
+    /**
+     * Evaluates the compiled rules over the rows a sync has just written. Rows dated before
+     * today are skipped: their alerts would be pruned right away and fire again on every sync.
+     *
+     * @param dates          Normalized UTC dates of the changed rows
+     * @param weatherIds     Open Weather Map condition ids
+     * @param maxTemps       Max temperatures in Celsius
+     * @param minTemps       Min temperatures in Celsius
+     * @param pressureTrends Pressure changes since the day before in hPa, as stored with the rows
+     * @param count          Number of valid entries in the arrays
+     * @param nowMillis      Current time, used for the storm look-ahead window
+     * @return Newly fired alerts, never null
+     */
+    public List<Alert> evaluate(long[] dates, int[] weatherIds, double[] maxTemps,
+                                double[] minTemps, double[] pressureTrends, int count,
+                                long nowMillis) {
+        List<Alert> alerts = new ArrayList<>();
+        long today = SunshineDateUtils.normalizeDate(nowMillis);
+
+        for (int row = 0; row < count; row++) {
+            long date = dates[row];
+            if (date < today) {
+                continue;
+            }
+
+            /* Every rule whose threshold is below the max temperature fires */
+            int end = lowerBound(mMaxTempThresholds, maxTemps[row]);
+            for (int i = 0; i < end; i++) {
+                fire(alerts, mMaxTempRules[i], date, maxTemps[row]);
+            }
+
+            /* Every rule whose threshold is above the min temperature fires */
+            int start = upperBound(mMinTempThresholds, minTemps[row]);
+            for (int i = start; i < mMinTempRules.length; i++) {
+                fire(alerts, mMinTempRules[i], date, minTemps[row]);
+            }
+
+            if (mStormRules.length > 0 && WeatherAlertRule.isStormCondition(weatherIds[row])) {
+                long ahead = date - today;
+                for (int i = mStormRules.length - 1; i >= 0 && mStormWindowsMillis[i] >= ahead; i--) {
+                    fire(alerts, mStormRules[i], date, weatherIds[row]);
+                }
+            }
+
+            /* The trend is kept right by the sync even when the day before wasn't in the batch */
+            double drop = -pressureTrends[row];
+            end = lowerBound(mPressureDropThresholds, drop);
+            for (int i = 0; i < end; i++) {
+                fire(alerts, mPressureDropRules[i], date, drop);
+            }
+        }
+
+        return alerts;
+    }
+
+    /**
+     * Restores the keys of alerts that were already reported, typically from SharedPreferences.
+     *
+     * @param firedKeys Keys previously returned by {@link #getFiredKeys()}
+     */
+    public void restoreFiredKeys(Collection<String> firedKeys) {
+        mFiredKeys.addAll(firedKeys);
+    }
+
+    public Set<String> getFiredKeys() {
+        return new HashSet<>(mFiredKeys);
+    }
+
+    /**
+     * Forgets reported alerts for dates before the given one, so the de-duplication set does not
+     * grow without bound.
+     *
+     * @param normalizedDate Dates strictly before this are dropped
+     */
+    public void pruneFiredBefore(long normalizedDate) {
+        Iterator<String> iterator = mFiredKeys.iterator();
+        while (iterator.hasNext()) {
+            String key = iterator.next();
+            int separator = key.lastIndexOf(FIRED_KEY_SEPARATOR);
+            try {
+                if (Long.parseLong(key.substring(separator + 1)) < normalizedDate) {
+                    iterator.remove();
+                }
+            } catch (NumberFormatException e) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private void fire(List<Alert> alerts, WeatherAlertRule rule, long date, double value) {
+        if (mFiredKeys.add(rule.getId() + FIRED_KEY_SEPARATOR + date)) {
+            alerts.add(new Alert(rule, date, value));
+        }
+    }
+
+    private static WeatherAlertRule[] sortByThreshold(List<WeatherAlertRule> rules) {
+        WeatherAlertRule[] sorted = rules.toArray(new WeatherAlertRule[rules.size()]);
+        Arrays.sort(sorted, new Comparator<WeatherAlertRule>() {
+            @Override
+            public int compare(WeatherAlertRule a, WeatherAlertRule b) {
+                return Double.compare(a.getThreshold(), b.getThreshold());
+            }
+        });
+        return sorted;
+    }
+
+    private static double[] thresholdsOf(WeatherAlertRule[] rules) {
+        double[] thresholds = new double[rules.length];
+        for (int i = 0; i < rules.length; i++) {
+            thresholds[i] = rules[i].getThreshold();
+        }
+        return thresholds;
+    }
+
+    /* Index of the first threshold >= value (number of thresholds strictly below value) */
+    private static int lowerBound(double[] thresholds, double value) {
+        int low = 0;
+        int high = thresholds.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (thresholds[mid] < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /* Index of the first threshold > value */
+    private static int upperBound(double[] thresholds, double value) {
+        int low = 0;
+        int high = thresholds.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (thresholds[mid] <= value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.hazem.sunshineweatherapp.sync;
+
+/**
+ * A single user facing weather alert condition, such as "max temp above 35°C" or "storm in the
+ * next 48 hours". Rules are plain descriptions; they are compiled into a compact predicate form
+ * by {@link WeatherAlertEngine} before they are evaluated against synced rows.
+ */
+public class WeatherAlertRule {
+
+    /* Fires when the day's max temperature (Celsius) is strictly above the threshold */
+    public static final int TYPE_MAX_TEMP_ABOVE = 0;
+
+    /* Fires when the day's min temperature (Celsius) is strictly below the threshold */
+    public static final int TYPE_MIN_TEMP_BELOW = 1;
+
+    /* Fires when a storm-class weather_id is forecast within the next windowHours */
+    public static final int TYPE_STORM_WITHIN = 2;
+
+    /* Fires when the pressure drops by more than the threshold (hPa) from one day to the next */
+    public static final int TYPE_PRESSURE_DROP = 3;
+
+    private final String mId;
+    private final int mType;
+    private final double mThreshold;
+    private final long mWindowHours;
+
+    private WeatherAlertRule(String id, int type, double threshold, long windowHours) {
+        if (id == null) {
+            throw new IllegalArgumentException("Rule id cannot be null");
+        }
+        mId = id;
+        mType = type;
+        mThreshold = threshold;
+        mWindowHours = windowHours;
+    }
+
+    public static WeatherAlertRule maxTempAbove(String id, double celsius) {
+        return new WeatherAlertRule(id, TYPE_MAX_TEMP_ABOVE, celsius, 0);
+    }
+
+    public static WeatherAlertRule minTempBelow(String id, double celsius) {
+        return new WeatherAlertRule(id, TYPE_MIN_TEMP_BELOW, celsius, 0);
+    }
+
+    public static WeatherAlertRule stormWithin(String id, long windowHours) {
+        return new WeatherAlertRule(id, TYPE_STORM_WITHIN, 0, windowHours);
+    }
+
+    public static WeatherAlertRule pressureDropOver(String id, double hPaPerDay) {
+        return new WeatherAlertRule(id, TYPE_PRESSURE_DROP, hPaPerDay, 0);
+    }
+
+    /**
+     * The rules Sunshine ships with until users are able to define their own.
+     *
+     * @return The default set of alert rules
+     */
+    public static WeatherAlertRule[] getDefaultRules() {
+        return new WeatherAlertRule[]{
+                stormWithin("storm_48h", 48),
+                maxTempAbove("heat_35c", 35),
+                minTempBelow("frost_0c", 0),
+                pressureDropOver("pressure_drop_10hpa", 10)
+        };
+    }
+
+    /**
+     * Storm-class conditions as defined by Open Weather Map: the whole thunderstorm group (2xx)
+     * plus tornado, tropical storm, hurricane and the violent end of the wind scale.
+     *
+     * @param weatherId ID as determined by Open Weather Map
+     * @return true if the condition should be treated as a storm
+     */
+    public static boolean isStormCondition(int weatherId) {
+        return (weatherId >= 200 && weatherId < 300)
+                || (weatherId >= 900 && weatherId <= 902)
+                || (weatherId >= 960 && weatherId <= 962);
+    }
+
+    public String getId() {
+        return mId;
+    }
+
+    public int getType() {
+        return mType;
+    }
+
+    public double getThreshold() {
+        return mThreshold;
+    }
+
+    public long getWindowHours() {
+        return mWindowHours;
+    }
+}
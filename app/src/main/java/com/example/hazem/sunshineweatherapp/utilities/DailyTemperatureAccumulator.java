@@ -0,0 +1,102 @@
+package com.example.hazem.sunshineweatherapp.utilities;
+
+import java.util.Arrays;
+
+/**
+ * Computes each day's min and max temperature from hourly forecast entries as they are parsed,
+ * so the daily rows don't have to trust the server's own daily summary. Entries are expected in
+ * time order (the order the server sends them in), which makes each update O(1).
+ */
+public class DailyTemperatureAccumulator {
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    private long[] mDays = new long[INITIAL_CAPACITY];
+    private double[] mMinTemps = new double[INITIAL_CAPACITY];
+    private double[] mMaxTemps = new double[INITIAL_CAPACITY];
+    private int[] mCounts = new int[INITIAL_CAPACITY];
+    private int mSize;
+
+    /* Smallest gap seen between two consecutive entries, i.e. the forecast step */
+    private long mStepMillis = Long.MAX_VALUE;
+    private long mLastDateTime = Long.MIN_VALUE;
+
+    /**
+     * Adds one hourly entry.
+     *
+     * @param dateTimeMillis Start of the forecast slot in UTC milliseconds
+     * @param temperature    Temperature for the slot in Celsius
+     */
+    public void add(long dateTimeMillis, double temperature) {
+        if (mLastDateTime != Long.MIN_VALUE && dateTimeMillis > mLastDateTime) {
+            mStepMillis = Math.min(mStepMillis, dateTimeMillis - mLastDateTime);
+        }
+        mLastDateTime = dateTimeMillis;
+
+        /* Same day key as the daily rows: the local calendar day, normalized to UTC midnight */
+        long day = SunshineDateUtils.normalizeDate(SunshineDateUtils.getUTCDateFromLocal(dateTimeMillis));
+
+        int index = mSize > 0 && mDays[mSize - 1] == day ? mSize - 1 : indexOfDay(day);
+        if (index < 0) {
+            index = append(day, temperature);
+        }
+
+        mMinTemps[index] = Math.min(mMinTemps[index], temperature);
+        mMaxTemps[index] = Math.max(mMaxTemps[index], temperature);
+        mCounts[index]++;
+    }
+
+    /**
+     * Returns the index of a day, to be used with the getters below.
+     *
+     * @param normalizedDate The day, normalized to UTC midnight
+     * @return The index of the day, or -1 if no entry was added for it
+     */
+    public int indexOfDay(long normalizedDate) {
+        for (int i = mSize - 1; i >= 0; i--) {
+            if (mDays[i] == normalizedDate) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns true if the entries of a day cover all 24 hours of it. Today, for instance, is
+     * usually only partly covered since past slots aren't forecast anymore.
+     *
+     * @param index Index returned by {@link #indexOfDay(long)}
+     * @return true if the day's min and max can replace the server's
+     */
+    public boolean isDayComplete(int index) {
+        return mStepMillis != Long.MAX_VALUE
+                && mCounts[index] * mStepMillis >= SunshineDateUtils.DAY_IN_MILLIS;
+    }
+
+    public double getMinTemp(int index) {
+        return mMinTemps[index];
+    }
+
+    public double getMaxTemp(int index) {
+        return mMaxTemps[index];
+    }
+
+    public int getDayCount() {
+        return mSize;
+    }
+
+    private int append(long day, double temperature) {
+        if (mSize == mDays.length) {
+            int capacity = mSize * 2;
+            mDays = Arrays.copyOf(mDays, capacity);
+            mMinTemps = Arrays.copyOf(mMinTemps, capacity);
+            mMaxTemps = Arrays.copyOf(mMaxTemps, capacity);
+            mCounts = Arrays.copyOf(mCounts, capacity);
+        }
+        mDays[mSize] = day;
+        mMinTemps[mSize] = temperature;
+        mMaxTemps[mSize] = temperature;
+        mCounts[mSize] = 0;
+        return mSize++;
+    }
+}
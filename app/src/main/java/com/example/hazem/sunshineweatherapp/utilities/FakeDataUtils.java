@@ -1,56 +1,48 @@
 package com.example.hazem.sunshineweatherapp.utilities;
 
-import android.content.ContentValues;
 import android.content.Context;
+import android.util.Log;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.TimeUnit;
-
-import com.example.hazem.sunshineweatherapp.data.WeatherContract.WeatherEntry;
+import java.io.IOException;
 
 public class FakeDataUtils {
 
-    private static int [] weatherIDs = {200,300,500,711,900,962};
-
-    /**
-     * Creates a single ContentValues object with random weather data for the provided date
-     * @param date a normalized date
-     * @return ContentValues object filled with random weather data
-     */
-    private static ContentValues createTestWeatherContentValues(long date) {
-        ContentValues testWeatherValues = new ContentValues();
+    private static final String TAG = FakeDataUtils.class.getSimpleName();
 
-        testWeatherValues.put(WeatherEntry.COLUMN_DATE, date);
-        testWeatherValues.put(WeatherEntry.COLUMN_DEGREES, Math.random()*2);
-        testWeatherValues.put(WeatherEntry.COLUMN_HUMIDITY, Math.random()*100);
-        testWeatherValues.put(WeatherEntry.COLUMN_PRESSURE, 870 + Math.random()*100);
-
-        int maxTemp = (int)(Math.random()*100);
-
-        testWeatherValues.put(WeatherEntry.COLUMN_MAX_TEMP, maxTemp);
-        testWeatherValues.put(WeatherEntry.COLUMN_MIN_TEMP, maxTemp - (int) (Math.random()*10));
-        testWeatherValues.put(WeatherEntry.COLUMN_WIND_SPEED, Math.random()*10);
-        testWeatherValues.put(WeatherEntry.COLUMN_WEATHER_ID, weatherIDs[(int)(Math.random()*10)%5]);
-
-        return testWeatherValues;
-    }
+    private static final int FAKE_DAYS = 8;
 
     /**
-     * Creates random weather data for 8 days starting today
+     * Creates weather data for 8 days starting today. The data is generated by
+     * {@link SyntheticForecastGenerator}, seeded with today's date, so it is realistic and
+     * stays the same for the whole day.
      * @param context
      */
     public static void insertFakeData(Context context) {
         //Get today's normalized date
         long today = SunshineDateUtils.normalizeDate(System.currentTimeMillis());
-        List<ContentValues> fakeValues = new ArrayList<ContentValues>();
-        //loop over 7 days starting today onwards
-        for(int i=0; i<8; i++) {
-            fakeValues.add(FakeDataUtils.createTestWeatherContentValues(today + TimeUnit.DAYS.toMillis(i)));
+        insertFakeData(context, today, 1, FAKE_DAYS);
+    }
+
+    /**
+     * Generates locations x days of weather and bulk inserts it in chunks, see
+     * {@link SyntheticForecastProviderSink} for how several locations are stored.
+     *
+     * @param context   Used to access the ContentResolver
+     * @param seed      Same seed, same data
+     * @param locations Number of locations
+     * @param days      Number of days per location, starting today
+     * @return Number of rows inserted
+     */
+    public static int insertFakeData(Context context, long seed, int locations, int days) {
+        long today = SunshineDateUtils.normalizeDate(System.currentTimeMillis());
+        SyntheticForecastProviderSink sink =
+                new SyntheticForecastProviderSink(context.getContentResolver());
+        try {
+            new SyntheticForecastGenerator(seed).generateDaily(locations, days, today, sink);
+        } catch (IOException e) {
+            /* The provider sink doesn't do any I/O of its own */
+            Log.e(TAG, "insertFakeData Function: " + e.getMessage());
         }
-        // Bulk Insert our new weather data into Sunshine's Database
-        context.getContentResolver().bulkInsert(
-                WeatherEntry.CONTENT_URI,
-                fakeValues.toArray(new ContentValues[8]));
+        return sink.getRowsInserted();
     }
 }
@@ -0,0 +1,132 @@
+package com.example.hazem.sunshineweatherapp.utilities;
+
+import com.example.hazem.sunshineweatherapp.data.ForecastBatch;
+
+/**
+ * Computes the metrics derived from a day's raw weather once, when a sync ingests it, so they
+ * are stored next to the raw columns and read back like any other column:
+ * <ul>
+ *     <li>Apparent temperature ("feels like"), the Australian apparent temperature of Steadman,
+ *     which accounts for both humidity and wind.</li>
+ *     <li>Dew point, from the Magnus approximation.</li>
+ *     <li>Pressure trend, the change in pressure since the day before.</li>
+ *     <li>Comfort index, from 0 (very uncomfortable) to 100, penalizing feels like temperatures
+ *     away from 21°C, muggy dew points and strong wind.</li>
+ * </ul>
+ * The work is done in a single pass over columnar arrays by {@link #enrich(int, double,
+ * double[], double[], double[], double[], double[], double[], double[], double[], double[])}.
+ * The loop has no branches and no allocation, so the JIT can keep it tight.
+ */
+public class ForecastEnricher {
+
+    /* Magnus coefficients, accurate to 0.1°C from -45°C to 60°C */
+    private static final double MAGNUS_B = 17.62;
+    private static final double MAGNUS_C = 243.12;
+
+    /* Most comfortable apparent temperature, and the dew point above which air feels muggy */
+    private static final double COMFORT_TEMPERATURE = 21;
+    private static final double MUGGY_DEW_POINT = 16;
+    private static final double WINDY_SPEED_KMH = 30;
+
+    private static final double KMH_TO_MS = 1 / 3.6;
+
+    private ForecastEnricher() {
+    }
+
+    /**
+     * Computes the derived metrics of consecutive days. Every array holds at least count
+     * elements.
+     *
+     * @param count            Number of days
+     * @param previousPressure Pressure of the day before the first one, NaN if unknown, in which
+     *                         case the first day's trend is 0
+     * @param minTemps         Minimum temperatures in °C
+     * @param maxTemps         Maximum temperatures in °C
+     * @param humidities       Relative humidities in %
+     * @param pressures        Pressures in hPa
+     * @param windSpeeds       Wind speeds in km/h
+     * @param apparentTemps    Receives the apparent temperatures in °C
+     * @param dewPoints        Receives the dew points in °C
+     * @param pressureTrends   Receives the pressure changes since the day before, in hPa
+     * @param comfortIndexes   Receives the comfort indexes, 0 to 100
+     */
+    public static void enrich(int count, double previousPressure, double[] minTemps,
+                              double[] maxTemps, double[] humidities, double[] pressures,
+                              double[] windSpeeds, double[] apparentTemps, double[] dewPoints,
+                              double[] pressureTrends, double[] comfortIndexes) {
+        enrich(0, count, previousPressure, minTemps, maxTemps, humidities, pressures, windSpeeds,
+                apparentTemps, dewPoints, pressureTrends, comfortIndexes);
+    }
+
+    /* Same as above for the elements from index from to index to, excluded */
+    private static void enrich(int from, int to, double previousPressure, double[] minTemps,
+                               double[] maxTemps, double[] humidities, double[] pressures,
+                               double[] windSpeeds, double[] apparentTemps, double[] dewPoints,
+                               double[] pressureTrends, double[] comfortIndexes) {
+        if (from >= to) {
+            return;
+        }
+
+        double lastPressure = Double.isNaN(previousPressure) ? pressures[from] : previousPressure;
+
+        for (int i = from; i < to; i++) {
+            double temperature = 0.5 * (minTemps[i] + maxTemps[i]);
+            /* ln(0) is -Infinity, a bone dry reading is treated as 1% */
+            double relativeHumidity = Math.max(1, Math.min(100, humidities[i])) / 100;
+            double windSpeed = windSpeeds[i] * KMH_TO_MS;
+
+            /* Saturation vapour pressure, shared by both formulas */
+            double magnusExponent = MAGNUS_B * temperature / (MAGNUS_C + temperature);
+            double vapourPressure = relativeHumidity * 6.112 * Math.exp(magnusExponent);
+
+            double apparentTemp = temperature + 0.33 * vapourPressure - 0.70 * windSpeed - 4.00;
+
+            double gamma = Math.log(relativeHumidity) + magnusExponent;
+            double dewPoint = MAGNUS_C * gamma / (MAGNUS_B - gamma);
+
+            double pressure = pressures[i];
+            pressureTrends[i] = pressure - lastPressure;
+            lastPressure = pressure;
+
+            double discomfort = 4 * Math.abs(apparentTemp - COMFORT_TEMPERATURE)
+                    + 6 * Math.max(0, dewPoint - MUGGY_DEW_POINT)
+                    + Math.max(0, windSpeeds[i] - WINDY_SPEED_KMH);
+
+            apparentTemps[i] = apparentTemp;
+            dewPoints[i] = dewPoint;
+            comfortIndexes[i] = Math.max(0, 100 - discomfort);
+        }
+    }
+
+    /**
+     * Adds the derived columns to forecast rows about to be written, in one pass over the
+     * batch's own arrays.
+     *
+     * @param weatherData      Rows of consecutive days, in date order, each complete
+     * @param from             First row to enrich
+     * @param count            Number of rows to enrich
+     * @param previousPressure Pressure of the day before the first row, NaN if unknown
+     * @return The pressure of the last row, to pass as previousPressure to the next call
+     */
+    public static double enrich(ForecastBatch weatherData, int from, int count,
+                                double previousPressure) {
+        int to = from + count;
+        enrich(from, to, previousPressure,
+                weatherData.getValues(ForecastBatch.MIN_TEMP),
+                weatherData.getValues(ForecastBatch.MAX_TEMP),
+                weatherData.getValues(ForecastBatch.HUMIDITY),
+                weatherData.getValues(ForecastBatch.PRESSURE),
+                weatherData.getValues(ForecastBatch.WIND_SPEED),
+                weatherData.getValues(ForecastBatch.APPARENT_TEMP),
+                weatherData.getValues(ForecastBatch.DEW_POINT),
+                weatherData.getValues(ForecastBatch.PRESSURE_TREND),
+                weatherData.getValues(ForecastBatch.COMFORT_INDEX));
+
+        weatherData.markValuesSet(ForecastBatch.APPARENT_TEMP, from, to);
+        weatherData.markValuesSet(ForecastBatch.DEW_POINT, from, to);
+        weatherData.markValuesSet(ForecastBatch.PRESSURE_TREND, from, to);
+        weatherData.markValuesSet(ForecastBatch.COMFORT_INDEX, from, to);
+
+        return count > 0 ? weatherData.getValue(to - 1, ForecastBatch.PRESSURE) : previousPressure;
+    }
+}
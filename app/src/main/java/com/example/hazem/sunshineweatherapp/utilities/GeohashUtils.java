@@ -0,0 +1,121 @@
+package com.example.hazem.sunshineweatherapp.utilities;
+
+/**
+ * Encodes coordinates as geohashes, see https://en.wikipedia.org/wiki/Geohash. Every coordinate
+ * inside the same geohash cell maps to the same cell center, which lets nearby locations share
+ * one forecast request.
+ */
+public class GeohashUtils {
+
+    private static final String BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz";
+
+    /*
+     * Precision used to bucket forecast requests. A 5 character cell is about 4.9km x 4.9km at
+     * the equator, well below the resolution of the forecast itself.
+     */
+    public static final int FORECAST_BUCKET_PRECISION = 5;
+
+    /**
+     * Encodes a coordinate into a geohash.
+     *
+     * @param latitude  Latitude in degrees, -90 to 90
+     * @param longitude Longitude in degrees, -180 to 180
+     * @param precision Number of characters of the geohash
+     * @return The geohash of the cell containing the coordinate
+     */
+    public static String encode(double latitude, double longitude, int precision) {
+        double minLat = -90;
+        double maxLat = 90;
+        double minLon = -180;
+        double maxLon = 180;
+
+        StringBuilder geohash = new StringBuilder(precision);
+        boolean evenBit = true;
+        int bit = 0;
+        int charIndex = 0;
+
+        while (geohash.length() < precision) {
+            /* Bits alternate between longitude and latitude, starting with longitude */
+            if (evenBit) {
+                double mid = (minLon + maxLon) / 2;
+                if (longitude >= mid) {
+                    charIndex = (charIndex << 1) | 1;
+                    minLon = mid;
+                } else {
+                    charIndex = charIndex << 1;
+                    maxLon = mid;
+                }
+            } else {
+                double mid = (minLat + maxLat) / 2;
+                if (latitude >= mid) {
+                    charIndex = (charIndex << 1) | 1;
+                    minLat = mid;
+                } else {
+                    charIndex = charIndex << 1;
+                    maxLat = mid;
+                }
+            }
+            evenBit = !evenBit;
+
+            if (++bit == 5) {
+                geohash.append(BASE32.charAt(charIndex));
+                bit = 0;
+                charIndex = 0;
+            }
+        }
+        return geohash.toString();
+    }
+
+    /**
+     * Decodes a geohash into the center of its cell.
+     *
+     * @param geohash The geohash to decode
+     * @return An array containing the latitude and longitude of the cell center
+     */
+    public static double[] decodeCenter(String geohash) {
+        double minLat = -90;
+        double maxLat = 90;
+        double minLon = -180;
+        double maxLon = 180;
+        boolean evenBit = true;
+
+        for (int i = 0; i < geohash.length(); i++) {
+            int charIndex = BASE32.indexOf(geohash.charAt(i));
+            if (charIndex < 0) {
+                throw new IllegalArgumentException("Invalid geohash: " + geohash);
+            }
+            for (int shift = 4; shift >= 0; shift--) {
+                boolean bitSet = ((charIndex >> shift) & 1) == 1;
+                if (evenBit) {
+                    double mid = (minLon + maxLon) / 2;
+                    if (bitSet) {
+                        minLon = mid;
+                    } else {
+                        maxLon = mid;
+                    }
+                } else {
+                    double mid = (minLat + maxLat) / 2;
+                    if (bitSet) {
+                        minLat = mid;
+                    } else {
+                        maxLat = mid;
+                    }
+                }
+                evenBit = !evenBit;
+            }
+        }
+        return new double[]{(minLat + maxLat) / 2, (minLon + maxLon) / 2};
+    }
+
+    /**
+     * Snaps a coordinate to the center of its forecast bucket, so every location in the same
+     * cell builds exactly the same request URL.
+     *
+     * @param latitude  Latitude in degrees
+     * @param longitude Longitude in degrees
+     * @return An array containing the latitude and longitude of the bucket center
+     */
+    public static double[] getForecastBucketCenter(double latitude, double longitude) {
+        return decodeCenter(encode(latitude, longitude, FORECAST_BUCKET_PRECISION));
+    }
+}
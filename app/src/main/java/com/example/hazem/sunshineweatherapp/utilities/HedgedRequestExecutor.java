@@ -0,0 +1,352 @@
+package com.example.hazem.sunshineweatherapp.utilities;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs HTTP GETs as hedged requests, to cut the tail latency of forecast fetches. If the first
+ * attempt hasn't answered after a delay, a second one is sent, to a mirror if there is one. The
+ * first successful response wins and the other attempt is cancelled.
+ * <p>
+ * The delay adapts to the server: it is the {@link #HEDGE_PERCENTILE}th percentile of the
+ * latencies of the last {@link #LATENCY_WINDOW} successful requests, so only the slowest few
+ * percent of requests are hedged. A budget caps the extra load: every request earns
+ * {@link #HEDGE_BUDGET_RATIO} of a hedge, up to {@link #MAX_HEDGE_CREDITS}, and a hedge is only
+ * sent if a whole one has been earned.
+ * <p>
+ * This class doesn't depend on the Android framework, so it is tested by local unit tests.
+ */
+public class HedgedRequestExecutor {
+
+    public static final double HEDGE_PERCENTILE = 95;
+    public static final int LATENCY_WINDOW = 100;
+
+    public static final double HEDGE_BUDGET_RATIO = 0.1;
+    public static final double MAX_HEDGE_CREDITS = 5;
+
+    /* Delay used until enough latencies are known, and the bounds of the adaptive delay */
+    public static final long INITIAL_DELAY_MILLIS = 1000;
+    public static final long MIN_DELAY_MILLIS = 10;
+    public static final long MAX_DELAY_MILLIS = 5000;
+    private static final int MIN_SAMPLES = 10;
+
+    /**
+     * A successful response: its HTTP status, its body, and the number of bytes read for it.
+     */
+    public static class Response {
+        private final int mStatus;
+        private final String mBody;
+        private final long mByteCount;
+
+        public Response(int status, String body, long byteCount) {
+            mStatus = status;
+            mBody = body;
+            mByteCount = byteCount;
+        }
+
+        public int getStatus() {
+            return mStatus;
+        }
+
+        public String getBody() {
+            return mBody;
+        }
+
+        public long getByteCount() {
+            return mByteCount;
+        }
+    }
+
+    /**
+     * Failure of an attempt the server answered with an error status.
+     */
+    public static class HttpStatusException extends IOException {
+        private final int mStatus;
+
+        public HttpStatusException(int status) {
+            super("HTTP status " + status);
+            mStatus = status;
+        }
+
+        public int getStatus() {
+            return mStatus;
+        }
+    }
+
+    /**
+     * One attempt of a request, which can be cancelled from another thread.
+     */
+    public interface Call {
+        /**
+         * @return The response, if the server answered with a status below 400
+         * @throws HttpStatusException if it answered with an error status
+         * @throws IOException if there was no answer
+         */
+        Response execute() throws IOException;
+
+        void cancel();
+    }
+
+    /**
+     * Creates the attempts of a request.
+     */
+    public interface CallFactory {
+        Call newCall(URL url);
+    }
+
+    /**
+     * Source of the time attempts are measured with, replaced by tests to control latencies.
+     */
+    interface Clock {
+        long nanoTime();
+    }
+
+    private static final Clock SYSTEM_CLOCK = new Clock() {
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+    };
+
+    /**
+     * A plain GET through {@link HttpURLConnection}, cancelled by disconnecting it. Connecting
+     * and reading time out, so a server that stops answering can't hold a sync forever. The byte
+     * count is what was read from the connection's stream.
+     */
+    public static class HttpCallFactory implements CallFactory {
+        public static final int CONNECT_TIMEOUT_MILLIS = 15000;
+        public static final int READ_TIMEOUT_MILLIS = 30000;
+
+        @Override
+        public Call newCall(final URL url) {
+            return new Call() {
+                private volatile HttpURLConnection mConnection;
+                private volatile boolean mCancelled;
+
+                @Override
+                public Response execute() throws IOException {
+                    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+                    connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+                    connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+                    mConnection = connection;
+                    try {
+                        if (mCancelled) {
+                            throw new IOException("Cancelled");
+                        }
+                        int status = connection.getResponseCode();
+                        if (status >= HttpURLConnection.HTTP_BAD_REQUEST) {
+                            throw new HttpStatusException(status);
+                        }
+
+                        InputStream inputStream = connection.getInputStream();
+                        ByteArrayOutputStream body = new ByteArrayOutputStream();
+                        byte[] buffer = new byte[8192];
+                        int read;
+                        while ((read = inputStream.read(buffer)) != -1) {
+                            body.write(buffer, 0, read);
+                        }
+                        return new Response(status, body.toString("UTF-8"), body.size());
+                    } finally {
+                        connection.disconnect();
+                    }
+                }
+
+                @Override
+                public void cancel() {
+                    mCancelled = true;
+                    HttpURLConnection connection = mConnection;
+                    if (connection != null) {
+                        connection.disconnect();
+                    }
+                }
+            };
+        }
+    }
+
+    /* Outcome of one attempt, handed from the attempt's thread to the caller's */
+    private static class Result {
+        final int attempt;
+        final Response response;
+        final IOException error;
+        final long latencyNanos;
+
+        Result(int attempt, Response response, IOException error, long latencyNanos) {
+            this.attempt = attempt;
+            this.response = response;
+            this.error = error;
+            this.latencyNanos = latencyNanos;
+        }
+    }
+
+    private final CallFactory mCallFactory;
+    private final Clock mClock;
+    private final ExecutorService mExecutor;
+
+    /* Ring buffer of the latest successful latencies, and the hedge budget, guarded by this */
+    private final long[] mLatencies = new long[LATENCY_WINDOW];
+    private int mLatencyCount;
+    private int mNextLatency;
+    private double mHedgeCredits = MAX_HEDGE_CREDITS;
+
+    private long mRequestCount;
+    private long mHedgeCount;
+    private long mHedgeWinCount;
+
+    public HedgedRequestExecutor(CallFactory callFactory) {
+        this(callFactory, SYSTEM_CLOCK);
+    }
+
+    HedgedRequestExecutor(CallFactory callFactory, Clock clock) {
+        mCallFactory = callFactory;
+        mClock = clock;
+        mExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "HedgedRequest");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Fetches a URL, hedging the request if it is slow.
+     *
+     * @param url       The URL to fetch
+     * @param hedgeUrl  URL the hedge is sent to, a mirror or url itself
+     * @return The first successful response
+     * @throws HttpStatusException if the attempts failed and the server answered one with an
+     * error status
+     * @throws IOException if both attempts failed, or the only one if there was no hedge
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    public Response execute(URL url, URL hedgeUrl) throws IOException, InterruptedException {
+        long delayNanos;
+        synchronized (this) {
+            mRequestCount++;
+            mHedgeCredits = Math.min(MAX_HEDGE_CREDITS, mHedgeCredits + HEDGE_BUDGET_RATIO);
+            delayNanos = TimeUnit.MILLISECONDS.toNanos(getHedgeDelayMillis());
+        }
+
+        BlockingQueue<Result> results = new LinkedBlockingQueue<>();
+        Call[] calls = new Call[2];
+        calls[0] = start(0, url, results);
+        int running = 1;
+
+        try {
+            Result result = results.poll(delayNanos, TimeUnit.NANOSECONDS);
+            if (result == null && tryAcquireHedge()) {
+                calls[1] = start(1, hedgeUrl, results);
+                running++;
+            }
+
+            IOException lastError = null;
+            while (true) {
+                if (result == null) {
+                    result = results.take();
+                }
+                running--;
+
+                if (result.error == null) {
+                    recordLatency(result.latencyNanos, result.attempt == 1);
+                    return result.response;
+                }
+                /* The status the server answered with says more than a lost connection */
+                if (!(lastError instanceof HttpStatusException)) {
+                    lastError = result.error;
+                }
+                if (running == 0) {
+                    throw lastError;
+                }
+                result = null;
+            }
+        } finally {
+            /* The loser, or both if the caller was interrupted */
+            for (Call call : calls) {
+                if (call != null) {
+                    call.cancel();
+                }
+            }
+        }
+    }
+
+    private Call start(final int attempt, URL url, final BlockingQueue<Result> results) {
+        final Call call = mCallFactory.newCall(url);
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                long start = mClock.nanoTime();
+                try {
+                    Response response = call.execute();
+                    results.add(new Result(attempt, response, null, mClock.nanoTime() - start));
+                } catch (IOException e) {
+                    results.add(new Result(attempt, null, e, mClock.nanoTime() - start));
+                } catch (RuntimeException e) {
+                    results.add(new Result(attempt, null, new IOException(e),
+                            mClock.nanoTime() - start));
+                }
+            }
+        });
+        return call;
+    }
+
+    private synchronized boolean tryAcquireHedge() {
+        if (mHedgeCredits < 1) {
+            return false;
+        }
+        mHedgeCredits--;
+        mHedgeCount++;
+        return true;
+    }
+
+    private synchronized void recordLatency(long latencyNanos, boolean hedgeWon) {
+        mLatencies[mNextLatency] = latencyNanos;
+        mNextLatency = (mNextLatency + 1) % mLatencies.length;
+        mLatencyCount = Math.min(mLatencyCount + 1, mLatencies.length);
+        if (hedgeWon) {
+            mHedgeWinCount++;
+        }
+    }
+
+    /**
+     * @return How long the next request waits for its first attempt before hedging
+     */
+    public synchronized long getHedgeDelayMillis() {
+        if (mLatencyCount < MIN_SAMPLES) {
+            return INITIAL_DELAY_MILLIS;
+        }
+        long[] sorted = Arrays.copyOf(mLatencies, mLatencyCount);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(HEDGE_PERCENTILE / 100 * sorted.length) - 1;
+        long delayMillis = TimeUnit.NANOSECONDS.toMillis(sorted[Math.max(0, index)]);
+        return Math.max(MIN_DELAY_MILLIS, Math.min(MAX_DELAY_MILLIS, delayMillis));
+    }
+
+    public synchronized long getRequestCount() {
+        return mRequestCount;
+    }
+
+    /**
+     * @return Number of hedges sent, the extra load on the server
+     */
+    public synchronized long getHedgeCount() {
+        return mHedgeCount;
+    }
+
+    /**
+     * @return Number of requests answered by their hedge rather than the first attempt
+     */
+    public synchronized long getHedgeWinCount() {
+        return mHedgeWinCount;
+    }
+}
@@ -3,8 +3,12 @@ package com.example.hazem.sunshineweatherapp.utilities;
 import android.content.ContentValues;
 import android.content.Context;
 import android.net.Uri;
+import android.util.JsonReader;
 import android.util.Log;
 
+import com.example.hazem.sunshineweatherapp.BuildConfig;
+import com.example.hazem.sunshineweatherapp.data.ForecastBatch;
+import com.example.hazem.sunshineweatherapp.data.LocationResolutionCache;
 import com.example.hazem.sunshineweatherapp.data.SunshinePreferences;
 import com.example.hazem.sunshineweatherapp.data.WeatherContract;
 
@@ -13,11 +17,13 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.util.Scanner;
+import java.util.ArrayList;
+import java.util.List;
 
 public class NetworkUtils {
 
@@ -26,7 +32,15 @@ public class NetworkUtils {
 
     // The Url of the weather server (openWeather.com sever is used by udacity)
     // which the data come from (the server provides the weather data for the next 14 days)
-    private static final String WEATHER_API_BASE_URL = "https://andfun-weather.udacity.com/weather";
+    // The server is set in build.gradle, so the sync can also run against a local stand-in
+    private static final String WEATHER_API_BASE_URL = BuildConfig.WEATHER_SERVER_URL + "/weather";
+
+    // The Url of the hourly forecast, same query parameters but one "list" entry per 3 hours
+    private static final String HOURLY_WEATHER_API_BASE_URL = BuildConfig.WEATHER_SERVER_URL + "/hourly";
+
+    // Slow requests are sent again to the mirror, or the server itself, see getResponseFromHttpUrl
+    private static final HedgedRequestExecutor sHedgedRequestExecutor =
+            new HedgedRequestExecutor(new HedgedRequestExecutor.HttpCallFactory());
 
     //the query parameters of the url
     //the main query parameter here is the location q=location
@@ -43,6 +57,8 @@ public class NetworkUtils {
     //this variable determine how many days in the future app will provide
     // weather information about it
     private static final Integer numberOfDaysToPredict = 5;
+    // number of hourly entries to request, 40 entries of 3 hours cover the same 5 days
+    private static final Integer numberOfHourlyEntries = 40;
 
     // variables for json parsing
     /* Location information */
@@ -73,9 +89,71 @@ public class NetworkUtils {
 
     private static final String OWM_MESSAGE_CODE = "cod";
 
+    /* Hourly entries keep their values in child objects and carry their own time */
+    private static final String OWM_DATE_TIME = "dt";
+    private static final String OWM_MAIN = "main";
+    private static final String OWM_WIND = "wind";
+
     /* The days parameter allows us to designate how many days of weather data we want */
     private static final String DAYS_PARAM = "cnt";
 
+    /* Delta requests send the version of the held forecast, see buildDeltaUrl */
+    private static final String SINCE_PARAM = "since";
+    private static final String OWM_VERSION = "version";
+    private static final String OWM_DELTA = "delta";
+    private static final String OWM_START = "start";
+
+    /**
+     * The versioned part of a daily forecast response: the version it brings the forecast to,
+     * the days the forecast covers and, for a delta, the rows of the days that changed.
+     */
+    public static class ForecastDelta {
+        private final String mVersion;
+        private final boolean mDelta;
+        private final long mStartDate;
+        private final int mDayCount;
+        private final ForecastBatch mChangedDays;
+
+        ForecastDelta(String version, boolean delta, long startDate, int dayCount,
+                      ForecastBatch changedDays) {
+            mVersion = version;
+            mDelta = delta;
+            mStartDate = startDate;
+            mDayCount = dayCount;
+            mChangedDays = changedDays;
+        }
+
+        public String getVersion() {
+            return mVersion;
+        }
+
+        /**
+         * @return true if the response only holds the changed days, false if it holds every day
+         * and must be parsed by
+         * {@link NetworkUtils#getForecastFromJson(Context, JSONObject)}
+         */
+        public boolean isDelta() {
+            return mDelta;
+        }
+
+        /* First day the forecast covers, normalized */
+        public long getStartDate() {
+            return mStartDate;
+        }
+
+        /* Day after the last one the forecast covers, normalized */
+        public long getEndDate() {
+            return mStartDate + mDayCount * SunshineDateUtils.DAY_IN_MILLIS;
+        }
+
+        /**
+         * @return Rows of the days that changed, without derived columns, null if not a delta
+         */
+        public ForecastBatch getChangedDays() {
+            return mChangedDays;
+        }
+    }
+
 
     /**
      * Retrieves the proper URL to query for the weather data. The reason for both this method as
@@ -93,17 +171,84 @@ public class NetworkUtils {
      */
 
     public static URL getUrl(Context context) {
-        if (SunshinePreferences.isLocationLatLonAvailable(context)) {
-            double[] preferredCoordinates = SunshinePreferences.getLocationCoordinates(context);
-            double latitude = preferredCoordinates[0];
-            double longitude = preferredCoordinates[1];
-            return buildUrlWithLatitudeLongitude(latitude, longitude);
+        double[] forecastCoordinates = getForecastCoordinates(context);
+        if (forecastCoordinates != null) {
+            return buildUrlWithLatitudeLongitude(forecastCoordinates[0], forecastCoordinates[1]);
         } else {
             String locationQuery = SunshinePreferences.getPreferredWeatherLocation(context);
             return buildUrlWithLocationQuery(locationQuery);
         }
     }
 
+    /**
+     * Returns the coordinates to request the forecast for, snapped to the center of their
+     * geohash bucket so nearby locations build the same, cacheable URL. If the user's location
+     * query was resolved by an earlier sync, its cached coordinates are used instead of sending
+     * the query text to the server again.
+     *
+     * @param context used to access the preferences
+     * @return latitude and longitude, or null if only the text query is known
+     */
+    private static double[] getForecastCoordinates(Context context) {
+        double[] coordinates = null;
+
+        if (SunshinePreferences.isLocationLatLonAvailable(context)) {
+            coordinates = SunshinePreferences.getLocationCoordinates(context);
+        } else {
+            String locationQuery = SunshinePreferences.getPreferredWeatherLocation(context);
+            LocationResolutionCache cache = SunshinePreferences.getLocationResolutionCache(context);
+            LocationResolutionCache.Entry entry = cache.get(locationQuery, System.currentTimeMillis());
+            /* A hit moves the entry up, an expired one is gone, either is worth keeping */
+            if (cache.takeChanged()) {
+                SunshinePreferences.saveLocationResolutionCache(context, cache);
+            }
+
+            if (entry != null) {
+                coordinates = new double[]{entry.getLatitude(), entry.getLongitude()};
+                /* Remember the coordinates for the map, as a resolved sync would have */
+                SunshinePreferences.setLocationDetails(context, coordinates[0], coordinates[1]);
+            }
+        }
+
+        if (coordinates == null) {
+            return null;
+        }
+        return GeohashUtils.getForecastBucketCenter(coordinates[0], coordinates[1]);
+    }
+
+
+    /**
+     * Retrieves the proper URL to query for the hourly forecast, using the same location
+     * preferences as {@link #getUrl(Context)}.
+     *
+     * @param context used to access other Utility methods
+     * @return URL to query the hourly weather service
+     */
+    public static URL getHourlyUrl(Context context) {
+        Uri.Builder builder = Uri.parse(HOURLY_WEATHER_API_BASE_URL).buildUpon();
+
+        double[] forecastCoordinates = getForecastCoordinates(context);
+        if (forecastCoordinates != null) {
+            builder.appendQueryParameter(LAT_PARAM, String.valueOf(forecastCoordinates[0]))
+                    .appendQueryParameter(LON_PARAM, String.valueOf(forecastCoordinates[1]));
+        } else {
+            builder.appendQueryParameter(QUERY_PARAM,
+                    SunshinePreferences.getPreferredWeatherLocation(context));
+        }
+
+        Uri hourlyQueryUri = builder
+                .appendQueryParameter(FORMAT_PARAM, dataFormat)
+                .appendQueryParameter(UNITS_PARAM, unit)
+                .appendQueryParameter(DAYS_PARAM, Integer.toString(numberOfHourlyEntries))
+                .build();
+
+        try {
+            return new URL(hourlyQueryUri.toString());
+        } catch (MalformedURLException e) {
+            Log.e(TAG, "getHourlyUrl Function: " + e.getMessage());
+            return null;
+        }
+    }
 
     /**
      * Builds the URL used to talk to the weather server using latitude and longitude of a
@@ -156,38 +301,90 @@ public class NetworkUtils {
         return completedUrl;
     }
 
+    /**
+     * Turns a daily forecast URL into a delta request, which the server answers with the days
+     * that changed since the given version only, see {@link #getForecastDeltaFromJson(JSONObject)}.
+     * Servers that don't support deltas ignore the parameter and send every day.
+     *
+     * @param url     URL returned by {@link #getUrl(Context)}
+     * @param version Version of the held forecast, empty to get every day and a version
+     * @return The delta request URL
+     */
+    public static URL buildDeltaUrl(URL url, String version) {
+        Uri deltaUri = Uri.parse(url.toString()).buildUpon()
+                .appendQueryParameter(SINCE_PARAM, version)
+                .build();
+        try {
+            return new URL(deltaUri.toString());
+        } catch (MalformedURLException e) {
+            Log.e(TAG, "buildDeltaUrl Function: " + e.getMessage());
+            return url;
+        }
+    }
+
     /*
      * this method is receives the response of the weather sever and return it
      *
+     * The request is hedged: if the server is slower than usual to answer, the same request is
+     * sent to the mirror (or the server again) and the first response wins, see
+     * HedgedRequestExecutor.
+     *
      * @param weatherServerUrl which is used to query the weather server
      *
-     * @return serverResponse which is the json format response
+     * @return serverResponse, the HTTP status, json format body and size of the response. If the
+     * request failed the body is empty, and the status is the server's error status, or 0 if
+     * the server never answered
      */
 
-    public static String getResponseFromHttpUrl(URL weatherServerUrl) {
+    public static HedgedRequestExecutor.Response getResponseFromHttpUrl(URL weatherServerUrl) {
 
-        String serverResponse = "";
-        HttpURLConnection mConnection = null;
+        int status = 0;
         try {
-            mConnection = (HttpURLConnection) weatherServerUrl.openConnection();
-
-            InputStream mInputStream = mConnection.getInputStream();
-
-            // use the scanner to read until the end of file
-            Scanner mScanner = new Scanner(mInputStream);
-            mScanner.useDelimiter("\\A");
-
-            boolean hasInput = mScanner.hasNext();
-
-            if (hasInput) {
-                serverResponse = mScanner.next();
-            }
+            return sHedgedRequestExecutor.execute(weatherServerUrl,
+                    getMirrorUrl(weatherServerUrl));
+        } catch (HedgedRequestExecutor.HttpStatusException e) {
+            Log.e(TAG, "getResponseFromHttpUrl Function: " + e.getMessage());
+            status = e.getStatus();
         } catch (IOException e) {
             Log.e(TAG, "getResponseFromHttpUrl Function: " + e.getMessage());
-        } finally {
-            mConnection.disconnect();
+        } catch (InterruptedException e) {
+            Log.e(TAG, "getResponseFromHttpUrl Function: interrupted");
+            Thread.currentThread().interrupt();
+        }
+        return new HedgedRequestExecutor.Response(status, "", 0);
+    }
+
+    /* The same request on the mirror, or the URL itself if there is no mirror */
+    private static URL getMirrorUrl(URL url) {
+        String mirrorBaseUrl = BuildConfig.WEATHER_MIRROR_URL;
+        String urlString = url.toString();
+        if (mirrorBaseUrl.isEmpty() || !urlString.startsWith(BuildConfig.WEATHER_SERVER_URL)) {
+            return url;
+        }
+        try {
+            return new URL(mirrorBaseUrl + urlString.substring(BuildConfig.WEATHER_SERVER_URL.length()));
+        } catch (MalformedURLException e) {
+            return url;
+        }
+    }
+
+    /**
+     * Parses a forecast response once, for {@link #getForecastDeltaFromJson(JSONObject)} and
+     * {@link #getForecastFromJson(Context, JSONObject)} to read.
+     *
+     * @param serverResponse Body of a response returned by {@link #getResponseFromHttpUrl(URL)}
+     * @return The response, or null if there was no response or it isn't JSON
+     */
+    public static JSONObject parseForecastResponse(String serverResponse) {
+        if (serverResponse == null || serverResponse.isEmpty()) {
+            return null;
+        }
+        try {
+            return new JSONObject(serverResponse);
+        } catch (JSONException e) {
+            Log.e(TAG, "parseForecastResponse Function: " + e.getMessage());
+            return null;
         }
-        return serverResponse;
     }
 
     public static String[] getSimpleWeatherDataFromJson(Context context, String serverResponse) {
@@ -289,12 +486,22 @@ public class NetworkUtils {
         return parsedWeatherData;
     }
 
-    public static ContentValues[] getWeatherContentValuesFromJson(Context context, String forecastJsonStr) {
+    /**
+     * Parses the daily forecast of a response.
+     *
+     * @param context      Used to save the coordinates the location resolved to
+     * @param forecastJson Response returned by {@link #parseForecastResponse(String)}
+     * @return The days of the forecast, complete, or null if the response is an error or
+     * couldn't be parsed
+     */
+    public static ForecastBatch getForecastFromJson(Context context, JSONObject forecastJson) {
+        if (forecastJson == null) {
+            return null;
+        }
 
-        ContentValues[] weatherContentValues = new ContentValues[numberOfDaysToPredict];
+        ForecastBatch forecast = new ForecastBatch(numberOfDaysToPredict);
 
         try {
-            JSONObject forecastJson = new JSONObject(forecastJsonStr);
 
             /* Is there an error? */
             if (forecastJson.has(OWM_MESSAGE_CODE)) {
@@ -319,14 +526,26 @@ public class NetworkUtils {
                     JSONObject cityJson = forecastJson.getJSONObject(OWM_CITY);
 
 
-                    if(cityJson.has(OWM_COORD)) {
+                    /*
+                     * Only a text query needs resolving. Once coordinates are known, rewriting
+                     * them on every sync would only cost a preferences write.
+                     */
+                    if(cityJson.has(OWM_COORD)
+                            && !SunshinePreferences.isLocationLatLonAvailable(context)) {
                         JSONObject cityCoord = cityJson.getJSONObject(OWM_COORD);
 
                         double cityLatitude = cityCoord.getDouble(OWM_LATITUDE);
                         double cityLongitude = cityCoord.getDouble(OWM_LONGITUDE);
 
-                    SunshinePreferences.setLocationDetails(context, cityLatitude, cityLongitude);
+                        SunshinePreferences.setLocationDetails(context, cityLatitude, cityLongitude);
 
+                        LocationResolutionCache cache =
+                                SunshinePreferences.getLocationResolutionCache(context);
+                        cache.put(SunshinePreferences.getPreferredWeatherLocation(context),
+                                cityLatitude, cityLongitude, System.currentTimeMillis());
+                        if (cache.takeChanged()) {
+                            SunshinePreferences.saveLocationResolutionCache(context, cache);
+                        }
                     }
                 }
 
@@ -368,23 +587,222 @@ public class NetworkUtils {
                     double high = temperatureObject.getDouble(OWM_MAX);
                     double low = temperatureObject.getDouble(OWM_MIN);
 
-                    ContentValues weatherValues = new ContentValues();
-                    weatherValues.put(WeatherContract.WeatherEntry.COLUMN_DATE, dateTimeMillis);
-                    weatherValues.put(WeatherContract.WeatherEntry.COLUMN_HUMIDITY, humidity);
-                    weatherValues.put(WeatherContract.WeatherEntry.COLUMN_PRESSURE, pressure);
-                    weatherValues.put(WeatherContract.WeatherEntry.COLUMN_WIND_SPEED, windSpeed);
-                    weatherValues.put(WeatherContract.WeatherEntry.COLUMN_DEGREES, windDirection);
-                    weatherValues.put(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP, high);
-                    weatherValues.put(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP, low);
-                    weatherValues.put(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID, weatherId);
-
-                    weatherContentValues[i] = weatherValues;
+                    forecast.addDay(dateTimeMillis, weatherId, low, high, humidity, pressure,
+                            windSpeed, windDirection);
                 }
             }
         } catch (JSONException e) {
-            Log.e(TAG, "getWeatherContentValuesFromJson Function: " + e.getMessage());
+            Log.e(TAG, "getForecastFromJson Function: " + e.getMessage());
+            /* Rather than the days parsed so far, which would replace the whole forecast */
+            return null;
+        }
+
+        return forecast;
+    }
+
+    /**
+     * Parses the versioned part of a response to a delta request.
+     *
+     * @param forecastJson Response returned by {@link #parseForecastResponse(String)}
+     * @return The delta, or null if the response carries no version, e.g. because it comes from
+     * a server or a proxy without delta support, or an error
+     */
+    public static ForecastDelta getForecastDeltaFromJson(JSONObject forecastJson) {
+        if (forecastJson == null) {
+            return null;
+        }
+        try {
+            if (!forecastJson.has(OWM_VERSION)
+                    || forecastJson.optInt(OWM_MESSAGE_CODE, HttpURLConnection.HTTP_OK)
+                    != HttpURLConnection.HTTP_OK) {
+                return null;
+            }
+
+            String version = forecastJson.getString(OWM_VERSION);
+            boolean delta = forecastJson.optBoolean(OWM_DELTA);
+            long startDate = SunshineDateUtils.normalizeDate(
+                    forecastJson.getLong(OWM_START) * SunshineDateUtils.SECOND_IN_MILLIS);
+            int dayCount = forecastJson.getInt(DAYS_PARAM);
+
+            if (!delta) {
+                return new ForecastDelta(version, false, startDate, dayCount, null);
+            }
+
+            /* Unlike a full forecast, the days aren't contiguous, each carries its own date */
+            JSONArray jsonWeatherArray = forecastJson.getJSONArray(OWM_LIST);
+            ForecastBatch changedDays = new ForecastBatch(jsonWeatherArray.length());
+            for (int i = 0; i < jsonWeatherArray.length(); i++) {
+                JSONObject dayForecast = jsonWeatherArray.getJSONObject(i);
+                JSONObject temperatureObject = dayForecast.getJSONObject(OWM_TEMPERATURE);
+
+                changedDays.addDay(
+                        SunshineDateUtils.normalizeDate(dayForecast.getLong(OWM_DATE_TIME)
+                                * SunshineDateUtils.SECOND_IN_MILLIS),
+                        dayForecast.getJSONArray(OWM_WEATHER).getJSONObject(0).getInt(OWM_WEATHER_ID),
+                        temperatureObject.getDouble(OWM_MIN),
+                        temperatureObject.getDouble(OWM_MAX),
+                        dayForecast.getInt(OWM_HUMIDITY),
+                        dayForecast.getDouble(OWM_PRESSURE),
+                        dayForecast.getDouble(OWM_WINDSPEED),
+                        dayForecast.getDouble(OWM_WIND_DIRECTION));
+            }
+            return new ForecastDelta(version, true, startDate, dayCount, changedDays);
+        } catch (JSONException e) {
+            Log.e(TAG, "getForecastDeltaFromJson Function: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Fetches the hourly forecast through the same hedged, timed out transport as the daily
+     * forecast, and parses it one token at a time. Only call it if
+     * BuildConfig.HOURLY_FORECAST says the server has an hourly forecast.
+     *
+     * @param hourlyUrl           URL returned by {@link #getHourlyUrl(Context)}
+     * @param dailyTemperatures   Receives each entry's temperature to compute daily min/max
+     * @return The hourly rows, or null if the request or the response failed
+     */
+    public static ContentValues[] getHourlyWeatherFromHttpUrl(URL hourlyUrl,
+                                                             DailyTemperatureAccumulator dailyTemperatures) {
+        try {
+            String response = sHedgedRequestExecutor.execute(hourlyUrl, getMirrorUrl(hourlyUrl))
+                    .getBody();
+            return getHourlyWeatherContentValuesFromJson(new StringReader(response),
+                    dailyTemperatures);
+        } catch (IOException e) {
+            Log.e(TAG, "getHourlyWeatherFromHttpUrl Function: " + e.getMessage());
+            return null;
+        } catch (InterruptedException e) {
+            Log.e(TAG, "getHourlyWeatherFromHttpUrl Function: interrupted");
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (RuntimeException e) {
+            /* A malformed response only loses the hourly forecast, never the daily one */
+            Log.e(TAG, "getHourlyWeatherFromHttpUrl Function: malformed response", e);
+            return null;
+        }
+    }
+
+    /**
+     * Parses an hourly forecast response one token at a time. Unlike
+     * {@link #getForecastFromJson(Context, JSONObject)} this never builds a JSONObject
+     * tree, which matters at several hundred entries per location.
+     *
+     * @param jsonReader        Reader over the response body, closed by this method
+     * @param dailyTemperatures Receives each entry's temperature to compute daily min/max
+     * @return The hourly rows, or null if the response carries an error code. Entries without a
+     * time or a temperature are left out
+     * @throws IOException if the response can't be read or isn't valid JSON
+     */
+    public static ContentValues[] getHourlyWeatherContentValuesFromJson(Reader jsonReader,
+                                                                       DailyTemperatureAccumulator dailyTemperatures)
+            throws IOException {
+        List<ContentValues> hourlyValues = new ArrayList<>(numberOfHourlyEntries);
+        int errorCode = HttpURLConnection.HTTP_OK;
+
+        JsonReader reader = new JsonReader(jsonReader);
+        try {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (OWM_MESSAGE_CODE.equals(name)) {
+                    /* The code is sometimes sent as a string, nextInt handles both */
+                    errorCode = reader.nextInt();
+                } else if (OWM_LIST.equals(name)) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        ContentValues hourValues = readHourlyEntry(reader);
+                        Long dateTime =
+                                hourValues.getAsLong(WeatherContract.HourlyWeatherEntry.COLUMN_DATE_TIME);
+                        Double temp =
+                                hourValues.getAsDouble(WeatherContract.HourlyWeatherEntry.COLUMN_TEMP);
+                        if (dateTime == null || temp == null) {
+                            /* Skip entries without a time or a temperature, keep the others */
+                            continue;
+                        }
+                        dailyTemperatures.add(dateTime, temp);
+                        hourlyValues.add(hourValues);
+                    }
+                    reader.endArray();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } finally {
+            reader.close();
+        }
+
+        if (errorCode != HttpURLConnection.HTTP_OK) {
+            /* Location invalid or server probably down */
+            return null;
+        }
+        return hourlyValues.toArray(new ContentValues[hourlyValues.size()]);
+    }
+
+    private static ContentValues readHourlyEntry(JsonReader reader) throws IOException {
+        ContentValues hourValues = new ContentValues();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (OWM_DATE_TIME.equals(name)) {
+                /* dt is in seconds, slots always start on a whole hour */
+                long dateTimeMillis = reader.nextLong() * SunshineDateUtils.SECOND_IN_MILLIS;
+                hourValues.put(WeatherContract.HourlyWeatherEntry.COLUMN_DATE_TIME, dateTimeMillis);
+            } else if (OWM_MAIN.equals(name)) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String mainName = reader.nextName();
+                    if (OWM_TEMPERATURE.equals(mainName)) {
+                        hourValues.put(WeatherContract.HourlyWeatherEntry.COLUMN_TEMP, reader.nextDouble());
+                    } else if (OWM_PRESSURE.equals(mainName)) {
+                        hourValues.put(WeatherContract.HourlyWeatherEntry.COLUMN_PRESSURE, reader.nextDouble());
+                    } else if (OWM_HUMIDITY.equals(mainName)) {
+                        hourValues.put(WeatherContract.HourlyWeatherEntry.COLUMN_HUMIDITY, reader.nextDouble());
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            } else if (OWM_WEATHER.equals(name)) {
+                /* Only the first condition of the array is kept, as for the daily forecast */
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    if (!hourValues.containsKey(WeatherContract.HourlyWeatherEntry.COLUMN_WEATHER_ID)) {
+                        reader.beginObject();
+                        while (reader.hasNext()) {
+                            if (OWM_WEATHER_ID.equals(reader.nextName())) {
+                                hourValues.put(WeatherContract.HourlyWeatherEntry.COLUMN_WEATHER_ID, reader.nextInt());
+                            } else {
+                                reader.skipValue();
+                            }
+                        }
+                        reader.endObject();
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endArray();
+            } else if (OWM_WIND.equals(name)) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String windName = reader.nextName();
+                    if (OWM_WINDSPEED.equals(windName)) {
+                        hourValues.put(WeatherContract.HourlyWeatherEntry.COLUMN_WIND_SPEED, reader.nextDouble());
+                    } else if (OWM_WIND_DIRECTION.equals(windName)) {
+                        hourValues.put(WeatherContract.HourlyWeatherEntry.COLUMN_DEGREES, reader.nextDouble());
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            } else {
+                reader.skipValue();
+            }
         }
+        reader.endObject();
 
-        return weatherContentValues;
+        return hourValues;
     }
 }
@@ -16,8 +16,13 @@ import android.support.v4.content.ContextCompat;
 
 import com.example.hazem.sunshineweatherapp.DetailsActivity;
 import com.example.hazem.sunshineweatherapp.R;
+import com.example.hazem.sunshineweatherapp.data.CurrentForecastSnapshot;
 import com.example.hazem.sunshineweatherapp.data.SunshinePreferences;
 import com.example.hazem.sunshineweatherapp.data.WeatherContract;
+import com.example.hazem.sunshineweatherapp.sync.WeatherAlertEngine;
+import com.example.hazem.sunshineweatherapp.sync.WeatherAlertRule;
+
+import java.util.List;
 
 public class NotificationUtils {
 
@@ -49,6 +54,9 @@ public class NotificationUtils {
 //  a constant int value to identify the notification
     private static final int WEATHER_NOTIFICATION_ID = 3004;
 
+    /* Alerts get their own notification so they don't replace the daily summary */
+    private static final int WEATHER_ALERT_NOTIFICATION_ID = 3005;
+
     /**
      * Constructs and displays a notification for the newly updated weather for today.
      *
@@ -57,98 +65,187 @@ public class NotificationUtils {
     public static void notifyUserOfNewWeather(Context context) {
 
         /* Build the URI for today's weather in order to show up to date data in notification */
-        Uri todayWeatherUri = WeatherContract.WeatherEntry
-                .buildWeatherUriWithDate(SunshineDateUtils.normalizeDate(System.currentTimeMillis()));
-
-        /*
-         * The MAIN_FORECAST_PROJECTION array passed in as the second parameter is defined in our WeatherContract
-         * class and is used to limit the columns returned in our cursor.
-         */
-        Cursor todayWeatherCursor = context.getContentResolver().query(
-                todayWeatherUri,
-                WEATHER_NOTIFICATION_PROJECTION,
-                null,
-                null,
-                null);
+        long today = SunshineDateUtils.normalizeDate(System.currentTimeMillis());
+        Uri todayWeatherUri = WeatherContract.WeatherEntry.buildWeatherUriWithDate(today);
 
         /*
-         * If todayWeatherCursor is empty, moveToFirst will return false. If our cursor is not
-         * empty, we want to show the notification.
+         * Today is read from the snapshot the sync published just before calling this, without
+         * opening the database. The provider is only queried if the snapshot doesn't hold today.
          */
-        if (todayWeatherCursor.moveToFirst()) {
+        int weatherId;
+        double high;
+        double low;
+        CurrentForecastSnapshot.Day todayWeather = new CurrentForecastSnapshot.Day();
+        if (CurrentForecastSnapshot.getInstance(context).readDay(today, todayWeather)) {
+            weatherId = todayWeather.getWeatherId();
+            high = todayWeather.getMaxTemp();
+            low = todayWeather.getMinTemp();
+        } else {
+            /*
+             * The WEATHER_NOTIFICATION_PROJECTION array passed in as the second parameter is
+             * used to limit the columns returned in our cursor.
+             */
+            Cursor todayWeatherCursor = context.getContentResolver().query(
+                    todayWeatherUri,
+                    WEATHER_NOTIFICATION_PROJECTION,
+                    null,
+                    null,
+                    null);
 
-            /* Weather ID as returned by API, used to identify the icon to be used */
-            int weatherId = todayWeatherCursor.getInt(INDEX_WEATHER_ID);
-            double high = todayWeatherCursor.getDouble(INDEX_MAX_TEMP);
-            double low = todayWeatherCursor.getDouble(INDEX_MIN_TEMP);
+            /*
+             * If todayWeatherCursor is empty, moveToFirst will return false. If our cursor is
+             * not empty, we want to show the notification.
+             */
+            if (todayWeatherCursor == null) {
+                return;
+            }
+            try {
+                if (!todayWeatherCursor.moveToFirst()) {
+                    return;
+                }
+                /* Weather ID as returned by API, used to identify the icon to be used */
+                weatherId = todayWeatherCursor.getInt(INDEX_WEATHER_ID);
+                high = todayWeatherCursor.getDouble(INDEX_MAX_TEMP);
+                low = todayWeatherCursor.getDouble(INDEX_MIN_TEMP);
+            } finally {
+                todayWeatherCursor.close();
+            }
+        }
 
-            Resources resources = context.getResources();
-            int largeArtResourceId = WeatherUtils
-                    .getLargeArtResourceIdForWeatherCondition(weatherId);
+        Resources resources = context.getResources();
+        int largeArtResourceId = WeatherUtils
+                .getLargeArtResourceIdForWeatherCondition(weatherId);
 
-            Bitmap largeIcon = BitmapFactory.decodeResource(
-                    resources,
-                    largeArtResourceId);
+        Bitmap largeIcon = BitmapFactory.decodeResource(
+                resources,
+                largeArtResourceId);
 
-            String notificationTitle = context.getString(R.string.app_name);
+        String notificationTitle = context.getString(R.string.app_name);
 
-            String notificationText = getNotificationText(context, weatherId, high, low);
+        String notificationText = getNotificationText(context, weatherId, high, low);
 
-            /* getSmallArtResourceIdForWeatherCondition returns the proper art to show given an ID */
-            int smallArtResourceId = WeatherUtils
-                    .getSmallArtResourceIdForWeatherCondition(weatherId);
+        /* getSmallArtResourceIdForWeatherCondition returns the proper art to show given an ID */
+        int smallArtResourceId = WeatherUtils
+                .getSmallArtResourceIdForWeatherCondition(weatherId);
 
-            /*
-             * NotificationCompat Builder is a very convenient way to build backward-compatible
-             * notifications. In order to use it, we provide a context and specify a color for the
-             * notification, a couple of different icons, the title for the notification, and
-             * finally the text of the notification, which in our case in a summary of today's
-             * forecast.
-             */
+        /*
+         * NotificationCompat Builder is a very convenient way to build backward-compatible
+         * notifications. In order to use it, we provide a context and specify a color for the
+         * notification, a couple of different icons, the title for the notification, and
+         * finally the text of the notification, which in our case in a summary of today's
+         * forecast.
+         */
 //          Use NotificationCompat.Builder to begin building the notification
-            NotificationCompat.Builder notificationBuilder = new NotificationCompat.Builder(context)
-                    .setColor(ContextCompat.getColor(context, R.color.colorPrimary))
-                    .setSmallIcon(smallArtResourceId)
-                    .setLargeIcon(largeIcon)
-                    .setContentTitle(notificationTitle)
-                    .setContentText(notificationText)
-                    .setAutoCancel(true);
+        NotificationCompat.Builder notificationBuilder = new NotificationCompat.Builder(context)
+                .setColor(ContextCompat.getColor(context, R.color.colorPrimary))
+                .setSmallIcon(smallArtResourceId)
+                .setLargeIcon(largeIcon)
+                .setContentTitle(notificationTitle)
+                .setContentText(notificationText)
+                .setAutoCancel(true);
 
 //          Create an Intent with the proper URI to start the DetailActivity
-            /*
-             * This Intent will be triggered when the user clicks the notification. In our case,
-             * we want to open Sunshine to the DetailActivity to display the newly updated weather.
-             */
-            Intent detailIntentForToday = new Intent(context, DetailsActivity.class);
-            detailIntentForToday.setData(todayWeatherUri);
+        /*
+         * This Intent will be triggered when the user clicks the notification. In our case,
+         * we want to open Sunshine to the DetailActivity to display the newly updated weather.
+         */
+        Intent detailIntentForToday = new Intent(context, DetailsActivity.class);
+        detailIntentForToday.setData(todayWeatherUri);
 
 //          Use TaskStackBuilder to create the proper PendingIntent
-            TaskStackBuilder taskStackBuilder = TaskStackBuilder.create(context);
-            taskStackBuilder.addNextIntentWithParentStack(detailIntentForToday);
-            PendingIntent resultPendingIntent = taskStackBuilder
-                    .getPendingIntent(0, PendingIntent.FLAG_UPDATE_CURRENT);
+        TaskStackBuilder taskStackBuilder = TaskStackBuilder.create(context);
+        taskStackBuilder.addNextIntentWithParentStack(detailIntentForToday);
+        PendingIntent resultPendingIntent = taskStackBuilder
+                .getPendingIntent(0, PendingIntent.FLAG_UPDATE_CURRENT);
 
 //          Set the content Intent of the NotificationBuilder
-            notificationBuilder.setContentIntent(resultPendingIntent);
+        notificationBuilder.setContentIntent(resultPendingIntent);
 
 //         Get a reference to the NotificationManager
-            NotificationManager notificationManager = (NotificationManager)
-                    context.getSystemService(Context.NOTIFICATION_SERVICE);
+        NotificationManager notificationManager = (NotificationManager)
+                context.getSystemService(Context.NOTIFICATION_SERVICE);
 
 //          Notify the user with the ID WEATHER_NOTIFICATION_ID
-            /* WEATHER_NOTIFICATION_ID allows you to update or cancel the notification later on */
-            notificationManager.notify(WEATHER_NOTIFICATION_ID, notificationBuilder.build());
+        /* WEATHER_NOTIFICATION_ID allows you to update or cancel the notification later on */
+        notificationManager.notify(WEATHER_NOTIFICATION_ID, notificationBuilder.build());
 
 //           Save the time at which the notification occurred using SunshinePreferences
-            /*
-             * Since we just showed a notification, save the current time. That way, we can check
-             * next time the weather is refreshed if we should show another notification.
-             */
-            SunshinePreferences.saveLastNotificationTime(context, System.currentTimeMillis());
+        /*
+         * Since we just showed a notification, save the current time. That way, we can check
+         * next time the weather is refreshed if we should show another notification.
+         */
+        SunshinePreferences.saveLastNotificationTime(context, System.currentTimeMillis());
+    }
+
+    /**
+     * Constructs and displays a single notification listing the weather alerts fired by a sync.
+     * Unlike {@link #notifyUserOfNewWeather(Context)}, this is not limited to once a day: the
+     * alerts are already de-duplicated by rule and date by {@link WeatherAlertEngine}.
+     *
+     * @param context Context used to build the notification and use various Utility methods
+     * @param alerts  The alerts that fired, in date order
+     */
+    public static void notifyUserOfWeatherAlerts(Context context, List<WeatherAlertEngine.Alert> alerts) {
+        if (alerts.isEmpty()) {
+            return;
+        }
+
+        WeatherAlertEngine.Alert firstAlert = alerts.get(0);
+
+        NotificationCompat.InboxStyle inboxStyle = new NotificationCompat.InboxStyle();
+        for (WeatherAlertEngine.Alert alert : alerts) {
+            inboxStyle.addLine(getAlertText(context, alert));
         }
 
-        /* Always close your cursor when you're done with it to avoid wasting resources. */
-        todayWeatherCursor.close();
+        NotificationCompat.Builder notificationBuilder = new NotificationCompat.Builder(context)
+                .setColor(ContextCompat.getColor(context, R.color.colorPrimary))
+                .setSmallIcon(R.drawable.ic_storm)
+                .setContentTitle(context.getString(R.string.weather_alert_title))
+                .setContentText(getAlertText(context, firstAlert))
+                .setStyle(inboxStyle)
+                .setAutoCancel(true);
+
+        /* Tapping the alert opens the details of the first day that triggered it */
+        Intent detailIntent = new Intent(context, DetailsActivity.class);
+        detailIntent.setData(WeatherContract.WeatherEntry.buildWeatherUriWithDate(firstAlert.getDate()));
+
+        TaskStackBuilder taskStackBuilder = TaskStackBuilder.create(context);
+        taskStackBuilder.addNextIntentWithParentStack(detailIntent);
+        PendingIntent resultPendingIntent = taskStackBuilder
+                .getPendingIntent(0, PendingIntent.FLAG_UPDATE_CURRENT);
+        notificationBuilder.setContentIntent(resultPendingIntent);
+
+        NotificationManager notificationManager = (NotificationManager)
+                context.getSystemService(Context.NOTIFICATION_SERVICE);
+        notificationManager.notify(WEATHER_ALERT_NOTIFICATION_ID, notificationBuilder.build());
+    }
+
+    /**
+     * Returns the one line description of an alert, such as "Tomorrow: High of 37°".
+     *
+     * @param context Used to access utility methods and resources
+     * @param alert   The alert to describe
+     * @return Description of the alert
+     */
+    private static String getAlertText(Context context, WeatherAlertEngine.Alert alert) {
+        String dateText = SunshineDateUtils.getFriendlyDateString(context, alert.getDate(), false);
+
+        switch (alert.getRule().getType()) {
+            case WeatherAlertRule.TYPE_MAX_TEMP_ABOVE:
+                return context.getString(R.string.format_alert_max_temp, dateText,
+                        WeatherUtils.formatTemperature(context, alert.getValue()));
+            case WeatherAlertRule.TYPE_MIN_TEMP_BELOW:
+                return context.getString(R.string.format_alert_min_temp, dateText,
+                        WeatherUtils.formatTemperature(context, alert.getValue()));
+            case WeatherAlertRule.TYPE_STORM_WITHIN:
+                return context.getString(R.string.format_alert_storm, dateText,
+                        WeatherUtils.getStringForWeatherCondition(context, (int) alert.getValue()));
+            case WeatherAlertRule.TYPE_PRESSURE_DROP:
+                return context.getString(R.string.format_alert_pressure_drop, dateText,
+                        alert.getValue());
+            default:
+                throw new IllegalArgumentException("Unknown rule type: " + alert.getRule().getType());
+        }
     }
 
     /**
@@ -0,0 +1,233 @@
+package com.example.hazem.sunshineweatherapp.utilities;
+
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Generates deterministic, realistic looking forecasts for load tests, benchmarks and fake data.
+ * The same seed always produces the same forecasts.
+ * <p>
+ * Each location gets a climate from its latitude: warmer and less seasonal towards the equator.
+ * Its weather then drifts from day to day (or hour to hour) through slowly varying temperature
+ * and pressure anomalies, so consecutive values are correlated the way real weather is: low
+ * pressure brings clouds, rain, humidity and wind, and snow only falls when it is cold.
+ * <p>
+ * Rows are handed to a sink one at a time and never collected, so any number of rows can be
+ * generated in constant memory.
+ */
+public class SyntheticForecastGenerator {
+
+    /* Day to day persistence of the weather anomalies, 0 for none and 1 for no change */
+    private static final double DAILY_PERSISTENCE = 0.75;
+
+    /* Standard deviations of the anomalies, in °C and hPa */
+    private static final double TEMPERATURE_ANOMALY_SD = 3.5;
+    private static final double PRESSURE_ANOMALY_SD = 9;
+
+    private static final double MEAN_PRESSURE = 1013;
+
+    /**
+     * Receives one day of weather per call, in the units stored by the weather table.
+     */
+    public interface DailySink {
+        void beginLocation(int location, String name, double latitude, double longitude)
+                throws IOException;
+
+        void addDay(long date, int weatherId, double minTemp, double maxTemp, double humidity,
+                    double pressure, double windSpeed, double windDirection) throws IOException;
+
+        void endLocation() throws IOException;
+    }
+
+    /**
+     * Receives one forecast slot per call, in the units stored by the hourly weather table.
+     */
+    public interface HourlySink {
+        void beginLocation(int location, String name, double latitude, double longitude)
+                throws IOException;
+
+        void addHour(long dateTime, int weatherId, double temp, double humidity, double pressure,
+                     double windSpeed, double windDirection) throws IOException;
+
+        void endLocation() throws IOException;
+    }
+
+    private final long mSeed;
+
+    /* Weather state of the location being generated */
+    private Random mRandom;
+    private double mLatitude;
+    private double mLongitude;
+    private double mMeanTemperature;
+    private double mSeasonalAmplitude;
+    private double mTemperatureAnomaly;
+    private double mPressureAnomaly;
+    private double mWindDirection;
+
+    public SyntheticForecastGenerator(long seed) {
+        mSeed = seed;
+    }
+
+    /**
+     * Generates days of weather for a number of locations.
+     *
+     * @param locations Number of locations
+     * @param days      Number of days per location
+     * @param firstDate Normalized UTC date of the first day
+     * @param sink      Receives the days, location after location
+     * @throws IOException if the sink fails
+     */
+    public void generateDaily(int locations, int days, long firstDate, DailySink sink)
+            throws IOException {
+        for (int location = 0; location < locations; location++) {
+            startLocation(location);
+            sink.beginLocation(location, getLocationName(location), mLatitude, mLongitude);
+
+            for (int day = 0; day < days; day++) {
+                long date = firstDate + day * SunshineDateUtils.DAY_IN_MILLIS;
+                stepWeather(DAILY_PERSISTENCE);
+
+                double mean = getSeasonalTemperature(date) + mTemperatureAnomaly;
+                double humidity = getHumidity();
+                /* Clouds and moist air keep the day and the night closer together */
+                double halfRange = 2 + 5 * (1 - humidity / 100) + Math.abs(mRandom.nextGaussian());
+
+                double maxTemp = mean + halfRange;
+                double minTemp = mean - halfRange;
+                double pressure = MEAN_PRESSURE + mPressureAnomaly;
+
+                sink.addDay(date, getWeatherId(mean, humidity), round(minTemp), round(maxTemp),
+                        Math.round(humidity), round(pressure), round(getWindSpeed()),
+                        Math.round(mWindDirection));
+            }
+            sink.endLocation();
+        }
+    }
+
+    /**
+     * Generates forecast slots for a number of locations, like the hourly forecast the server
+     * returns.
+     *
+     * @param locations     Number of locations
+     * @param slots         Number of slots per location
+     * @param stepHours     Hours between two slots, 3 for the server's forecast
+     * @param firstDateTime UTC start of the first slot, a whole hour
+     * @param sink          Receives the slots, location after location
+     * @throws IOException if the sink fails
+     */
+    public void generateHourly(int locations, int slots, int stepHours, long firstDateTime,
+                               HourlySink sink) throws IOException {
+        /* Anomalies decorrelate per day, spread that over the slots of a day */
+        double persistence = Math.pow(DAILY_PERSISTENCE, stepHours / 24.0);
+
+        for (int location = 0; location < locations; location++) {
+            startLocation(location);
+            sink.beginLocation(location, getLocationName(location), mLatitude, mLongitude);
+
+            for (int slot = 0; slot < slots; slot++) {
+                long dateTime = firstDateTime + slot * stepHours * SunshineDateUtils.HOUR_IN_MILLIS;
+                stepWeather(persistence);
+
+                double humidity = getHumidity();
+                /* Warmest mid afternoon local solar time, coldest before dawn */
+                double solarHour = (dateTime % SunshineDateUtils.DAY_IN_MILLIS)
+                        / (double) SunshineDateUtils.HOUR_IN_MILLIS + mLongitude / 15;
+                double dailyCycle = (3 + 5 * (1 - humidity / 100))
+                        * Math.cos(2 * Math.PI * (solarHour - 15) / 24);
+                double temp = getSeasonalTemperature(dateTime) + mTemperatureAnomaly + dailyCycle;
+
+                sink.addHour(dateTime, getWeatherId(temp, humidity), round(temp),
+                        Math.round(humidity), round(MEAN_PRESSURE + mPressureAnomaly),
+                        round(getWindSpeed()), Math.round(mWindDirection));
+            }
+            sink.endLocation();
+        }
+    }
+
+    /* Each location has its own random stream, so its weather doesn't depend on the others */
+    private void startLocation(int location) {
+        mRandom = new Random(mSeed * 31 + location);
+
+        mLatitude = round(-55 + 125 * mRandom.nextDouble());
+        mLongitude = round(-180 + 360 * mRandom.nextDouble());
+        mMeanTemperature = 28 - 0.4 * Math.abs(mLatitude) + 2 * mRandom.nextGaussian();
+        mSeasonalAmplitude = 0.25 * Math.abs(mLatitude);
+
+        mTemperatureAnomaly = TEMPERATURE_ANOMALY_SD * mRandom.nextGaussian();
+        mPressureAnomaly = PRESSURE_ANOMALY_SD * mRandom.nextGaussian();
+        mWindDirection = 360 * mRandom.nextDouble();
+    }
+
+    private static String getLocationName(int location) {
+        return "Synthetic " + location;
+    }
+
+    /* First order autoregressive step, keeps the variance of each anomaly constant */
+    private void stepWeather(double persistence) {
+        double innovation = Math.sqrt(1 - persistence * persistence);
+        mTemperatureAnomaly = persistence * mTemperatureAnomaly
+                + innovation * TEMPERATURE_ANOMALY_SD * mRandom.nextGaussian();
+        mPressureAnomaly = persistence * mPressureAnomaly
+                + innovation * PRESSURE_ANOMALY_SD * mRandom.nextGaussian();
+        mWindDirection = (mWindDirection + 40 * innovation * mRandom.nextGaussian() + 360) % 360;
+    }
+
+    private double getSeasonalTemperature(long dateMillis) {
+        double dayOfYear = (dateMillis / SunshineDateUtils.DAY_IN_MILLIS) % 365.25;
+        /* Warmest in late July in the northern hemisphere, late January in the southern */
+        double season = Math.cos(2 * Math.PI * (dayOfYear - 200) / 365.25);
+        return mMeanTemperature + Math.signum(mLatitude) * mSeasonalAmplitude * season;
+    }
+
+    /* Low pressure systems are humid, high pressure systems are dry */
+    private double getHumidity() {
+        double humidity = 65 - 1.8 * mPressureAnomaly + 6 * mRandom.nextGaussian();
+        return Math.max(10, Math.min(100, humidity));
+    }
+
+    private double getWindSpeed() {
+        double windSpeed = 3 + 0.35 * Math.abs(mPressureAnomaly) + 1.5 * mRandom.nextGaussian();
+        return Math.max(0, windSpeed);
+    }
+
+    /*
+     * Picks an OpenWeatherMap condition code, see WeatherUtils#getStringForWeatherCondition,
+     * from the pressure anomaly, humidity and temperature.
+     */
+    private int getWeatherId(double temperature, double humidity) {
+        double pressure = mPressureAnomaly;
+
+        if (pressure < -18 && mRandom.nextDouble() < 0.5) {
+            /* Deep low: storm or tropical storm */
+            return temperature > 24 ? 960 + mRandom.nextInt(3) : 900 + mRandom.nextInt(3);
+        }
+        if (pressure < -8 && humidity > 75) {
+            if (temperature < 0) {
+                return 600 + mRandom.nextInt(3);
+            }
+            if (temperature > 18 && mRandom.nextDouble() < 0.3) {
+                return 200 + mRandom.nextInt(3);
+            }
+            return 500 + mRandom.nextInt(3);
+        }
+        if (pressure < -3) {
+            if (humidity > 85) {
+                return temperature < 0 ? 600 : 300 + mRandom.nextInt(2);
+            }
+            return 803 + mRandom.nextInt(2);
+        }
+        if (humidity > 82) {
+            /* Moist air without a low pressure system: mist, or fog when cold */
+            return temperature < 5 ? 741 : 701;
+        }
+        if (pressure < 4) {
+            return 801 + mRandom.nextInt(2);
+        }
+        return 800;
+    }
+
+    /* Two decimals, as the server reports its values */
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+}
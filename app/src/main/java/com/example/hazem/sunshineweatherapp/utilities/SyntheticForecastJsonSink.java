@@ -0,0 +1,101 @@
+package com.example.hazem.sunshineweatherapp.utilities;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes generated forecasts as weather server responses, in exactly the format
+ * {@link NetworkUtils} parses: the daily format for {@link SyntheticForecastGenerator#generateDaily}
+ * and the hourly format for {@link SyntheticForecastGenerator#generateHourly}. Each location is
+ * one response on its own line.
+ * <p>
+ * Values are written as they are generated, nothing is buffered beyond the Writer itself.
+ */
+public class SyntheticForecastJsonSink implements SyntheticForecastGenerator.DailySink,
+        SyntheticForecastGenerator.HourlySink {
+
+    private final Writer mWriter;
+
+    /* Entries written for the current location */
+    private int mCount;
+
+    public SyntheticForecastJsonSink(Writer writer) {
+        mWriter = writer;
+    }
+
+    @Override
+    public void beginLocation(int location, String name, double latitude, double longitude)
+            throws IOException {
+        mCount = 0;
+        mWriter.write("{\"city\":{\"id\":");
+        mWriter.write(Integer.toString(location));
+        mWriter.write(",\"name\":\"");
+        mWriter.write(name);
+        mWriter.write("\",\"coord\":{\"lat\":");
+        mWriter.write(Double.toString(latitude));
+        mWriter.write(",\"lon\":");
+        mWriter.write(Double.toString(longitude));
+        mWriter.write("}},\"cod\":\"200\",\"list\":[");
+    }
+
+    @Override
+    public void addDay(long date, int weatherId, double minTemp, double maxTemp, double humidity,
+                       double pressure, double windSpeed, double windDirection) throws IOException {
+        beginEntry(date);
+        mWriter.write(",\"temp\":{\"min\":");
+        mWriter.write(Double.toString(minTemp));
+        mWriter.write(",\"max\":");
+        mWriter.write(Double.toString(maxTemp));
+        mWriter.write("},\"pressure\":");
+        mWriter.write(Double.toString(pressure));
+        mWriter.write(",\"humidity\":");
+        mWriter.write(Long.toString(Math.round(humidity)));
+        writeWeather(weatherId);
+        mWriter.write(",\"speed\":");
+        mWriter.write(Double.toString(windSpeed));
+        mWriter.write(",\"deg\":");
+        mWriter.write(Long.toString(Math.round(windDirection)));
+        mWriter.write('}');
+    }
+
+    @Override
+    public void addHour(long dateTime, int weatherId, double temp, double humidity,
+                        double pressure, double windSpeed, double windDirection) throws IOException {
+        beginEntry(dateTime);
+        mWriter.write(",\"main\":{\"temp\":");
+        mWriter.write(Double.toString(temp));
+        mWriter.write(",\"pressure\":");
+        mWriter.write(Double.toString(pressure));
+        mWriter.write(",\"humidity\":");
+        mWriter.write(Long.toString(Math.round(humidity)));
+        mWriter.write('}');
+        writeWeather(weatherId);
+        mWriter.write(",\"wind\":{\"speed\":");
+        mWriter.write(Double.toString(windSpeed));
+        mWriter.write(",\"deg\":");
+        mWriter.write(Long.toString(Math.round(windDirection)));
+        mWriter.write("}}");
+    }
+
+    @Override
+    public void endLocation() throws IOException {
+        mWriter.write("],\"cnt\":");
+        mWriter.write(Integer.toString(mCount));
+        mWriter.write("}\n");
+    }
+
+    /* Opens the entry object and writes its time, which the server sends in seconds */
+    private void beginEntry(long dateTimeMillis) throws IOException {
+        if (mCount++ > 0) {
+            mWriter.write(',');
+        }
+        mWriter.write("{\"dt\":");
+        mWriter.write(Long.toString(dateTimeMillis / SunshineDateUtils.SECOND_IN_MILLIS));
+    }
+
+    private void writeWeather(int weatherId) throws IOException {
+        mWriter.write(",\"weather\":[{\"id\":");
+        mWriter.write(Integer.toString(weatherId));
+        mWriter.write("}]");
+    }
+}
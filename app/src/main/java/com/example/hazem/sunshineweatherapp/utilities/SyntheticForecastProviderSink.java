@@ -0,0 +1,139 @@
+package com.example.hazem.sunshineweatherapp.utilities;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+
+import com.example.hazem.sunshineweatherapp.data.ForecastBatch;
+import com.example.hazem.sunshineweatherapp.data.WeatherContract;
+
+import java.util.Arrays;
+
+/**
+ * Inserts generated forecasts through WeatherProvider's bulk insert path, a chunk of rows at a
+ * time, so the number of rows held in memory stays bounded whatever is generated. Daily rows
+ * are chunked in a {@link ForecastBatch}, reused from one chunk to the next, and written like a
+ * sync writes them.
+ * <p>
+ * The weather tables hold a single location, one row per date. Locations are therefore laid out
+ * one after the other in time: each location starts where the previous one ended instead of
+ * overwriting it.
+ */
+public class SyntheticForecastProviderSink implements SyntheticForecastGenerator.DailySink,
+        SyntheticForecastGenerator.HourlySink {
+
+    public static final int DEFAULT_CHUNK_SIZE = 1000;
+
+    private final ContentResolver mContentResolver;
+
+    private final ForecastBatch mDays;
+    private final ContentValues[] mHours;
+    private int mHourCount;
+
+    /* Shift applied to the dates of the current location, and where the next one starts */
+    private long mLocationOffset;
+    private long mNextLocationOffset;
+    private long mFirstTime = -1;
+
+    private int mRowsInserted;
+
+    /* Pressure of the last daily row flushed for the current location, for the pressure trend */
+    private double mLastPressure = Double.NaN;
+
+    public SyntheticForecastProviderSink(ContentResolver contentResolver) {
+        this(contentResolver, DEFAULT_CHUNK_SIZE);
+    }
+
+    public SyntheticForecastProviderSink(ContentResolver contentResolver, int chunkSize) {
+        mContentResolver = contentResolver;
+        mDays = new ForecastBatch(chunkSize);
+        mHours = new ContentValues[chunkSize];
+    }
+
+    @Override
+    public void beginLocation(int location, String name, double latitude, double longitude) {
+        mLocationOffset = mNextLocationOffset;
+        mLastPressure = Double.NaN;
+    }
+
+    @Override
+    public void addDay(long date, int weatherId, double minTemp, double maxTemp, double humidity,
+                       double pressure, double windSpeed, double windDirection) {
+        long storedDate = placeInTime(date, SunshineDateUtils.DAY_IN_MILLIS);
+
+        mDays.addDay(storedDate, weatherId, minTemp, maxTemp, humidity, pressure, windSpeed,
+                windDirection);
+        if (mDays.size() == mHours.length) {
+            flushDays();
+        }
+    }
+
+    @Override
+    public void addHour(long dateTime, int weatherId, double temp, double humidity,
+                        double pressure, double windSpeed, double windDirection) {
+        long storedDateTime = placeInTime(dateTime, SunshineDateUtils.HOUR_IN_MILLIS);
+
+        ContentValues values = new ContentValues();
+        values.put(WeatherContract.HourlyWeatherEntry.COLUMN_DATE_TIME, storedDateTime);
+        values.put(WeatherContract.HourlyWeatherEntry.COLUMN_WEATHER_ID, weatherId);
+        values.put(WeatherContract.HourlyWeatherEntry.COLUMN_TEMP, temp);
+        values.put(WeatherContract.HourlyWeatherEntry.COLUMN_HUMIDITY, humidity);
+        values.put(WeatherContract.HourlyWeatherEntry.COLUMN_PRESSURE, pressure);
+        values.put(WeatherContract.HourlyWeatherEntry.COLUMN_WIND_SPEED, windSpeed);
+        values.put(WeatherContract.HourlyWeatherEntry.COLUMN_DEGREES, windDirection);
+        mHours[mHourCount++] = values;
+        if (mHourCount == mHours.length) {
+            flushHours();
+        }
+    }
+
+    @Override
+    public void endLocation() {
+        flushDays();
+        flushHours();
+    }
+
+    /**
+     * @return Number of rows the provider inserted so far
+     */
+    public int getRowsInserted() {
+        return mRowsInserted;
+    }
+
+    /* Shifts a time by the offset of the current location, and extends the next offset past it */
+    private long placeInTime(long time, long step) {
+        if (mFirstTime == -1) {
+            mFirstTime = time;
+        }
+        long storedTime = time + mLocationOffset;
+        mNextLocationOffset = Math.max(mNextLocationOffset, storedTime - mFirstTime + step);
+        return storedTime;
+    }
+
+    private void flushDays() {
+        if (mDays.size() == 0) {
+            return;
+        }
+
+        /* Enriched like a sync would, carrying the pressure trend across chunks */
+        mLastPressure = ForecastEnricher.enrich(mDays, 0, mDays.size(), mLastPressure);
+        mRowsInserted += mDays.bulkInsert(mContentResolver,
+                WeatherContract.WeatherEntry.CONTENT_URI);
+
+        mDays.clear();
+    }
+
+    private void flushHours() {
+        if (mHourCount == 0) {
+            return;
+        }
+
+        ContentValues[] chunk = mHourCount == mHours.length
+                ? mHours
+                : Arrays.copyOf(mHours, mHourCount);
+        mRowsInserted += mContentResolver.bulkInsert(
+                WeatherContract.HourlyWeatherEntry.CONTENT_URI, chunk);
+
+        Arrays.fill(mHours, null);
+        mHourCount = 0;
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.hazem.sunshineweatherapp.utilities;
+
+/**
+ * Display strings for every whole degree between {@link #MIN_CELSIUS} and {@link #MAX_CELSIUS},
+ * precomputed for both metric and imperial units. Switching units then only changes which table
+ * is read, so already loaded forecasts can be re-rendered without formatting, converting or
+ * querying anything again.
+ * <p>
+ * Temperatures are displayed as whole degrees, so each unit is looked up by the temperature
+ * rounded once, in that unit. Values outside the tables are formatted directly.
+ */
+public class TemperatureFormatTable {
+
+    public static final int MIN_CELSIUS = -90;
+    public static final int MAX_CELSIUS = 60;
+
+    private static final long MIN_FAHRENHEIT = Math.round(celsiusToFahrenheit(MIN_CELSIUS));
+    private static final long MAX_FAHRENHEIT = Math.round(celsiusToFahrenheit(MAX_CELSIUS));
+
+    private final String mFormat;
+
+    private final String[] mMetricStrings;
+    private final String[] mImperialStrings;
+
+    /**
+     * Builds the table. This formats a few hundred strings, so build it once and keep it.
+     *
+     * @param format Format of one temperature, e.g. "%1.0f°"
+     */
+    public TemperatureFormatTable(String format) {
+        mFormat = format;
+        mMetricStrings = buildStrings(format, MIN_CELSIUS, MAX_CELSIUS);
+        mImperialStrings = buildStrings(format, MIN_FAHRENHEIT, MAX_FAHRENHEIT);
+    }
+
+    private static String[] buildStrings(String format, long min, long max) {
+        String[] strings = new String[(int) (max - min + 1)];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = String.format(format, (double) (min + i));
+        }
+        return strings;
+    }
+
+    /**
+     * Converts a temperature from Celsius to Fahrenheit.
+     *
+     * @param temperatureInCelsius Temperature in degrees Celsius (°C)
+     * @return Temperature in degrees Fahrenheit (°F)
+     */
+    public static double celsiusToFahrenheit(double temperatureInCelsius) {
+        return (temperatureInCelsius * 1.8) + 32;
+    }
+
+    /**
+     * @return The format this table was built with
+     */
+    public String getFormat() {
+        return mFormat;
+    }
+
+    /**
+     * Returns the display string of a temperature, rounded to the nearest whole degree of the
+     * displayed unit.
+     *
+     * @param temperatureInCelsius Temperature as stored by the app, in degrees Celsius
+     * @param isMetric             true to display Celsius, false to display Fahrenheit
+     * @return The formatted temperature
+     */
+    public String format(double temperatureInCelsius, boolean isMetric) {
+        if (isMetric) {
+            return lookUp(mMetricStrings, MIN_CELSIUS, Math.round(temperatureInCelsius));
+        }
+        return lookUp(mImperialStrings, MIN_FAHRENHEIT,
+                Math.round(celsiusToFahrenheit(temperatureInCelsius)));
+    }
+
+    private String lookUp(String[] strings, long min, long degrees) {
+        long index = degrees - min;
+        if (index < 0 || index >= strings.length) {
+            return String.format(mFormat, (double) degrees);
+        }
+        return strings[(int) index];
+    }
+}
@@ -7,18 +7,25 @@ import android.util.Log;
 import com.example.hazem.sunshineweatherapp.R;
 import com.example.hazem.sunshineweatherapp.data.SunshinePreferences;
 
+import java.util.Locale;
+
 public class WeatherUtils {
     private static final String LOG_TAG = WeatherUtils.class.getSimpleName();
 
-    /**
-     * This method will convert a temperature from Celsius to Fahrenheit.
-     *
-     * @param temperatureInCelsius Temperature in degrees Celsius(°C)
-     * @return Temperature in degrees Fahrenheit (°F)
+    /*
+     * Built from the temperature format of a locale, see prepareTemperatureFormat. The format
+     * only changes with the locale, so that is all a lookup compares.
      */
-    private static double celsiusToFahrenheit(double temperatureInCelsius) {
-        double temperatureInFahrenheit = (temperatureInCelsius * 1.8) + 32;
-        return temperatureInFahrenheit;
+    private static volatile LocalizedFormatTable sTemperatureFormatTable;
+
+    private static class LocalizedFormatTable {
+        final Locale mLocale;
+        final TemperatureFormatTable mTable;
+
+        LocalizedFormatTable(Locale locale, TemperatureFormatTable table) {
+            mLocale = locale;
+            mTable = table;
+        }
     }
 
     /**
@@ -33,14 +40,54 @@ public class WeatherUtils {
      * "21°C"
      */
     public static String formatTemperature(Context context, double temperature) {
-        if (!SunshinePreferences.isMetric(context)) {
-            temperature = celsiusToFahrenheit(temperature);
-        }
+        return formatTemperature(context, temperature, SunshinePreferences.isMetric(context));
+    }
 
-        int temperatureFormatResourceId = R.string.format_temperature;
+    /**
+     * Same as {@link #formatTemperature(Context, double)}, for callers that already know the
+     * preferred units. The string comes from a {@link TemperatureFormatTable}, so re-rendering
+     * loaded data after a unit change costs a table lookup per temperature.
+     *
+     * @param context     Android Context to access resources
+     * @param temperature Temperature in degrees Celsius (°C)
+     * @param isMetric    true to display Celsius, false to display Fahrenheit
+     * @return Formatted temperature String in the following form:
+     * "21°C"
+     */
+    public static String formatTemperature(Context context, double temperature, boolean isMetric) {
+        return getTemperatureFormatTable(context).format(temperature, isMetric);
+    }
 
-        /* For presentation, assume the user doesn't care about tenths of a degree. */
-        return String.format(context.getString(temperatureFormatResourceId), temperature);
+    /**
+     * Builds the table temperatures are formatted from, unless it was already built for the
+     * current locale. This formats a few hundred strings, so call it off the main thread before
+     * temperatures are displayed; otherwise the first temperature formatted builds it.
+     *
+     * @param context Android Context to access resources
+     */
+    public static void prepareTemperatureFormat(Context context) {
+        getTemperatureFormatTable(context);
+    }
+
+    @SuppressWarnings("deprecation")
+    private static TemperatureFormatTable getTemperatureFormatTable(Context context) {
+        Locale locale = context.getResources().getConfiguration().locale;
+        LocalizedFormatTable table = sTemperatureFormatTable;
+        if (table != null && table.mLocale.equals(locale)) {
+            return table.mTable;
+        }
+
+        synchronized (WeatherUtils.class) {
+            /* Rebuild if the locale changed, its format may differ */
+            table = sTemperatureFormatTable;
+            if (table == null || !table.mLocale.equals(locale)) {
+                /* For presentation, assume the user doesn't care about tenths of a degree. */
+                String format = context.getString(R.string.format_temperature);
+                table = new LocalizedFormatTable(locale, new TemperatureFormatTable(format));
+                sTemperatureFormatTable = table;
+            }
+            return table.mTable;
+        }
     }
 
     /**
@@ -53,11 +100,25 @@ public class WeatherUtils {
      * @return String in the form: "HIGH°C / LOW°C"
      */
     public static String formatHighLows(Context context, double high, double low) {
+        return formatHighLows(context, high, low, SunshinePreferences.isMetric(context));
+    }
+
+    /**
+     * Same as {@link #formatHighLows(Context, double, double)}, for callers that already know
+     * the preferred units.
+     *
+     * @param context  Android Context to access resources
+     * @param high     High temperature for a day in degrees Celsius
+     * @param low      Low temperature for a day in degrees Celsius
+     * @param isMetric true to display Celsius, false to display Fahrenheit
+     * @return String in the form: "HIGH°C / LOW°C"
+     */
+    public static String formatHighLows(Context context, double high, double low, boolean isMetric) {
         long roundedHigh = Math.round(high);
         long roundedLow = Math.round(low);
 
-        String formattedHigh = formatTemperature(context, roundedHigh);
-        String formattedLow = formatTemperature(context, roundedLow);
+        String formattedHigh = formatTemperature(context, roundedHigh, isMetric);
+        String formattedLow = formatTemperature(context, roundedLow, isMetric);
 
         String highLowStr = formattedHigh + " / " + formattedLow;
         return highLowStr;
@@ -74,10 +135,25 @@ public class WeatherUtils {
      * @return Wind String in the following form: "2 km/h SW"
      */
     public static String getFormattedWind(Context context, float windSpeed, float degrees) {
+        return getFormattedWind(context, windSpeed, degrees, SunshinePreferences.isMetric(context));
+    }
+
+    /**
+     * Same as {@link #getFormattedWind(Context, float, float)}, for callers that already know
+     * the preferred units.
+     *
+     * @param context   Android Context to access resources
+     * @param windSpeed Wind speed in kilometers / hour
+     * @param degrees   Degrees as measured on a compass, NOT temperature degrees!
+     * @param isMetric  true to display km/h, false to display mph
+     * @return Wind String in the following form: "2 km/h SW"
+     */
+    public static String getFormattedWind(Context context, float windSpeed, float degrees,
+                                          boolean isMetric) {
 
         int windFormat = R.string.format_wind_kmh;
 
-        if (!SunshinePreferences.isMetric(context)) {
+        if (!isMetric) {
             windFormat = R.string.format_wind_mph;
             windSpeed = .621371192237334f * windSpeed;
         }
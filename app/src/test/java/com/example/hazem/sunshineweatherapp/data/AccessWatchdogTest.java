@@ -0,0 +1,177 @@
+package com.example.hazem.sunshineweatherapp.data;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link AccessWatchdog}. The test thread plays the main thread.
+ */
+public class AccessWatchdogTest {
+
+    private final List<AccessWatchdog.Record> mFlagged = new ArrayList<>();
+
+    private final AccessWatchdog.Listener mListener = new AccessWatchdog.Listener() {
+        @Override
+        public void onFlagged(AccessWatchdog.Record record) {
+            synchronized (mFlagged) {
+                mFlagged.add(record);
+            }
+        }
+    };
+
+    @After
+    public void tearDown() {
+        AccessWatchdog.uninstall();
+    }
+
+    private void install(long slowQueryMillis, int capacity) {
+        AccessWatchdog.install(Thread.currentThread(), slowQueryMillis, capacity, mListener);
+    }
+
+    /* Stands for an instrumented method, like WeatherProvider#query */
+    private static void access(String kind, String operation, long sleepMillis) {
+        long start = AccessWatchdog.begin();
+        if (sleepMillis > 0) {
+            try {
+                Thread.sleep(sleepMillis);
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+        }
+        AccessWatchdog.end(kind, operation, start);
+    }
+
+    private static void accessFromBackgroundThread(final String kind, final String operation)
+            throws InterruptedException {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                access(kind, operation, 0);
+            }
+        }, "background");
+        thread.start();
+        thread.join();
+    }
+
+    @Test
+    public void notInstalled_recordsNothing() {
+        assertFalse(AccessWatchdog.isEnabled());
+        assertEquals(0, AccessWatchdog.begin());
+
+        access(AccessWatchdog.KIND_QUERY, "/weather", 0);
+
+        assertTrue(AccessWatchdog.getRecords().isEmpty());
+        assertTrue(mFlagged.isEmpty());
+    }
+
+    @Test
+    public void mainThreadAccess_isFlagged() throws InterruptedException {
+        install(AccessWatchdog.DEFAULT_SLOW_QUERY_MILLIS, 16);
+
+        access(AccessWatchdog.KIND_PREFERENCES, "isMetric", 0);
+        accessFromBackgroundThread(AccessWatchdog.KIND_QUERY, "/weather");
+
+        List<AccessWatchdog.Record> records = AccessWatchdog.getRecords();
+        assertEquals(2, records.size());
+
+        AccessWatchdog.Record main = records.get(0);
+        assertEquals(AccessWatchdog.KIND_PREFERENCES, main.kind);
+        assertEquals("isMetric", main.operation);
+        assertEquals(Thread.currentThread().getName(), main.threadName);
+        assertTrue(main.isOnMainThread());
+        assertFalse(main.isSlow());
+
+        AccessWatchdog.Record background = records.get(1);
+        assertEquals("background", background.threadName);
+        assertEquals(0, background.flags);
+
+        assertEquals(1, mFlagged.size());
+        assertSame(main, mFlagged.get(0));
+    }
+
+    @Test
+    public void slowQuery_isFlaggedOffTheMainThreadToo() throws InterruptedException {
+        AccessWatchdog.install(new Thread(), 5, 16, mListener);
+
+        access(AccessWatchdog.KIND_QUERY, "/weather/stats", 20);
+        access(AccessWatchdog.KIND_QUERY, "/weather", 0);
+        /* Only queries are held to the threshold */
+        access(AccessWatchdog.KIND_PREFERENCES, "getLocationResolutionCache", 20);
+
+        List<AccessWatchdog.Record> records = AccessWatchdog.getRecords();
+        assertTrue(records.get(0).isSlow());
+        assertTrue(records.get(0).durationNanos >= 20 * 1000000L);
+        assertFalse(records.get(0).isOnMainThread());
+        assertFalse(records.get(1).isSlow());
+        assertFalse(records.get(2).isSlow());
+
+        assertEquals(1, mFlagged.size());
+        assertEquals("/weather/stats", mFlagged.get(0).operation);
+    }
+
+    @Test
+    public void callSite_isTheCallerOfTheInstrumentedMethod() {
+        install(AccessWatchdog.DEFAULT_SLOW_QUERY_MILLIS, 16);
+
+        access(AccessWatchdog.KIND_QUERY, "/weather", 0);
+
+        String callSite = AccessWatchdog.getRecords().get(0).callSite;
+        assertTrue(callSite, callSite.startsWith(AccessWatchdogTest.class.getName()
+                + ".callSite_isTheCallerOfTheInstrumentedMethod("));
+    }
+
+    @Test
+    public void callSite_skipsFrameworkFrames() {
+        StackTraceElement[] stack = {
+                new StackTraceElement(AccessWatchdog.class.getName(), "end", null, 1),
+                new StackTraceElement("com.example.Provider", "query", null, 2),
+                new StackTraceElement("android.content.ContentProvider$Transport", "query", null, 3),
+                new StackTraceElement("android.content.ContentResolver", "query", null, 4),
+                new StackTraceElement("com.example.Loader", "loadInBackground", "Loader.java", 42)
+        };
+
+        assertEquals("com.example.Loader.loadInBackground(Loader.java:42)",
+                AccessWatchdog.findCallSite(stack));
+        assertEquals("unknown", AccessWatchdog.findCallSite(
+                new StackTraceElement[]{stack[0], stack[1], stack[2]}));
+    }
+
+    @Test
+    public void ringBuffer_keepsTheLatestAccessesInOrder() {
+        install(AccessWatchdog.DEFAULT_SLOW_QUERY_MILLIS, 4);
+
+        for (int i = 0; i < 10; i++) {
+            access(AccessWatchdog.KIND_QUERY, "/weather/" + i, 0);
+        }
+
+        List<AccessWatchdog.Record> records = AccessWatchdog.getRecords();
+        assertEquals(4, records.size());
+        for (int i = 0; i < 4; i++) {
+            assertEquals("/weather/" + (6 + i), records.get(i).operation);
+        }
+    }
+
+    @Test
+    public void dump_listsTheRecords() {
+        install(AccessWatchdog.DEFAULT_SLOW_QUERY_MILLIS, 4);
+        for (int i = 0; i < 6; i++) {
+            access(AccessWatchdog.KIND_QUERY, "/weather/" + i, 0);
+        }
+
+        StringWriter out = new StringWriter();
+        AccessWatchdog.dump(new PrintWriter(out));
+        String dump = out.toString();
+
+        assertTrue(dump, dump.startsWith("Access watchdog: 6 accesses, 6 flagged, last 4:"));
+        assertFalse(dump.contains("/weather/1 "));
+        assertTrue(dump.contains("query /weather/5 "));
+        assertTrue(dump.contains("[MAIN THREAD]"));
+    }
+}
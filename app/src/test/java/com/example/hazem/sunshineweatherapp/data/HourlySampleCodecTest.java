@@ -0,0 +1,155 @@
+package com.example.hazem.sunshineweatherapp.data;
+
+import com.example.hazem.sunshineweatherapp.utilities.SyntheticForecastGenerator;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link HourlySampleCodec}.
+ */
+public class HourlySampleCodecTest {
+
+    private static final long FIRST_HOUR = 420000;
+
+    /* Raw size of a sample: timestamp, weather id and the values */
+    private static final int RAW_SAMPLE_BYTES = 8 + 4 + 8 * HourlySampleCodec.VALUE_COLUMNS;
+
+    private static class Sample {
+        final long timestamp;
+        final int weatherId;
+        final double[] values;
+
+        Sample(long timestamp, int weatherId, double... values) {
+            this.timestamp = timestamp;
+            this.weatherId = weatherId;
+            this.values = values;
+        }
+    }
+
+    private static byte[] encode(List<Sample> samples) {
+        HourlySampleCodec.Encoder encoder = new HourlySampleCodec.Encoder();
+        for (Sample sample : samples) {
+            encoder.add(sample.timestamp, sample.weatherId, sample.values);
+        }
+        assertEquals(samples.size(), encoder.getCount());
+        return encoder.toByteArray();
+    }
+
+    private static void assertDecodes(List<Sample> samples, byte[] data) {
+        HourlySampleCodec.Decoder decoder = new HourlySampleCodec.Decoder(data, samples.size());
+        for (int i = 0; i < samples.size(); i++) {
+            assertTrue(decoder.next());
+            assertEquals(i, decoder.getPosition());
+            Sample sample = samples.get(i);
+            assertEquals(sample.timestamp, decoder.getTimestamp());
+            assertEquals(sample.weatherId, decoder.getWeatherId());
+            for (int column = 0; column < HourlySampleCodec.VALUE_COLUMNS; column++) {
+                /* Bit for bit, so -0.0 and NaN come back as they went in */
+                assertEquals(Double.doubleToRawLongBits(sample.values[column]),
+                        Double.doubleToRawLongBits(decoder.getValue(column)));
+            }
+        }
+        assertFalse(decoder.next());
+    }
+
+    private static List<Sample> generate(int slots, int stepHours) throws IOException {
+        final List<Sample> samples = new ArrayList<>();
+        new SyntheticForecastGenerator(7).generateHourly(1, slots, stepHours, 0,
+                new SyntheticForecastGenerator.HourlySink() {
+                    @Override
+                    public void beginLocation(int location, String name, double latitude,
+                                              double longitude) {
+                    }
+
+                    @Override
+                    public void addHour(long dateTime, int weatherId, double temp,
+                                        double humidity, double pressure, double windSpeed,
+                                        double windDirection) {
+                        /* In tenths and whole units, as HourlyBlockStore encodes them */
+                        samples.add(new Sample(FIRST_HOUR + samples.size() * stepHours,
+                                weatherId, Math.round(temp * 10), humidity,
+                                Math.round(pressure * 10), Math.round(windSpeed * 10),
+                                windDirection));
+                    }
+
+                    @Override
+                    public void endLocation() {
+                    }
+                });
+        return samples;
+    }
+
+    @Test
+    public void evenlySpacedSamples_roundTripAndCompress() throws IOException {
+        List<Sample> samples = generate(24 * 365, 1);
+
+        byte[] data = encode(samples);
+        assertDecodes(samples, data);
+
+        /* Whole numbers leave long runs of zero bits, at least 4 times smaller than raw */
+        assertTrue(data.length * 4 < samples.size() * RAW_SAMPLE_BYTES);
+    }
+
+    @Test
+    public void repeatedSamples_takeAFewBitsEach() {
+        List<Sample> samples = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            samples.add(new Sample(FIRST_HOUR + 3 * i, 800, 21.5, 60, 1013.2, 3.5, 180));
+        }
+
+        byte[] data = encode(samples);
+        assertDecodes(samples, data);
+
+        /* 1 bit of timestamp, 1 of weather id and 1 per value after the first two samples */
+        assertTrue(data.length < 1000);
+    }
+
+    @Test
+    public void irregularSamplesAndOddValues_roundTrip() {
+        Random random = new Random(11);
+        double[] oddValues = {0.0, -0.0, Double.NaN, Double.POSITIVE_INFINITY,
+                Double.NEGATIVE_INFINITY, Double.MIN_VALUE, Double.MAX_VALUE, -1e-300, 1e300};
+
+        List<Sample> samples = new ArrayList<>();
+        long timestamp = -5000;
+        for (int i = 0; i < 2000; i++) {
+            /* Every bucket of delta of delta, up to a jump that takes the full 64 bits */
+            int kind = random.nextInt(6);
+            timestamp += kind == 0 ? 1 : kind == 1 ? 1 + random.nextInt(60)
+                    : kind == 2 ? 1 + random.nextInt(250) : kind == 3 ? 1 + random.nextInt(2000)
+                    : kind == 4 ? 1 + random.nextInt(1 << 30) : 3;
+
+            double[] values = new double[HourlySampleCodec.VALUE_COLUMNS];
+            for (int column = 0; column < values.length; column++) {
+                values[column] = random.nextInt(4) == 0
+                        ? oddValues[random.nextInt(oddValues.length)]
+                        : random.nextGaussian() * Math.pow(10, random.nextInt(10) - 5);
+            }
+            samples.add(new Sample(timestamp, random.nextInt(3) == 0 ? -1 : 800 + random.nextInt(4),
+                    values));
+        }
+
+        assertDecodes(samples, encode(samples));
+    }
+
+    @Test
+    public void singleSample_roundTrips() {
+        List<Sample> samples = new ArrayList<>();
+        samples.add(new Sample(Long.MIN_VALUE, Integer.MAX_VALUE, 1, 2, 3, 4, 5));
+        assertDecodes(samples, encode(samples));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void add_rejectsTimestampsOutOfOrder() {
+        HourlySampleCodec.Encoder encoder = new HourlySampleCodec.Encoder();
+        encoder.add(10, 800, new double[HourlySampleCodec.VALUE_COLUMNS]);
+        encoder.add(10, 800, new double[HourlySampleCodec.VALUE_COLUMNS]);
+    }
+}
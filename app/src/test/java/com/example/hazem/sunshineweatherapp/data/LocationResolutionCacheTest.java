@@ -0,0 +1,153 @@
+package com.example.hazem.sunshineweatherapp.data;
+
+import com.example.hazem.sunshineweatherapp.utilities.GeohashUtils;
+import com.example.hazem.sunshineweatherapp.utilities.SunshineDateUtils;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link LocationResolutionCache} and the geohash bucketing it relies on.
+ */
+public class LocationResolutionCacheTest {
+
+    private static final long NOW = 1500000000000L;
+
+    @Test
+    public void normalizedQueries_shareOneEntry() {
+        LocationResolutionCache cache = new LocationResolutionCache();
+        cache.put("Mountain View, CA 94043", 37.386, -122.084, NOW);
+
+        LocationResolutionCache.Entry entry = cache.get("  mountain   view ,ca 94043 ", NOW);
+
+        assertNotNull(entry);
+        assertEquals(37.386, entry.getLatitude(), 0);
+        assertEquals(-122.084, entry.getLongitude(), 0);
+        assertNull(cache.get("Sunnyvale, CA", NOW));
+    }
+
+    @Test
+    public void entries_expireAfterTtl() {
+        LocationResolutionCache cache = new LocationResolutionCache(SunshineDateUtils.DAY_IN_MILLIS, 8);
+        cache.put("london", 51.5, -0.12, NOW);
+
+        assertNotNull(cache.get("london", NOW + SunshineDateUtils.DAY_IN_MILLIS - 1));
+        assertNull(cache.get("london", NOW + SunshineDateUtils.DAY_IN_MILLIS));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void leastRecentlyUsedEntry_isEvicted() {
+        LocationResolutionCache cache = new LocationResolutionCache(LocationResolutionCache.DEFAULT_TTL_MILLIS, 2);
+        cache.put("cairo", 30.04, 31.24, NOW);
+        cache.put("giza", 30.01, 31.21, NOW + 1);
+
+        /* Touch cairo so giza becomes the least recently used entry */
+        cache.get("cairo", NOW + 2);
+        cache.put("alexandria", 31.2, 29.92, NOW + 3);
+
+        assertNotNull(cache.get("cairo", NOW + 4));
+        assertNull(cache.get("giza", NOW + 4));
+        assertNotNull(cache.get("alexandria", NOW + 4));
+    }
+
+    @Test
+    public void serializedCache_restoresEntries() {
+        LocationResolutionCache cache = new LocationResolutionCache();
+        cache.put("paris", 48.8566, 2.3522, NOW);
+        cache.put("berlin", 52.52, 13.405, NOW + 1);
+
+        LocationResolutionCache restored = new LocationResolutionCache();
+        restored.restore(cache.toStringSet());
+
+        assertEquals(2, restored.size());
+        assertEquals(48.8566, restored.get("paris", NOW).getLatitude(), 0);
+        assertEquals(cache.get("berlin", NOW).getGeohash(), restored.get("berlin", NOW).getGeohash());
+    }
+
+    @Test
+    public void restoredCache_keepsTheOrderOfUse() {
+        LocationResolutionCache cache = new LocationResolutionCache(
+                LocationResolutionCache.DEFAULT_TTL_MILLIS, 2);
+        cache.put("cairo", 30.04, 31.24, NOW);
+        cache.put("giza", 30.01, 31.21, NOW + 1);
+        /* Resolved first but used last */
+        cache.get("cairo", NOW + 2);
+
+        LocationResolutionCache restored = new LocationResolutionCache(
+                LocationResolutionCache.DEFAULT_TTL_MILLIS, 2);
+        restored.restore(cache.toStringSet());
+        restored.put("alexandria", 31.2, 29.92, NOW + 3);
+
+        assertNotNull(restored.get("cairo", NOW + 4));
+        assertNull(restored.get("giza", NOW + 4));
+    }
+
+    @Test
+    public void entriesSavedWithoutLastUse_restoreByResolutionTime() {
+        LocationResolutionCache restored = new LocationResolutionCache(
+                LocationResolutionCache.DEFAULT_TTL_MILLIS, 2);
+        Set<String> serialized = new HashSet<>();
+        serialized.add("cairo\t30.04\t31.24\t" + NOW);
+        serialized.add("giza\t30.01\t31.21\t" + (NOW + 1));
+        restored.restore(serialized);
+        restored.put("alexandria", 31.2, 29.92, NOW + 2);
+
+        assertNull(restored.get("cairo", NOW + 3));
+        assertNotNull(restored.get("giza", NOW + 3));
+    }
+
+    @Test
+    public void takeChanged_reportsPutsHitsAndExpiries() {
+        LocationResolutionCache cache = new LocationResolutionCache(SunshineDateUtils.DAY_IN_MILLIS, 8);
+        assertFalse(cache.takeChanged());
+
+        cache.put("london", 51.5, -0.12, NOW);
+        assertTrue(cache.takeChanged());
+        assertFalse(cache.takeChanged());
+
+        /* A miss changes nothing */
+        cache.get("paris", NOW);
+        assertFalse(cache.takeChanged());
+
+        /* A hit changes the recency */
+        cache.get("london", NOW + 1);
+        assertTrue(cache.takeChanged());
+
+        /* An expiry removes the entry */
+        cache.get("london", NOW + SunshineDateUtils.DAY_IN_MILLIS);
+        assertTrue(cache.takeChanged());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void geohash_matchesReferenceEncoding() {
+        assertEquals("u4pruydqqvj", GeohashUtils.encode(57.64911, 10.40744, 11));
+
+        double[] center = GeohashUtils.decodeCenter("u4pruydqqvj");
+        assertEquals(57.64911, center[0], 0.0001);
+        assertEquals(10.40744, center[1], 0.0001);
+    }
+
+    @Test
+    public void nearbyLocations_shareForecastBucket() {
+        /* Two points a few hundred meters apart in the same cell */
+        double[] first = GeohashUtils.getForecastBucketCenter(37.3860, -122.0838);
+        double[] second = GeohashUtils.getForecastBucketCenter(37.3875, -122.0820);
+        assertEquals(first[0], second[0], 0);
+        assertEquals(first[1], second[1], 0);
+
+        /* A different city lands in a different bucket */
+        double[] far = GeohashUtils.getForecastBucketCenter(37.7749, -122.4194);
+        assertTrue(first[0] != far[0] || first[1] != far[1]);
+
+        LocationResolutionCache cache = new LocationResolutionCache();
+        cache.put("a", 37.3860, -122.0838, NOW);
+        cache.put("b", 37.3875, -122.0820, NOW);
+        assertEquals(cache.get("a", NOW).getGeohash(), cache.get("b", NOW).getGeohash());
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.hazem.sunshineweatherapp.data;
+
+import com.example.hazem.sunshineweatherapp.utilities.SunshineDateUtils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link PrefetchCache}.
+ */
+public class PrefetchCacheTest {
+
+    private static final long DAY = SunshineDateUtils.DAY_IN_MILLIS;
+
+    @Test
+    public void leastRecentlyUsedEntry_isEvicted() {
+        PrefetchCache<String> cache = new PrefetchCache<>(2);
+        int generation = cache.getGeneration();
+        cache.put(0, "monday", generation);
+        cache.put(DAY, "tuesday", generation);
+
+        /* Touch monday so tuesday becomes the least recently used entry */
+        cache.get(0);
+        cache.put(2 * DAY, "wednesday", generation);
+
+        assertEquals(2, cache.size());
+        assertEquals("monday", cache.get(0));
+        assertNull(cache.get(DAY));
+        assertEquals("wednesday", cache.get(2 * DAY));
+    }
+
+    @Test
+    public void contains_doesNotCountOrTouchEntries() {
+        PrefetchCache<String> cache = new PrefetchCache<>(2);
+        int generation = cache.getGeneration();
+        cache.put(0, "monday", generation);
+        cache.put(DAY, "tuesday", generation);
+
+        assertTrue(cache.contains(0));
+        assertFalse(cache.contains(2 * DAY));
+        assertEquals(0, cache.getHitCount() + cache.getMissCount());
+
+        /* Monday is still the least recently used entry */
+        cache.put(2 * DAY, "wednesday", generation);
+        assertFalse(cache.contains(0));
+    }
+
+    @Test
+    public void invalidate_dropsEntriesAndPrefetchesStartedBefore() {
+        PrefetchCache<String> cache = new PrefetchCache<>(4);
+        int before = cache.getGeneration();
+        assertTrue(cache.put(0, "monday", before));
+
+        /* A sync changes the forecast while a prefetch is still reading the old one */
+        cache.invalidate();
+        assertFalse(cache.put(DAY, "stale tuesday", before));
+
+        assertEquals(0, cache.size());
+        assertNull(cache.get(0));
+        assertNull(cache.get(DAY));
+
+        assertTrue(cache.put(DAY, "tuesday", cache.getGeneration()));
+        assertEquals("tuesday", cache.get(DAY));
+    }
+
+    @Test
+    public void hitRate_countsLookups() {
+        PrefetchCache<String> cache = new PrefetchCache<>(4);
+        assertEquals(0, cache.getHitRate(), 0);
+
+        cache.put(0, "monday", cache.getGeneration());
+        cache.get(0);
+        cache.get(0);
+        cache.get(0);
+        cache.get(DAY);
+
+        assertEquals(3, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(0.75, cache.getHitRate(), 1e-9);
+    }
+}
@@ -0,0 +1,182 @@
+package com.example.hazem.sunshineweatherapp.recyclerViewPack;
+
+import com.example.hazem.sunshineweatherapp.data.ForecastPage;
+import com.example.hazem.sunshineweatherapp.utilities.SunshineDateUtils;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link ForecastPageWindow}, run against an in-memory table instead of
+ * WeatherProvider.
+ */
+public class ForecastPageWindowTest {
+
+    private static final int ROWS = 50000;
+    private static final int PAGE_SIZE = 30;
+    private static final int MAX_PAGES = 5;
+    private static final int PREFETCH_DISTANCE = 30;
+
+    private FakeLoader mLoader;
+    private ForecastPageWindow mWindow;
+
+    /* A sorted in-memory weather table that counts how it is queried */
+    private static class FakeLoader implements ForecastPageWindow.PageLoader {
+        final long[] dates = new long[ROWS];
+        final double[] maxTemps = new double[ROWS];
+        int count = ROWS;
+        int keysetLoads;
+        int offsetLoads;
+
+        FakeLoader() {
+            for (int i = 0; i < ROWS; i++) {
+                dates[i] = i * SunshineDateUtils.DAY_IN_MILLIS;
+                maxTemps[i] = i % 40;
+            }
+        }
+
+        /* Like a sync dropping the day that has passed */
+        void deleteFirstRow() {
+            count--;
+            System.arraycopy(dates, 1, dates, 0, count);
+            System.arraycopy(maxTemps, 1, maxTemps, 0, count);
+        }
+
+        @Override
+        public int loadCount() {
+            return count;
+        }
+
+        @Override
+        public ForecastPage loadPageAfter(long afterDate, int size) {
+            keysetLoads++;
+            int start = Arrays.binarySearch(dates, 0, count, afterDate);
+            start = start >= 0 ? start + 1 : -start - 1;
+            return page(start, size);
+        }
+
+        @Override
+        public ForecastPage loadPageAt(int offset, int size) {
+            offsetLoads++;
+            return page(offset, size);
+        }
+
+        private ForecastPage page(int start, int size) {
+            int rows = Math.max(0, Math.min(size, count - start));
+            long[] pageDates = new long[size];
+            double[] pageMax = new double[size];
+            double[] pageMin = new double[size];
+            int[] pageIds = new int[size];
+            for (int i = 0; i < rows; i++) {
+                pageDates[i] = dates[start + i];
+                pageMax[i] = maxTemps[start + i];
+                pageMin[i] = maxTemps[start + i] - 5;
+                pageIds[i] = 800;
+            }
+            return new ForecastPage(pageDates, pageMax, pageMin, pageIds, rows);
+        }
+    }
+
+    @Before
+    public void setUp() {
+        mLoader = new FakeLoader();
+        mWindow = new ForecastPageWindow(PAGE_SIZE, MAX_PAGES, PREFETCH_DISTANCE);
+        mWindow.setTotalCount(mLoader.loadCount());
+    }
+
+    private void loadAll() {
+        ForecastPageWindow.PageRequest request;
+        while ((request = mWindow.nextRequest()) != null) {
+            mWindow.onPageLoaded(request, request.load(mLoader));
+        }
+    }
+
+    @Test
+    public void scrollingThroughAllRows_keepsMemoryBoundedByWindow() {
+        Runtime runtime = Runtime.getRuntime();
+        int maxLoadedPages = 0;
+
+        for (int position = 0; position < ROWS; position++) {
+            mWindow.onPositionAccessed(position);
+            loadAll();
+
+            ForecastPage page = mWindow.getPageForPosition(position);
+            assertNotNull("position " + position + " should be loaded", page);
+            assertEquals(mLoader.dates[position], page.getDate(mWindow.getRowInPage(position)));
+
+            maxLoadedPages = Math.max(maxLoadedPages, mWindow.getLoadedPageCount());
+        }
+
+        assertTrue(maxLoadedPages <= MAX_PAGES);
+        /* Scrolling forward always knows the previous page, so offsets are never needed */
+        assertEquals(0, mLoader.offsetLoads);
+        System.out.println("ForecastPageWindow: " + ROWS + " rows, " + mLoader.keysetLoads
+                + " page loads, at most " + maxLoadedPages + " pages in memory, heap "
+                + (runtime.totalMemory() - runtime.freeMemory()) / 1024 + "KB");
+    }
+
+    @Test
+    public void jumpingToUnloadedPosition_fallsBackToOffsetAndShowsPlaceholders() {
+        mWindow.onPositionAccessed(0);
+        loadAll();
+
+        int farPosition = 25000;
+        assertNull(mWindow.getPageForPosition(farPosition));
+
+        mWindow.onPositionAccessed(farPosition);
+        loadAll();
+
+        assertEquals(mLoader.dates[farPosition],
+                mWindow.getPageForPosition(farPosition).getDate(mWindow.getRowInPage(farPosition)));
+        assertTrue(mLoader.offsetLoads > 0);
+        assertTrue(mWindow.getLoadedPageCount() <= MAX_PAGES);
+    }
+
+    @Test
+    public void refreshAfterSingleDayChange_rebindsOnlyThatRow() {
+        mWindow.onPositionAccessed(10);
+        loadAll();
+
+        mLoader.maxTemps[12] = 99;
+        mWindow.invalidate();
+
+        int[] changed = new int[0];
+        ForecastPageWindow.PageRequest request;
+        while ((request = mWindow.nextRequest()) != null) {
+            int[] positions = mWindow.onPageLoaded(request, request.load(mLoader));
+            int[] merged = Arrays.copyOf(changed, changed.length + positions.length);
+            System.arraycopy(positions, 0, merged, changed.length, positions.length);
+            changed = merged;
+        }
+
+        assertEquals(1, changed.length);
+        assertEquals(12, changed[0]);
+    }
+
+    @Test
+    public void refreshAfterDeletionAtTheFront_showsEveryRowOnce() {
+        int position = 5 * PAGE_SIZE + 10;
+        mWindow.onPositionAccessed(position);
+        loadAll();
+
+        mLoader.deleteFirstRow();
+        mWindow.setTotalCount(mLoader.loadCount());
+        mWindow.invalidate();
+        loadAll();
+
+        /* Every loaded row moved up by one, none repeated, none missing */
+        int loaded = 0;
+        for (int i = 0; i < mLoader.count; i++) {
+            ForecastPage page = mWindow.getPageForPosition(i);
+            if (page != null) {
+                assertEquals("position " + i, mLoader.dates[i], page.getDate(mWindow.getRowInPage(i)));
+                loaded++;
+            }
+        }
+        assertEquals(mWindow.getLoadedPageCount() * PAGE_SIZE, loaded);
+    }
+}
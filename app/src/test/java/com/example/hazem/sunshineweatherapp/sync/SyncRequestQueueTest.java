@@ -0,0 +1,244 @@
+package com.example.hazem.sunshineweatherapp.sync;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link SyncRequestQueue}, driven by a virtual clock.
+ */
+public class SyncRequestQueueTest {
+
+    private static final long DEBOUNCE = SyncRequestQueue.DEBOUNCE_MILLIS;
+
+    /* Runs posted tasks when the virtual time passes their due time, in order */
+    private static class VirtualScheduler implements SyncRequestQueue.Scheduler {
+        private static class Task implements Comparable<Task> {
+            final long dueMillis;
+            final long sequence;
+            final Runnable runnable;
+
+            Task(long dueMillis, long sequence, Runnable runnable) {
+                this.dueMillis = dueMillis;
+                this.sequence = sequence;
+                this.runnable = runnable;
+            }
+
+            @Override
+            public int compareTo(Task other) {
+                if (dueMillis != other.dueMillis) {
+                    return dueMillis < other.dueMillis ? -1 : 1;
+                }
+                return Long.compare(sequence, other.sequence);
+            }
+        }
+
+        private final PriorityQueue<Task> mTasks = new PriorityQueue<>();
+        private long mNow;
+        private long mSequence;
+
+        @Override
+        public long uptimeMillis() {
+            return mNow;
+        }
+
+        @Override
+        public void postDelayed(Runnable task, long delayMillis) {
+            mTasks.add(new Task(mNow + delayMillis, mSequence++, task));
+        }
+
+        void advance(long millis) {
+            long end = mNow + millis;
+            while (!mTasks.isEmpty() && mTasks.peek().dueMillis <= end) {
+                Task task = mTasks.poll();
+                mNow = task.dueMillis;
+                task.runnable.run();
+            }
+            mNow = end;
+        }
+
+        int getPostedCount() {
+            return mTasks.size();
+        }
+    }
+
+    private VirtualScheduler mScheduler;
+    private List<SyncRequestQueue.Token> mStarted;
+    private SyncRequestQueue mQueue;
+
+    @Before
+    public void setUp() {
+        mScheduler = new VirtualScheduler();
+        mStarted = new ArrayList<>();
+        mQueue = new SyncRequestQueue(mScheduler, new SyncRequestQueue.Syncer() {
+            @Override
+            public void startSync(SyncRequestQueue.Token token) {
+                mStarted.add(token);
+            }
+        });
+    }
+
+    /* Commits a fake write, returns whether it ran */
+    private static boolean write(SyncRequestQueue.Token token, final List<String> written) {
+        final String value = token.getLocation();
+        return token.commit(new Runnable() {
+            @Override
+            public void run() {
+                written.add(value);
+            }
+        });
+    }
+
+    @Test
+    public void burst_syncsTheLastLocationOnce() {
+        mQueue.request("London");
+        mScheduler.advance(100);
+        mQueue.request("Paris");
+        mScheduler.advance(100);
+        mQueue.request("Cairo");
+
+        mScheduler.advance(DEBOUNCE - 1);
+        assertTrue(mStarted.isEmpty());
+        assertTrue(mQueue.isPending());
+
+        mScheduler.advance(1);
+        assertEquals(1, mStarted.size());
+        assertEquals("Cairo", mStarted.get(0).getLocation());
+        assertFalse(mQueue.isPending());
+
+        mScheduler.advance(10 * DEBOUNCE);
+        assertEquals(1, mStarted.size());
+    }
+
+    @Test
+    public void everyRequest_restartsTheQuietPeriod() {
+        for (int i = 0; i < 10; i++) {
+            mQueue.request(i % 2 == 0 ? "London" : "Paris");
+            mScheduler.advance(DEBOUNCE / 2);
+        }
+        assertTrue(mStarted.isEmpty());
+        /* Checks are rescheduled rather than piled up */
+        assertEquals(1, mScheduler.getPostedCount());
+
+        mScheduler.advance(DEBOUNCE / 2);
+        assertEquals(1, mStarted.size());
+        assertEquals("Paris", mStarted.get(0).getLocation());
+    }
+
+    @Test
+    public void newLocation_cancelsTheSyncInFlight() {
+        mQueue.request("London");
+        mScheduler.advance(DEBOUNCE);
+        SyncRequestQueue.Token london = mStarted.get(0);
+        assertFalse(london.isCancelled());
+
+        mQueue.request("Paris");
+        assertTrue(london.isCancelled());
+
+        mScheduler.advance(DEBOUNCE);
+        SyncRequestQueue.Token paris = mStarted.get(1);
+        assertFalse(paris.isCancelled());
+        assertTrue(paris.getGeneration() > london.getGeneration());
+    }
+
+    @Test
+    public void staleResults_areNeverWrittenOverNewerOnes() {
+        List<String> written = new ArrayList<>();
+
+        mQueue.request("London");
+        mScheduler.advance(DEBOUNCE);
+        SyncRequestQueue.Token london = mStarted.get(0);
+
+        /* Paris is requested and synced while London is still downloading */
+        mQueue.request("Paris");
+        mScheduler.advance(DEBOUNCE);
+        SyncRequestQueue.Token paris = mStarted.get(1);
+        assertTrue(write(paris, written));
+        paris.finish();
+
+        /* London finishes downloading last */
+        assertFalse(write(london, written));
+        london.finish();
+
+        assertEquals(1, written.size());
+        assertEquals("Paris", written.get(0));
+    }
+
+    @Test
+    public void goingBackToALocation_doesNotReviveItsOldSync() {
+        mQueue.request("London");
+        mScheduler.advance(DEBOUNCE);
+        SyncRequestQueue.Token firstLondon = mStarted.get(0);
+
+        mQueue.request("Paris");
+        mQueue.request("London");
+        assertTrue(firstLondon.isCancelled());
+
+        mScheduler.advance(DEBOUNCE);
+        assertEquals(2, mStarted.size());
+        assertEquals("London", mStarted.get(1).getLocation());
+        assertFalse(mStarted.get(1).isCancelled());
+    }
+
+    @Test
+    public void locationInFlight_isNotSyncedTwice() {
+        mQueue.request("London");
+        mScheduler.advance(DEBOUNCE);
+        SyncRequestQueue.Token london = mStarted.get(0);
+
+        mQueue.request("London");
+        mScheduler.advance(DEBOUNCE);
+        assertEquals(1, mStarted.size());
+        assertFalse(london.isCancelled());
+
+        /* Once it's done, the same location can be synced again */
+        london.finish();
+        mQueue.request("London");
+        mScheduler.advance(DEBOUNCE);
+        assertEquals(2, mStarted.size());
+    }
+
+    @Test
+    public void periodicSync_isSupersededLikeAnyOther() {
+        SyncRequestQueue.Token periodic = mQueue.tokenFor("London");
+        assertFalse(periodic.isCancelled());
+        assertFalse(mQueue.tokenFor("London").isCancelled());
+
+        mQueue.request("Paris");
+        assertTrue(periodic.isCancelled());
+        assertFalse(mQueue.tokenFor("Paris").isCancelled());
+    }
+
+    @Test
+    public void periodicSync_ofANewerPreference_supersedesTheRequest() {
+        mQueue.request("London");
+        mScheduler.advance(DEBOUNCE);
+        SyncRequestQueue.Token london = mStarted.get(0);
+
+        /* The preference was changed without going through the queue */
+        SyncRequestQueue.Token periodic = mQueue.tokenFor("Paris");
+        assertTrue(london.isCancelled());
+        assertFalse(periodic.isCancelled());
+    }
+
+    @Test
+    public void restoredToken_matchesTheStartedOne() {
+        mQueue.request("London");
+        mScheduler.advance(DEBOUNCE);
+        SyncRequestQueue.Token started = mStarted.get(0);
+
+        SyncRequestQueue.Token restored =
+                mQueue.restoreToken(started.getGeneration(), started.getLocation());
+        assertFalse(restored.isCancelled());
+
+        mQueue.request("Paris");
+        assertTrue(restored.isCancelled());
+        /* A queued sync superseded before it even started */
+        assertTrue(mQueue.restoreToken(started.getGeneration(), "London").isCancelled());
+    }
+}
@@ -0,0 +1,186 @@
+package com.example.hazem.sunshineweatherapp.sync;
+
+import com.example.hazem.sunshineweatherapp.utilities.SunshineDateUtils;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link WeatherAlertEngine}, including a rough benchmark of 1,000 rules
+ * against 16 days of forecast for 100 locations.
+ */
+public class WeatherAlertEngineTest {
+
+    private static final long TODAY = SunshineDateUtils.normalizeDate(System.currentTimeMillis());
+    private static final long DAY = SunshineDateUtils.DAY_IN_MILLIS;
+
+    @Test
+    public void thresholdRules_fireOnlyAboveOrBelowThreshold() {
+        WeatherAlertEngine engine = new WeatherAlertEngine(new WeatherAlertRule[]{
+                WeatherAlertRule.maxTempAbove("hot", 30),
+                WeatherAlertRule.maxTempAbove("very_hot", 40),
+                WeatherAlertRule.minTempBelow("frost", 0)
+        });
+
+        List<WeatherAlertEngine.Alert> alerts = engine.evaluate(
+                new long[]{TODAY, TODAY + DAY},
+                new int[]{800, 800},
+                new double[]{35, 20},
+                new double[]{5, -2},
+                new double[]{0, 0},
+                2, TODAY);
+
+        assertEquals(2, alerts.size());
+        assertEquals("hot", alerts.get(0).getRule().getId());
+        assertEquals(TODAY, alerts.get(0).getDate());
+        assertEquals("frost", alerts.get(1).getRule().getId());
+        assertEquals(TODAY + DAY, alerts.get(1).getDate());
+    }
+
+    @Test
+    public void stormRule_respectsLookAheadWindow() {
+        WeatherAlertEngine engine = new WeatherAlertEngine(new WeatherAlertRule[]{
+                WeatherAlertRule.stormWithin("storm_48h", 48)
+        });
+
+        List<WeatherAlertEngine.Alert> alerts = engine.evaluate(
+                new long[]{TODAY, TODAY + DAY, TODAY + 2 * DAY, TODAY + 3 * DAY},
+                new int[]{800, 211, 962, 211},
+                new double[]{20, 20, 20, 20},
+                new double[]{10, 10, 10, 10},
+                new double[]{0, 0, 0, 0},
+                4, TODAY);
+
+        assertEquals(2, alerts.size());
+        assertEquals(TODAY + DAY, alerts.get(0).getDate());
+        assertEquals(TODAY + 2 * DAY, alerts.get(1).getDate());
+    }
+
+    @Test
+    public void pressureDrop_isReadFromTheStoredTrend() {
+        WeatherAlertEngine engine = new WeatherAlertEngine(new WeatherAlertRule[]{
+                WeatherAlertRule.pressureDropOver("drop", 10)
+        });
+
+        /* A delta holding one changed day, whose trend was computed from the held day before */
+        List<WeatherAlertEngine.Alert> alerts = engine.evaluate(new long[]{TODAY + 2 * DAY},
+                new int[]{800}, new double[]{20}, new double[]{10}, new double[]{-15}, 1, TODAY);
+
+        assertEquals(1, alerts.size());
+        assertEquals(TODAY + 2 * DAY, alerts.get(0).getDate());
+        assertEquals(15, alerts.get(0).getValue(), 0.0001);
+
+        /* Nothing is carried over from the previous call */
+        assertTrue(engine.evaluate(new long[]{TODAY + 3 * DAY}, new int[]{800},
+                new double[]{20}, new double[]{10}, new double[]{-5}, 1, TODAY).isEmpty());
+    }
+
+    @Test
+    public void pastDays_neverFire() {
+        WeatherAlertEngine engine = new WeatherAlertEngine(new WeatherAlertRule[]{
+                WeatherAlertRule.maxTempAbove("hot", 30),
+                WeatherAlertRule.stormWithin("storm_48h", 48),
+                WeatherAlertRule.pressureDropOver("drop", 10)
+        });
+
+        for (int sync = 0; sync < 2; sync++) {
+            List<WeatherAlertEngine.Alert> alerts = engine.evaluate(
+                    new long[]{TODAY - DAY, TODAY},
+                    new int[]{211, 800},
+                    new double[]{35, 20},
+                    new double[]{10, 10},
+                    new double[]{-20, 0},
+                    2, TODAY);
+            engine.pruneFiredBefore(TODAY);
+
+            assertTrue(alerts.isEmpty());
+        }
+    }
+
+    @Test
+    public void alerts_areDeduplicatedByRuleAndDate() {
+        WeatherAlertEngine engine = new WeatherAlertEngine(new WeatherAlertRule[]{
+                WeatherAlertRule.maxTempAbove("hot", 30)
+        });
+
+        assertEquals(1, engine.evaluate(new long[]{TODAY}, new int[]{800}, new double[]{35},
+                new double[]{10}, new double[]{0}, 1, TODAY).size());
+        assertEquals(0, engine.evaluate(new long[]{TODAY}, new int[]{800}, new double[]{36},
+                new double[]{10}, new double[]{0}, 1, TODAY).size());
+
+        /* Restoring the fired keys into a fresh engine keeps the de-duplication */
+        WeatherAlertEngine restored = new WeatherAlertEngine(new WeatherAlertRule[]{
+                WeatherAlertRule.maxTempAbove("hot", 30)
+        });
+        restored.restoreFiredKeys(engine.getFiredKeys());
+        assertEquals(0, restored.evaluate(new long[]{TODAY}, new int[]{800}, new double[]{35},
+                new double[]{10}, new double[]{0}, 1, TODAY).size());
+
+        restored.pruneFiredBefore(TODAY + DAY);
+        assertTrue(restored.getFiredKeys().isEmpty());
+    }
+
+    @Test
+    public void benchmark_thousandRulesOverHundredLocations() {
+        final int ruleCount = 1000;
+        final int days = 16;
+        final int locations = 100;
+
+        Random random = new Random(26);
+        WeatherAlertRule[] rules = new WeatherAlertRule[ruleCount];
+        for (int i = 0; i < ruleCount; i++) {
+            switch (i % 4) {
+                case 0:
+                    rules[i] = WeatherAlertRule.maxTempAbove("max" + i, 20 + random.nextInt(25));
+                    break;
+                case 1:
+                    rules[i] = WeatherAlertRule.minTempBelow("min" + i, -10 + random.nextInt(15));
+                    break;
+                case 2:
+                    rules[i] = WeatherAlertRule.stormWithin("storm" + i, 24 + random.nextInt(72));
+                    break;
+                default:
+                    rules[i] = WeatherAlertRule.pressureDropOver("drop" + i, 2 + random.nextInt(20));
+                    break;
+            }
+        }
+
+        long[] dates = new long[days];
+        int[] weatherIds = new int[days];
+        double[] maxTemps = new double[days];
+        double[] minTemps = new double[days];
+        double[] pressureTrends = new double[days];
+
+        long compileStart = System.nanoTime();
+        WeatherAlertEngine[] engines = new WeatherAlertEngine[locations];
+        for (int location = 0; location < locations; location++) {
+            engines[location] = new WeatherAlertEngine(rules);
+        }
+        long compileNanos = System.nanoTime() - compileStart;
+
+        long evaluateNanos = 0;
+        int fired = 0;
+        for (int location = 0; location < locations; location++) {
+            for (int day = 0; day < days; day++) {
+                dates[day] = TODAY + day * DAY;
+                weatherIds[day] = random.nextInt(10) == 0 ? 211 : 800;
+                maxTemps[day] = 10 + random.nextDouble() * 30;
+                minTemps[day] = maxTemps[day] - 5 - random.nextDouble() * 10;
+                pressureTrends[day] = -20 + random.nextDouble() * 30;
+            }
+            long start = System.nanoTime();
+            fired += engines[location].evaluate(dates, weatherIds, maxTemps, minTemps, pressureTrends,
+                    days, TODAY).size();
+            evaluateNanos += System.nanoTime() - start;
+        }
+
+        System.out.println("WeatherAlertEngine: " + ruleCount + " rules x " + days + " days x "
+                + locations + " locations, compile " + compileNanos / 1000 + "us, evaluate "
+                + evaluateNanos / 1000 + "us, " + fired + " alerts");
+        assertTrue(fired > 0);
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.hazem.sunshineweatherapp.utilities;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link ForecastEnricher}.
+ */
+public class ForecastEnricherTest {
+
+    private static final long FIRST_DATE = 1500000000000L
+            / SunshineDateUtils.DAY_IN_MILLIS * SunshineDateUtils.DAY_IN_MILLIS;
+
+    /* Columns of generated days, as the sync hands them to the enricher */
+    private static class Columns implements SyntheticForecastGenerator.DailySink {
+        final double[] minTemps;
+        final double[] maxTemps;
+        final double[] humidities;
+        final double[] pressures;
+        final double[] windSpeeds;
+        int count;
+
+        Columns(int capacity) {
+            minTemps = new double[capacity];
+            maxTemps = new double[capacity];
+            humidities = new double[capacity];
+            pressures = new double[capacity];
+            windSpeeds = new double[capacity];
+        }
+
+        @Override
+        public void beginLocation(int location, String name, double latitude, double longitude) {
+        }
+
+        @Override
+        public void addDay(long date, int weatherId, double minTemp, double maxTemp,
+                           double humidity, double pressure, double windSpeed,
+                           double windDirection) {
+            minTemps[count] = minTemp;
+            maxTemps[count] = maxTemp;
+            humidities[count] = humidity;
+            pressures[count] = pressure;
+            windSpeeds[count] = windSpeed;
+            count++;
+        }
+
+        @Override
+        public void endLocation() {
+        }
+    }
+
+    private static double[] enrichOne(double minTemp, double maxTemp, double humidity,
+                                      double windSpeed) {
+        double[] apparentTemp = new double[1];
+        double[] dewPoint = new double[1];
+        double[] pressureTrend = new double[1];
+        double[] comfortIndex = new double[1];
+        ForecastEnricher.enrich(1, Double.NaN, new double[]{minTemp}, new double[]{maxTemp},
+                new double[]{humidity}, new double[]{1013}, new double[]{windSpeed},
+                apparentTemp, dewPoint, pressureTrend, comfortIndex);
+        return new double[]{apparentTemp[0], dewPoint[0], pressureTrend[0], comfortIndex[0]};
+    }
+
+    @Test
+    public void dewPoint_matchesReferenceValues() {
+        assertEquals(9.3, enrichOne(20, 20, 50, 0)[1], 0.1);
+        assertEquals(20, enrichOne(20, 20, 100, 0)[1], 1e-9);
+        assertEquals(23.9, enrichOne(30, 30, 70, 0)[1], 0.1);
+        assertEquals(-9.2, enrichOne(0, 0, 50, 0)[1], 0.1);
+    }
+
+    @Test
+    public void apparentTemp_risesWithHumidityAndFallsWithWind() {
+        /* 30°C at 70% in still air, from the Bureau of Meteorology's table */
+        assertEquals(35.8, enrichOne(30, 30, 70, 0)[0], 0.2);
+
+        assertTrue(enrichOne(25, 25, 90, 0)[0] > enrichOne(25, 25, 30, 0)[0]);
+        assertTrue(enrichOne(10, 10, 50, 40)[0] < enrichOne(10, 10, 50, 0)[0] - 5);
+        /* A bone dry reading doesn't produce -Infinity */
+        assertFalse(Double.isInfinite(enrichOne(20, 20, 0, 0)[1]));
+    }
+
+    @Test
+    public void comfortIndex_peaksInMildWeather() {
+        double mild = enrichOne(20, 26, 40, 5)[3];
+        double muggy = enrichOne(28, 34, 85, 5)[3];
+        double freezing = enrichOne(-12, -4, 60, 35)[3];
+
+        assertTrue(mild > 80);
+        assertTrue(muggy < mild);
+        assertEquals(0, freezing, 0);
+        assertTrue(mild <= 100);
+    }
+
+    @Test
+    public void pressureTrend_comparesWithTheDayBefore() {
+        double[] pressures = {1010, 1004, 1004.5};
+        double[] trends = new double[3];
+        double[] ignored = new double[3];
+        double[] temps = {10, 10, 10};
+        double[] humidities = {50, 50, 50};
+
+        ForecastEnricher.enrich(3, Double.NaN, temps, temps, humidities, pressures, temps,
+                ignored, ignored.clone(), trends, ignored.clone());
+        assertArrayEquals(new double[]{0, -6, 0.5}, trends, 1e-9);
+
+        ForecastEnricher.enrich(3, 1012, temps, temps, humidities, pressures, temps,
+                ignored, ignored.clone(), trends, ignored.clone());
+        assertEquals(-2, trends[0], 1e-9);
+    }
+
+    @Test
+    public void millionRows_enrichInOnePass() throws IOException {
+        final int rows = 1000000;
+        Columns columns = new Columns(rows);
+        new SyntheticForecastGenerator(7).generateDaily(1000, 1000, FIRST_DATE, columns);
+        assertEquals(rows, columns.count);
+
+        double[] apparentTemps = new double[rows];
+        double[] dewPoints = new double[rows];
+        double[] pressureTrends = new double[rows];
+        double[] comfortIndexes = new double[rows];
+
+        /* Repeated so the JIT has compiled the loop, the fastest run is reported */
+        long bestNanos = Long.MAX_VALUE;
+        for (int run = 0; run < 8; run++) {
+            long start = System.nanoTime();
+            ForecastEnricher.enrich(rows, Double.NaN, columns.minTemps, columns.maxTemps,
+                    columns.humidities, columns.pressures, columns.windSpeeds, apparentTemps,
+                    dewPoints, pressureTrends, comfortIndexes);
+            bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+        }
+        System.out.println(String.format("Enriched %d rows in %.1fms, %.1fns per row",
+                rows, bestNanos / 1e6, bestNanos / (double) rows));
+
+        for (int i = 0; i < rows; i++) {
+            double mean = (columns.minTemps[i] + columns.maxTemps[i]) / 2;
+            assertTrue(dewPoints[i] <= mean + 1e-9);
+            assertTrue(comfortIndexes[i] >= 0 && comfortIndexes[i] <= 100);
+            assertFalse(Double.isNaN(apparentTemps[i]));
+        }
+        assertEquals(columns.pressures[rows - 1] - columns.pressures[rows - 2],
+                pressureTrends[rows - 1], 1e-9);
+    }
+}
@@ -0,0 +1,322 @@
+package com.example.hazem.sunshineweatherapp.utilities;
+
+import com.example.hazem.forecastserver.ForecastServer;
+import com.example.hazem.forecastserver.ServerConfig;
+
+import org.junit.After;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link HedgedRequestExecutor}, against fake calls whose latencies are
+ * set by a fake clock. The benchmark against the stand-in weather server with heavy-tailed
+ * latency only reports what it measures, and is run by hand.
+ */
+public class HedgedRequestExecutorTest {
+
+    private static final int REQUESTS = 300;
+
+    private ForecastServer mServer;
+
+    @After
+    public void tearDown() {
+        if (mServer != null) {
+            mServer.stop();
+        }
+    }
+
+    /* Stands in for System.nanoTime, moved on by the calls instead of by time passing */
+    private static class FakeClock implements HedgedRequestExecutor.Clock {
+        final AtomicLong nanos = new AtomicLong();
+
+        @Override
+        public long nanoTime() {
+            return nanos.get();
+        }
+    }
+
+    /*
+     * A call that answers after a delay, or fails, and records whether it was cancelled. With a
+     * clock, answering moves the clock on by the latency the executor should measure.
+     */
+    private static class FakeCall implements HedgedRequestExecutor.Call {
+        final long delayMillis;
+        final boolean fails;
+        final FakeClock clock;
+        final long latencyMillis;
+        final CountDownLatch cancelled = new CountDownLatch(1);
+
+        FakeCall(long delayMillis, boolean fails) {
+            this(delayMillis, fails, null, 0);
+        }
+
+        FakeCall(long delayMillis, boolean fails, FakeClock clock, long latencyMillis) {
+            this.delayMillis = delayMillis;
+            this.fails = fails;
+            this.clock = clock;
+            this.latencyMillis = latencyMillis;
+        }
+
+        @Override
+        public HedgedRequestExecutor.Response execute() throws IOException {
+            try {
+                if (cancelled.await(delayMillis, TimeUnit.MILLISECONDS)) {
+                    throw new IOException("Cancelled");
+                }
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            if (fails) {
+                throw new IOException("Failed");
+            }
+            if (clock != null) {
+                clock.nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(latencyMillis));
+            }
+            String body = "response after " + delayMillis;
+            return new HedgedRequestExecutor.Response(200, body, body.length());
+        }
+
+        @Override
+        public void cancel() {
+            cancelled.countDown();
+        }
+    }
+
+    /* Hands out the given calls in order */
+    private static class FakeCallFactory implements HedgedRequestExecutor.CallFactory {
+        final FakeCall[] calls;
+        final AtomicInteger next = new AtomicInteger();
+
+        FakeCallFactory(FakeCall... calls) {
+            this.calls = calls;
+        }
+
+        @Override
+        public HedgedRequestExecutor.Call newCall(URL url) {
+            return calls[next.getAndIncrement()];
+        }
+    }
+
+    private static URL url() throws IOException {
+        return new URL("http://localhost/weather");
+    }
+
+    @Test
+    public void slowFirstAttempt_isHedgedAndCancelled() throws Exception {
+        /* Only answers once cancelled, so the response can only come from the hedge */
+        FakeCall slow = new FakeCall(Long.MAX_VALUE, false);
+        FakeCall fast = new FakeCall(10, false);
+        HedgedRequestExecutor executor = new HedgedRequestExecutor(new FakeCallFactory(slow, fast));
+
+        assertEquals("response after 10", executor.execute(url(), url()).getBody());
+        assertTrue(slow.cancelled.await(1, TimeUnit.SECONDS));
+        assertEquals(1, executor.getHedgeCount());
+        assertEquals(1, executor.getHedgeWinCount());
+    }
+
+    @Test
+    public void fastFirstAttempt_isNotHedged() throws Exception {
+        FakeCallFactory factory = new FakeCallFactory(new FakeCall(5, false));
+        HedgedRequestExecutor executor = new HedgedRequestExecutor(factory);
+
+        assertEquals("response after 5", executor.execute(url(), url()).getBody());
+        assertEquals(1, factory.next.get());
+        assertEquals(0, executor.getHedgeCount());
+    }
+
+    @Test
+    public void failedAttempt_fallsBackOnTheOther() throws Exception {
+        HedgedRequestExecutor executor = new HedgedRequestExecutor(new FakeCallFactory(
+                new FakeCall(HedgedRequestExecutor.INITIAL_DELAY_MILLIS + 200, true),
+                new FakeCall(500, false)));
+
+        assertEquals("response after 500", executor.execute(url(), url()).getBody());
+    }
+
+    @Test(expected = IOException.class)
+    public void bothAttemptsFailing_throws() throws Exception {
+        HedgedRequestExecutor executor = new HedgedRequestExecutor(new FakeCallFactory(
+                new FakeCall(HedgedRequestExecutor.INITIAL_DELAY_MILLIS + 100, true),
+                new FakeCall(10, true)));
+
+        executor.execute(url(), url());
+    }
+
+    @Test
+    public void hedgeDelay_followsTheLatencyPercentile() throws Exception {
+        FakeClock clock = new FakeClock();
+        FakeCall[] calls = new FakeCall[20];
+        for (int i = 0; i < calls.length; i++) {
+            calls[i] = new FakeCall(0, false, clock, i < 2 ? 200 : 20);
+        }
+        HedgedRequestExecutor executor =
+                new HedgedRequestExecutor(new FakeCallFactory(calls), clock);
+
+        assertEquals(HedgedRequestExecutor.INITIAL_DELAY_MILLIS, executor.getHedgeDelayMillis());
+        for (int i = 0; i < calls.length; i++) {
+            executor.execute(url(), url());
+        }
+
+        /* The 95th percentile of 2 slow and 18 fast responses is a slow one */
+        assertEquals(200, executor.getHedgeDelayMillis());
+        assertEquals(0, executor.getHedgeCount());
+    }
+
+    @Test
+    public void hedgeDelay_staysWithinItsBounds() throws Exception {
+        FakeClock clock = new FakeClock();
+        FakeCall[] calls = new FakeCall[20];
+        for (int i = 0; i < calls.length; i++) {
+            calls[i] = new FakeCall(0, false, clock, i < 10 ? 1 : 60000);
+        }
+        HedgedRequestExecutor executor =
+                new HedgedRequestExecutor(new FakeCallFactory(calls), clock);
+
+        for (int i = 0; i < 10; i++) {
+            executor.execute(url(), url());
+        }
+        assertEquals(HedgedRequestExecutor.MIN_DELAY_MILLIS, executor.getHedgeDelayMillis());
+
+        for (int i = 10; i < calls.length; i++) {
+            executor.execute(url(), url());
+        }
+        assertEquals(HedgedRequestExecutor.MAX_DELAY_MILLIS, executor.getHedgeDelayMillis());
+    }
+
+    @Test
+    public void slowServer_hedgesNoMoreThanTheBudget() throws Exception {
+        final int requests = 30;
+        final FakeClock clock = new FakeClock();
+        final URL mirror = new URL("http://mirror.localhost/weather");
+        final AtomicInteger learning = new AtomicInteger(20);
+
+        /*
+         * Learn a latency of 1ms, so the delay is the minimum. Then every first attempt takes far
+         * longer than that while the mirror answers at once, so each request hedges if the
+         * budget lets it.
+         */
+        HedgedRequestExecutor executor = new HedgedRequestExecutor(
+                new HedgedRequestExecutor.CallFactory() {
+                    @Override
+                    public HedgedRequestExecutor.Call newCall(URL url) {
+                        boolean slow = learning.get() == 0 && !mirror.equals(url);
+                        return new FakeCall(slow ? 100 : 0, false, clock, 1);
+                    }
+                }, clock);
+
+        while (learning.get() > 0) {
+            executor.execute(url(), mirror);
+            learning.decrementAndGet();
+        }
+        assertEquals(0, executor.getHedgeCount());
+        assertEquals(HedgedRequestExecutor.MIN_DELAY_MILLIS, executor.getHedgeDelayMillis());
+
+        for (int i = 0; i < requests; i++) {
+            executor.execute(url(), mirror);
+        }
+
+        /* The saved up credits, plus a tenth of a hedge earned by each request */
+        long hedges = executor.getHedgeCount();
+        assertTrue(String.valueOf(hedges), hedges >= HedgedRequestExecutor.MAX_HEDGE_CREDITS);
+        assertTrue(String.valueOf(hedges), hedges <= HedgedRequestExecutor.MAX_HEDGE_CREDITS
+                + requests * HedgedRequestExecutor.HEDGE_BUDGET_RATIO);
+        assertEquals(hedges, executor.getHedgeWinCount());
+    }
+
+    @Test
+    public void httpCall_reportsTheStatusAndTheBytesRead() throws Exception {
+        mServer = new ForecastServer(new ServerConfig());
+        mServer.start();
+        URL url = new URL(mServer.getBaseUrl() + "/weather?q=London&mode=json&units=metric&cnt=5");
+
+        HedgedRequestExecutor.Response response =
+                new HedgedRequestExecutor.HttpCallFactory().newCall(url).execute();
+        assertEquals(200, response.getStatus());
+        assertFalse(response.getBody().isEmpty());
+        assertEquals(response.getBody().getBytes("UTF-8").length, response.getByteCount());
+    }
+
+    @Test
+    public void errorStatus_isReportedWhenTheAttemptsFail() throws Exception {
+        mServer = new ForecastServer(new ServerConfig().setErrorRate(1));
+        mServer.start();
+        URL url = new URL(mServer.getBaseUrl() + "/weather?q=London&mode=json&units=metric&cnt=5");
+
+        HedgedRequestExecutor executor =
+                new HedgedRequestExecutor(new HedgedRequestExecutor.HttpCallFactory());
+        try {
+            executor.execute(url, url);
+            fail("The server only answers with errors");
+        } catch (HedgedRequestExecutor.HttpStatusException e) {
+            assertEquals(503, e.getStatus());
+        }
+    }
+
+    private static long percentile(long[] sortedNanos, double percentile) {
+        int index = (int) Math.ceil(percentile / 100 * sortedNanos.length) - 1;
+        return sortedNanos[Math.max(0, index)];
+    }
+
+    private static String report(String name, long[] latencies) {
+        Arrays.sort(latencies);
+        return String.format("%-8s p50 %6.1fms  p99 %7.1fms  max %7.1fms", name,
+                percentile(latencies, 50) / 1e6, percentile(latencies, 99) / 1e6,
+                latencies[latencies.length - 1] / 1e6);
+    }
+
+    @Ignore("Benchmark: wall-clock latencies depend on the machine, run by hand and read the report")
+    @Test
+    public void heavyTailedServer_hedgingCutsTheP99() throws Exception {
+        /* 4ms at best, Pareto tail: p50 ~7ms, p99 ~185ms */
+        mServer = new ForecastServer(new ServerConfig()
+                .setLatency(4, 0)
+                .setLatencyTail(1.2, 2000));
+        mServer.start();
+        URL url = new URL(mServer.getBaseUrl() + "/weather?q=London&mode=json&units=metric&cnt=5");
+
+        HedgedRequestExecutor.CallFactory plain = new HedgedRequestExecutor.HttpCallFactory();
+        long[] before = new long[REQUESTS];
+        for (int i = 0; i < REQUESTS; i++) {
+            long start = System.nanoTime();
+            assertFalse(plain.newCall(url).execute().getBody().isEmpty());
+            before[i] = System.nanoTime() - start;
+        }
+
+        HedgedRequestExecutor executor =
+                new HedgedRequestExecutor(new HedgedRequestExecutor.HttpCallFactory());
+        /* Let the delay adapt before measuring */
+        for (int i = 0; i < HedgedRequestExecutor.LATENCY_WINDOW; i++) {
+            executor.execute(url, url);
+        }
+        long requestsBefore = executor.getRequestCount();
+        long hedgesBefore = executor.getHedgeCount();
+
+        long[] after = new long[REQUESTS];
+        for (int i = 0; i < REQUESTS; i++) {
+            long start = System.nanoTime();
+            assertFalse(executor.execute(url, url).getBody().isEmpty());
+            after[i] = System.nanoTime() - start;
+        }
+        double extraLoad = (executor.getHedgeCount() - hedgesBefore)
+                / (double) (executor.getRequestCount() - requestsBefore);
+
+        System.out.println(report("Direct", before));
+        System.out.println(report("Hedged", after));
+        System.out.println(String.format("Hedge delay %dms, extra load %.1f%%",
+                executor.getHedgeDelayMillis(), 100 * extraLoad));
+
+        /* Bounded by the budget whatever the latencies, with the saved up credits on top */
+        assertTrue(extraLoad <= HedgedRequestExecutor.HEDGE_BUDGET_RATIO
+                + HedgedRequestExecutor.MAX_HEDGE_CREDITS / REQUESTS);
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.hazem.sunshineweatherapp.utilities;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link SyntheticForecastGenerator} and {@link SyntheticForecastJsonSink}.
+ */
+public class SyntheticForecastGeneratorTest {
+
+    private static final long FIRST_DATE = 1500000000000L
+            / SunshineDateUtils.DAY_IN_MILLIS * SunshineDateUtils.DAY_IN_MILLIS;
+
+    /* Keeps every generated day, fine for the few thousand rows these tests generate */
+    private static class CollectingSink implements SyntheticForecastGenerator.DailySink {
+        final List<double[]> days = new ArrayList<>();
+        int locations;
+
+        @Override
+        public void beginLocation(int location, String name, double latitude, double longitude) {
+            locations++;
+        }
+
+        @Override
+        public void addDay(long date, int weatherId, double minTemp, double maxTemp,
+                           double humidity, double pressure, double windSpeed,
+                           double windDirection) {
+            days.add(new double[]{date, weatherId, minTemp, maxTemp, humidity, pressure,
+                    windSpeed, windDirection});
+        }
+
+        @Override
+        public void endLocation() {
+        }
+    }
+
+    private static CollectingSink generate(long seed, int locations, int days) throws IOException {
+        CollectingSink sink = new CollectingSink();
+        new SyntheticForecastGenerator(seed).generateDaily(locations, days, FIRST_DATE, sink);
+        return sink;
+    }
+
+    @Test
+    public void sameSeed_generatesSameForecast() throws IOException {
+        CollectingSink first = generate(42, 3, 50);
+        CollectingSink second = generate(42, 3, 50);
+        CollectingSink other = generate(43, 3, 50);
+
+        assertEquals(150, first.days.size());
+        boolean differs = false;
+        for (int i = 0; i < first.days.size(); i++) {
+            assertArrayEquals(first.days.get(i), second.days.get(i), 0);
+            differs |= first.days.get(i)[3] != other.days.get(i)[3];
+        }
+        assertTrue(differs);
+    }
+
+    @Test
+    public void days_arePlausible() throws IOException {
+        CollectingSink sink = generate(7, 20, 365);
+
+        Set<Integer> conditionGroups = new HashSet<>();
+        for (double[] day : sink.days) {
+            assertEquals(0, (long) day[0] % SunshineDateUtils.DAY_IN_MILLIS);
+            assertTrue(day[2] < day[3]);
+            assertTrue(day[3] > -70 && day[3] < 60);
+            assertTrue(day[4] >= 10 && day[4] <= 100);
+            assertTrue(day[5] > 930 && day[5] < 1090);
+            assertTrue(day[6] >= 0);
+            assertTrue(day[7] >= 0 && day[7] <= 360);
+            conditionGroups.add((int) day[1] / 100);
+        }
+
+        /* Thunderstorm, drizzle, rain, snow, atmosphere, clear/clouds and extreme */
+        for (int group = 2; group <= 9; group++) {
+            if (group != 4) {
+                assertTrue("no condition in group " + group, conditionGroups.contains(group));
+            }
+        }
+    }
+
+    @Test
+    public void consecutiveDays_areCorrelated() throws IOException {
+        CollectingSink sink = generate(11, 1, 2000);
+
+        /* Lag one autocorrelation of the daily pressure */
+        double mean = 0;
+        for (double[] day : sink.days) {
+            mean += day[5];
+        }
+        mean /= sink.days.size();
+
+        double covariance = 0;
+        double variance = 0;
+        for (int i = 0; i < sink.days.size(); i++) {
+            double deviation = sink.days.get(i)[5] - mean;
+            variance += deviation * deviation;
+            if (i > 0) {
+                covariance += deviation * (sink.days.get(i - 1)[5] - mean);
+            }
+        }
+        assertTrue(covariance / variance > 0.5);
+    }
+
+    @Test
+    public void jsonSink_writesOneResponsePerLocation() throws IOException {
+        StringWriter writer = new StringWriter();
+        new SyntheticForecastGenerator(3).generateHourly(2, 40, 3,
+                FIRST_DATE, new SyntheticForecastJsonSink(writer));
+
+        String[] responses = writer.toString().split("\n");
+        assertEquals(2, responses.length);
+        for (String response : responses) {
+            assertTrue(response.startsWith("{\"city\":{"));
+            assertTrue(response.contains("\"cod\":\"200\""));
+            assertTrue(response.endsWith("],\"cnt\":40}"));
+            assertEquals(40, response.split("\"main\":\\{\"temp\":").length - 1);
+            assertTrue(response.contains("{\"dt\":" + FIRST_DATE / 1000 + ","));
+        }
+    }
+
+    @Test
+    public void tenMillionRows_streamInConstantMemory() throws IOException {
+        final long[] rows = new long[1];
+        SyntheticForecastGenerator.DailySink countingSink = new SyntheticForecastGenerator.DailySink() {
+            @Override
+            public void beginLocation(int location, String name, double latitude, double longitude) {
+            }
+
+            @Override
+            public void addDay(long date, int weatherId, double minTemp, double maxTemp,
+                               double humidity, double pressure, double windSpeed,
+                               double windDirection) {
+                rows[0]++;
+            }
+
+            @Override
+            public void endLocation() {
+            }
+        };
+
+        new SyntheticForecastGenerator(1).generateDaily(10000, 1000, FIRST_DATE, countingSink);
+
+        assertEquals(10000000L, rows[0]);
+    }
+}
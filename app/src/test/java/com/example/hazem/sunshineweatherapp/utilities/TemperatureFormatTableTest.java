@@ -0,0 +1,76 @@
+package com.example.hazem.sunshineweatherapp.utilities;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link TemperatureFormatTable}.
+ */
+public class TemperatureFormatTableTest {
+
+    private static final String FORMAT = "%1.0f°";
+
+    @Test
+    public void lookups_matchFormattingTheRoundedValue() {
+        TemperatureFormatTable table = new TemperatureFormatTable(FORMAT);
+
+        for (int hundredths = -3000; hundredths <= 4500; hundredths += 7) {
+            double celsius = hundredths / 100.0;
+            double fahrenheit = TemperatureFormatTable.celsiusToFahrenheit(celsius);
+            assertEquals(String.format(FORMAT, (double) Math.round(celsius)),
+                    table.format(celsius, true));
+            assertEquals(String.format(FORMAT, (double) Math.round(fahrenheit)),
+                    table.format(celsius, false));
+        }
+    }
+
+    @Test
+    public void temperatures_areRoundedOnlyOnce() {
+        TemperatureFormatTable table = new TemperatureFormatTable(FORMAT);
+
+        /* Rounded to tenths first, 20.46 would become 20.5 and then 21 */
+        assertEquals("20°", table.format(20.46, true));
+        assertEquals("20°", table.format(20.44, true));
+        assertEquals("21°", table.format(20.5, true));
+
+        /* 21.38 °C is 70.48 °F, while 21.4 °C would have been 70.52 °F */
+        assertEquals("70°", table.format(21.38, false));
+        assertEquals("71°", table.format(21.42, false));
+    }
+
+    @Test
+    public void bothUnits_comeFromTheSameTable() {
+        TemperatureFormatTable table = new TemperatureFormatTable(FORMAT);
+
+        assertEquals("21°", table.format(21.0, true));
+        assertEquals("70°", table.format(21.0, false));
+        assertEquals("0°", table.format(0, true));
+        assertEquals("32°", table.format(0, false));
+        assertEquals("-40°", table.format(-40, true));
+        assertEquals("-40°", table.format(-40, false));
+    }
+
+    @Test
+    public void valuesOutsideTheTable_areFormattedDirectly() {
+        TemperatureFormatTable table = new TemperatureFormatTable(FORMAT);
+
+        assertEquals("100°", table.format(100, true));
+        assertEquals("212°", table.format(100, false));
+        assertEquals("-120°", table.format(-120, true));
+    }
+
+    @Test
+    public void unitSwitch_reRendersWithoutFormatting() {
+        TemperatureFormatTable table = new TemperatureFormatTable(FORMAT);
+        double[] temperatures = new double[10000];
+        for (int i = 0; i < temperatures.length; i++) {
+            temperatures[i] = -20 + (i % 600) / 10.0;
+        }
+
+        /* Rendering the same data twice in the same units hands back the same instances */
+        for (double temperature : temperatures) {
+            assertSame(table.format(temperature, false), table.format(temperature, false));
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.hazem.forecastproxy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A forecast as fetched from upstream, kept both plain and gzipped so a hit never compresses
+ * anything.
+ */
+public class CachedResponse {
+
+    private final byte[] mBody;
+    private final byte[] mGzippedBody;
+    private final String mContentType;
+    private final String mETag;
+    private final long mFetchedAt;
+
+    /**
+     * @param body        The body as returned by upstream
+     * @param contentType Content-Type of the body
+     * @param eTag        ETag of the body, never null
+     * @param fetchedAt   When the body was fetched or last revalidated
+     */
+    CachedResponse(byte[] body, String contentType, String eTag, long fetchedAt) {
+        this(body, gzip(body), contentType, eTag, fetchedAt);
+    }
+
+    private CachedResponse(byte[] body, byte[] gzippedBody, String contentType, String eTag,
+                           long fetchedAt) {
+        mBody = body;
+        mGzippedBody = gzippedBody;
+        mContentType = contentType;
+        mETag = eTag;
+        mFetchedAt = fetchedAt;
+    }
+
+    /**
+     * @param revalidatedAt When upstream confirmed the body is still current
+     * @return This response with a new fetch time, sharing its bodies
+     */
+    CachedResponse revalidated(long revalidatedAt) {
+        return new CachedResponse(mBody, mGzippedBody, mContentType, mETag, revalidatedAt);
+    }
+
+    public byte[] getBody() {
+        return mBody;
+    }
+
+    /**
+     * @return The gzipped body, or null if gzip doesn't make it smaller
+     */
+    public byte[] getGzippedBody() {
+        return mGzippedBody;
+    }
+
+    public String getContentType() {
+        return mContentType;
+    }
+
+    public String getETag() {
+        return mETag;
+    }
+
+    public long getFetchedAt() {
+        return mFetchedAt;
+    }
+
+    /**
+     * @return Bytes held by this response, what the cache size limit counts
+     */
+    public long getSize() {
+        return mBody.length + (mGzippedBody != null ? mGzippedBody.length : 0);
+    }
+
+    private static byte[] gzip(byte[] body) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(body.length / 4 + 32);
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(body);
+        } catch (IOException e) {
+            /* Writing to memory doesn't fail */
+            throw new AssertionError(e);
+        }
+        return bytes.size() < body.length ? bytes.toByteArray() : null;
+    }
+}
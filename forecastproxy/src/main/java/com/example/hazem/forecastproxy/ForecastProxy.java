@@ -0,0 +1,368 @@
+package com.example.hazem.forecastproxy;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * A caching proxy in front of the weather server. Devices syncing the same city at the same time
+ * cost one upstream request instead of one each:
+ * <ul>
+ *     <li>Requests are normalized by {@link RequestKey}, so spelling and parameter order don't
+ *     split the cache.</li>
+ *     <li>Forecasts are cached for {@link ProxyConfig#getTtlMillis()}, see {@link ResponseCache},
+ *     and served plain or pre-gzipped.</li>
+ *     <li>Concurrent misses for the same forecast share one upstream request, see
+ *     {@link SingleFlight}.</li>
+ *     <li>Expired forecasts are revalidated with their ETag, and served stale if upstream
+ *     fails.</li>
+ * </ul>
+ * It serves the server's own contract, so the app only needs BuildConfig.WEATHER_SERVER_URL to
+ * point at it.
+ */
+public class ForecastProxy {
+
+    public static final String WEATHER_PATH = "/weather";
+    public static final String HOURLY_PATH = "/hourly";
+
+    private static final int BACKLOG = 4096;
+
+    private final ProxyConfig mConfig;
+    private final ResponseCache mCache;
+    private final SingleFlight<String, UpstreamResponse> mFlights = new SingleFlight<>();
+
+    private HttpServer mServer;
+    private ExecutorService mExecutor;
+
+    private final AtomicLong mRequests = new AtomicLong();
+    private final AtomicLong mHits = new AtomicLong();
+    private final AtomicLong mUpstreamRequests = new AtomicLong();
+    private final AtomicLong mRevalidated = new AtomicLong();
+    private final AtomicLong mStaleServed = new AtomicLong();
+    private final AtomicLong mUpstreamErrors = new AtomicLong();
+    private final AtomicLong mBytesSent = new AtomicLong();
+
+    /* What upstream answered: a cacheable forecast, or an error passed through as is */
+    private static class UpstreamResponse {
+        final CachedResponse mForecast;
+        final int mStatus;
+        final byte[] mBody;
+        final String mContentType;
+
+        UpstreamResponse(CachedResponse forecast) {
+            this(forecast, 200, null, null);
+        }
+
+        UpstreamResponse(CachedResponse forecast, int status, byte[] body, String contentType) {
+            mForecast = forecast;
+            mStatus = status;
+            mBody = body;
+            mContentType = contentType;
+        }
+    }
+
+    public ForecastProxy(ProxyConfig config) {
+        mConfig = config;
+        mCache = new ResponseCache(config.getTtlMillis(), config.getMaxEntries(),
+                config.getMaxBytes());
+    }
+
+    /**
+     * Starts listening. Every request holds a thread while it waits for upstream or for a
+     * coalesced request, so requests run on virtual threads when the JVM has them and on a
+     * cached thread pool otherwise.
+     *
+     * @throws IOException if the port can't be bound
+     */
+    public void start() throws IOException {
+        mServer = HttpServer.create(
+                new InetSocketAddress(mConfig.getBindAddress(), mConfig.getPort()), BACKLOG);
+        mServer.createContext(WEATHER_PATH, new ProxyHandler());
+        mServer.createContext(HOURLY_PATH, new ProxyHandler());
+        mExecutor = newRequestExecutor();
+        mServer.setExecutor(mExecutor);
+        mServer.start();
+    }
+
+    public void stop() {
+        mServer.stop(0);
+        mExecutor.shutdownNow();
+    }
+
+    /**
+     * @return The port the proxy listens on, useful with port 0
+     */
+    public int getPort() {
+        return mServer.getAddress().getPort();
+    }
+
+    /**
+     * @return Base URL of the proxy, e.g. http://localhost:8081, with localhost standing for
+     * the wildcard address
+     */
+    public String getBaseUrl() {
+        InetSocketAddress address = mServer.getAddress();
+        String host = address.getAddress().isAnyLocalAddress()
+                ? "localhost"
+                : address.getHostString();
+        return "http://" + host + ":" + getPort();
+    }
+
+    public ResponseCache getCache() {
+        return mCache;
+    }
+
+    public ProxyStats getStats() {
+        return new ProxyStats(mRequests.get(), mHits.get(), mFlights.getCoalesced(),
+                mUpstreamRequests.get(), mRevalidated.get(), mStaleServed.get(),
+                mUpstreamErrors.get(), mBytesSent.get());
+    }
+
+    /* Executors.newVirtualThreadPerTaskExecutor() is only there from Java 21 */
+    private static ExecutorService newRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    private class ProxyHandler implements HttpHandler {
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            mRequests.incrementAndGet();
+            try {
+                if (!"GET".equals(exchange.getRequestMethod())) {
+                    sendError(exchange, 405, "method not allowed");
+                    return;
+                }
+
+                final String key = RequestKey.normalize(exchange.getRequestURI().getPath(),
+                        exchange.getRequestURI().getRawQuery());
+
+                CachedResponse cached = mCache.get(key);
+                if (cached != null && mCache.isFresh(cached, System.currentTimeMillis())) {
+                    mHits.incrementAndGet();
+                    sendForecast(exchange, cached);
+                    return;
+                }
+
+                UpstreamResponse response;
+                try {
+                    response = mFlights.execute(key, new Callable<UpstreamResponse>() {
+                        @Override
+                        public UpstreamResponse call() throws IOException {
+                            /* The flight before this one may have just cached it */
+                            CachedResponse cached = mCache.get(key);
+                            if (cached != null
+                                    && mCache.isFresh(cached, System.currentTimeMillis())) {
+                                mHits.incrementAndGet();
+                                return new UpstreamResponse(cached);
+                            }
+                            return fetch(key);
+                        }
+                    });
+                } catch (IOException e) {
+                    /* Counted once by the request that went upstream */
+                    CachedResponse stale = mCache.get(key);
+                    if (stale != null) {
+                        mStaleServed.incrementAndGet();
+                        sendForecast(exchange, stale);
+                    } else {
+                        sendError(exchange, 502, "upstream unavailable");
+                    }
+                    return;
+                } catch (Exception e) {
+                    throw new IOException(e);
+                }
+
+                if (response.mForecast != null) {
+                    sendForecast(exchange, response.mForecast);
+                } else {
+                    send(exchange, response.mStatus, response.mBody, response.mContentType, false);
+                }
+            } finally {
+                exchange.close();
+            }
+        }
+    }
+
+    /*
+     * Fetches a forecast from upstream and caches it. An expired entry is revalidated with its
+     * ETag instead of being downloaded again. Server errors are thrown, so callers can fall
+     * back to the expired entry; client errors such as an unknown city are returned uncached.
+     */
+    private UpstreamResponse fetch(String key) throws IOException {
+        mUpstreamRequests.incrementAndGet();
+        CachedResponse stale = mCache.get(key);
+
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) new URL(mConfig.getUpstreamBaseUrl() + key)
+                    .openConnection();
+            connection.setConnectTimeout(mConfig.getUpstreamTimeoutMillis());
+            connection.setReadTimeout(mConfig.getUpstreamTimeoutMillis());
+            if (stale != null) {
+                connection.setRequestProperty("If-None-Match", stale.getETag());
+            }
+
+            int status = connection.getResponseCode();
+            long now = System.currentTimeMillis();
+            if (status == HttpURLConnection.HTTP_NOT_MODIFIED && stale != null) {
+                mRevalidated.incrementAndGet();
+                CachedResponse revalidated = stale.revalidated(now);
+                mCache.put(key, revalidated);
+                return new UpstreamResponse(revalidated);
+            }
+
+            if (status == HttpURLConnection.HTTP_OK) {
+                byte[] body = readFully(connection.getInputStream());
+                String eTag = connection.getHeaderField("ETag");
+                CachedResponse forecast = new CachedResponse(body,
+                        connection.getContentType(), eTag != null ? eTag : computeETag(body), now);
+                mCache.put(key, forecast);
+                return new UpstreamResponse(forecast);
+            }
+
+            byte[] body = readFully(connection.getErrorStream());
+            if (status >= 500) {
+                throw new IOException("Upstream answered " + status);
+            }
+            return new UpstreamResponse(null, status, body, connection.getContentType());
+        } catch (IOException e) {
+            mUpstreamErrors.incrementAndGet();
+            throw e;
+        } finally {
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+    }
+
+    private void sendForecast(HttpExchange exchange, CachedResponse forecast) throws IOException {
+        Headers headers = exchange.getResponseHeaders();
+        headers.set("ETag", forecast.getETag());
+        headers.set("Cache-Control", "max-age="
+                + mCache.getRemainingSeconds(forecast, System.currentTimeMillis()));
+        headers.set("Vary", "Accept-Encoding");
+
+        if (forecast.getETag().equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            exchange.sendResponseHeaders(304, -1);
+            return;
+        }
+
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        boolean gzip = forecast.getGzippedBody() != null
+                && acceptEncoding != null && acceptEncoding.contains("gzip");
+        send(exchange, 200, gzip ? forecast.getGzippedBody() : forecast.getBody(),
+                forecast.getContentType(), gzip);
+    }
+
+    private void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        String body = "{\"cod\":\"" + status + "\",\"message\":\"" + message + "\"}";
+        send(exchange, status, body.getBytes(StandardCharsets.UTF_8),
+                "application/json; charset=utf-8", false);
+    }
+
+    private void send(HttpExchange exchange, int status, byte[] body, String contentType,
+                      boolean gzipped) throws IOException {
+        if (contentType != null) {
+            exchange.getResponseHeaders().set("Content-Type", contentType);
+        }
+        if (gzipped) {
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        exchange.sendResponseHeaders(status, body.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(body);
+        out.close();
+        mBytesSent.addAndGet(body.length);
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        if (in == null) {
+            return new byte[0];
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        try {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                bytes.write(buffer, 0, read);
+            }
+        } finally {
+            in.close();
+        }
+        return bytes.toByteArray();
+    }
+
+    private static String computeETag(byte[] body) {
+        CRC32 crc = new CRC32();
+        crc.update(body, 0, body.length);
+        return "\"" + Long.toHexString(crc.getValue()) + "-" + Integer.toHexString(body.length) + "\"";
+    }
+
+    /**
+     * Runs the proxy until the process is stopped.
+     * <pre>
+     *     --bind localhost --port 8081 --upstream https://andfun-weather.udacity.com --ttl 600 --max-entries 10000
+     *     --max-mb 256 --timeout 10000
+     * </pre>
+     */
+    public static void main(String[] args) throws IOException {
+        ProxyConfig config = new ProxyConfig().setPort(8081);
+        int maxEntries = config.getMaxEntries();
+        long maxBytes = config.getMaxBytes();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--bind":
+                    config.setBindAddress(args[++i]);
+                    break;
+                case "--port":
+                    config.setPort(Integer.parseInt(args[++i]));
+                    break;
+                case "--upstream":
+                    config.setUpstreamBaseUrl(args[++i]);
+                    break;
+                case "--ttl":
+                    config.setTtlMillis(Long.parseLong(args[++i]) * 1000);
+                    break;
+                case "--max-entries":
+                    maxEntries = Integer.parseInt(args[++i]);
+                    break;
+                case "--max-mb":
+                    maxBytes = Long.parseLong(args[++i]) * 1024 * 1024;
+                    break;
+                case "--timeout":
+                    config.setUpstreamTimeoutMillis(Integer.parseInt(args[++i]));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        config.setCacheLimits(maxEntries, maxBytes);
+
+        ForecastProxy proxy = new ForecastProxy(config);
+        proxy.start();
+        System.out.println("Forecast proxy listening on " + proxy.getBaseUrl() + " for "
+                + config.getUpstreamBaseUrl());
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.hazem.forecastproxy;
+
+/**
+ * How a {@link ForecastProxy} behaves. Every setter returns this config so they can be chained.
+ */
+public class ProxyConfig {
+
+    private String mBindAddress = "localhost";
+    private int mPort;
+    private String mUpstreamBaseUrl = "https://andfun-weather.udacity.com";
+    private long mTtlMillis = 10 * 60 * 1000;
+    private int mMaxEntries = 10000;
+    private long mMaxBytes = 256L * 1024 * 1024;
+    private int mUpstreamTimeoutMillis = 10000;
+
+    /**
+     * @param bindAddress Host name or address to listen on. Defaults to localhost; use 0.0.0.0
+     *                    to accept devices from the network.
+     */
+    public ProxyConfig setBindAddress(String bindAddress) {
+        mBindAddress = bindAddress;
+        return this;
+    }
+
+    /**
+     * @param port Port to listen on, 0 to pick a free one
+     */
+    public ProxyConfig setPort(int port) {
+        mPort = port;
+        return this;
+    }
+
+    /**
+     * @param upstreamBaseUrl Base URL of the weather server, e.g. https://andfun-weather.udacity.com
+     */
+    public ProxyConfig setUpstreamBaseUrl(String upstreamBaseUrl) {
+        mUpstreamBaseUrl = upstreamBaseUrl.endsWith("/")
+                ? upstreamBaseUrl.substring(0, upstreamBaseUrl.length() - 1)
+                : upstreamBaseUrl;
+        return this;
+    }
+
+    /**
+     * @param ttlMillis How long a cached forecast is served before it is fetched again
+     */
+    public ProxyConfig setTtlMillis(long ttlMillis) {
+        mTtlMillis = ttlMillis;
+        return this;
+    }
+
+    /**
+     * @param maxEntries Most forecasts kept in the cache
+     * @param maxBytes   Most bytes of bodies kept in the cache, plain and gzipped together
+     */
+    public ProxyConfig setCacheLimits(int maxEntries, long maxBytes) {
+        mMaxEntries = maxEntries;
+        mMaxBytes = maxBytes;
+        return this;
+    }
+
+    public ProxyConfig setUpstreamTimeoutMillis(int upstreamTimeoutMillis) {
+        mUpstreamTimeoutMillis = upstreamTimeoutMillis;
+        return this;
+    }
+
+    public String getBindAddress() {
+        return mBindAddress;
+    }
+
+    public int getPort() {
+        return mPort;
+    }
+
+    public String getUpstreamBaseUrl() {
+        return mUpstreamBaseUrl;
+    }
+
+    public long getTtlMillis() {
+        return mTtlMillis;
+    }
+
+    public int getMaxEntries() {
+        return mMaxEntries;
+    }
+
+    public long getMaxBytes() {
+        return mMaxBytes;
+    }
+
+    public int getUpstreamTimeoutMillis() {
+        return mUpstreamTimeoutMillis;
+    }
+}
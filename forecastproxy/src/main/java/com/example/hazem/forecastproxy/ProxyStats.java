@@ -0,0 +1,72 @@
+package com.example.hazem.forecastproxy;
+
+/**
+ * Request counts of a {@link ForecastProxy}, as of the moment they were taken.
+ */
+public class ProxyStats {
+
+    private final long mRequests;
+    private final long mHits;
+    private final long mCoalesced;
+    private final long mUpstreamRequests;
+    private final long mRevalidated;
+    private final long mStaleServed;
+    private final long mUpstreamErrors;
+    private final long mBytesSent;
+
+    ProxyStats(long requests, long hits, long coalesced, long upstreamRequests, long revalidated,
+               long staleServed, long upstreamErrors, long bytesSent) {
+        mRequests = requests;
+        mHits = hits;
+        mCoalesced = coalesced;
+        mUpstreamRequests = upstreamRequests;
+        mRevalidated = revalidated;
+        mStaleServed = staleServed;
+        mUpstreamErrors = upstreamErrors;
+        mBytesSent = bytesSent;
+    }
+
+    public long getRequests() {
+        return mRequests;
+    }
+
+    /* Requests answered from the cache without asking upstream */
+    public long getHits() {
+        return mHits;
+    }
+
+    /* Requests that waited for an identical request already sent upstream */
+    public long getCoalesced() {
+        return mCoalesced;
+    }
+
+    public long getUpstreamRequests() {
+        return mUpstreamRequests;
+    }
+
+    /* Upstream requests answered 304, the cached forecast was still current */
+    public long getRevalidated() {
+        return mRevalidated;
+    }
+
+    /* Requests answered from an expired entry because upstream failed */
+    public long getStaleServed() {
+        return mStaleServed;
+    }
+
+    public long getUpstreamErrors() {
+        return mUpstreamErrors;
+    }
+
+    public long getBytesSent() {
+        return mBytesSent;
+    }
+
+    @Override
+    public String toString() {
+        return mRequests + " requests: " + mHits + " hits, " + mCoalesced + " coalesced, "
+                + mUpstreamRequests + " upstream (" + mRevalidated + " revalidated, "
+                + mUpstreamErrors + " failed), " + mStaleServed + " stale, " + mBytesSent
+                + " body bytes";
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.hazem.forecastproxy;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Normalizes forecast requests, so requests that ask for the same forecast share one cache entry
+ * and one upstream call. Parameters are sorted, defaults are filled in, text queries are trimmed,
+ * lower cased and their whitespace collapsed, and coordinates are rounded to 4 decimals (about
+ * 11m). The version a delta request is based on, since, is kept as sent: clients holding the
+ * same version share the delta, and an empty one asks for every day along with a version.
+ * Parameters outside the contract are dropped.
+ */
+public class RequestKey {
+
+    private static final String[] DEFAULTS = {"mode", "json", "units", "metric"};
+
+    private RequestKey() {
+    }
+
+    /**
+     * Builds the normalized path and query of a request.
+     *
+     * @param path     /weather or /hourly
+     * @param rawQuery The query string as received, may be null
+     * @return The normalized request, e.g. /weather?cnt=5&amp;mode=json&amp;q=london&amp;units=metric
+     */
+    public static String normalize(String path, String rawQuery) {
+        Map<String, String> parameters = new TreeMap<>();
+        for (int i = 0; i < DEFAULTS.length; i += 2) {
+            parameters.put(DEFAULTS[i], DEFAULTS[i + 1]);
+        }
+
+        if (rawQuery != null) {
+            for (String pair : rawQuery.split("&")) {
+                int equals = pair.indexOf('=');
+                if (equals <= 0) {
+                    continue;
+                }
+                String name = decode(pair.substring(0, equals));
+                String value = decode(pair.substring(equals + 1));
+                switch (name) {
+                    case "q":
+                        parameters.put(name, value.trim().toLowerCase(Locale.US).replaceAll("\\s+", " "));
+                        break;
+                    case "lat":
+                    case "lon":
+                        parameters.put(name, roundCoordinate(value));
+                        break;
+                    case "mode":
+                    case "units":
+                    case "cnt":
+                        parameters.put(name, value.trim().toLowerCase(Locale.US));
+                        break;
+                    case "since":
+                        parameters.put(name, value.trim());
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+
+        /* Coordinates win over a text query upstream, so the text doesn't make a difference */
+        if (parameters.containsKey("lat") && parameters.containsKey("lon")) {
+            parameters.remove("q");
+        }
+
+        StringBuilder key = new StringBuilder(path);
+        char separator = '?';
+        for (Map.Entry<String, String> parameter : parameters.entrySet()) {
+            key.append(separator).append(parameter.getKey()).append('=')
+                    .append(encode(parameter.getValue()));
+            separator = '&';
+        }
+        return key.toString();
+    }
+
+    private static String roundCoordinate(String value) {
+        try {
+            double coordinate = Math.round(Double.parseDouble(value.trim()) * 1e4) / 1e4;
+            return Double.toString(coordinate);
+        } catch (NumberFormatException e) {
+            /* Let upstream reject it */
+            return value;
+        }
+    }
+
+    private static String decode(String value) {
+        try {
+            return URLDecoder.decode(value, "UTF-8");
+        } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+            return value;
+        }
+    }
+
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.hazem.forecastproxy;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Forecasts by normalized request, see {@link RequestKey}. The least recently used entries are
+ * evicted beyond a number of entries or a number of bytes. Entries are kept past their time to
+ * live so they can be revalidated, or served stale when upstream fails; callers check
+ * {@link #isFresh}.
+ */
+public class ResponseCache {
+
+    private final long mTtlMillis;
+    private final int mMaxEntries;
+    private final long mMaxBytes;
+
+    /* Access ordered, so the eldest entry is always the least recently used one */
+    private final LinkedHashMap<String, CachedResponse> mEntries =
+            new LinkedHashMap<>(16, 0.75f, true);
+
+    private long mBytes;
+
+    public ResponseCache(long ttlMillis, int maxEntries, long maxBytes) {
+        mTtlMillis = ttlMillis;
+        mMaxEntries = maxEntries;
+        mMaxBytes = maxBytes;
+    }
+
+    /**
+     * @param key The normalized request
+     * @return The cached response, fresh or not, or null
+     */
+    public synchronized CachedResponse get(String key) {
+        return mEntries.get(key);
+    }
+
+    /**
+     * Caches a response, replacing any previous one, and evicts until the limits hold again.
+     *
+     * @param key      The normalized request
+     * @param response The response to cache
+     */
+    public synchronized void put(String key, CachedResponse response) {
+        CachedResponse previous = mEntries.put(key, response);
+        if (previous != null) {
+            mBytes -= previous.getSize();
+        }
+        mBytes += response.getSize();
+
+        Iterator<CachedResponse> eldest = mEntries.values().iterator();
+        while ((mEntries.size() > mMaxEntries || mBytes > mMaxBytes) && eldest.hasNext()) {
+            mBytes -= eldest.next().getSize();
+            eldest.remove();
+        }
+    }
+
+    /**
+     * @param response  A cached response
+     * @param nowMillis The current time
+     * @return Whether the response can be served without asking upstream
+     */
+    public boolean isFresh(CachedResponse response, long nowMillis) {
+        return nowMillis - response.getFetchedAt() < mTtlMillis;
+    }
+
+    /**
+     * @return Seconds the response stays fresh, for Cache-Control
+     */
+    public long getRemainingSeconds(CachedResponse response, long nowMillis) {
+        return Math.max(0, (response.getFetchedAt() + mTtlMillis - nowMillis) / 1000);
+    }
+
+    public synchronized int size() {
+        return mEntries.size();
+    }
+
+    public synchronized long getBytes() {
+        return mBytes;
+    }
+
+    public synchronized void clear() {
+        mEntries.clear();
+        mBytes = 0;
+    }
+
+    /* Unlike get, doesn't count as a use of the entry */
+    synchronized boolean contains(String key) {
+        return mEntries.containsKey(key);
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.hazem.forecastproxy;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs at most one call per key at a time. A caller asking for a key whose call is already
+ * running waits for that call and shares its result, or its exception, instead of starting
+ * another one. Once a call finishes the next caller starts a new one, so callers should cache
+ * the result inside the call.
+ *
+ * @param <K> Type of the keys
+ * @param <V> Type of the results
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> mCalls = new ConcurrentHashMap<>();
+
+    private final AtomicLong mCoalesced = new AtomicLong();
+
+    /**
+     * Runs the call for a key, or joins the one already running.
+     *
+     * @param key  Identifies the call
+     * @param call Runs on the thread of the first caller
+     * @return The result of the call
+     * @throws Exception whatever the call threw, in every caller sharing it
+     */
+    public V execute(K key, Callable<V> call) throws Exception {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> running = mCalls.putIfAbsent(key, future);
+        if (running != null) {
+            mCoalesced.incrementAndGet();
+            return await(running);
+        }
+
+        try {
+            V result = call.call();
+            future.complete(result);
+            return result;
+        } catch (Exception | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            mCalls.remove(key, future);
+        }
+    }
+
+    private static <V> V await(CompletableFuture<V> running) throws Exception {
+        try {
+            return running.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw (Error) cause;
+        }
+    }
+
+    /**
+     * @return Number of callers that joined a running call instead of starting one
+     */
+    public long getCoalesced() {
+        return mCoalesced.get();
+    }
+
+    /**
+     * @return Number of calls running right now
+     */
+    public int getRunning() {
+        return mCalls.size();
+    }
+}
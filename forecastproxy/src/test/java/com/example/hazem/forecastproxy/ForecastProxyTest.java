@@ -0,0 +1,230 @@
+package com.example.hazem.forecastproxy;
+
+import com.example.hazem.forecastserver.ForecastServer;
+import com.example.hazem.forecastserver.ServerConfig;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests {@link ForecastProxy} over real HTTP, in front of a local {@link ForecastServer}.
+ */
+public class ForecastProxyTest {
+
+    private ServerConfig mServerConfig;
+    private ForecastServer mServer;
+    private ForecastProxy mProxy;
+
+    private ForecastProxy start(ServerConfig serverConfig, ProxyConfig proxyConfig)
+            throws IOException {
+        mServerConfig = serverConfig;
+        mServer = new ForecastServer(serverConfig);
+        mServer.start();
+        mProxy = new ForecastProxy(proxyConfig.setUpstreamBaseUrl(mServer.getBaseUrl()));
+        mProxy.start();
+        return mProxy;
+    }
+
+    @After
+    public void tearDown() {
+        if (mProxy != null) {
+            mProxy.stop();
+        }
+        if (mServer != null) {
+            mServer.stop();
+        }
+    }
+
+    private static HttpURLConnection open(ForecastProxy proxy, String pathAndQuery)
+            throws IOException {
+        return (HttpURLConnection) new URL(proxy.getBaseUrl() + pathAndQuery).openConnection();
+    }
+
+    private static byte[] readBytes(HttpURLConnection connection) throws IOException {
+        InputStream in = connection.getResponseCode() < 400
+                ? connection.getInputStream()
+                : connection.getErrorStream();
+        if ("gzip".equals(connection.getContentEncoding())) {
+            in = new GZIPInputStream(in);
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            body.write(buffer, 0, read);
+        }
+        in.close();
+        return body.toByteArray();
+    }
+
+    private static String readBody(HttpURLConnection connection) throws IOException {
+        return new String(readBytes(connection), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void normalize_equivalentRequestsShareAKey() {
+        String key = RequestKey.normalize("/weather", "q=london&mode=json&units=metric&cnt=5");
+
+        assertEquals("/weather?cnt=5&mode=json&q=london&units=metric", key);
+        assertEquals(key, RequestKey.normalize("/weather", "cnt=5&q=%20London%20"));
+        assertEquals(key, RequestKey.normalize("/weather", "units=metric&q=LONDON&cnt=5&appid=x"));
+        assertEquals(RequestKey.normalize("/weather", "lat=51.50001&lon=-0.12&cnt=5"),
+                RequestKey.normalize("/weather", "q=London&lon=-0.120004&lat=51.5&cnt=5"));
+        assertNotEquals(key, RequestKey.normalize("/hourly", "q=london&cnt=5"));
+        assertNotEquals(key, RequestKey.normalize("/weather", "q=london&cnt=5&units=imperial"));
+    }
+
+    @Test
+    public void repeatedRequest_isServedFromCache() throws IOException {
+        ForecastProxy proxy = start(new ServerConfig(), new ProxyConfig());
+
+        String first = readBody(open(proxy, "/weather?q=London&mode=json&units=metric&cnt=5"));
+        String second = readBody(open(proxy, "/weather?cnt=5&q=london"));
+
+        assertEquals(first, second);
+        assertEquals(1, mServer.getStats().getRequests());
+        assertEquals(1, proxy.getStats().getHits());
+    }
+
+    private static String findVersion(String body) {
+        Matcher matcher = Pattern.compile("\"version\":\"([^\"]*)\"").matcher(body);
+        assertTrue(body, matcher.find());
+        return matcher.group(1);
+    }
+
+    @Test
+    public void deltaRequests_passThroughWithTheirVersion() throws IOException {
+        ForecastProxy proxy = start(new ServerConfig(), new ProxyConfig());
+        String query = "/weather?q=Lisbon&cnt=5";
+
+        String full = readBody(open(proxy, query + "&since="));
+        assertTrue(full, full.contains("\"delta\":false"));
+        String version = findVersion(full);
+
+        /* The held version reaches the server, which answers with a delta, not the full body */
+        String delta = readBody(open(proxy, query + "&since=" + URLEncoder.encode(version, "UTF-8")));
+        assertTrue(delta, delta.contains("\"delta\":true"));
+        assertEquals(version, findVersion(delta));
+        assertEquals(2, mServer.getStats().getRequests());
+        assertEquals(1, mServer.getStats().getDeltas());
+
+        assertNotEquals(RequestKey.normalize("/weather", "q=lisbon&cnt=5"),
+                RequestKey.normalize("/weather", "q=lisbon&cnt=5&since=" + version));
+    }
+
+    @Test
+    public void bindAddress_isListenedOn() throws IOException {
+        ForecastProxy proxy = start(new ServerConfig(),
+                new ProxyConfig().setBindAddress("127.0.0.1"));
+
+        assertEquals("http://127.0.0.1:" + proxy.getPort(), proxy.getBaseUrl());
+        assertEquals(200, open(proxy, "/weather?q=london&cnt=5").getResponseCode());
+    }
+
+    @Test
+    public void concurrentMisses_shareOneUpstreamRequest() throws Exception {
+        final ForecastProxy proxy = start(new ServerConfig().setLatency(300, 0), new ProxyConfig());
+
+        ExecutorService clients = Executors.newFixedThreadPool(50);
+        List<Future<String>> bodies = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            bodies.add(clients.submit(new Callable<String>() {
+                @Override
+                public String call() throws IOException {
+                    return readBody(open(proxy, "/hourly?q=Cairo&mode=json&units=metric&cnt=40"));
+                }
+            }));
+        }
+        String expected = bodies.get(0).get();
+        for (Future<String> body : bodies) {
+            assertEquals(expected, body.get());
+        }
+        clients.shutdown();
+
+        assertEquals(1, mServer.getStats().getRequests());
+        ProxyStats stats = proxy.getStats();
+        assertEquals(50, stats.getRequests());
+        assertEquals(49, stats.getCoalesced() + stats.getHits());
+    }
+
+    @Test
+    public void gzip_isServedWhenAcceptedAndMatchesPlainBody() throws IOException {
+        ForecastProxy proxy = start(new ServerConfig(), new ProxyConfig());
+        String plain = readBody(open(proxy, "/hourly?q=Paris&cnt=40"));
+
+        HttpURLConnection connection = open(proxy, "/hourly?q=Paris&cnt=40");
+        connection.setRequestProperty("Accept-Encoding", "gzip");
+        String gzipped = readBody(connection);
+
+        assertEquals("gzip", connection.getContentEncoding());
+        assertTrue(connection.getContentLength() < plain.length() / 2);
+        assertEquals(plain, gzipped);
+    }
+
+    @Test
+    public void conditionalRequest_isAnsweredNotModified() throws IOException {
+        ForecastProxy proxy = start(new ServerConfig(), new ProxyConfig());
+        HttpURLConnection first = open(proxy, "/weather?q=Rome&cnt=5");
+        readBody(first);
+
+        HttpURLConnection second = open(proxy, "/weather?q=Rome&cnt=5");
+        second.setRequestProperty("If-None-Match", first.getHeaderField("ETag"));
+
+        assertEquals(304, second.getResponseCode());
+        assertEquals(1, mServer.getStats().getRequests());
+    }
+
+    @Test
+    public void expiredEntry_isRevalidatedThenServedStaleWhenUpstreamFails() throws IOException {
+        ForecastProxy proxy = start(new ServerConfig(), new ProxyConfig().setTtlMillis(0));
+        String body = readBody(open(proxy, "/weather?q=Oslo&cnt=5"));
+
+        assertEquals(body, readBody(open(proxy, "/weather?q=Oslo&cnt=5")));
+        assertEquals(1, mServer.getStats().getNotModified());
+        assertEquals(1, proxy.getStats().getRevalidated());
+
+        mServerConfig.setErrorRate(1);
+        HttpURLConnection connection = open(proxy, "/weather?q=Oslo&cnt=5");
+
+        assertEquals(200, connection.getResponseCode());
+        assertEquals(body, readBody(connection));
+        assertEquals(1, proxy.getStats().getStaleServed());
+        assertEquals(1, proxy.getStats().getUpstreamErrors());
+    }
+
+    @Test
+    public void upstreamFailureWithoutEntry_isBadGateway() throws IOException {
+        ForecastProxy proxy = start(new ServerConfig().setErrorRate(1), new ProxyConfig());
+
+        assertEquals(502, open(proxy, "/weather?q=Oslo&cnt=5").getResponseCode());
+    }
+
+    @Test
+    public void clientErrors_arePassedThroughUncached() throws IOException {
+        ForecastProxy proxy = start(new ServerConfig(), new ProxyConfig());
+
+        assertEquals(400, open(proxy, "/weather?q=Oslo&cnt=0").getResponseCode());
+        assertEquals(400, open(proxy, "/weather?q=Oslo&cnt=0").getResponseCode());
+        assertEquals(2, mServer.getStats().getBadRequests());
+        assertEquals(0, proxy.getCache().size());
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.hazem.forecastproxy;
+
+import com.example.hazem.forecastserver.ForecastServer;
+import com.example.hazem.forecastserver.LoadHarness;
+import com.example.hazem.forecastserver.ServerConfig;
+import com.example.hazem.forecastserver.ServerStats;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the same fleet against the stand-in server directly and through the proxy, and compares
+ * how many requests reach the server. How long clients wait is reported alongside. The server is given a realistic
+ * latency, which is what the proxy saves on a hit.
+ */
+public class ProxyBenchmarkTest {
+
+    private static final int CLIENTS = 300;
+    private static final long DURATION_MILLIS = 3000;
+    private static final int CITIES = 100;
+    private static final long UPSTREAM_LATENCY_MILLIS = 40;
+
+    private static LoadHarness.Config fleet() {
+        return new LoadHarness.Config()
+                .setClients(CLIENTS)
+                .setDurationMillis(DURATION_MILLIS)
+                .setCities(CITIES, 1.0)
+                .setThinkTimeMillis(20);
+    }
+
+    @Test
+    public void proxy_cutsUpstreamRequests() throws IOException, InterruptedException {
+        ForecastServer server = new ForecastServer(
+                new ServerConfig().setLatency(UPSTREAM_LATENCY_MILLIS, 20));
+        server.start();
+        try {
+            LoadHarness.Report direct = new LoadHarness(server.getBaseUrl(), fleet()).run();
+            ServerStats directStats = server.getStats();
+            server.resetStats();
+
+            ForecastProxy proxy = new ForecastProxy(
+                    new ProxyConfig().setUpstreamBaseUrl(server.getBaseUrl()));
+            proxy.start();
+            LoadHarness.Report proxied;
+            try {
+                proxied = new LoadHarness(proxy.getBaseUrl(), fleet()).run();
+            } finally {
+                proxy.stop();
+            }
+            ServerStats proxiedStats = server.getStats();
+
+            System.out.println("Direct:  " + direct);
+            System.out.println("Server:  " + directStats);
+            System.out.println("Proxied: " + proxied);
+            System.out.println("Server:  " + proxiedStats);
+            System.out.println("Proxy:   " + proxy.getStats());
+            /* Reported, not asserted: how long clients wait depends on the machine */
+            System.out.println("p50:     " + direct.getLatencyMillis(50) + " ms direct, "
+                    + proxied.getLatencyMillis(50) + " ms proxied");
+
+            assertEquals(0, proxied.getFailures());
+            /* At most one request per distinct forecast reaches the server within the TTL */
+            assertTrue(proxiedStats.getRequests() <= 2 * CITIES);
+            assertTrue(proxiedStats.getRequests() * 10 < directStats.getRequests());
+        } finally {
+            server.stop();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.hazem.forecastproxy;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests {@link ResponseCache} and {@link SingleFlight}.
+ */
+public class ResponseCacheTest {
+
+    private static CachedResponse response(int size, long fetchedAt) {
+        /* Random enough that gzip doesn't shrink it */
+        byte[] body = new byte[size];
+        new java.util.Random(size).nextBytes(body);
+        return new CachedResponse(body, "application/json", "\"" + size + "\"", fetchedAt);
+    }
+
+    @Test
+    public void put_evictsLeastRecentlyUsedBeyondMaxEntries() {
+        ResponseCache cache = new ResponseCache(1000, 2, Long.MAX_VALUE);
+        cache.put("a", response(10, 0));
+        cache.put("b", response(10, 0));
+        cache.get("a");
+        cache.put("c", response(10, 0));
+
+        assertTrue(cache.contains("a"));
+        assertFalse(cache.contains("b"));
+        assertTrue(cache.contains("c"));
+    }
+
+    @Test
+    public void put_evictsBeyondMaxBytesAndTracksReplacements() {
+        ResponseCache cache = new ResponseCache(1000, 100, 250);
+        cache.put("a", response(100, 0));
+        cache.put("b", response(100, 0));
+        assertEquals(200, cache.getBytes());
+
+        cache.put("a", response(50, 0));
+        assertEquals(150, cache.getBytes());
+
+        cache.put("c", response(120, 0));
+        assertFalse(cache.contains("b"));
+        assertEquals(170, cache.getBytes());
+    }
+
+    @Test
+    public void gzippedBody_keptOnlyWhenSmaller() {
+        byte[] json = new String(new char[2000]).replace('\0', 'x').getBytes(StandardCharsets.UTF_8);
+
+        assertNotNull(new CachedResponse(json, null, "\"x\"", 0).getGzippedBody());
+        assertNull(response(2000, 0).getGzippedBody());
+    }
+
+    @Test
+    public void isFresh_untilTtlElapsed() {
+        ResponseCache cache = new ResponseCache(1000, 10, Long.MAX_VALUE);
+        CachedResponse response = response(10, 5000);
+
+        assertTrue(cache.isFresh(response, 5999));
+        assertFalse(cache.isFresh(response, 6000));
+        assertTrue(cache.isFresh(response.revalidated(6000), 6000));
+    }
+
+    @Test
+    public void singleFlight_sharesRunningCallAndItsFailure() throws Exception {
+        final SingleFlight<String, Integer> flights = new SingleFlight<>();
+        final AtomicInteger calls = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        final Callable<Integer> slowCall = new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                release.await();
+                if (calls.incrementAndGet() > 1) {
+                    throw new IllegalStateException("second call");
+                }
+                return 42;
+            }
+        };
+
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        Future<?>[] results = new Future<?>[8];
+        for (int i = 0; i < results.length; i++) {
+            results[i] = callers.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    return flights.execute("key", slowCall);
+                }
+            });
+        }
+        while (flights.getCoalesced() < results.length - 1) {
+            TimeUnit.MILLISECONDS.sleep(1);
+        }
+        release.countDown();
+
+        for (Future<?> result : results) {
+            assertEquals(42, result.get());
+        }
+        assertEquals(1, calls.get());
+        assertEquals(0, flights.getRunning());
+
+        /* The finished call isn't remembered, the next one runs and its failure propagates */
+        try {
+            flights.execute("key", slowCall);
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("second call", e.getMessage());
+        }
+        callers.shutdown();
+    }
+}
@@ -0,0 +1,270 @@
+package com.example.hazem.forecastserver;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Builds the JSON bodies of the weather server: the daily forecast served under /weather and the
+ * 3 hourly forecast served under /hourly, in the format the app's NetworkUtils parses.
+ * <p>
+ * Values are derived from the location, the day (or slot) and a seed only, so the same request
+ * gets the same body, and the same ETag, until the forecast rolls over to the next day or one of
+ * its days is revised, see {@link ForecastVersions}.
+ */
+public class ForecastResponses {
+
+    public static final long HOUR_IN_MILLIS = 60 * 60 * 1000;
+    public static final long DAY_IN_MILLIS = 24 * HOUR_IN_MILLIS;
+
+    public static final int HOURLY_STEP_HOURS = 3;
+
+    private static final int[] WEATHER_IDS = {
+            200, 301, 500, 501, 502, 600, 701, 741, 800, 800, 800, 801, 802, 803, 804, 900, 962
+    };
+
+    /**
+     * A location the forecast is requested for, resolved from a query or from coordinates.
+     */
+    public static class Location {
+        final String mName;
+        final double mLatitude;
+        final double mLongitude;
+
+        Location(String name, double latitude, double longitude) {
+            mName = name;
+            mLatitude = latitude;
+            mLongitude = longitude;
+        }
+
+        /**
+         * Resolves a text query to made up, but stable, coordinates.
+         *
+         * @param query The q parameter
+         * @return The location, or null if the query is blank
+         */
+        public static Location fromQuery(String query) {
+            String name = query.trim();
+            if (name.isEmpty()) {
+                return null;
+            }
+            int hash = name.toLowerCase(Locale.US).hashCode();
+            double latitude = Math.round(((hash & 0xffff) / 65535.0 * 120 - 55) * 1e4) / 1e4;
+            double longitude = Math.round((((hash >>> 16) & 0xffff) / 65535.0 * 360 - 180) * 1e4) / 1e4;
+            return new Location(name, latitude, longitude);
+        }
+
+        public static Location fromCoordinates(double latitude, double longitude) {
+            if (latitude < -90 || latitude > 90 || longitude < -180 || longitude > 180) {
+                return null;
+            }
+            return new Location(latitude + "," + longitude, latitude, longitude);
+        }
+
+        /* Stable per location, used to seed its forecast */
+        long key() {
+            return Double.doubleToLongBits(mLatitude) * 31 + Double.doubleToLongBits(mLongitude);
+        }
+    }
+
+    private final long mSeed;
+    private final int mPaddingBytes;
+
+    public ForecastResponses(long seed, int paddingBytes) {
+        mSeed = seed;
+        mPaddingBytes = paddingBytes;
+    }
+
+    /**
+     * Builds the daily forecast starting today, one "list" entry per day.
+     *
+     * @param location  The location
+     * @param days      Number of days
+     * @param imperial  true for Fahrenheit and miles per hour
+     * @param nowMillis Current time, selects the first day
+     * @return The response body
+     */
+    public String buildDaily(Location location, int days, boolean imperial, long nowMillis) {
+        return buildDaily(location, new ForecastVersions.Snapshot(0, nowMillis / DAY_IN_MILLIS,
+                new int[days], new long[days]), imperial);
+    }
+
+    /**
+     * Builds the daily forecast of the days of a snapshot, each day as of its revision.
+     *
+     * @param location The location
+     * @param snapshot The days and their revisions
+     * @param imperial true for Fahrenheit and miles per hour
+     * @return The response body
+     */
+    public String buildDaily(Location location, ForecastVersions.Snapshot snapshot,
+                             boolean imperial) {
+        StringBuilder json = beginResponse(location, snapshot.getDayCount(), null);
+        for (int i = 0; i < snapshot.getDayCount(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            appendDay(json, location, snapshot.getFirstDay() + i, snapshot.getRevision(i), imperial);
+        }
+        return endResponse(json);
+    }
+
+    /**
+     * Builds the daily forecast for a client that asked for the changes since the forecast it
+     * holds. The response carries the version of the forecast it brings the client to and, if
+     * the held forecast is known, only the days the client lacks or holds an outdated revision
+     * of:
+     * <pre>
+     *     {"city":{...},"cod":"200","cnt":5,"version":"...","delta":true,"start":1500033600,
+     *      "list":[{"dt":1500379200,...}]}
+     * </pre>
+     * "cnt" and "start" give the days the forecast now covers, the client drops any other day.
+     * If the held forecast isn't known, "delta" is false and the list holds every day.
+     *
+     * @param location The location
+     * @param snapshot The days and their revisions
+     * @param imperial true for Fahrenheit and miles per hour
+     * @param version  Version string of the snapshot
+     * @param held     The forecast the client holds, null to send every day
+     * @return The response body
+     */
+    public String buildDailyDelta(Location location, ForecastVersions.Snapshot snapshot,
+                                  boolean imperial, String version, ForecastVersions.Held held) {
+        StringBuilder fields = new StringBuilder(",\"version\":\"").append(escape(version))
+                .append("\",\"delta\":").append(held != null)
+                .append(",\"start\":").append(toDateTime(snapshot.getFirstDay()));
+        StringBuilder json = beginResponse(location, snapshot.getDayCount(), fields);
+
+        boolean first = true;
+        for (int i = 0; i < snapshot.getDayCount(); i++) {
+            if (held != null && !snapshot.isChangedSince(i, held)) {
+                continue;
+            }
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            appendDay(json, location, snapshot.getFirstDay() + i, snapshot.getRevision(i), imperial);
+        }
+        return endResponse(json);
+    }
+
+    private void appendDay(StringBuilder json, Location location, long epochDay, int revision,
+                           boolean imperial) {
+        /* Revision 0 keeps the seed of an unrevised forecast */
+        Random random = new Random(mSeed ^ (location.key() * 1000003 + epochDay)
+                ^ (revision * 0x9E3779B97F4A7C15L));
+
+        double max = temperatureBase(location) + 5 + 3 * random.nextGaussian();
+        double min = max - 5 - 5 * random.nextDouble();
+
+        json.append("{\"dt\":").append(toDateTime(epochDay))
+                .append(",\"temp\":{\"min\":").append(temperature(min, imperial))
+                .append(",\"max\":").append(temperature(max, imperial))
+                .append("},\"pressure\":").append(round(1013 + 8 * random.nextGaussian()))
+                .append(",\"humidity\":").append(40 + random.nextInt(56))
+                .append(",\"weather\":[{\"id\":")
+                .append(WEATHER_IDS[random.nextInt(WEATHER_IDS.length)])
+                .append("}],\"speed\":").append(speed(12 * random.nextDouble(), imperial))
+                .append(",\"deg\":").append(random.nextInt(360))
+                .append('}');
+    }
+
+    /* The dt of a day's entry, noon UTC in seconds */
+    private static long toDateTime(long epochDay) {
+        return epochDay * DAY_IN_MILLIS / 1000 + 12 * 3600;
+    }
+
+    /**
+     * Builds the forecast in 3 hour slots, starting with the slot that contains now.
+     *
+     * @param location  The location
+     * @param slots     Number of slots
+     * @param imperial  true for Fahrenheit and miles per hour
+     * @param nowMillis Current time, selects the first slot
+     * @return The response body
+     */
+    public String buildHourly(Location location, int slots, boolean imperial, long nowMillis) {
+        StringBuilder json = beginResponse(location, slots, null);
+
+        long stepMillis = HOURLY_STEP_HOURS * HOUR_IN_MILLIS;
+        long firstSlot = nowMillis / stepMillis;
+        for (int i = 0; i < slots; i++) {
+            long slot = firstSlot + i;
+            long slotStart = slot * stepMillis;
+            Random random = new Random(mSeed ^ (location.key() * 1000033 + slot));
+
+            double hourOfDay = (slotStart % DAY_IN_MILLIS) / (double) HOUR_IN_MILLIS
+                    + location.mLongitude / 15;
+            double temp = temperatureBase(location) + 2 * random.nextGaussian()
+                    + 5 * Math.cos(2 * Math.PI * (hourOfDay - 15) / 24);
+
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"dt\":").append(slotStart / 1000)
+                    .append(",\"main\":{\"temp\":").append(temperature(temp, imperial))
+                    .append(",\"pressure\":").append(round(1013 + 8 * random.nextGaussian()))
+                    .append(",\"humidity\":").append(40 + random.nextInt(56))
+                    .append("},\"weather\":[{\"id\":")
+                    .append(WEATHER_IDS[random.nextInt(WEATHER_IDS.length)])
+                    .append("}],\"wind\":{\"speed\":").append(speed(12 * random.nextDouble(), imperial))
+                    .append(",\"deg\":").append(random.nextInt(360))
+                    .append("}}");
+        }
+        return endResponse(json);
+    }
+
+    /**
+     * Builds the error body the server sends with a failed request.
+     *
+     * @param code    HTTP status code
+     * @param message Error description
+     * @return The response body
+     */
+    public static String buildError(int code, String message) {
+        return "{\"cod\":\"" + code + "\",\"message\":\"" + message + "\"}";
+    }
+
+    private StringBuilder beginResponse(Location location, int count, CharSequence fields) {
+        StringBuilder json = new StringBuilder(256 + count * 160 + mPaddingBytes);
+        json.append("{\"city\":{\"name\":\"").append(escape(location.mName))
+                .append("\",\"coord\":{\"lat\":").append(location.mLatitude)
+                .append(",\"lon\":").append(location.mLongitude)
+                .append("}},\"cod\":\"200\",\"cnt\":").append(count);
+        if (fields != null) {
+            json.append(fields);
+        }
+        if (mPaddingBytes > 0) {
+            json.append(",\"padding\":\"");
+            for (int i = 0; i < mPaddingBytes; i++) {
+                json.append('x');
+            }
+            json.append('"');
+        }
+        return json.append(",\"list\":[");
+    }
+
+    private static String endResponse(StringBuilder json) {
+        return json.append("]}").toString();
+    }
+
+    private static double temperatureBase(Location location) {
+        return 27 - 0.4 * Math.abs(location.mLatitude);
+    }
+
+    private static double temperature(double celsius, boolean imperial) {
+        return round(imperial ? celsius * 1.8 + 32 : celsius);
+    }
+
+    private static double speed(double metersPerSecond, boolean imperial) {
+        return round(imperial ? metersPerSecond * 2.23694 : metersPerSecond);
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
@@ -0,0 +1,389 @@
+package com.example.hazem.forecastserver;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * A stand-in for the weather server the app syncs from. It serves the same contract as
+ * andfun-weather.udacity.com, so NetworkUtils and the sync can run against it unchanged:
+ * <pre>
+ *     /weather?q=London&amp;mode=json&amp;units=metric&amp;cnt=5
+ *     /weather?lat=51.5&amp;lon=-0.12&amp;mode=json&amp;units=metric&amp;cnt=5
+ *     /hourly?q=London&amp;mode=json&amp;units=metric&amp;cnt=40
+ * </pre>
+ * Daily forecasts can also be fetched as deltas, an extension of the contract: with
+ * {@code since=<version>} the response only holds the days that changed since that version of
+ * the forecast, see {@link ForecastResponses#buildDailyDelta}. An empty or unknown version gets
+ * every day. Days are revised through {@link #reviseDay} or at random, see
+ * {@link ServerConfig#setRevisionRate(double)}.
+ * <p>
+ * Latency, error rate, payload size and ETag support are set through {@link ServerConfig}.
+ * Forecasts are generated by {@link ForecastResponses}, see there for how they stay stable.
+ */
+public class ForecastServer {
+
+    public static final String WEATHER_PATH = "/weather";
+    public static final String HOURLY_PATH = "/hourly";
+
+    private static final int MAX_DAYS = 400;
+    private static final int MAX_SLOTS = 400;
+
+    private static final int BACKLOG = 4096;
+
+    /* Query parameter of a delta request */
+    public static final String SINCE_PARAM = "since";
+
+    private final ServerConfig mConfig;
+    private final ForecastResponses mResponses;
+    private final ForecastVersions mVersions = new ForecastVersions();
+
+    /* Added to the system clock, see advanceClock */
+    private final AtomicLong mClockOffsetMillis = new AtomicLong();
+
+    private HttpServer mServer;
+    private ExecutorService mExecutor;
+
+    private final AtomicLong mRequests = new AtomicLong();
+    private final AtomicLong mOk = new AtomicLong();
+    private final AtomicLong mNotModified = new AtomicLong();
+    private final AtomicLong mDeltas = new AtomicLong();
+    private final AtomicLong mNotFound = new AtomicLong();
+    private final AtomicLong mBadRequests = new AtomicLong();
+    private final AtomicLong mErrors = new AtomicLong();
+    private final AtomicLong mBytesSent = new AtomicLong();
+
+    public ForecastServer(ServerConfig config) {
+        mConfig = config;
+        mResponses = new ForecastResponses(config.getSeed(), config.getPaddingBytes());
+    }
+
+    /**
+     * Starts listening. Requests are handled on a cached thread pool, so simulated latency
+     * never holds up other requests.
+     *
+     * @throws IOException if the port can't be bound
+     */
+    public void start() throws IOException {
+        mServer = HttpServer.create(new InetSocketAddress("localhost", mConfig.getPort()), BACKLOG);
+        mServer.createContext(WEATHER_PATH, new ForecastHandler(false));
+        mServer.createContext(HOURLY_PATH, new ForecastHandler(true));
+        mExecutor = Executors.newCachedThreadPool();
+        mServer.setExecutor(mExecutor);
+        mServer.start();
+    }
+
+    public void stop() {
+        mServer.stop(0);
+        mExecutor.shutdownNow();
+    }
+
+    /**
+     * @return The port the server listens on, useful with port 0
+     */
+    public int getPort() {
+        return mServer.getAddress().getPort();
+    }
+
+    /**
+     * @return Base URL of the server, e.g. http://localhost:8080
+     */
+    public String getBaseUrl() {
+        return "http://localhost:" + getPort();
+    }
+
+    public ServerStats getStats() {
+        return new ServerStats(mRequests.get(), mOk.get(), mNotModified.get(), mDeltas.get(),
+                mNotFound.get(), mBadRequests.get(), mErrors.get(), mBytesSent.get());
+    }
+
+    public void resetStats() {
+        mRequests.set(0);
+        mOk.set(0);
+        mNotModified.set(0);
+        mDeltas.set(0);
+        mNotFound.set(0);
+        mBadRequests.set(0);
+        mErrors.set(0);
+        mBytesSent.set(0);
+    }
+
+    /**
+     * Revises the daily forecast of one day, so clients holding it get the new values with their
+     * next delta.
+     *
+     * @param location  The location
+     * @param dayOffset The day, 0 for today
+     * @return The new version of the location's forecast
+     */
+    public long reviseDay(ForecastResponses.Location location, int dayOffset) {
+        return mVersions.revise(location, now() / ForecastResponses.DAY_IN_MILLIS + dayOffset);
+    }
+
+    /**
+     * Moves the server's clock forward, e.g. so a test can roll the forecast over to the next
+     * day without waiting for it.
+     */
+    public void advanceClock(long millis) {
+        mClockOffsetMillis.addAndGet(millis);
+    }
+
+    private long now() {
+        return System.currentTimeMillis() + mClockOffsetMillis.get();
+    }
+
+    private class ForecastHandler implements HttpHandler {
+
+        private final boolean mHourly;
+
+        ForecastHandler(boolean hourly) {
+            mHourly = hourly;
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            mRequests.incrementAndGet();
+            try {
+                simulateLatency();
+
+                if (!"GET".equals(exchange.getRequestMethod())) {
+                    mBadRequests.incrementAndGet();
+                    send(exchange, 405, ForecastResponses.buildError(405, "method not allowed"), null);
+                    return;
+                }
+
+                if (ThreadLocalRandom.current().nextDouble() < mConfig.getErrorRate()) {
+                    mErrors.incrementAndGet();
+                    send(exchange, 503, ForecastResponses.buildError(503, "service unavailable"), null);
+                    return;
+                }
+
+                Map<String, String> parameters = parseQuery(exchange.getRequestURI().getRawQuery());
+                ForecastResponses.Location location;
+                int count;
+                try {
+                    location = parseLocation(parameters);
+                    count = parseCount(parameters.get("cnt"), mHourly ? 40 : 7,
+                            mHourly ? MAX_SLOTS : MAX_DAYS);
+                } catch (IllegalArgumentException e) {
+                    mBadRequests.incrementAndGet();
+                    send(exchange, 400, ForecastResponses.buildError(400, e.getMessage()), null);
+                    return;
+                }
+
+                if (location == null) {
+                    mNotFound.incrementAndGet();
+                    send(exchange, 404, ForecastResponses.buildError(404, "city not found"), null);
+                    return;
+                }
+
+                boolean imperial = "imperial".equals(parameters.get("units"));
+                long now = now();
+                String body;
+                boolean delta = false;
+                if (mHourly) {
+                    body = mResponses.buildHourly(location, count, imperial, now);
+                } else {
+                    long today = now / ForecastResponses.DAY_IN_MILLIS;
+                    if (ThreadLocalRandom.current().nextDouble() < mConfig.getRevisionRate()) {
+                        mVersions.revise(location, today + ThreadLocalRandom.current().nextInt(count));
+                    }
+
+                    ForecastVersions.Snapshot snapshot = mVersions.snapshot(location, today, count);
+                    String since = parameters.get(SINCE_PARAM);
+                    if (since == null) {
+                        body = mResponses.buildDaily(location, snapshot, imperial);
+                    } else {
+                        ForecastVersions.Held held =
+                                mVersions.parseVersion(since, location, imperial, snapshot);
+                        delta = held != null;
+                        body = mResponses.buildDailyDelta(location, snapshot, imperial,
+                                mVersions.formatVersion(location, imperial, snapshot), held);
+                    }
+                }
+
+                String eTag = null;
+                if (mConfig.isETagEnabled()) {
+                    eTag = computeETag(body);
+                    if (eTag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                        mNotModified.incrementAndGet();
+                        exchange.getResponseHeaders().set("ETag", eTag);
+                        exchange.sendResponseHeaders(304, -1);
+                        return;
+                    }
+                }
+
+                mOk.incrementAndGet();
+                if (delta) {
+                    mDeltas.incrementAndGet();
+                }
+                send(exchange, 200, body, eTag);
+            } finally {
+                exchange.close();
+            }
+        }
+    }
+
+    private void simulateLatency() {
+        long latency = mConfig.getLatencyMillis();
+        if (mConfig.getLatencyTailShape() > 0) {
+            /* Inverse transform sampling of the Pareto distribution, 1 - U is never 0 */
+            double u = 1 - ThreadLocalRandom.current().nextDouble();
+            latency = (long) Math.min(mConfig.getMaxLatencyMillis(),
+                    latency / Math.pow(u, 1 / mConfig.getLatencyTailShape()));
+        }
+        if (mConfig.getLatencyJitterMillis() > 0) {
+            latency += ThreadLocalRandom.current().nextLong(mConfig.getLatencyJitterMillis() + 1);
+        }
+        if (latency > 0) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(latency);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void send(HttpExchange exchange, int status, String body, String eTag)
+            throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        if (eTag != null) {
+            exchange.getResponseHeaders().set("ETag", eTag);
+        }
+        exchange.sendResponseHeaders(status, bytes.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(bytes);
+        out.close();
+        mBytesSent.addAndGet(bytes.length);
+    }
+
+    static Map<String, String> parseQuery(String rawQuery) throws UnsupportedEncodingException {
+        Map<String, String> parameters = new HashMap<>();
+        if (rawQuery == null) {
+            return parameters;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0) {
+                parameters.put(URLDecoder.decode(pair.substring(0, equals), "UTF-8"),
+                        URLDecoder.decode(pair.substring(equals + 1), "UTF-8"));
+            }
+        }
+        return parameters;
+    }
+
+    /* Coordinates win over a text query, as with the real server */
+    private static ForecastResponses.Location parseLocation(Map<String, String> parameters) {
+        String latitude = parameters.get("lat");
+        String longitude = parameters.get("lon");
+        if (latitude != null && longitude != null) {
+            try {
+                return ForecastResponses.Location.fromCoordinates(
+                        Double.parseDouble(latitude), Double.parseDouble(longitude));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("invalid coordinates");
+            }
+        }
+
+        String query = parameters.get("q");
+        if (query == null) {
+            throw new IllegalArgumentException("missing q or lat and lon");
+        }
+        return ForecastResponses.Location.fromQuery(query);
+    }
+
+    private static int parseCount(String count, int defaultCount, int maxCount) {
+        if (count == null) {
+            return defaultCount;
+        }
+        try {
+            int value = Integer.parseInt(count);
+            if (value < 1 || value > maxCount) {
+                throw new IllegalArgumentException("cnt must be between 1 and " + maxCount);
+            }
+            return value;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid cnt");
+        }
+    }
+
+    private static String computeETag(String body) {
+        CRC32 crc = new CRC32();
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        crc.update(bytes, 0, bytes.length);
+        return "\"" + Long.toHexString(crc.getValue()) + "-" + Integer.toHexString(bytes.length) + "\"";
+    }
+
+    /**
+     * Runs the server until the process is stopped.
+     * <pre>
+     *     --port 8080 --latency 50 --jitter 100 --error-rate 0.01 --padding 0 --no-etag --seed 1
+     *     --tail-shape 1.2 --max-latency 5000 --revision-rate 0.1
+     * </pre>
+     */
+    public static void main(String[] args) throws IOException {
+        ServerConfig config = new ServerConfig().setPort(8080);
+        long latency = 0;
+        long jitter = 0;
+        double tailShape = 0;
+        long maxLatency = Long.MAX_VALUE;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--port":
+                    config.setPort(Integer.parseInt(args[++i]));
+                    break;
+                case "--latency":
+                    latency = Long.parseLong(args[++i]);
+                    break;
+                case "--jitter":
+                    jitter = Long.parseLong(args[++i]);
+                    break;
+                case "--tail-shape":
+                    tailShape = Double.parseDouble(args[++i]);
+                    break;
+                case "--max-latency":
+                    maxLatency = Long.parseLong(args[++i]);
+                    break;
+                case "--revision-rate":
+                    config.setRevisionRate(Double.parseDouble(args[++i]));
+                    break;
+                case "--error-rate":
+                    config.setErrorRate(Double.parseDouble(args[++i]));
+                    break;
+                case "--padding":
+                    config.setPaddingBytes(Integer.parseInt(args[++i]));
+                    break;
+                case "--no-etag":
+                    config.setETagEnabled(false);
+                    break;
+                case "--seed":
+                    config.setSeed(Long.parseLong(args[++i]));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        config.setLatency(latency, jitter);
+        config.setLatencyTail(tailShape, maxLatency);
+
+        ForecastServer server = new ForecastServer(config);
+        server.start();
+        System.out.println("Forecast server listening on " + server.getBaseUrl());
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.hazem.forecastserver;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Revision history of the forecasts, so a client can ask for what changed since the forecast it
+ * holds instead of the whole forecast. Every location has a version, starting at 0, which is
+ * bumped each time one of its days is revised. A revised day gets different values, see
+ * {@link ForecastResponses#buildDaily(ForecastResponses.Location, Snapshot, boolean)}.
+ * <p>
+ * A client identifies the forecast it holds by an opaque version string, made of the location,
+ * the units, the version and the days it covers. Only {@link ForecastServer} reads it back.
+ * Versions start over with every instance, so the string also names the instance it came from.
+ */
+public class ForecastVersions {
+
+    private static final String VERSION_PREFIX = "v1";
+
+    /* Revision and version of last change of every revised day of one location */
+    private static class History {
+        long mVersion;
+        final Map<Long, long[]> mRevisedDays = new HashMap<>();
+    }
+
+    /**
+     * The days of a forecast as they were at one version of its location.
+     */
+    public static class Snapshot {
+        final long mVersion;
+        final long mFirstDay;
+        final int[] mRevisions;
+        final long[] mChangedAtVersions;
+
+        Snapshot(long version, long firstDay, int[] revisions, long[] changedAtVersions) {
+            mVersion = version;
+            mFirstDay = firstDay;
+            mRevisions = revisions;
+            mChangedAtVersions = changedAtVersions;
+        }
+
+        public long getVersion() {
+            return mVersion;
+        }
+
+        public long getFirstDay() {
+            return mFirstDay;
+        }
+
+        public int getDayCount() {
+            return mRevisions.length;
+        }
+
+        /**
+         * @param index Day from the first one
+         * @return How many times the day was revised, 0 if never
+         */
+        public int getRevision(int index) {
+            return mRevisions[index];
+        }
+
+        /**
+         * Tells whether a client holding the given forecast lacks a day or holds an outdated one.
+         *
+         * @param index Day from the first one
+         * @param held  The forecast the client holds
+         * @return true if the day must be sent to that client
+         */
+        public boolean isChangedSince(int index, Held held) {
+            long epochDay = mFirstDay + index;
+            return epochDay < held.mFirstDay || epochDay >= held.mFirstDay + held.mDayCount
+                    || mChangedAtVersions[index] > held.mVersion;
+        }
+    }
+
+    /**
+     * A forecast a client holds, parsed back from its version string.
+     */
+    public static class Held {
+        final long mVersion;
+        final long mFirstDay;
+        final int mDayCount;
+
+        Held(long version, long firstDay, int dayCount) {
+            mVersion = version;
+            mFirstDay = firstDay;
+            mDayCount = dayCount;
+        }
+    }
+
+    private final String mInstance = Integer.toHexString(new Random().nextInt());
+
+    private final Map<Long, History> mHistories = new HashMap<>();
+
+    /**
+     * Revises the forecast of one day, as a forecaster would with newer observations.
+     *
+     * @param location The location
+     * @param epochDay The day, in days since the epoch
+     * @return The new version of the location
+     */
+    public synchronized long revise(ForecastResponses.Location location, long epochDay) {
+        History history = mHistories.get(location.key());
+        if (history == null) {
+            history = new History();
+            mHistories.put(location.key(), history);
+        }
+        history.mVersion++;
+
+        long[] revisedDay = history.mRevisedDays.get(epochDay);
+        if (revisedDay == null) {
+            revisedDay = new long[2];
+            history.mRevisedDays.put(epochDay, revisedDay);
+        }
+        revisedDay[0]++;
+        revisedDay[1] = history.mVersion;
+        return history.mVersion;
+    }
+
+    /**
+     * Takes the current state of a range of days, consistent even if days are revised meanwhile.
+     *
+     * @param location The location
+     * @param firstDay First day, in days since the epoch
+     * @param days     Number of days
+     * @return The days, at the current version of the location
+     */
+    public synchronized Snapshot snapshot(ForecastResponses.Location location, long firstDay,
+                                          int days) {
+        int[] revisions = new int[days];
+        long[] changedAtVersions = new long[days];
+
+        History history = mHistories.get(location.key());
+        if (history == null) {
+            return new Snapshot(0, firstDay, revisions, changedAtVersions);
+        }
+        for (int i = 0; i < days; i++) {
+            long[] revisedDay = history.mRevisedDays.get(firstDay + i);
+            if (revisedDay != null) {
+                revisions[i] = (int) revisedDay[0];
+                changedAtVersions[i] = revisedDay[1];
+            }
+        }
+        return new Snapshot(history.mVersion, firstDay, revisions, changedAtVersions);
+    }
+
+    /**
+     * @return The version string a client sends back to get the changes since this snapshot
+     */
+    public String formatVersion(ForecastResponses.Location location, boolean imperial,
+                                Snapshot snapshot) {
+        return VERSION_PREFIX + "." + mInstance + "." + Long.toHexString(location.key()) + "."
+                + (imperial ? "i" : "m") + "." + snapshot.mVersion + "." + snapshot.mFirstDay
+                + "." + snapshot.getDayCount();
+    }
+
+    /**
+     * Parses a version string sent by a client.
+     *
+     * @param version  The version string, as returned by {@link #formatVersion}
+     * @param location The location of the request
+     * @param imperial The units of the request
+     * @param current  The current state of the forecast
+     * @return The forecast the client holds, or null if the version is malformed, of another
+     * instance, location or units, or newer than the current one
+     */
+    public Held parseVersion(String version, ForecastResponses.Location location,
+                             boolean imperial, Snapshot current) {
+        String[] parts = version.split("\\.");
+        if (parts.length != 7 || !VERSION_PREFIX.equals(parts[0]) || !mInstance.equals(parts[1])
+                || !Long.toHexString(location.key()).equals(parts[2])
+                || !(imperial ? "i" : "m").equals(parts[3])) {
+            return null;
+        }
+        try {
+            Held held = new Held(Long.parseLong(parts[4]), Long.parseLong(parts[5]),
+                    Integer.parseInt(parts[6]));
+            if (held.mVersion < 0 || held.mVersion > current.mVersion || held.mDayCount < 0) {
+                return null;
+            }
+            return held;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.hazem.forecastserver;
+
+import java.util.Arrays;
+
+/**
+ * Collects latencies of one client thread without boxing them. Recorders of all clients are
+ * merged once the run is over to compute percentiles.
+ */
+public class LatencyRecorder {
+
+    private long[] mLatencies = new long[1024];
+    private int mCount;
+
+    public void record(long latencyNanos) {
+        if (mCount == mLatencies.length) {
+            mLatencies = Arrays.copyOf(mLatencies, mCount * 2);
+        }
+        mLatencies[mCount++] = latencyNanos;
+    }
+
+    public int getCount() {
+        return mCount;
+    }
+
+    /**
+     * Merges recorders and sorts the result.
+     *
+     * @param recorders The recorders to merge
+     * @return Every recorded latency, in ascending order
+     */
+    public static long[] mergeSorted(Iterable<LatencyRecorder> recorders) {
+        int total = 0;
+        for (LatencyRecorder recorder : recorders) {
+            total += recorder.mCount;
+        }
+        long[] merged = new long[total];
+        int offset = 0;
+        for (LatencyRecorder recorder : recorders) {
+            System.arraycopy(recorder.mLatencies, 0, merged, offset, recorder.mCount);
+            offset += recorder.mCount;
+        }
+        Arrays.sort(merged);
+        return merged;
+    }
+
+    /**
+     * Returns a percentile of sorted latencies, nearest rank.
+     *
+     * @param sorted     Latencies in ascending order
+     * @param percentile Between 0 and 100
+     * @return The latency, or 0 if there are none
+     */
+    public static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+}
@@ -0,0 +1,388 @@
+package com.example.hazem.forecastserver;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs a fleet of simulated devices syncing against a weather server and reports throughput and
+ * latency. Each client loops over syncs the way SunshineSyncTask does: the daily forecast, then
+ * the hourly one, for a city picked from a Zipf distribution so popular cities dominate as they
+ * would across a real fleet.
+ * <p>
+ * Clients run on their own threads, as blocking HttpURLConnection calls need them.
+ */
+public class LoadHarness {
+
+    /**
+     * What the simulated fleet looks like. Every setter returns this config.
+     */
+    public static class Config {
+        private int mClients = 1000;
+        private long mDurationMillis = 10000;
+        private int mCities = 500;
+        private double mZipfExponent = 1.0;
+        private boolean mConditionalRequests = true;
+        private long mThinkTimeMillis;
+        private int mTimeoutMillis = 10000;
+
+        public Config setClients(int clients) {
+            mClients = clients;
+            return this;
+        }
+
+        public Config setDurationMillis(long durationMillis) {
+            mDurationMillis = durationMillis;
+            return this;
+        }
+
+        /**
+         * @param cities       Number of distinct cities synced by the fleet
+         * @param zipfExponent Skew of their popularity, 0 for uniform
+         */
+        public Config setCities(int cities, double zipfExponent) {
+            mCities = cities;
+            mZipfExponent = zipfExponent;
+            return this;
+        }
+
+        /**
+         * @param conditionalRequests Whether clients send If-None-Match with the last ETag
+         */
+        public Config setConditionalRequests(boolean conditionalRequests) {
+            mConditionalRequests = conditionalRequests;
+            return this;
+        }
+
+        /**
+         * @param thinkTimeMillis Pause of each client between two syncs
+         */
+        public Config setThinkTimeMillis(long thinkTimeMillis) {
+            mThinkTimeMillis = thinkTimeMillis;
+            return this;
+        }
+
+        public Config setTimeoutMillis(int timeoutMillis) {
+            mTimeoutMillis = timeoutMillis;
+            return this;
+        }
+    }
+
+    /**
+     * Outcome of a run.
+     */
+    public static class Report {
+        private final int mClients;
+        private final long mElapsedMillis;
+        private final long mSyncs;
+        private final long mRequests;
+        private final long mNotModified;
+        private final long mFailures;
+        private final long[] mSortedLatencies;
+
+        Report(int clients, long elapsedMillis, long syncs, long requests, long notModified,
+               long failures, long[] sortedLatencies) {
+            mClients = clients;
+            mElapsedMillis = elapsedMillis;
+            mSyncs = syncs;
+            mRequests = requests;
+            mNotModified = notModified;
+            mFailures = failures;
+            mSortedLatencies = sortedLatencies;
+        }
+
+        public long getSyncs() {
+            return mSyncs;
+        }
+
+        public long getRequests() {
+            return mRequests;
+        }
+
+        public long getNotModified() {
+            return mNotModified;
+        }
+
+        public long getFailures() {
+            return mFailures;
+        }
+
+        public double getRequestsPerSecond() {
+            return mRequests * 1000.0 / Math.max(1, mElapsedMillis);
+        }
+
+        /**
+         * @param percentile Between 0 and 100
+         * @return Request latency at that percentile, in milliseconds
+         */
+        public double getLatencyMillis(double percentile) {
+            return LatencyRecorder.percentile(mSortedLatencies, percentile) / 1e6;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                    "%d clients, %.1fs: %d syncs, %d requests (%.0f req/s), %d not modified, "
+                            + "%d failed, latency p50 %.1fms p90 %.1fms p99 %.1fms p99.9 %.1fms max %.1fms",
+                    mClients, mElapsedMillis / 1000.0, mSyncs, mRequests, getRequestsPerSecond(),
+                    mNotModified, mFailures, getLatencyMillis(50), getLatencyMillis(90),
+                    getLatencyMillis(99), getLatencyMillis(99.9), getLatencyMillis(100));
+        }
+    }
+
+    private final String mBaseUrl;
+    private final Config mConfig;
+
+    /* Cumulative popularity of the cities, for Zipf sampling */
+    private final double[] mCityWeights;
+
+    private final AtomicLong mSyncs = new AtomicLong();
+    private final AtomicLong mRequests = new AtomicLong();
+    private final AtomicLong mNotModified = new AtomicLong();
+    private final AtomicLong mFailures = new AtomicLong();
+
+    /**
+     * @param baseUrl Base URL of the server, e.g. http://localhost:8080
+     * @param config  What the fleet looks like
+     */
+    public LoadHarness(String baseUrl, Config config) {
+        mBaseUrl = baseUrl;
+        mConfig = config;
+
+        mCityWeights = new double[config.mCities];
+        double total = 0;
+        for (int i = 0; i < config.mCities; i++) {
+            total += 1 / Math.pow(i + 1, config.mZipfExponent);
+            mCityWeights[i] = total;
+        }
+        for (int i = 0; i < config.mCities; i++) {
+            mCityWeights[i] /= total;
+        }
+    }
+
+    /**
+     * Runs the fleet for the configured duration and waits for every client to finish.
+     *
+     * @return The report of the run
+     * @throws InterruptedException if interrupted while waiting for the clients
+     */
+    public Report run() throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(mConfig.mClients);
+        final List<LatencyRecorder> recorders = new ArrayList<>(mConfig.mClients);
+        final long[] deadline = new long[1];
+
+        for (int i = 0; i < mConfig.mClients; i++) {
+            final LatencyRecorder recorder = new LatencyRecorder();
+            recorders.add(recorder);
+
+            Thread client = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        runClient(recorder, deadline[0]);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }, "sync-client-" + i);
+            client.setDaemon(true);
+            client.start();
+        }
+
+        long startNanos = System.nanoTime();
+        deadline[0] = startNanos + TimeUnit.MILLISECONDS.toNanos(mConfig.mDurationMillis);
+        start.countDown();
+        done.await();
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+
+        return new Report(mConfig.mClients, elapsedMillis, mSyncs.get(), mRequests.get(),
+                mNotModified.get(), mFailures.get(), LatencyRecorder.mergeSorted(recorders));
+    }
+
+    private void runClient(LatencyRecorder recorder, long deadlineNanos)
+            throws InterruptedException {
+        /* Last ETag of each URL this client fetched */
+        Map<String, String> eTags = new HashMap<>();
+
+        while (System.nanoTime() < deadlineNanos) {
+            String city = "City " + pickCity();
+            String query;
+            try {
+                query = "?q=" + URLEncoder.encode(city, "UTF-8") + "&mode=json&units=metric";
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+
+            boolean ok = fetch(ForecastServer.WEATHER_PATH + query + "&cnt=5", eTags, recorder)
+                    & fetch(ForecastServer.HOURLY_PATH + query + "&cnt=40", eTags, recorder);
+            if (ok) {
+                mSyncs.incrementAndGet();
+            }
+
+            if (mConfig.mThinkTimeMillis > 0) {
+                TimeUnit.MILLISECONDS.sleep(mConfig.mThinkTimeMillis);
+            }
+        }
+    }
+
+    private int pickCity() {
+        double value = ThreadLocalRandom.current().nextDouble();
+        int low = 0;
+        int high = mCityWeights.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (mCityWeights[mid] < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /* One request, body read to the end as the app does. Returns false if it failed */
+    private boolean fetch(String pathAndQuery, Map<String, String> eTags, LatencyRecorder recorder) {
+        mRequests.incrementAndGet();
+        long startNanos = System.nanoTime();
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) new URL(mBaseUrl + pathAndQuery).openConnection();
+            connection.setConnectTimeout(mConfig.mTimeoutMillis);
+            connection.setReadTimeout(mConfig.mTimeoutMillis);
+            String eTag = eTags.get(pathAndQuery);
+            if (mConfig.mConditionalRequests && eTag != null) {
+                connection.setRequestProperty("If-None-Match", eTag);
+            }
+
+            int status = connection.getResponseCode();
+            if (status == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                mNotModified.incrementAndGet();
+                return true;
+            }
+            if (status != HttpURLConnection.HTTP_OK) {
+                drain(connection.getErrorStream());
+                mFailures.incrementAndGet();
+                return false;
+            }
+
+            drain(connection.getInputStream());
+            String newETag = connection.getHeaderField("ETag");
+            if (newETag != null) {
+                eTags.put(pathAndQuery, newETag);
+            }
+            return true;
+        } catch (IOException e) {
+            mFailures.incrementAndGet();
+            return false;
+        } finally {
+            recorder.record(System.nanoTime() - startNanos);
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+    }
+
+    private static void drain(InputStream in) throws IOException {
+        if (in == null) {
+            return;
+        }
+        byte[] buffer = new byte[8192];
+        try {
+            while (in.read(buffer) != -1) {
+                // Read to the end so the connection can be reused
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Starts a {@link ForecastServer} unless --url is given, runs the fleet against it and prints
+     * the report and the server's request counts.
+     * <pre>
+     *     --clients 2000 --duration 30 --cities 500 --zipf 1.0 --think 0 --no-conditional
+     *     --latency 20 --jitter 50 --error-rate 0.01 --padding 0 --url http://host:port
+     * </pre>
+     */
+    public static void main(String[] args) throws Exception {
+        Config config = new Config();
+        ServerConfig serverConfig = new ServerConfig();
+        String url = null;
+        int cities = config.mCities;
+        double zipf = config.mZipfExponent;
+        long latency = 0;
+        long jitter = 0;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--clients":
+                    config.setClients(Integer.parseInt(args[++i]));
+                    break;
+                case "--duration":
+                    config.setDurationMillis(Long.parseLong(args[++i]) * 1000);
+                    break;
+                case "--cities":
+                    cities = Integer.parseInt(args[++i]);
+                    break;
+                case "--zipf":
+                    zipf = Double.parseDouble(args[++i]);
+                    break;
+                case "--think":
+                    config.setThinkTimeMillis(Long.parseLong(args[++i]));
+                    break;
+                case "--no-conditional":
+                    config.setConditionalRequests(false);
+                    break;
+                case "--latency":
+                    latency = Long.parseLong(args[++i]);
+                    break;
+                case "--jitter":
+                    jitter = Long.parseLong(args[++i]);
+                    break;
+                case "--error-rate":
+                    serverConfig.setErrorRate(Double.parseDouble(args[++i]));
+                    break;
+                case "--padding":
+                    serverConfig.setPaddingBytes(Integer.parseInt(args[++i]));
+                    break;
+                case "--url":
+                    url = args[++i];
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        config.setCities(cities, zipf);
+        serverConfig.setLatency(latency, jitter);
+
+        ForecastServer server = null;
+        if (url == null) {
+            server = new ForecastServer(serverConfig);
+            server.start();
+            url = server.getBaseUrl();
+        }
+
+        Report report = new LoadHarness(url, config).run();
+        System.out.println(report);
+
+        if (server != null) {
+            System.out.println("Server: " + server.getStats());
+            server.stop();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.hazem.forecastserver;
+
+/**
+ * How a {@link ForecastServer} behaves. Every setter returns this config so they can be chained.
+ */
+public class ServerConfig {
+
+    private int mPort;
+    private long mLatencyMillis;
+    private long mLatencyJitterMillis;
+    private double mLatencyTailShape;
+    private long mMaxLatencyMillis = Long.MAX_VALUE;
+    private double mErrorRate;
+    private double mRevisionRate;
+    private int mPaddingBytes;
+    private boolean mETagEnabled = true;
+    private long mSeed = 1;
+
+    /**
+     * @param port Port to listen on, 0 to pick a free one
+     */
+    public ServerConfig setPort(int port) {
+        mPort = port;
+        return this;
+    }
+
+    /**
+     * @param latencyMillis       Minimum time spent on every response
+     * @param latencyJitterMillis Up to this much is added to it, uniformly at random
+     */
+    public ServerConfig setLatency(long latencyMillis, long latencyJitterMillis) {
+        mLatencyMillis = latencyMillis;
+        mLatencyJitterMillis = latencyJitterMillis;
+        return this;
+    }
+
+    /**
+     * Makes latency heavy-tailed, like a real server's: the minimum latency is multiplied by a
+     * Pareto distributed factor of at least 1, so most responses are fast and a few are very slow.
+     * The smaller the shape, the heavier the tail: with 1.2, 1% of the responses take 46 times
+     * the minimum or more.
+     *
+     * @param shape            Pareto shape, 0 to keep the uniform jitter only
+     * @param maxLatencyMillis Latencies are capped at this
+     */
+    public ServerConfig setLatencyTail(double shape, long maxLatencyMillis) {
+        if (shape < 0) {
+            throw new IllegalArgumentException("Tail shape must not be negative: " + shape);
+        }
+        mLatencyTailShape = shape;
+        mMaxLatencyMillis = maxLatencyMillis;
+        return this;
+    }
+
+    /**
+     * @param errorRate Fraction of requests, 0 to 1, answered with a 503
+     */
+    public ServerConfig setErrorRate(double errorRate) {
+        if (errorRate < 0 || errorRate > 1) {
+            throw new IllegalArgumentException("Error rate must be between 0 and 1: " + errorRate);
+        }
+        mErrorRate = errorRate;
+        return this;
+    }
+
+    /**
+     * @param revisionRate Fraction of daily forecast requests, 0 to 1, that first revise one day
+     *                     of the requested forecast at random, see ForecastVersions
+     */
+    public ServerConfig setRevisionRate(double revisionRate) {
+        if (revisionRate < 0 || revisionRate > 1) {
+            throw new IllegalArgumentException("Revision rate must be between 0 and 1: " + revisionRate);
+        }
+        mRevisionRate = revisionRate;
+        return this;
+    }
+
+    /**
+     * @param paddingBytes Extra bytes added to every forecast body, to simulate larger payloads
+     */
+    public ServerConfig setPaddingBytes(int paddingBytes) {
+        mPaddingBytes = paddingBytes;
+        return this;
+    }
+
+    /**
+     * @param eTagEnabled Whether responses carry an ETag and If-None-Match is answered with 304
+     */
+    public ServerConfig setETagEnabled(boolean eTagEnabled) {
+        mETagEnabled = eTagEnabled;
+        return this;
+    }
+
+    /**
+     * @param seed Seed of the generated forecasts, same seed and day give the same forecasts
+     */
+    public ServerConfig setSeed(long seed) {
+        mSeed = seed;
+        return this;
+    }
+
+    public int getPort() {
+        return mPort;
+    }
+
+    public long getLatencyMillis() {
+        return mLatencyMillis;
+    }
+
+    public long getLatencyJitterMillis() {
+        return mLatencyJitterMillis;
+    }
+
+    public double getLatencyTailShape() {
+        return mLatencyTailShape;
+    }
+
+    public long getMaxLatencyMillis() {
+        return mMaxLatencyMillis;
+    }
+
+    public double getErrorRate() {
+        return mErrorRate;
+    }
+
+    public double getRevisionRate() {
+        return mRevisionRate;
+    }
+
+    public int getPaddingBytes() {
+        return mPaddingBytes;
+    }
+
+    public boolean isETagEnabled() {
+        return mETagEnabled;
+    }
+
+    public long getSeed() {
+        return mSeed;
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.hazem.forecastserver;
+
+/**
+ * Request counts of a {@link ForecastServer}, as of the moment they were taken.
+ */
+public class ServerStats {
+
+    private final long mRequests;
+    private final long mOk;
+    private final long mNotModified;
+    private final long mDeltas;
+    private final long mNotFound;
+    private final long mBadRequests;
+    private final long mErrors;
+    private final long mBytesSent;
+
+    ServerStats(long requests, long ok, long notModified, long deltas, long notFound,
+                long badRequests, long errors, long bytesSent) {
+        mRequests = requests;
+        mOk = ok;
+        mNotModified = notModified;
+        mDeltas = deltas;
+        mNotFound = notFound;
+        mBadRequests = badRequests;
+        mErrors = errors;
+        mBytesSent = bytesSent;
+    }
+
+    public long getRequests() {
+        return mRequests;
+    }
+
+    public long getOk() {
+        return mOk;
+    }
+
+    public long getNotModified() {
+        return mNotModified;
+    }
+
+    /* Ok responses that only carried the days changed since the client's version */
+    public long getDeltas() {
+        return mDeltas;
+    }
+
+    public long getNotFound() {
+        return mNotFound;
+    }
+
+    public long getBadRequests() {
+        return mBadRequests;
+    }
+
+    /* Requests failed on purpose, see ServerConfig#setErrorRate */
+    public long getErrors() {
+        return mErrors;
+    }
+
+    public long getBytesSent() {
+        return mBytesSent;
+    }
+
+    @Override
+    public String toString() {
+        return mRequests + " requests: " + mOk + " ok, " + mNotModified + " not modified, "
+                + mDeltas + " deltas, " + mNotFound + " not found, " + mBadRequests + " bad requests, " + mErrors
+                + " errors, " + mBytesSent + " body bytes";
+    }
+}
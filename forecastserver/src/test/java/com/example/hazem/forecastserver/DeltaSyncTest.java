@@ -0,0 +1,213 @@
+package com.example.hazem.forecastserver;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+/**
+ * Syncs a client through daily forecast deltas while the server revises days and rolls over,
+ * and checks the client always ends up with the same forecast as a full fetch.
+ */
+public class DeltaSyncTest {
+
+    private static final int DAYS = 14;
+    private static final String QUERY = "/weather?q=London&mode=json&units=metric&cnt=" + DAYS;
+
+    private static final Pattern VERSION = Pattern.compile("\"version\":\"([^\"]*)\"");
+    private static final Pattern DELTA = Pattern.compile("\"delta\":(true|false)");
+    private static final Pattern START = Pattern.compile("\"start\":(\\d+)");
+    private static final Pattern DAY = Pattern.compile("\\{\"dt\":(\\d+),.*?\"deg\":\\d+\\}");
+
+    private ForecastServer mServer;
+    private ForecastResponses.Location mLocation;
+
+    @Before
+    public void setUp() throws IOException {
+        mServer = new ForecastServer(new ServerConfig());
+        mServer.start();
+        mLocation = ForecastResponses.Location.fromQuery("London");
+    }
+
+    @After
+    public void tearDown() {
+        mServer.stop();
+    }
+
+    /* Holds the forecast the way the app does: one entry per day, replaced or dropped by deltas */
+    private class Client {
+        final TreeMap<Long, String> mDays = new TreeMap<>();
+        String mVersion = "";
+        long mBytes;
+        int mDeltas;
+
+        void sync() throws IOException {
+            String body = get(QUERY + "&" + ForecastServer.SINCE_PARAM + "="
+                    + URLEncoder.encode(mVersion, "UTF-8"));
+            mBytes += body.getBytes(StandardCharsets.UTF_8).length;
+
+            boolean delta = Boolean.parseBoolean(find(DELTA, body));
+            long start = Long.parseLong(find(START, body));
+            if (delta) {
+                mDeltas++;
+            } else {
+                mDays.clear();
+            }
+            mDays.putAll(parseDays(body));
+
+            /* Days outside the window the forecast now covers */
+            mDays.headMap(start).clear();
+            mDays.tailMap(start + DAYS * ForecastResponses.DAY_IN_MILLIS / 1000).clear();
+            mVersion = find(VERSION, body);
+        }
+    }
+
+    private String get(String pathAndQuery) throws IOException {
+        HttpURLConnection connection =
+                (HttpURLConnection) new URL(mServer.getBaseUrl() + pathAndQuery).openConnection();
+        try {
+            assertEquals(200, connection.getResponseCode());
+            InputStream in = connection.getInputStream();
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                body.write(buffer, 0, read);
+            }
+            in.close();
+            return new String(body.toByteArray(), StandardCharsets.UTF_8);
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static String find(Pattern pattern, String body) {
+        Matcher matcher = pattern.matcher(body);
+        assertTrue(pattern + " in " + body, matcher.find());
+        return matcher.group(1);
+    }
+
+    private static TreeMap<Long, String> parseDays(String body) {
+        TreeMap<Long, String> days = new TreeMap<>();
+        Matcher matcher = DAY.matcher(body);
+        while (matcher.find()) {
+            days.put(Long.parseLong(matcher.group(1)), matcher.group());
+        }
+        return days;
+    }
+
+    @Test
+    public void firstSync_getsEveryDay() throws IOException {
+        String body = get(QUERY + "&since=");
+
+        assertEquals("false", find(DELTA, body));
+        assertEquals(DAYS, parseDays(body).size());
+        assertEquals(parseDays(get(QUERY)), parseDays(body));
+    }
+
+    @Test
+    public void unchangedForecast_sendsNoDays() throws IOException {
+        Client client = new Client();
+        client.sync();
+
+        String body = get(QUERY + "&since=" + URLEncoder.encode(client.mVersion, "UTF-8"));
+        assertEquals("true", find(DELTA, body));
+        assertTrue(parseDays(body).isEmpty());
+        assertEquals(client.mVersion, find(VERSION, body));
+    }
+
+    @Test
+    public void revisionsAndRollover_sendOnlyTheChangedDays() throws IOException {
+        Client client = new Client();
+        client.sync();
+
+        mServer.reviseDay(mLocation, 3);
+        mServer.reviseDay(mLocation, 5);
+        mServer.reviseDay(mLocation, 3);
+        mServer.advanceClock(ForecastResponses.DAY_IN_MILLIS);
+
+        String body = get(QUERY + "&since=" + URLEncoder.encode(client.mVersion, "UTF-8"));
+        /* Days 3 and 5 are now days 2 and 4, and the new last day */
+        assertEquals(3, parseDays(body).size());
+    }
+
+    @Test
+    public void unknownVersion_fallsBackToEveryDay() throws IOException {
+        Client client = new Client();
+        client.sync();
+
+        for (String version : new String[]{"garbage", client.mVersion.replace(".m.", ".i."),
+                client.mVersion.replaceFirst("\\.0\\.", ".7.")}) {
+            String body = get(QUERY + "&since=" + URLEncoder.encode(version, "UTF-8"));
+            assertEquals(version, "false", find(DELTA, body));
+            assertEquals(DAYS, parseDays(body).size());
+        }
+
+        /* Versions of another instance, e.g. from before a restart */
+        ForecastServer other = new ForecastServer(new ServerConfig());
+        other.start();
+        try {
+            URL url = new URL(other.getBaseUrl() + QUERY + "&since="
+                    + URLEncoder.encode(client.mVersion, "UTF-8"));
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            InputStream in = connection.getInputStream();
+            String body = new java.util.Scanner(in, "UTF-8").useDelimiter("\\A").next();
+            in.close();
+            assertEquals("false", find(DELTA, body));
+        } finally {
+            other.stop();
+        }
+    }
+
+    @Test
+    public void randomRevisions_deltasConvergeToTheFullForecast() throws IOException {
+        Random random = new Random(42);
+        Client client = new Client();
+        client.sync();
+        long fullBytes = client.mBytes;
+
+        int syncs = 200;
+        client.mBytes = 0;
+        List<String> failures = new ArrayList<>();
+        for (int sync = 0; sync < syncs; sync++) {
+            /* A few revisions, some beyond the window the client holds */
+            int revisions = random.nextInt(3);
+            for (int i = 0; i < revisions; i++) {
+                mServer.reviseDay(mLocation, random.nextInt(DAYS + 2));
+            }
+            /* About every 4th sync falls on a new day */
+            if (random.nextInt(4) == 0) {
+                mServer.advanceClock(ForecastResponses.DAY_IN_MILLIS);
+            }
+
+            client.sync();
+            TreeMap<Long, String> full = parseDays(get(QUERY));
+            if (!full.equals(client.mDays)) {
+                failures.add("Sync " + sync + " diverged");
+            }
+        }
+
+        System.out.println(String.format("Full sync %d bytes, delta sync %.0f bytes on average "
+                        + "(%d deltas in %d syncs)", fullBytes, client.mBytes / (double) syncs,
+                client.mDeltas, syncs));
+
+        assertTrue(failures.toString(), failures.isEmpty());
+        assertEquals(syncs, client.mDeltas);
+        assertTrue(client.mBytes / syncs < fullBytes / 2);
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.hazem.forecastserver;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests {@link ForecastServer} over real HTTP on a local port.
+ */
+public class ForecastServerTest {
+
+    private ForecastServer mServer;
+
+    private ForecastServer start(ServerConfig config) throws IOException {
+        mServer = new ForecastServer(config);
+        mServer.start();
+        return mServer;
+    }
+
+    @After
+    public void tearDown() {
+        if (mServer != null) {
+            mServer.stop();
+        }
+    }
+
+    private static HttpURLConnection open(ForecastServer server, String pathAndQuery)
+            throws IOException {
+        return (HttpURLConnection) new URL(server.getBaseUrl() + pathAndQuery).openConnection();
+    }
+
+    private static String readBody(HttpURLConnection connection) throws IOException {
+        InputStream in = connection.getResponseCode() < 400
+                ? connection.getInputStream()
+                : connection.getErrorStream();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            body.write(buffer, 0, read);
+        }
+        in.close();
+        return new String(body.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static int countOccurrences(String text, String part) {
+        return text.split(java.util.regex.Pattern.quote(part), -1).length - 1;
+    }
+
+    @Test
+    public void weather_servesDailyContract() throws IOException {
+        ForecastServer server = start(new ServerConfig());
+
+        HttpURLConnection connection =
+                open(server, "/weather?q=Mountain%20View,%20CA%2094043&mode=json&units=metric&cnt=5");
+        String body = readBody(connection);
+
+        assertEquals(200, connection.getResponseCode());
+        assertTrue(body.startsWith("{\"city\":{\"name\":\"Mountain View, CA 94043\",\"coord\":{"));
+        assertTrue(body.contains("\"cod\":\"200\""));
+        assertEquals(5, countOccurrences(body, "\"temp\":{\"min\":"));
+        assertEquals(5, countOccurrences(body, "\"weather\":[{\"id\":"));
+        assertEquals(5, countOccurrences(body, "\"speed\":"));
+    }
+
+    @Test
+    public void hourly_servesSlotsOnWholeHours() throws IOException {
+        ForecastServer server = start(new ServerConfig());
+
+        String body = readBody(open(server, "/hourly?lat=51.5&lon=-0.12&mode=json&units=metric&cnt=40"));
+
+        assertEquals(40, countOccurrences(body, "\"main\":{\"temp\":"));
+        int dt = body.indexOf("{\"dt\":") + 6;
+        long seconds = Long.parseLong(body.substring(dt, body.indexOf(',', dt)));
+        assertEquals(0, seconds % (ForecastResponses.HOURLY_STEP_HOURS * 3600));
+    }
+
+    @Test
+    public void sameRequest_getsSameBody_andNotModifiedWithETag() throws IOException {
+        ForecastServer server = start(new ServerConfig());
+        String path = "/weather?q=London&mode=json&units=metric&cnt=7";
+
+        HttpURLConnection first = open(server, path);
+        String firstBody = readBody(first);
+        String eTag = first.getHeaderField("ETag");
+        assertNotNull(eTag);
+        assertEquals(firstBody, readBody(open(server, path)));
+
+        HttpURLConnection conditional = open(server, path);
+        conditional.setRequestProperty("If-None-Match", eTag);
+        assertEquals(304, conditional.getResponseCode());
+
+        ServerStats stats = server.getStats();
+        assertEquals(3, stats.getRequests());
+        assertEquals(2, stats.getOk());
+        assertEquals(1, stats.getNotModified());
+    }
+
+    @Test
+    public void eTagsDisabled_alwaysSendsBody() throws IOException {
+        ForecastServer server = start(new ServerConfig().setETagEnabled(false));
+
+        HttpURLConnection connection = open(server, "/weather?q=London&cnt=5");
+        connection.setRequestProperty("If-None-Match", "\"anything\"");
+
+        assertEquals(200, connection.getResponseCode());
+        assertNull(connection.getHeaderField("ETag"));
+    }
+
+    @Test
+    public void imperialUnits_andPadding_changeTheBody() throws IOException {
+        ForecastServer server = start(new ServerConfig().setPaddingBytes(10000));
+
+        String metric = readBody(open(server, "/weather?q=Cairo&units=metric&cnt=3"));
+        String imperial = readBody(open(server, "/weather?q=Cairo&units=imperial&cnt=3"));
+
+        assertFalse(metric.equals(imperial));
+        assertTrue(metric.length() > 10000);
+    }
+
+    @Test
+    public void errors_followConfiguredRate() throws IOException {
+        ForecastServer server = start(new ServerConfig().setErrorRate(1));
+
+        HttpURLConnection connection = open(server, "/weather?q=London&cnt=5");
+
+        assertEquals(503, connection.getResponseCode());
+        assertTrue(readBody(connection).contains("\"cod\":\"503\""));
+        assertEquals(1, server.getStats().getErrors());
+    }
+
+    @Test
+    public void badRequests_areRejected() throws IOException {
+        ForecastServer server = start(new ServerConfig());
+
+        assertEquals(400, open(server, "/weather?mode=json").getResponseCode());
+        assertEquals(400, open(server, "/weather?q=London&cnt=0").getResponseCode());
+        assertEquals(404, open(server, "/weather?q=%20&cnt=5").getResponseCode());
+        assertEquals(2, server.getStats().getBadRequests());
+        assertEquals(1, server.getStats().getNotFound());
+    }
+
+    @Test
+    public void latency_isApplied() throws IOException {
+        ForecastServer server = start(new ServerConfig().setLatency(100, 0));
+
+        long start = System.nanoTime();
+        readBody(open(server, "/weather?q=London&cnt=5"));
+
+        assertTrue(System.nanoTime() - start >= 100000000L);
+    }
+}
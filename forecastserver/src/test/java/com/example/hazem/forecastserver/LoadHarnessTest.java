@@ -0,0 +1,54 @@
+package com.example.hazem.forecastserver;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs a small fleet through {@link LoadHarness} against a local {@link ForecastServer}.
+ */
+public class LoadHarnessTest {
+
+    @Test
+    public void fleet_reportsThroughputAndServerCountsAgree() throws IOException, InterruptedException {
+        ForecastServer server = new ForecastServer(new ServerConfig().setLatency(2, 3));
+        server.start();
+        try {
+            LoadHarness.Report report = new LoadHarness(server.getBaseUrl(),
+                    new LoadHarness.Config()
+                            .setClients(200)
+                            .setDurationMillis(2000)
+                            .setCities(50, 1.0))
+                    .run();
+            ServerStats stats = server.getStats();
+
+            System.out.println(report);
+            System.out.println("Server: " + stats);
+
+            assertTrue(report.getSyncs() > 0);
+            assertEquals(0, report.getFailures());
+            assertEquals(report.getRequests(), stats.getRequests());
+            assertEquals(report.getNotModified(), stats.getNotModified());
+            /* Popular cities are synced again, their forecast hasn't changed in between */
+            assertTrue(report.getNotModified() > 0);
+            assertTrue(report.getLatencyMillis(50) <= report.getLatencyMillis(99));
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void percentiles_useNearestRank() {
+        long[] sorted = new long[100];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = i + 1;
+        }
+
+        assertEquals(50, LatencyRecorder.percentile(sorted, 50));
+        assertEquals(99, LatencyRecorder.percentile(sorted, 99));
+        assertEquals(100, LatencyRecorder.percentile(sorted, 100));
+        assertEquals(0, LatencyRecorder.percentile(new long[0], 50));
+    }
+}